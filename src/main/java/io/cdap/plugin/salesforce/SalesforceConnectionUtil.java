@@ -17,9 +17,9 @@ package io.cdap.plugin.salesforce;
 
 import com.sforce.soap.partner.PartnerConnection;
 import com.sforce.ws.ConnectionException;
-import com.sforce.ws.ConnectorConfig;
 import io.cdap.plugin.salesforce.authenticator.Authenticator;
 import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
 import io.cdap.plugin.salesforce.plugin.OAuthInfo;
 import org.apache.hadoop.conf.Configuration;
 
@@ -38,8 +38,22 @@ public class SalesforceConnectionUtil {
    */
   public static PartnerConnection getPartnerConnection(AuthenticatorCredentials credentials)
     throws ConnectionException {
-    ConnectorConfig connectorConfig = Authenticator.createConnectorConfig(credentials);
-    return new PartnerConnection(connectorConfig);
+    return SalesforceConnectionManager.getPartnerConnection(credentials);
+  }
+
+  /**
+   * Obtains session for the given credentials, session obtained by the password grant is shared within the JVM.
+   * Used in the driver to pass a single session to all tasks.
+   *
+   * @param credentials Salesforce credentials
+   * @return OAuth session
+   */
+  public static OAuthInfo getSession(AuthenticatorCredentials credentials) {
+    try {
+      return Authenticator.getOAuthInfo(credentials);
+    } catch (Exception e) {
+      throw new RuntimeException("Connection to salesforce with plugin configurations failed", e);
+    }
   }
 
   /**
@@ -55,10 +69,20 @@ public class SalesforceConnectionUtil {
       return new AuthenticatorCredentials(new OAuthInfo(oAuthToken, instanceURL));
     }
 
-    return new AuthenticatorCredentials(conf.get(SalesforceConstants.CONFIG_USERNAME),
-                                        conf.get(SalesforceConstants.CONFIG_PASSWORD),
-                                        conf.get(SalesforceConstants.CONFIG_CONSUMER_KEY),
-                                        conf.get(SalesforceConstants.CONFIG_CONSUMER_SECRET),
-                                        conf.get(SalesforceConstants.CONFIG_LOGIN_URL));
+    AuthenticatorCredentials credentials =
+      new AuthenticatorCredentials(conf.get(SalesforceConstants.CONFIG_USERNAME),
+                                   conf.get(SalesforceConstants.CONFIG_PASSWORD),
+                                   conf.get(SalesforceConstants.CONFIG_CONSUMER_KEY),
+                                   conf.get(SalesforceConstants.CONFIG_CONSUMER_SECRET),
+                                   conf.get(SalesforceConstants.CONFIG_LOGIN_URL));
+    // reuse session obtained in the driver, so tasks do not log in unless the session is rejected or gets too old
+    String sessionId = conf.get(SalesforceConstants.CONFIG_SESSION_ID);
+    String sessionInstanceURL = conf.get(SalesforceConstants.CONFIG_SESSION_INSTANCE_URL);
+    if (sessionId != null && sessionInstanceURL != null) {
+      long obtainedAtMs = conf.getLong(SalesforceConstants.CONFIG_SESSION_OBTAINED_AT, System.currentTimeMillis());
+      SalesforceConnectionManager.registerSession(credentials, new OAuthInfo(sessionId, sessionInstanceURL),
+                                                  obtainedAtMs);
+    }
+    return credentials;
   }
 }
@@ -21,6 +21,8 @@ package io.cdap.plugin.salesforce;
 public class SalesforceConstants {
 
   public static final String API_VERSION = "53.0";
+  public static final String BULK_API_VERSION_1 = "1.0";
+  public static final String BULK_API_VERSION_2 = "2.0";
   public static final String REFERENCE_NAME_DELIMITER = ".";
 
   public static final String PROPERTY_CONSUMER_KEY = "consumerKey";
@@ -38,6 +40,9 @@ public class SalesforceConstants {
   public static final String CONFIG_USERNAME = "mapred.salesforce.user";
   public static final String CONFIG_CONSUMER_SECRET = "mapred.salesforce.consumer.secret";
   public static final String CONFIG_LOGIN_URL = "mapred.salesforce.login.url";
+  public static final String CONFIG_SESSION_ID = "mapred.salesforce.session.id";
+  public static final String CONFIG_SESSION_INSTANCE_URL = "mapred.salesforce.session.instance.url";
+  public static final String CONFIG_SESSION_OBTAINED_AT = "mapred.salesforce.session.obtained.at";
 
   public static final int RANGE_FILTER_MIN_VALUE = 0;
   public static final int SOQL_MAX_LENGTH = 20000;
@@ -18,6 +18,7 @@ package io.cdap.plugin.salesforce;
 import io.cdap.plugin.salesforce.parser.SalesforceQueryParser;
 
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -31,6 +32,11 @@ public class SalesforceQueryUtil {
   private static final String FROM = " FROM ";
   private static final String WHERE = " WHERE ";
   private static final String AND = " AND ";
+  private static final String ORDER_BY = " ORDER BY ";
+  private static final String ASC = " ASC";
+  private static final String DESC = " DESC";
+  private static final String LIMIT_1 = " LIMIT 1";
+  private static final String COUNT = "COUNT()";
 
 
   private static final String FIELD_LAST_MODIFIED_DATE = "LastModifiedDate";
@@ -84,6 +90,110 @@ public class SalesforceQueryUtil {
     return SELECT + FIELD_ID + " " + fromStatement;
   }
 
+  /**
+   * Splits fields of a wide query into several queries, each under SOQL max length limit. Every query selects
+   * {@link #FIELD_ID} and a part of initial query fields, leaves other clauses as is and orders records by
+   * {@link #FIELD_ID}, so results of the queries can be joined on {@link #FIELD_ID}.
+   * Initial query must not contain clauses which conflict with ordering, see
+   * {@link SalesforceQueryParser#isRestrictedPKQuery(String)}.
+   * <p/>
+   * Example:
+   * <ul>
+   *  <li>Initial query: `SELECT Name, LastModifiedDate, ... FROM Opportunity WHERE Name LIKE 'S_%'`</li>
+   *  <li>Result queries: `SELECT Id,Name,... FROM Opportunity WHERE Name LIKE 'S_%' ORDER BY Id`,
+   *  `SELECT Id,LastModifiedDate,... FROM Opportunity WHERE Name LIKE 'S_%' ORDER BY Id`</li>
+   * </ul>
+   *
+   * @param query initial query
+   * @return queries which select parts of the initial query fields
+   */
+  public static List<String> createColumnSplitQueries(String query) {
+    String suffix = " " + SalesforceQueryParser.getFromStatement(query) + ORDER_BY + FIELD_ID;
+    List<String> queries = new ArrayList<>();
+    StringBuilder fields = new StringBuilder(FIELD_ID);
+    for (String field : SObjectDescriptor.fromQuery(query).getFieldsNames()) {
+      if (FIELD_ID.equalsIgnoreCase(field)) {
+        continue;
+      }
+      if (fields.length() > FIELD_ID.length()
+        && !isQueryUnderLengthLimit(SELECT + fields + "," + field + suffix)) {
+        queries.add(SELECT + fields + suffix);
+        fields = new StringBuilder(FIELD_ID);
+      }
+      fields.append(",").append(field);
+    }
+    queries.add(SELECT + fields + suffix);
+    return queries;
+  }
+
+  /**
+   * Creates query which counts records of the initial query.
+   * <p/>
+   * Example:
+   * <ul>
+   *  <li>Initial query: `SELECT Name FROM Opportunity WHERE Name LIKE 'S_%'`</li>
+   *  <li>Result query: `SELECT COUNT() FROM Opportunity WHERE Name LIKE 'S_%'`</li>
+   * </ul>
+   *
+   * @param query initial query
+   * @return count query
+   */
+  public static String createCountQuery(String query) {
+    return SELECT + COUNT + " " + SalesforceQueryParser.getFromStatement(query);
+  }
+
+  /**
+   * Creates query which returns the lowest or the highest value of the field among records of the initial query.
+   * Initial query must not contain clauses which conflict with ordering, see
+   * {@link SalesforceQueryParser#isRestrictedPKQuery(String)}.
+   * <p/>
+   * Example:
+   * <ul>
+   *  <li>Initial query: `SELECT Name FROM Opportunity WHERE Name LIKE 'S_%'`</li>
+   *  <li>Result query: `SELECT CreatedDate FROM Opportunity WHERE Name LIKE 'S_%'
+   *  ORDER BY CreatedDate ASC LIMIT 1`</li>
+   * </ul>
+   *
+   * @param query initial query
+   * @param field field to get the boundary value of
+   * @param lowest true to get the lowest value, false to get the highest value
+   * @return boundary query
+   */
+  public static String createBoundaryQuery(String query, String field, boolean lowest) {
+    return SELECT + field + " " + SalesforceQueryParser.getFromStatement(query)
+      + ORDER_BY + field + (lowest ? ASC : DESC) + LIMIT_1;
+  }
+
+  /**
+   * Splits records of the initial query into disjoint ranges of the field values separated by the given boundaries.
+   * The first range has no lower bound and the last range has no upper bound, so every record of the initial query
+   * falls into exactly one range, even if the boundaries do not cover all of the field values.
+   * <p/>
+   * Example:
+   * <ul>
+   *  <li>Initial query: `SELECT Name FROM Opportunity WHERE Name LIKE 'S_%'`, boundaries: `b1`, `b2`</li>
+   *  <li>Result queries: `SELECT Name FROM Opportunity WHERE (Name LIKE 'S_%') AND CreatedDate<b1`,
+   *  `... AND (CreatedDate>=b1 AND CreatedDate<b2)`, `... AND CreatedDate>=b2`</li>
+   * </ul>
+   *
+   * @param query initial query
+   * @param field field to split records by
+   * @param boundaries ascending SOQL literals of the field values
+   * @return queries, one more than the number of boundaries
+   */
+  public static List<String> createRangeQueries(String query, String field, List<String> boundaries) {
+    List<String> queries = new ArrayList<>();
+    String lowerBound = null;
+    for (String boundary : boundaries) {
+      String upperBound = field + LESS_THAN + boundary;
+      queries.add(SalesforceQueryParser.addCondition(
+        query, lowerBound == null ? upperBound : "(" + lowerBound + AND + upperBound + ")"));
+      lowerBound = field + GREATER_THAN_OR_EQUAL + boundary;
+    }
+    queries.add(lowerBound == null ? query : SalesforceQueryParser.addCondition(query, lowerBound));
+    return queries;
+  }
+
   /**
    * Generates SObject query filter based on provided values.
    *
@@ -22,7 +22,6 @@ import com.sforce.ws.ConnectorConfig;
 import io.cdap.plugin.salesforce.SalesforceConstants;
 import io.cdap.plugin.salesforce.plugin.OAuthInfo;
 import org.eclipse.jetty.client.HttpClient;
-import org.eclipse.jetty.util.ssl.SslContextFactory;
 
 /**
  * Authentication to Salesforce via oauth2
@@ -52,6 +51,10 @@ public class Authenticator {
       connectorConfig.setCompression(true);
       // Set this to true to see HTTP requests and responses on stdout
       connectorConfig.setTraceMessage(false);
+      if (credentials.getOAuthInfo() == null) {
+        // sessions obtained by the password grant are refreshed when rejected by Salesforce
+        connectorConfig.setSessionRenewer(new SalesforceSessionRenewer(credentials));
+      }
 
       return connectorConfig;
     } catch (Exception e) {
@@ -61,37 +64,38 @@ public class Authenticator {
 
   /**
    * Authenticate via oauth2 to salesforce and return response to auth request.
+   * Sessions obtained by the password grant are shared within the JVM, see {@link SalesforceConnectionManager}.
    *
    * @param credentials information to log in
    *
    * @return AuthResponse response to http request
    */
   public static OAuthInfo getOAuthInfo(AuthenticatorCredentials credentials) throws Exception {
-    OAuthInfo oAuthInfo = credentials.getOAuthInfo();
-    if (oAuthInfo != null) {
-      return oAuthInfo;
-    }
-
-    SslContextFactory sslContextFactory = new SslContextFactory();
-    HttpClient httpClient = new HttpClient(sslContextFactory);
-    try {
-      httpClient.start();
-      String response = httpClient.POST(credentials.getLoginUrl()).param("grant_type", "password")
-        .param("client_id", credentials.getConsumerKey())
-        .param("client_secret", credentials.getConsumerSecret())
-        .param("username", credentials.getUsername())
-        .param("password", credentials.getPassword()).send().getContentAsString();
+    return SalesforceConnectionManager.getOAuthInfo(credentials);
+  }
 
-      AuthResponse authResponse = GSON.fromJson(response, AuthResponse.class);
+  /**
+   * Authenticate via oauth2 password grant to salesforce.
+   *
+   * @param httpClient started http client used to send login request
+   * @param credentials information to log in
+   *
+   * @return AuthResponse response to http request
+   */
+  static OAuthInfo login(HttpClient httpClient, AuthenticatorCredentials credentials) throws Exception {
+    String response = httpClient.POST(credentials.getLoginUrl()).param("grant_type", "password")
+      .param("client_id", credentials.getConsumerKey())
+      .param("client_secret", credentials.getConsumerSecret())
+      .param("username", credentials.getUsername())
+      .param("password", credentials.getPassword()).send().getContentAsString();
 
-      if (!Strings.isNullOrEmpty(authResponse.getError())) {
-        throw new IllegalArgumentException(
-          String.format("Cannot authenticate to Salesforce with given credentials. ServerResponse='%s'", response));
-      }
+    AuthResponse authResponse = GSON.fromJson(response, AuthResponse.class);
 
-      return new OAuthInfo(authResponse.getAccessToken(), authResponse.getInstanceUrl());
-    } finally {
-      httpClient.stop();
+    if (!Strings.isNullOrEmpty(authResponse.getError())) {
+      throw new IllegalArgumentException(
+        String.format("Cannot authenticate to Salesforce with given credentials. ServerResponse='%s'", response));
     }
+
+    return new OAuthInfo(authResponse.getAccessToken(), authResponse.getInstanceUrl());
   }
 }
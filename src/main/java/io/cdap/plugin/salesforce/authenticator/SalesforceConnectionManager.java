@@ -0,0 +1,373 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.authenticator;
+
+import com.sforce.async.AsyncApiException;
+import com.sforce.async.AsyncExceptionCode;
+import com.sforce.async.BulkConnection;
+import com.sforce.soap.partner.PartnerConnection;
+import com.sforce.ws.ConnectionException;
+import com.sforce.ws.SessionRenewer;
+import io.cdap.plugin.salesforce.plugin.OAuthInfo;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * Process wide manager of Salesforce sessions and connections.
+ * <p/>
+ * Sessions obtained by the OAuth password grant are cached per credentials, so tasks running in the same JVM
+ * share a single login instead of authenticating on each connection. Session minted in the driver can be registered
+ * together with the time it was obtained, so tasks do not log in at all. Cached session is refreshed when Salesforce
+ * reports it as invalid, see {@link SalesforceSessionRenewer}, and is not reused once it is older than
+ * {@link #SESSION_TTL_MS}, so that connections which cannot renew their session do not keep running into an expired
+ * one. Login and REST requests are sent through a single HTTP client, which is started once and keeps its connections
+ * alive between requests.
+ * Bulk and partner connections are cheap wrappers around a session, a new instance is created per call,
+ * since connections hold mutable request headers.
+ */
+public final class SalesforceConnectionManager {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SalesforceConnectionManager.class);
+
+  private static final Object LOGIN_LOCK = new Object();
+  /**
+   * Time for which a cached session is reused. It is well below the shortest session timeout configurable in
+   * Salesforce (15 minutes), since the timeout is measured from the last activity in the org.
+   */
+  static final long SESSION_TTL_MS = TimeUnit.MINUTES.toMillis(10);
+
+  private static final Map<AuthenticatorCredentials, CachedSession> SESSIONS = new ConcurrentHashMap<>();
+  private static final AtomicLong LOGINS = new AtomicLong();
+  private static final AtomicLong SESSION_HITS = new AtomicLong();
+  private static final AtomicLong SESSION_REFRESHES = new AtomicLong();
+  private static final AtomicLong CONNECTIONS = new AtomicLong();
+
+  private static HttpClient httpClient;
+
+  /**
+   * Returns OAuth session for the given credentials. If credentials already contain OAuth information, it is returned
+   * as is, otherwise session is reused from the cache or obtained by the password grant.
+   *
+   * @param credentials information to log in
+   * @return OAuth session
+   * @throws Exception if authentication fails
+   */
+  public static OAuthInfo getOAuthInfo(AuthenticatorCredentials credentials) throws Exception {
+    OAuthInfo oAuthInfo = credentials.getOAuthInfo();
+    if (oAuthInfo != null) {
+      return oAuthInfo;
+    }
+
+    OAuthInfo session = getCachedSession(credentials);
+    if (session != null) {
+      SESSION_HITS.incrementAndGet();
+      return session;
+    }
+
+    synchronized (LOGIN_LOCK) {
+      session = getCachedSession(credentials);
+      if (session != null) {
+        SESSION_HITS.incrementAndGet();
+        return session;
+      }
+      return login(credentials);
+    }
+  }
+
+  /**
+   * Registers session obtained elsewhere, usually in the driver, for the given credentials.
+   * Session already cached for the credentials is kept, unless it has expired. Session is reused only until
+   * {@link #SESSION_TTL_MS} passes since the time it was obtained, not since the time it was registered.
+   *
+   * @param credentials information to log in
+   * @param oAuthInfo session obtained for the credentials
+   * @param obtainedAtMs time in milliseconds when the session was obtained
+   */
+  public static void registerSession(AuthenticatorCredentials credentials, OAuthInfo oAuthInfo, long obtainedAtMs) {
+    if (credentials.getOAuthInfo() == null) {
+      CachedSession session = new CachedSession(oAuthInfo, obtainedAtMs);
+      SESSIONS.merge(credentials, session, (current, registered) ->
+        current.isExpired(System.currentTimeMillis()) ? registered : current);
+    }
+  }
+
+  /**
+   * Returns the time the given session was obtained, so that it can be registered with the same time elsewhere.
+   *
+   * @param credentials information to log in
+   * @param oAuthInfo session obtained for the credentials
+   * @return time in milliseconds when the session was cached, or the current time if the session is not cached
+   */
+  public static long getSessionObtainedAtMs(AuthenticatorCredentials credentials, OAuthInfo oAuthInfo) {
+    CachedSession session = SESSIONS.get(credentials);
+    if (session == null || session.getOAuthInfo() != oAuthInfo) {
+      return System.currentTimeMillis();
+    }
+    return session.getObtainedAtMs();
+  }
+
+  /**
+   * Refreshes session of given credentials which was rejected by Salesforce. If the session was already refreshed
+   * by another connection, the current session is returned without logging in again.
+   *
+   * @param credentials information to log in
+   * @param invalidAccessToken access token rejected by Salesforce
+   * @return refreshed session
+   * @throws Exception if authentication fails
+   */
+  public static OAuthInfo refreshSession(AuthenticatorCredentials credentials, String invalidAccessToken)
+    throws Exception {
+    if (credentials.getOAuthInfo() != null) {
+      throw new IllegalStateException("Session provided by OAuth access token cannot be refreshed");
+    }
+    synchronized (LOGIN_LOCK) {
+      OAuthInfo session = getCachedSession(credentials);
+      if (session != null && !session.getAccessToken().equals(invalidAccessToken)) {
+        return session;
+      }
+      SESSION_REFRESHES.incrementAndGet();
+      return login(credentials);
+    }
+  }
+
+  /**
+   * Executes Bulk API call. If the call fails because the session is invalid and the connection
+   * is able to renew its session, the session is renewed and the call is retried once.
+   *
+   * @param bulkConnection bulk connection used by the call
+   * @param call Bulk API call
+   * @param <T> call result type
+   * @return call result
+   * @throws AsyncApiException if the call fails
+   */
+  public static <T> T callWithSessionRenewal(BulkConnection bulkConnection, BulkCall<T> call)
+    throws AsyncApiException {
+    try {
+      return call.call();
+    } catch (AsyncApiException e) {
+      SessionRenewer sessionRenewer = bulkConnection.getConfig().getSessionRenewer();
+      if (e.getExceptionCode() != AsyncExceptionCode.InvalidSessionId || sessionRenewer == null) {
+        throw e;
+      }
+      LOG.debug("Salesforce session is invalid, renewing the session and retrying the call");
+      try {
+        sessionRenewer.renewSession(bulkConnection.getConfig());
+      } catch (ConnectionException renewException) {
+        e.addSuppressed(renewException);
+        throw e;
+      }
+      return call.call();
+    }
+  }
+
+  /**
+   * Creates bulk connection for the session of given credentials.
+   *
+   * @param credentials information to log in
+   * @return bulk connection
+   * @throws AsyncApiException if connection cannot be created
+   */
+  public static BulkConnection getBulkConnection(AuthenticatorCredentials credentials) throws AsyncApiException {
+    BulkConnection bulkConnection = new BulkConnection(Authenticator.createConnectorConfig(credentials));
+    CONNECTIONS.incrementAndGet();
+    return bulkConnection;
+  }
+
+  /**
+   * Creates partner connection for the session of given credentials.
+   *
+   * @param credentials information to log in
+   * @return partner connection
+   * @throws ConnectionException if connection cannot be created
+   */
+  public static PartnerConnection getPartnerConnection(AuthenticatorCredentials credentials)
+    throws ConnectionException {
+    PartnerConnection partnerConnection = new PartnerConnection(Authenticator.createConnectorConfig(credentials));
+    CONNECTIONS.incrementAndGet();
+    return partnerConnection;
+  }
+
+  /**
+   * @return snapshot of connection manager metrics
+   */
+  public static Metrics getMetrics() {
+    return new Metrics(LOGINS.get(), SESSION_HITS.get(), SESSION_REFRESHES.get(), SESSIONS.size(),
+                       CONNECTIONS.get());
+  }
+
+  /**
+   * Logs metrics of the connection manager. Called by record readers and writers when they are closed, metrics are
+   * totals of the JVM, since the tasks running in the same JVM share sessions and the HTTP client.
+   */
+  public static void logMetrics() {
+    LOG.info("Salesforce connection manager metrics of the JVM: {}", getMetrics());
+  }
+
+  @Nullable
+  private static OAuthInfo getCachedSession(AuthenticatorCredentials credentials) {
+    CachedSession session = SESSIONS.get(credentials);
+    if (session == null) {
+      return null;
+    }
+    if (session.isExpired(System.currentTimeMillis())) {
+      SESSIONS.remove(credentials, session);
+      return null;
+    }
+    return session.getOAuthInfo();
+  }
+
+  private static OAuthInfo login(AuthenticatorCredentials credentials) throws Exception {
+    OAuthInfo session = Authenticator.login(getHttpClient(), credentials);
+    SESSIONS.put(credentials, new CachedSession(session, System.currentTimeMillis()));
+    LOGINS.incrementAndGet();
+    LOG.debug("Salesforce connection manager metrics: {}", getMetrics());
+    return session;
+  }
+
+  /**
+   * Returns HTTP client shared by all Salesforce connections in the JVM, the client is started on first use.
+   *
+   * @return started HTTP client
+   * @throws Exception if the client cannot be started
+   */
+  public static synchronized HttpClient getHttpClient() throws Exception {
+    if (httpClient == null) {
+      QueuedThreadPool threadPool = new QueuedThreadPool();
+      threadPool.setName("salesforce-http");
+      threadPool.setDaemon(true);
+      HttpClient client = new HttpClient(new SslContextFactory());
+      client.setExecutor(threadPool);
+      client.setScheduler(new ScheduledExecutorScheduler("salesforce-http-scheduler", true));
+      client.start();
+      httpClient = client;
+    }
+    return httpClient;
+  }
+
+  private SalesforceConnectionManager() {
+    // no-op
+  }
+
+  /**
+   * Bulk API call.
+   *
+   * @param <T> call result type
+   */
+  @FunctionalInterface
+  public interface BulkCall<T> {
+    T call() throws AsyncApiException;
+  }
+
+  /**
+   * Session cached together with the time it was obtained.
+   */
+  private static final class CachedSession {
+    private final OAuthInfo oAuthInfo;
+    private final long obtainedAtMs;
+
+    private CachedSession(OAuthInfo oAuthInfo, long obtainedAtMs) {
+      this.oAuthInfo = oAuthInfo;
+      this.obtainedAtMs = obtainedAtMs;
+    }
+
+    private OAuthInfo getOAuthInfo() {
+      return oAuthInfo;
+    }
+
+    private long getObtainedAtMs() {
+      return obtainedAtMs;
+    }
+
+    private boolean isExpired(long nowMs) {
+      return nowMs - obtainedAtMs >= SESSION_TTL_MS;
+    }
+  }
+
+  /**
+   * Connection manager metrics.
+   */
+  public static final class Metrics {
+    private final long logins;
+    private final long sessionHits;
+    private final long sessionRefreshes;
+    private final int cachedSessions;
+    private final long connections;
+
+    private Metrics(long logins, long sessionHits, long sessionRefreshes, int cachedSessions, long connections) {
+      this.logins = logins;
+      this.sessionHits = sessionHits;
+      this.sessionRefreshes = sessionRefreshes;
+      this.cachedSessions = cachedSessions;
+      this.connections = connections;
+    }
+
+    /**
+     * @return number of logins performed
+     */
+    public long getLogins() {
+      return logins;
+    }
+
+    /**
+     * @return number of times a cached session was reused
+     */
+    public long getSessionHits() {
+      return sessionHits;
+    }
+
+    /**
+     * @return number of sessions refreshed after being rejected by Salesforce
+     */
+    public long getSessionRefreshes() {
+      return sessionRefreshes;
+    }
+
+    /**
+     * @return number of currently cached sessions
+     */
+    public int getCachedSessions() {
+      return cachedSessions;
+    }
+
+    /**
+     * @return number of bulk and partner connections created
+     */
+    public long getConnections() {
+      return connections;
+    }
+
+    @Override
+    public String toString() {
+      return "Metrics{" +
+        "logins=" + logins +
+        ", sessionHits=" + sessionHits +
+        ", sessionRefreshes=" + sessionRefreshes +
+        ", cachedSessions=" + cachedSessions +
+        ", connections=" + connections +
+        '}';
+    }
+  }
+}
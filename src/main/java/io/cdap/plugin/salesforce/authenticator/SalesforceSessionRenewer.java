@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.authenticator;
+
+import com.sforce.soap.partner.SessionHeader_element;
+import com.sforce.ws.ConnectionException;
+import com.sforce.ws.ConnectorConfig;
+import com.sforce.ws.SessionRenewer;
+import io.cdap.plugin.salesforce.plugin.OAuthInfo;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Renews session of a connection after Salesforce responded with INVALID_SESSION_ID.
+ * <p/>
+ * Partner connections invoke the renewer automatically, bulk connections invoke it through
+ * {@link SalesforceConnectionManager#callWithSessionRenewal}. Refreshed session is shared through
+ * {@link SalesforceConnectionManager}, so concurrent connections with the same rejected session log in only once.
+ */
+public class SalesforceSessionRenewer implements SessionRenewer {
+
+  private static final QName SESSION_HEADER = new QName("urn:partner.soap.sforce.com", "SessionHeader");
+
+  private final AuthenticatorCredentials credentials;
+
+  public SalesforceSessionRenewer(AuthenticatorCredentials credentials) {
+    this.credentials = credentials;
+  }
+
+  @Override
+  public SessionRenewalHeader renewSession(ConnectorConfig config) throws ConnectionException {
+    OAuthInfo oAuthInfo;
+    try {
+      oAuthInfo = SalesforceConnectionManager.refreshSession(credentials, config.getSessionId());
+    } catch (Exception e) {
+      throw new ConnectionException("Failed to renew Salesforce session", e);
+    }
+    config.setSessionId(oAuthInfo.getAccessToken());
+
+    SessionHeader_element sessionHeader = new SessionHeader_element();
+    sessionHeader.setSessionId(oAuthInfo.getAccessToken());
+    SessionRenewalHeader renewalHeader = new SessionRenewalHeader();
+    renewalHeader.name = SESSION_HEADER;
+    renewalHeader.headerElement = sessionHeader;
+    return renewalHeader;
+  }
+}
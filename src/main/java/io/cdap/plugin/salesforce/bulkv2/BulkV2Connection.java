@@ -0,0 +1,520 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.salesforce.bulkv2;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.cdap.plugin.salesforce.SalesforceConstants;
+import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
+import io.cdap.plugin.salesforce.plugin.OAuthInfo;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.util.FutureResponseListener;
+import org.eclipse.jetty.client.util.InputStreamResponseListener;
+import org.eclipse.jetty.client.util.OutputStreamContentProvider;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Connection to Salesforce Bulk API 2.0, which sends REST requests through the HTTP client shared by
+ * {@link SalesforceConnectionManager}.
+ * <p/>
+ * Query job results are downloaded page by page. Each page is identified by a locator returned with the previous
+ * page and contains up to the requested maximum number of records, so pages can be read independently.
+ * Ingest job data is streamed to Salesforce while it is written, and records which failed to be processed
+ * are streamed back once the job completes.
+ * Uploads are gzip compressed as they are written. The HTTP client requests gzip encoded responses and decodes
+ * them while they are read, so downloaded pages are never held in memory in either form.
+ * Session obtained by the password grant is refreshed once per request if Salesforce rejects it.
+ */
+public class BulkV2Connection {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BulkV2Connection.class);
+  private static final Gson GSON = new Gson();
+
+  private static final String QUERY_JOBS_PATH = "/services/data/v%s/jobs/query";
+  private static final String INGEST_JOBS_PATH = "/services/data/v%s/jobs/ingest";
+  private static final String HEADER_LOCATOR = "Sforce-Locator";
+  private static final String HEADER_NUMBER_OF_RECORDS = "Sforce-NumberOfRecords";
+  // locator returned with the last page
+  private static final String LAST_PAGE_LOCATOR = "null";
+  private static final String INVALID_SESSION_ID = "INVALID_SESSION_ID";
+  private static final String CONTENT_TYPE_JSON = "application/json";
+  private static final String CONTENT_TYPE_CSV = "text/csv";
+  private static final String CONTENT_ENCODING_GZIP = "gzip";
+  private static final long RESPONSE_TIMEOUT_SECONDS = 600;
+
+  private final AuthenticatorCredentials credentials;
+  private final HttpClient httpClient;
+  private volatile OAuthInfo session;
+
+  public BulkV2Connection(AuthenticatorCredentials credentials) throws BulkV2Exception {
+    this.credentials = credentials;
+    try {
+      this.httpClient = SalesforceConnectionManager.getHttpClient();
+      this.session = SalesforceConnectionManager.getOAuthInfo(credentials);
+    } catch (Exception e) {
+      throw new BulkV2Exception("Failed to connect to Salesforce", e);
+    }
+  }
+
+  /**
+   * Creates query job, which is executed by Salesforce asynchronously.
+   *
+   * @param query SOQL query
+   * @param operation query operation, either query or queryAll
+   * @return created job
+   * @throws BulkV2Exception if job cannot be created
+   */
+  public BulkV2JobInfo createQueryJob(String query, String operation) throws BulkV2Exception {
+    JsonObject body = new JsonObject();
+    body.addProperty("operation", operation);
+    body.addProperty("query", query);
+    body.addProperty("contentType", "CSV");
+    body.addProperty("columnDelimiter", "COMMA");
+    body.addProperty("lineEnding", "LF");
+    String response = send(HttpMethod.POST, getQueryJobsPath(), GSON.toJson(body));
+    return GSON.fromJson(response, BulkV2JobInfo.class);
+  }
+
+  /**
+   * @param jobId query job id
+   * @return current job information
+   * @throws BulkV2Exception if job information cannot be retrieved
+   */
+  public BulkV2JobInfo getQueryJobInfo(String jobId) throws BulkV2Exception {
+    return GSON.fromJson(send(HttpMethod.GET, getQueryJobPath(jobId), null), BulkV2JobInfo.class);
+  }
+
+  /**
+   * Waits until query job is completed. Job state is polled with the given interval.
+   *
+   * @param jobId query job id
+   * @param sleepMs time between polls
+   * @param tries maximum number of polls
+   * @return completed job
+   * @throws BulkV2Exception if job failed, was aborted or did not complete in time
+   * @throws InterruptedException sleep interrupted
+   */
+  public BulkV2JobInfo awaitQueryJob(String jobId, long sleepMs, long tries)
+    throws BulkV2Exception, InterruptedException {
+    return awaitJob(getQueryJobPath(jobId), sleepMs, tries);
+  }
+
+  /**
+   * Opens a page of query job results. Page content is streamed from the response and must be closed.
+   *
+   * @param jobId completed query job id
+   * @param locator locator of the page, null for the first page
+   * @param maxRecords maximum number of records in the page
+   * @return result page
+   * @throws BulkV2Exception if results cannot be retrieved
+   */
+  public QueryResultPage getQueryResults(String jobId, @Nullable String locator, int maxRecords)
+    throws BulkV2Exception {
+    try {
+      return openQueryResults(jobId, locator, maxRecords);
+    } catch (BulkV2Exception e) {
+      if (!renewSession(e)) {
+        throw e;
+      }
+      return openQueryResults(jobId, locator, maxRecords);
+    }
+  }
+
+  /**
+   * Returns locator of the page which follows the given one. Only the response headers of the given page are read,
+   * the page content is discarded, so locators of all pages can be collected without downloading the results.
+   *
+   * @param jobId completed query job id
+   * @param locator locator of the page, null for the first page
+   * @param maxRecords maximum number of records in the page
+   * @return locator of the next page, null if the given page is the last one
+   * @throws BulkV2Exception if results cannot be retrieved
+   */
+  @Nullable
+  public String getNextLocator(String jobId, @Nullable String locator, int maxRecords) throws BulkV2Exception {
+    QueryResultPage page = getQueryResults(jobId, locator, maxRecords);
+    try {
+      return page.getNextLocator();
+    } finally {
+      // aborts the remaining response
+      closeQuietly(page);
+    }
+  }
+
+  /**
+   * Deletes query job and its results.
+   *
+   * @param jobId query job id
+   * @throws BulkV2Exception if job cannot be deleted
+   */
+  public void deleteQueryJob(String jobId) throws BulkV2Exception {
+    send(HttpMethod.DELETE, getQueryJobPath(jobId), null);
+  }
+
+  private QueryResultPage openQueryResults(String jobId, @Nullable String locator, int maxRecords)
+    throws BulkV2Exception {
+    Request request = newRequest(HttpMethod.GET, getQueryJobPath(jobId) + "/results")
+      .param("maxRecords", String.valueOf(maxRecords));
+    if (locator != null) {
+      request.param("locator", locator);
+    }
+    StreamedResponse response = openStream(request, String.format("Failed to get results of query job '%s'", jobId));
+    String nextLocator = response.response.getHeaders().get(HEADER_LOCATOR);
+    if (Strings.isNullOrEmpty(nextLocator) || LAST_PAGE_LOCATOR.equals(nextLocator)) {
+      nextLocator = null;
+    }
+    String numberOfRecords = response.response.getHeaders().get(HEADER_NUMBER_OF_RECORDS);
+    return new QueryResultPage(response.content, nextLocator,
+                               Strings.isNullOrEmpty(numberOfRecords) ? -1 : Long.parseLong(numberOfRecords));
+  }
+
+  /**
+   * Sends CSV request and returns response, which content is streamed.
+   */
+  private StreamedResponse openStream(Request request, String errorMessage) throws BulkV2Exception {
+    InputStreamResponseListener listener = new InputStreamResponseListener();
+    request.header(HttpHeader.ACCEPT, CONTENT_TYPE_CSV).send(listener);
+    Response response;
+    try {
+      response = listener.get(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      request.abort(e);
+      throw new BulkV2Exception(errorMessage, e);
+    } catch (TimeoutException | ExecutionException e) {
+      request.abort(e);
+      throw new BulkV2Exception(errorMessage, e);
+    }
+
+    InputStream content = listener.getInputStream();
+    if (response.getStatus() != HttpStatus.OK_200) {
+      String error;
+      try {
+        error = readContent(content);
+      } catch (IOException e) {
+        error = "";
+      }
+      throw toException(errorMessage, response.getStatus(), error);
+    }
+    return new StreamedResponse(response, content);
+  }
+
+  /**
+   * Sends request and returns response content. If the session is rejected, it is renewed and the request
+   * is sent once again.
+   */
+  private String send(HttpMethod method, String path, @Nullable String jsonBody) throws BulkV2Exception {
+    try {
+      return sendOnce(method, path, jsonBody);
+    } catch (BulkV2Exception e) {
+      if (!renewSession(e)) {
+        throw e;
+      }
+      return sendOnce(method, path, jsonBody);
+    }
+  }
+
+  private String sendOnce(HttpMethod method, String path, @Nullable String jsonBody) throws BulkV2Exception {
+    Request request = newRequest(method, path)
+      .header(HttpHeader.ACCEPT, CONTENT_TYPE_JSON)
+      .timeout(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    if (jsonBody != null) {
+      request.content(new StringContentProvider(CONTENT_TYPE_JSON, jsonBody, StandardCharsets.UTF_8));
+    }
+    ContentResponse response;
+    try {
+      response = request.send();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BulkV2Exception(String.format("Interrupted while sending request '%s %s'", method, path), e);
+    } catch (TimeoutException | ExecutionException e) {
+      throw new BulkV2Exception(String.format("Failed to send request '%s %s'", method, path), e);
+    }
+    int status = response.getStatus();
+    if (status < HttpStatus.OK_200 || status >= HttpStatus.MULTIPLE_CHOICES_300) {
+      throw toException(String.format("Request '%s %s' failed", method, path), status,
+                        response.getContentAsString());
+    }
+    return response.getContentAsString();
+  }
+
+  private Request newRequest(HttpMethod method, String path) {
+    return httpClient.newRequest(session.getInstanceURL() + path)
+      .method(method)
+      .header(HttpHeader.AUTHORIZATION, "Bearer " + session.getAccessToken());
+  }
+
+  /**
+   * Renews session if Salesforce rejected it and the session was obtained by the password grant.
+   *
+   * @return true if session was renewed and request may be retried
+   */
+  private boolean renewSession(BulkV2Exception e) throws BulkV2Exception {
+    if (!INVALID_SESSION_ID.equals(e.getErrorCode()) || credentials.getOAuthInfo() != null) {
+      return false;
+    }
+    LOG.debug("Salesforce session is invalid, renewing the session and retrying the request");
+    try {
+      session = SalesforceConnectionManager.refreshSession(credentials, session.getAccessToken());
+    } catch (Exception renewException) {
+      e.addSuppressed(renewException);
+      throw e;
+    }
+    return true;
+  }
+
+  /**
+   * Creates ingest job, which accepts CSV data with CRLF line endings until its upload is completed.
+   *
+   * @param sObject name of the object to write to
+   * @param operation ingest operation, for example insert or upsert
+   * @param externalIdField external id field used by upsert, null for other operations
+   * @return created job
+   * @throws BulkV2Exception if job cannot be created
+   */
+  public BulkV2JobInfo createIngestJob(String sObject, String operation, @Nullable String externalIdField)
+    throws BulkV2Exception {
+    JsonObject body = new JsonObject();
+    body.addProperty("object", sObject);
+    body.addProperty("operation", operation);
+    if (externalIdField != null) {
+      body.addProperty("externalIdFieldName", externalIdField);
+    }
+    body.addProperty("contentType", "CSV");
+    body.addProperty("columnDelimiter", "COMMA");
+    body.addProperty("lineEnding", "CRLF");
+    String response = send(HttpMethod.POST, getIngestJobsPath(), GSON.toJson(body));
+    return GSON.fromJson(response, BulkV2JobInfo.class);
+  }
+
+  /**
+   * Starts upload of ingest job data. Data written to the returned stream is gzip compressed and sent to Salesforce
+   * as it is written, the upload is completed when the stream is closed. A job accepts a single upload.
+   *
+   * @param jobId open ingest job id
+   * @return stream of the job CSV data
+   * @throws IOException if compressed stream cannot be created
+   */
+  public JobDataUpload uploadIngestJobData(String jobId) throws IOException {
+    OutputStreamContentProvider content = new OutputStreamContentProvider();
+    // compressed data is buffered, so it is sent in chunks rather than in separate small deflated blocks
+    OutputStream compressed = new GZIPOutputStream(
+      new BufferedOutputStream(content.getOutputStream(), JobDataUpload.CHUNK_SIZE), JobDataUpload.CHUNK_SIZE);
+    Request request = newRequest(HttpMethod.PUT, getIngestJobPath(jobId) + "/batches")
+      .header(HttpHeader.ACCEPT, CONTENT_TYPE_JSON)
+      .header(HttpHeader.CONTENT_ENCODING, CONTENT_ENCODING_GZIP)
+      .content(content, CONTENT_TYPE_CSV);
+    FutureResponseListener listener = new FutureResponseListener(request);
+    request.send(listener);
+    return new JobDataUpload(jobId, compressed, () -> {
+      ContentResponse response;
+      try {
+        response = listener.get(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        request.abort(e);
+        throw new IOException(String.format("Interrupted while uploading data of ingest job '%s'", jobId), e);
+      } catch (TimeoutException | ExecutionException e) {
+        request.abort(e);
+        throw new IOException(String.format("Failed to upload data of ingest job '%s'", jobId), e);
+      }
+      if (response.getStatus() != HttpStatus.CREATED_201) {
+        throw new IOException(toException(String.format("Failed to upload data of ingest job '%s'", jobId),
+                                          response.getStatus(), response.getContentAsString()));
+      }
+    });
+  }
+
+  /**
+   * Completes upload of ingest job data, after that the job is queued for processing.
+   *
+   * @param jobId ingest job id
+   * @return job information
+   * @throws BulkV2Exception if job state cannot be updated
+   */
+  public BulkV2JobInfo completeIngestJobUpload(String jobId) throws BulkV2Exception {
+    return updateIngestJobState(jobId, BulkV2JobInfo.STATE_UPLOAD_COMPLETE);
+  }
+
+  /**
+   * Aborts ingest job, records which were already processed are not rolled back.
+   *
+   * @param jobId ingest job id
+   * @return job information
+   * @throws BulkV2Exception if job state cannot be updated
+   */
+  public BulkV2JobInfo abortIngestJob(String jobId) throws BulkV2Exception {
+    return updateIngestJobState(jobId, BulkV2JobInfo.STATE_ABORTED);
+  }
+
+  /**
+   * @param jobId ingest job id
+   * @return current job information
+   * @throws BulkV2Exception if job information cannot be retrieved
+   */
+  public BulkV2JobInfo getIngestJobInfo(String jobId) throws BulkV2Exception {
+    return GSON.fromJson(send(HttpMethod.GET, getIngestJobPath(jobId), null), BulkV2JobInfo.class);
+  }
+
+  /**
+   * Waits until ingest job is processed. Job state is polled with the given interval.
+   *
+   * @param jobId ingest job id
+   * @param sleepMs time between polls
+   * @param tries maximum number of polls
+   * @return completed job
+   * @throws BulkV2Exception if job failed, was aborted or did not complete in time
+   * @throws InterruptedException sleep interrupted
+   */
+  public BulkV2JobInfo awaitIngestJob(String jobId, long sleepMs, long tries)
+    throws BulkV2Exception, InterruptedException {
+    return awaitJob(getIngestJobPath(jobId), sleepMs, tries);
+  }
+
+  /**
+   * Opens records of completed ingest job, which failed to be processed. Content is a CSV with sf__Id and
+   * sf__Error columns followed by the columns of the uploaded data, it is streamed from the response
+   * and must be closed.
+   *
+   * @param jobId completed ingest job id
+   * @return CSV of failed records
+   * @throws BulkV2Exception if results cannot be retrieved
+   */
+  public InputStream getIngestJobFailedResults(String jobId) throws BulkV2Exception {
+    String errorMessage = String.format("Failed to get failed results of ingest job '%s'", jobId);
+    String path = getIngestJobPath(jobId) + "/failedResults";
+    try {
+      return openStream(newRequest(HttpMethod.GET, path), errorMessage).content;
+    } catch (BulkV2Exception e) {
+      if (!renewSession(e)) {
+        throw e;
+      }
+      return openStream(newRequest(HttpMethod.GET, path), errorMessage).content;
+    }
+  }
+
+  private BulkV2JobInfo updateIngestJobState(String jobId, String state) throws BulkV2Exception {
+    JsonObject body = new JsonObject();
+    body.addProperty("state", state);
+    return GSON.fromJson(send(HttpMethod.PATCH, getIngestJobPath(jobId), GSON.toJson(body)), BulkV2JobInfo.class);
+  }
+
+  private BulkV2JobInfo awaitJob(String jobPath, long sleepMs, long tries)
+    throws BulkV2Exception, InterruptedException {
+    BulkV2JobInfo jobInfo = null;
+    for (long i = 0; i < tries; i++) {
+      jobInfo = GSON.fromJson(send(HttpMethod.GET, jobPath, null), BulkV2JobInfo.class);
+      if (jobInfo.isComplete()) {
+        return jobInfo;
+      }
+      if (jobInfo.isFailed()) {
+        throw new BulkV2Exception(String.format("Job did not complete. Job='%s'", jobInfo), HttpStatus.OK_200, null);
+      }
+      LOG.debug("Job {} state {}", jobInfo.getId(), jobInfo.getState());
+      Thread.sleep(sleepMs);
+    }
+    throw new BulkV2Exception(String.format("Timeout waiting for job to complete. Job='%s'", jobInfo),
+                              HttpStatus.OK_200, null);
+  }
+
+  private String getIngestJobsPath() {
+    return String.format(INGEST_JOBS_PATH, SalesforceConstants.API_VERSION);
+  }
+
+  private String getIngestJobPath(String jobId) {
+    return getIngestJobsPath() + "/" + jobId;
+  }
+
+  private String getQueryJobsPath() {
+    return String.format(QUERY_JOBS_PATH, SalesforceConstants.API_VERSION);
+  }
+
+  private String getQueryJobPath(String jobId) {
+    return getQueryJobsPath() + "/" + jobId;
+  }
+
+  /**
+   * Creates exception from Salesforce error response, which is a JSON array of errors with code and message.
+   */
+  private static BulkV2Exception toException(String message, int status, String response) {
+    String errorCode = null;
+    String errorMessage = response;
+    try {
+      JsonElement errors = new JsonParser().parse(response);
+      if (errors.isJsonArray() && ((JsonArray) errors).size() > 0) {
+        JsonObject error = ((JsonArray) errors).get(0).getAsJsonObject();
+        errorCode = error.has("errorCode") ? error.get("errorCode").getAsString() : null;
+        errorMessage = error.has("message") ? error.get("message").getAsString() : response;
+      }
+    } catch (RuntimeException parseException) {
+      // not a JSON response, keep it as is
+    }
+    return new BulkV2Exception(String.format("%s: %s", message, errorMessage), status, errorCode);
+  }
+
+  private static String readContent(InputStream content) throws IOException {
+    try (InputStream in = content) {
+      return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * Response, which content is streamed.
+   */
+  private static final class StreamedResponse {
+    private final Response response;
+    private final InputStream content;
+
+    private StreamedResponse(Response response, InputStream content) {
+      this.response = response;
+      this.content = content;
+    }
+  }
+
+  private static void closeQuietly(QueryResultPage page) {
+    try {
+      page.close();
+    } catch (IOException e) {
+      LOG.trace("Failed to close query result page", e);
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.salesforce.bulkv2;
+
+import javax.annotation.Nullable;
+
+/**
+ * Exception is thrown when a Bulk API 2.0 request fails.
+ */
+public class BulkV2Exception extends Exception {
+  private final int statusCode;
+  @Nullable
+  private final String errorCode;
+
+  public BulkV2Exception(String message, int statusCode, @Nullable String errorCode) {
+    super(String.format("%s. StatusCode='%d', ErrorCode='%s'", message, statusCode, errorCode));
+    this.statusCode = statusCode;
+    this.errorCode = errorCode;
+  }
+
+  public BulkV2Exception(String message, Throwable cause) {
+    super(message, cause);
+    this.statusCode = 0;
+    this.errorCode = null;
+  }
+
+  /**
+   * @return HTTP status code of the response, 0 if no response was received
+   */
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  /**
+   * @return Salesforce error code, for example INVALID_SESSION_ID, null if not known
+   */
+  @Nullable
+  public String getErrorCode() {
+    return errorCode;
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.salesforce.bulkv2;
+
+import javax.annotation.Nullable;
+
+/**
+ * Bulk API 2.0 job information, as returned by Salesforce.
+ */
+public class BulkV2JobInfo {
+  public static final String STATE_UPLOAD_COMPLETE = "UploadComplete";
+  public static final String STATE_IN_PROGRESS = "InProgress";
+  public static final String STATE_JOB_COMPLETE = "JobComplete";
+  public static final String STATE_FAILED = "Failed";
+  public static final String STATE_ABORTED = "Aborted";
+
+  private String id;
+  private String operation;
+  private String object;
+  private String state;
+  private long numberRecordsProcessed;
+  private long numberRecordsFailed;
+  @Nullable
+  private String errorMessage;
+
+  public String getId() {
+    return id;
+  }
+
+  public String getOperation() {
+    return operation;
+  }
+
+  public String getObject() {
+    return object;
+  }
+
+  public String getState() {
+    return state;
+  }
+
+  public long getNumberRecordsProcessed() {
+    return numberRecordsProcessed;
+  }
+
+  public long getNumberRecordsFailed() {
+    return numberRecordsFailed;
+  }
+
+  @Nullable
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+  /**
+   * @return true if job is completed and its results are available
+   */
+  public boolean isComplete() {
+    return STATE_JOB_COMPLETE.equals(state);
+  }
+
+  /**
+   * @return true if job failed or was aborted and will not produce results
+   */
+  public boolean isFailed() {
+    return STATE_FAILED.equals(state) || STATE_ABORTED.equals(state);
+  }
+
+  @Override
+  public String toString() {
+    return "BulkV2JobInfo{" +
+      "id='" + id + '\'' +
+      ", operation='" + operation + '\'' +
+      ", object='" + object + '\'' +
+      ", state='" + state + '\'' +
+      ", numberRecordsProcessed=" + numberRecordsProcessed +
+      ", numberRecordsFailed=" + numberRecordsFailed +
+      ", errorMessage='" + errorMessage + '\'' +
+      '}';
+  }
+}
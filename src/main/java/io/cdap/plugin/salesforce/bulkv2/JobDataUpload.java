@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.salesforce.bulkv2;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stream of Bulk API 2.0 ingest job data, which is sent to Salesforce as it is written.
+ * Writes are buffered in chunks and block while a chunk is being sent, so at most one chunk is held in memory.
+ * Number of written bytes is counted before the data is compressed by the underlying stream.
+ * Closing the stream completes the request and fails if Salesforce did not accept the data.
+ */
+public class JobDataUpload extends OutputStream {
+
+  static final int CHUNK_SIZE = 64 * 1024;
+
+  private final String jobId;
+  private final OutputStream out;
+  private final ResponseCheck responseCheck;
+  private long bytesWritten;
+  private boolean closed;
+
+  JobDataUpload(String jobId, OutputStream out, ResponseCheck responseCheck) {
+    this.jobId = jobId;
+    this.out = new BufferedOutputStream(out, CHUNK_SIZE);
+    this.responseCheck = responseCheck;
+  }
+
+  /**
+   * @return id of the ingest job
+   */
+  public String getJobId() {
+    return jobId;
+  }
+
+  /**
+   * @return number of uncompressed bytes written to the upload
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    out.write(b);
+    bytesWritten++;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    out.write(b, off, len);
+    bytesWritten += len;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    out.close();
+    responseCheck.check();
+  }
+
+  /**
+   * Waits for the upload response and checks that the data was accepted.
+   */
+  @FunctionalInterface
+  interface ResponseCheck {
+    void check() throws IOException;
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.salesforce.bulkv2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Single page of Bulk API 2.0 query job results. CSV content of the page is streamed from the response,
+ * page must be closed to release the connection.
+ */
+public class QueryResultPage implements Closeable {
+  private final InputStream content;
+  @Nullable
+  private final String nextLocator;
+  private final long numberOfRecords;
+
+  public QueryResultPage(InputStream content, @Nullable String nextLocator, long numberOfRecords) {
+    this.content = content;
+    this.nextLocator = nextLocator;
+    this.numberOfRecords = numberOfRecords;
+  }
+
+  /**
+   * @return CSV content of the page, including the header
+   */
+  public InputStream getContent() {
+    return content;
+  }
+
+  /**
+   * @return locator of the next page, null if this is the last page
+   */
+  @Nullable
+  public String getNextLocator() {
+    return nextLocator;
+  }
+
+  /**
+   * @return number of records in the page, -1 if not reported by Salesforce
+   */
+  public long getNumberOfRecords() {
+    return numberOfRecords;
+  }
+
+  @Override
+  public void close() throws IOException {
+    content.close();
+  }
+}
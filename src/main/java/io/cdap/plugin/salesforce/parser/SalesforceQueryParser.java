@@ -77,6 +77,19 @@ public class SalesforceQueryParser {
     return visitor.visit(parser.statement());
   }
 
+  /**
+   * Adds condition to the WHERE clause of the query, existing conditions are combined with the given one using AND.
+   *
+   * @param query SOQL query
+   * @param condition SOQL condition expression
+   * @return query with the condition
+   */
+  public static String addCondition(String query, String condition) {
+    SOQLParser parser = initParser(query);
+    SalesforceQueryVisitor.AddConditionVisitor visitor = new SalesforceQueryVisitor.AddConditionVisitor(condition);
+    return visitor.visit(parser.statement());
+  }
+
   private static SOQLParser initParser(String query) {
     SOQLLexer lexer = new SOQLLexer(CharStreams.fromString(query));
     lexer.removeErrorListeners();
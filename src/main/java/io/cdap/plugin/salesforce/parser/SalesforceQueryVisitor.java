@@ -19,6 +19,7 @@ package io.cdap.plugin.salesforce.parser;
 
 import io.cdap.plugin.salesforce.SObjectDescriptor;
 import io.cdap.plugin.salesforce.SalesforceFunctionType;
+import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.RuleContext;
 import org.antlr.v4.runtime.misc.Interval;
 import soql.SOQLBaseVisitor;
@@ -263,6 +264,39 @@ public class SalesforceQueryVisitor extends SOQLBaseVisitor<SObjectDescriptor> {
     }
   }
 
+  /**
+   * Visits query statement and adds condition to its WHERE clause, existing conditions are kept in parentheses.
+   * If query has no WHERE clause, it is added after the object type, keeping the rest of the query as is.
+   */
+  public static class AddConditionVisitor extends SOQLBaseVisitor<String> {
+
+    private final String condition;
+
+    public AddConditionVisitor(String condition) {
+      this.condition = condition;
+    }
+
+    @Override
+    public String visitStatement(SOQLParser.StatementContext ctx) {
+      SOQLParser.FromStatementContext fromStatementContext = ctx.fromStatement();
+      CharStream query = ctx.start.getInputStream();
+      SOQLParser.ConditionExpressionsContext conditions = fromStatementContext.conditionExpressions();
+      if (conditions != null) {
+        int start = conditions.start.getStartIndex();
+        int stop = conditions.stop.getStopIndex();
+        return getText(query, 0, start - 1) + "(" + getText(query, start, stop) + ") AND " + condition
+          + getText(query, stop + 1, query.size() - 1);
+      }
+      SOQLParser.FilterScopeContext filterScope = fromStatementContext.filterScope();
+      int stop = (filterScope == null ? fromStatementContext.objectType() : filterScope).stop.getStopIndex();
+      return getText(query, 0, stop) + " WHERE " + condition + getText(query, stop + 1, query.size() - 1);
+    }
+
+    private static String getText(CharStream query, int start, int stop) {
+      return start > stop ? "" : query.getText(new Interval(start, stop));
+    }
+  }
+
   /**
    * Visits query from statement and checks if it contains clauses that are restricted by Bulk API.
    * For example: GROUP BY [ROLLUP / CUBE], OFFSET.
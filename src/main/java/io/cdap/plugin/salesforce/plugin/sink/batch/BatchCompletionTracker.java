@@ -0,0 +1,208 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.sforce.async.AsyncApiException;
+import com.sforce.async.BatchInfo;
+import com.sforce.async.BatchStateEnum;
+import com.sforce.async.BulkConnection;
+import io.cdap.plugin.salesforce.BulkAPIBatchException;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
+import io.cdap.plugin.salesforce.plugin.source.batch.util.SalesforceSourceConstants;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Waits for batches, which were submitted by a single task, to be processed by Salesforce.
+ * <p/>
+ * Only the state of batches, which are still pending, is requested, each batch separately. When many batches are
+ * pending only the oldest ones are polled, so a poll costs a bounded number of requests, and the state of all
+ * batches of the job, which may be many more than the task submitted, is never requested. Interval between
+ * requests grows exponentially while no batch completes and is randomized, so tasks finishing at the same time
+ * do not poll in lockstep. Each batch is passed to the listener as soon as it completes.
+ * <p/>
+ * Batches are added as they are uploaded and can be polled without waiting while the task is still writing,
+ * so the results of early batches are known before the later batches are submitted. Batches may belong to
+ * different jobs, the state of each batch is requested from its own job.
+ */
+class BatchCompletionTracker {
+
+  private final BulkConnection bulkConnection;
+  // pending batches in the order of submission
+  private final Map<String, BatchInfo> pending = new LinkedHashMap<>();
+  private final long initialPollIntervalMs;
+  private final long maxPollIntervalMs;
+  private final long waitTimeMs;
+
+  BatchCompletionTracker(BulkConnection bulkConnection) {
+    this(bulkConnection, SalesforceSinkConstants.BATCH_STATUS_INITIAL_POLL_INTERVAL_MS,
+         SalesforceSinkConstants.BATCH_STATUS_MAX_POLL_INTERVAL_MS,
+         TimeUnit.SECONDS.toMillis(SalesforceSourceConstants.GET_BATCH_WAIT_TIME_SECONDS));
+  }
+
+  /**
+   * @param bulkConnection bulk connection instance
+   * @param initialPollIntervalMs interval before the first poll without progress
+   * @param maxPollIntervalMs maximum interval between polls
+   * @param waitTimeMs maximum time to wait for the next batch to complete
+   */
+  @VisibleForTesting
+  BatchCompletionTracker(BulkConnection bulkConnection, long initialPollIntervalMs, long maxPollIntervalMs,
+                         long waitTimeMs) {
+    this.bulkConnection = bulkConnection;
+    this.initialPollIntervalMs = initialPollIntervalMs;
+    this.maxPollIntervalMs = maxPollIntervalMs;
+    this.waitTimeMs = waitTimeMs;
+  }
+
+  /**
+   * Adds an uploaded batch to the pending ones.
+   *
+   * @param batchInfo batch as returned by the upload
+   */
+  void add(BatchInfo batchInfo) {
+    pending.put(batchInfo.getId(), batchInfo);
+  }
+
+  /**
+   * Requests the state of the oldest pending batches without waiting, until a batch, which is not completed yet,
+   * is found. As batches mostly complete in the order of submission, this costs about one request per batch.
+   *
+   * @param completionListener listener called once for every batch, which completed
+   * @throws AsyncApiException if there is an issue requesting batch state
+   * @throws BulkAPIBatchException if a batch failed
+   */
+  void pollCompleted(Consumer<BatchInfo> completionListener) throws AsyncApiException {
+    int polled = Math.min(pending.size(), SalesforceSinkConstants.BATCH_STATUS_MAX_POLLED_BATCHES);
+    for (int i = 0; i < polled; i++) {
+      BatchInfo batchInfo = pending.values().iterator().next();
+      BatchInfo state = SalesforceConnectionManager.callWithSessionRenewal(
+        bulkConnection, () -> bulkConnection.getBatchInfo(batchInfo.getJobId(), batchInfo.getId()));
+      if (!handleState(state, completionListener)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Waits until all given batches complete.
+   *
+   * @param batchInfoList batches submitted by the task
+   * @param completionListener listener called once for every batch as soon as it completes
+   * @throws AsyncApiException if there is an issue requesting batch state
+   * @throws IOException if the thread was interrupted while waiting
+   * @throws BulkAPIBatchException if a batch failed or no batch completed within the wait time
+   */
+  void awaitCompletion(List<BatchInfo> batchInfoList, Consumer<BatchInfo> completionListener)
+    throws AsyncApiException, IOException {
+    batchInfoList.forEach(this::add);
+    awaitCompletion(completionListener);
+  }
+
+  /**
+   * Waits until all pending batches complete.
+   *
+   * @param completionListener listener called once for every batch as soon as it completes
+   * @throws AsyncApiException if there is an issue requesting batch state
+   * @throws IOException if the thread was interrupted while waiting
+   * @throws BulkAPIBatchException if a batch failed or no batch completed within the wait time
+   */
+  void awaitCompletion(Consumer<BatchInfo> completionListener) throws AsyncApiException, IOException {
+    long pollIntervalMs = initialPollIntervalMs;
+    long deadline = System.currentTimeMillis() + waitTimeMs;
+    // batches submitted early in the task are often completed already, so they are checked before waiting
+    List<BatchInfo> states = new ArrayList<>(pending.values());
+    while (true) {
+      boolean progress = false;
+      for (BatchInfo state : states) {
+        progress |= handleState(state, completionListener);
+      }
+      if (pending.isEmpty()) {
+        return;
+      }
+
+      long now = System.currentTimeMillis();
+      if (progress) {
+        pollIntervalMs = initialPollIntervalMs;
+        deadline = now + waitTimeMs;
+      } else if (now >= deadline) {
+        throw new BulkAPIBatchException("Timed out waiting for batch to complete", pending.values().iterator().next());
+      }
+      sleep(Math.min(jitter(pollIntervalMs), Math.max(1, deadline - now)));
+      pollIntervalMs = Math.min(maxPollIntervalMs, pollIntervalMs * 2);
+      states = getStates();
+    }
+  }
+
+  /**
+   * Removes the batch from the pending ones and passes it to the listener if it completed.
+   *
+   * @return true if the batch is pending and completed
+   */
+  private boolean handleState(BatchInfo state, Consumer<BatchInfo> completionListener) {
+    if (!pending.containsKey(state.getId())) {
+      return false;
+    }
+    if (state.getState() == BatchStateEnum.Failed) {
+      throw new BulkAPIBatchException("Batch failed", state);
+    } else if (state.getState() == BatchStateEnum.Completed) {
+      pending.remove(state.getId());
+      completionListener.accept(state);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Requests the state of the oldest pending batches.
+   */
+  private List<BatchInfo> getStates() throws AsyncApiException {
+    int polled = Math.min(pending.size(), SalesforceSinkConstants.BATCH_STATUS_MAX_POLLED_BATCHES);
+    List<BatchInfo> states = new ArrayList<>(polled);
+    for (BatchInfo batchInfo : pending.values()) {
+      if (states.size() == polled) {
+        break;
+      }
+      states.add(SalesforceConnectionManager.callWithSessionRenewal(
+        bulkConnection, () -> bulkConnection.getBatchInfo(batchInfo.getJobId(), batchInfo.getId())));
+    }
+    return states;
+  }
+
+  /**
+   * @return random interval between half of the given interval and the whole of it
+   */
+  private static long jitter(long intervalMs) {
+    return intervalMs / 2 + ThreadLocalRandom.current().nextLong(intervalMs - intervalMs / 2 + 1);
+  }
+
+  private static void sleep(long millis) throws IOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for batches to complete", e);
+    }
+  }
+}
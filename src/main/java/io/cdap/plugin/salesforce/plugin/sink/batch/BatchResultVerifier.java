@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sforce.async.AsyncApiException;
+import com.sforce.async.BatchInfo;
+import com.sforce.async.BulkConnection;
+import com.sforce.async.CSVReader;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * Checks results of completed Bulk API batches for rows, which failed to be processed.
+ * <p/>
+ * Each batch is verified in the background as soon as it is reported, so result downloads of several batches
+ * overlap with each other and with waiting for the remaining batches. Result CSV is streamed and only
+ * Success and Error columns are read by their index. Each failed row is passed to the handler as soon as it is
+ * parsed, together with the row index, which matches the index of the row in the submitted batch, so errors of
+ * a batch are not collected in memory. Batches may belong to different jobs, the result of each batch is requested
+ * from its own job.
+ */
+class BatchResultVerifier implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(BatchResultVerifier.class);
+
+  /*
+  The result is a CSV with the following headers:
+  Id,Success,Created,Error
+   */
+  private static final String SUCCESS_COLUMN = "Success";
+  private static final String ERROR_COLUMN = "Error";
+
+  private final BulkConnection bulkConnection;
+  private final FailedRowsHandler failedRowsHandler;
+  private final ExecutorService executor;
+  private final List<Future<?>> verifications = new ArrayList<>();
+  private final AtomicLong processedRecords = new AtomicLong();
+  private final AtomicLong failedRecords = new AtomicLong();
+  private int checkedVerifications;
+
+  /**
+   * @param bulkConnection bulk connection instance
+   * @param failedRowsHandler handler of the failed rows, which can fail the verification by throwing an exception
+   * @param parallelism maximum number of batch results downloaded at the same time
+   */
+  BatchResultVerifier(BulkConnection bulkConnection, FailedRowsHandler failedRowsHandler, int parallelism) {
+    this.bulkConnection = bulkConnection;
+    this.failedRowsHandler = failedRowsHandler;
+    this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+      .setDaemon(true)
+      .setNameFormat("salesforce-batch-results-%d")
+      .build());
+  }
+
+  /**
+   * Schedules verification of a completed batch. Failure of an earlier verification, which is already finished,
+   * is rethrown.
+   *
+   * @param batchInfo completed batch
+   */
+  void verify(BatchInfo batchInfo) {
+    checkVerifications(false);
+    verifications.add(executor.submit(() -> {
+      verifyBatch(batchInfo);
+      return null;
+    }));
+  }
+
+  /**
+   * Waits until all scheduled batches are verified. Verifications are checked in the order they were scheduled,
+   * so the failure of the earliest failed batch is rethrown.
+   */
+  void await() {
+    checkVerifications(true);
+    LOG.info("Verified results of {} batches, {} records were processed, {} records failed",
+             verifications.size(), processedRecords.get(), failedRecords.get());
+  }
+
+  /**
+   * @return number of result rows read so far
+   */
+  long getProcessedRecords() {
+    return processedRecords.get();
+  }
+
+  /**
+   * @return number of unsuccessful result rows read so far
+   */
+  long getFailedRecords() {
+    return failedRecords.get();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private void verifyBatch(BatchInfo batchInfo) throws AsyncApiException, IOException {
+    try (InputStream results = SalesforceConnectionManager.callWithSessionRenewal(
+      bulkConnection, () -> bulkConnection.getBatchResultStream(batchInfo.getJobId(), batchInfo.getId()))) {
+      CSVReader reader = new CSVReader(results);
+      List<String> header = reader.nextRecord();
+      int successIndex = header == null ? -1 : header.indexOf(SUCCESS_COLUMN);
+      if (successIndex < 0) {
+        throw new IllegalStateException(
+          String.format("Result of batch '%s' does not contain '%s' column", batchInfo.getId(), SUCCESS_COLUMN));
+      }
+      int errorIndex = header.indexOf(ERROR_COLUMN);
+
+      List<String> row;
+      int rowIndex = 0;
+      for (; (row = reader.nextRecord()) != null; rowIndex++) {
+        processedRecords.incrementAndGet();
+        if (Boolean.parseBoolean(row.get(successIndex))) {
+          continue;
+        }
+        failedRecords.incrementAndGet();
+        failedRowsHandler.handle(batchInfo, rowIndex,
+                                 errorIndex < 0 || errorIndex >= row.size() ? null : row.get(errorIndex));
+      }
+      failedRowsHandler.batchVerified(batchInfo, rowIndex);
+    }
+  }
+
+  private void checkVerifications(boolean wait) {
+    while (checkedVerifications < verifications.size()) {
+      Future<?> verification = verifications.get(checkedVerifications);
+      if (!wait && !verification.isDone()) {
+        return;
+      }
+      try {
+        verification.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while verifying batch results", e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new RuntimeException("There was issue communicating with Salesforce", cause);
+      }
+      checkedVerifications++;
+    }
+  }
+
+  /**
+   * Handles the rows of a batch, which failed to be processed.
+   * Methods are called from the verification threads, all calls for a batch are made by the same thread.
+   */
+  @FunctionalInterface
+  interface FailedRowsHandler {
+
+    /**
+     * Called for each failed row as soon as it is read from the result, in the order of the row index.
+     *
+     * @param batchInfo verified batch
+     * @param rowIndex index of the row in the batch
+     * @param error error of the row, null if the result does not contain it
+     */
+    void handle(BatchInfo batchInfo, int rowIndex, @Nullable String error) throws IOException;
+
+    /**
+     * Called once the whole result of the batch is read.
+     *
+     * @param batchInfo verified batch
+     * @param processedRows number of rows in the result
+     */
+    default void batchVerified(BatchInfo batchInfo, int processedRows) throws IOException {
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sforce.async.BatchInfo;
+import com.sforce.async.BulkConnection;
+import com.sforce.async.JobInfo;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Uploads CSV buffers as batches of a Bulk API job in the background, so the next batch can be encoded
+ * while previous ones are being sent.
+ * <p/>
+ * Number of batches in flight is limited, a buffer is handed back only once one of the uploads completes,
+ * which blocks the writer when Salesforce accepts batches slower than they are encoded. Uploads are tracked
+ * in submission order, so the first failed upload is reported regardless of the order in which uploads finish.
+ * An upload is done before its buffer is handed back, so a batch is always reported as uploaded once the writer
+ * got its buffer back. The job can be switched, so later batches are added to another job.
+ */
+class BatchUploader implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(BatchUploader.class);
+
+  private final BulkConnection bulkConnection;
+  private final BlockingQueue<CSVBuffer> freeBuffers;
+  private final ExecutorService executor;
+  private final List<CompletableFuture<BatchInfo>> uploads = new ArrayList<>();
+  private final List<BatchInfo> batchInfoList = new ArrayList<>();
+  private JobInfo jobInfo;
+
+  /**
+   * @param bulkConnection bulk connection instance
+   * @param jobInfo job the batches are added to
+   * @param maxInFlightBatches maximum number of batches uploaded at the same time
+   */
+  BatchUploader(BulkConnection bulkConnection, JobInfo jobInfo, int maxInFlightBatches) {
+    this.bulkConnection = bulkConnection;
+    this.jobInfo = jobInfo;
+    // uploaded buffer may be handed back before the writer takes a free one
+    this.freeBuffers = new ArrayBlockingQueue<>(maxInFlightBatches + 1);
+    for (int i = 0; i < maxInFlightBatches; i++) {
+      freeBuffers.add(new CSVBuffer());
+    }
+    this.executor = Executors.newFixedThreadPool(maxInFlightBatches, new ThreadFactoryBuilder()
+      .setDaemon(true)
+      .setNameFormat("salesforce-batch-upload-%d")
+      .build());
+  }
+
+  /**
+   * Schedules upload of the buffer and returns an empty buffer to encode the next batch into.
+   * Blocks while the maximum number of batches is in flight.
+   *
+   * @param buffer buffer with the batch content, it must not be used after this call
+   * @return empty buffer
+   * @throws IOException if the thread was interrupted while waiting
+   */
+  CSVBuffer submit(CSVBuffer buffer) throws IOException {
+    checkUploads(false);
+    JobInfo job = jobInfo;
+    CompletableFuture<BatchInfo> upload = new CompletableFuture<>();
+    uploads.add(upload);
+    executor.execute(() -> upload(buffer, job, upload));
+    try {
+      return freeBuffers.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for batch uploads", e);
+    }
+  }
+
+  /**
+   * Waits until all submitted batches are uploaded. Failure of an upload is rethrown,
+   * wrapped into {@link RuntimeException} if it was caused by a checked exception.
+   *
+   * @return uploaded batches in submission order
+   * @throws IOException if the thread was interrupted while waiting
+   */
+  List<BatchInfo> awaitUploads() throws IOException {
+    checkUploads(true);
+    return batchInfoList;
+  }
+
+  /**
+   * Collects the batches uploaded so far without waiting. Failure of an upload is rethrown the same as
+   * by {@link #awaitUploads()}.
+   *
+   * @return uploaded batches in submission order, up to the first batch, which is still being uploaded
+   * @throws IOException if the thread was interrupted
+   */
+  List<BatchInfo> getUploads() throws IOException {
+    checkUploads(false);
+    return batchInfoList;
+  }
+
+  /**
+   * Adds the batches submitted from now on to the given job, batches submitted earlier are still added to
+   * the previous job.
+   *
+   * @param jobInfo job the next batches are added to
+   */
+  void switchJob(JobInfo jobInfo) {
+    this.jobInfo = jobInfo;
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private void upload(CSVBuffer buffer, JobInfo job, CompletableFuture<BatchInfo> result) {
+    try {
+      // stream is created per attempt, so the batch can be resubmitted after session renewal
+      BatchInfo batchInfo = SalesforceConnectionManager.callWithSessionRenewal(
+        bulkConnection, () -> bulkConnection.createBatchFromStream(job, buffer.getInputStream()));
+      LOG.info("Submitted a batch with batchId='{}' to job '{}'", batchInfo.getId(), job.getId());
+      result.complete(batchInfo);
+    } catch (Throwable t) {
+      result.completeExceptionally(t);
+    } finally {
+      buffer.reset();
+      freeBuffers.add(buffer);
+    }
+  }
+
+  /**
+   * Collects results of uploads in submission order, up to the first upload which is not done yet
+   * unless waiting is requested.
+   */
+  private void checkUploads(boolean wait) throws IOException {
+    while (batchInfoList.size() < uploads.size()) {
+      CompletableFuture<BatchInfo> upload = uploads.get(batchInfoList.size());
+      if (!wait && !upload.isDone()) {
+        return;
+      }
+      try {
+        batchInfoList.add(upload.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for batch uploads", e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new RuntimeException("There was issue communicating with Salesforce", cause);
+      }
+    }
+  }
+}
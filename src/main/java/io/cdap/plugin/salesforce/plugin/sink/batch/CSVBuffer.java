@@ -15,69 +15,217 @@
  */
 package io.cdap.plugin.salesforce.plugin.sink.batch;
 
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.QuoteMode;
+import io.cdap.cdap.api.data.format.StructuredRecord;
 
-import java.io.ByteArrayOutputStream;
-import java.io.Closeable;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
- * A buffer which the {@link CSVRecord} is written to before it gets sent to Salesforce.
+ * A buffer which the {@link StructuredRecord} is written to before it gets sent to Salesforce.
+ * <p/>
+ * Records are encoded by {@link StructuredRecordCSVEncoder} to UTF-8 CSV with all values quoted, same as
+ * {@link org.apache.commons.csv.QuoteMode#ALL} of the default format, directly into a growable byte array,
+ * so the size of the buffer is exact after every write. The last written record can be rolled back,
+ * and the array is reused after reset.
  */
-public class CSVBuffer implements Closeable {
-  private static final CSVFormat csvFormat = CSVFormat.DEFAULT
-    .withHeader()
-    .withQuoteMode(QuoteMode.ALL)
-    .withAllowMissingColumnNames(false);
-
-  private CSVPrinter csvPrinter;
-  private ByteArrayOutputStream csvStream;
-  private boolean isHeaderPrinted;
-  private boolean printHeader;
-  private int recordsCount = 0;
-
-  public CSVBuffer(boolean printHeader) throws IOException {
+public class CSVBuffer {
+  private static final int DEFAULT_INITIAL_CAPACITY = 64 * 1024;
+  private static final byte DELIMITER = ',';
+  private static final byte QUOTE = '"';
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+  // same replacement as used by the UTF-8 encoder for malformed input
+  private static final byte REPLACEMENT = '?';
+
+  private final boolean printHeader;
+  private byte[] buffer;
+  private int count;
+  private int lastRecordStart;
+  private int recordsCount;
+
+  public CSVBuffer() {
+    this(true);
+  }
+
+  public CSVBuffer(boolean printHeader) {
+    this(printHeader, DEFAULT_INITIAL_CAPACITY);
+  }
+
+  public CSVBuffer(boolean printHeader, int initialCapacity) {
     this.printHeader = printHeader;
-    this.csvStream = new ByteArrayOutputStream();
-    reset();
+    this.buffer = new byte[initialCapacity];
+  }
+
+  /**
+   * Writes the record, the header is written before the first record unless disabled.
+   */
+  public void write(StructuredRecord record, StructuredRecordCSVEncoder encoder) {
+    write(encoder, () -> encoder.encode(record, this));
+  }
+
+  /**
+   * Writes the record of already formatted values, e.g. a row read back from a submitted batch.
+   */
+  void write(Map<String, String> values, StructuredRecordCSVEncoder encoder) {
+    write(encoder, () -> encoder.encode(values, this));
   }
 
-  public void write(CSVRecord csvRecord) throws IOException {
-    if (!isHeaderPrinted) {
-      csvPrinter.printRecord(csvRecord.getColumnNames());
-      isHeaderPrinted = true;
+  /**
+   * Writes the record, which is already encoded together with its record separator,
+   * e.g. a row read back from {@link ParentGroupedRows}.
+   */
+  void writeEncoded(byte[] record, int offset, int length, StructuredRecordCSVEncoder encoder) {
+    startRecord(encoder);
+    ensureCapacity(length);
+    System.arraycopy(record, offset, buffer, count, length);
+    count += length;
+    recordsCount++;
+  }
+
+  private void write(StructuredRecordCSVEncoder encoder, Runnable encode) {
+    startRecord(encoder);
+    try {
+      encode.run();
+    } catch (RuntimeException e) {
+      // partially written record is dropped
+      count = lastRecordStart;
+      throw e;
     }
-    csvPrinter.printRecord(csvRecord);
-    // unless we flush data from OutputStreamWriter to ByteArrayOutputStream we won't be able to calculate size.
-    csvPrinter.flush();
+    writeRecordSeparator();
     recordsCount++;
   }
 
-  public void reset() throws IOException {
-    isHeaderPrinted = !printHeader;
+  private void startRecord(StructuredRecordCSVEncoder encoder) {
+    lastRecordStart = count;
+    if (printHeader && count == 0) {
+      writeBytes(encoder.getHeader());
+    }
+  }
+
+  /**
+   * Removes the last written record from the buffer, together with the header if it was written with the record.
+   * Only the last record can be rolled back.
+   */
+  public void rollbackLastRecord() {
+    if (recordsCount == 0 || lastRecordStart == count) {
+      throw new IllegalStateException("There is no record to roll back");
+    }
+    count = lastRecordStart;
+    recordsCount--;
+  }
+
+  public void reset() {
+    count = 0;
+    lastRecordStart = 0;
     recordsCount = 0;
-    csvStream.reset();
-    // we need to re-create this or else OutputStreamWriter will not able to write after reset.
-    csvPrinter = new CSVPrinter(new OutputStreamWriter(csvStream, StandardCharsets.UTF_8), csvFormat);
   }
 
+  /**
+   * @return number of bytes in the buffer
+   */
   public int size() {
-    return csvStream.size();
+    return count;
   }
 
   public int getRecordsCount() {
     return recordsCount;
   }
 
-  public byte[] getByteArray() {
-    return csvStream.toByteArray();
+  /**
+   * Returns a stream over the content of the buffer. The content is not copied, so the stream must be
+   * consumed before the buffer is written to or reset.
+   *
+   * @return stream of the buffer content
+   */
+  public InputStream getInputStream() {
+    return new ByteArrayInputStream(buffer, 0, count);
+  }
+
+  /**
+   * Writes all of the buffer content to the given stream.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(buffer, 0, count);
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(buffer, count);
+  }
+
+  /**
+   * Writes value of the field with given index in the record, preceded by delimiter unless it is the first field.
+   * Null is written as an empty unquoted value.
+   */
+  void writeField(int index, @Nullable String value) {
+    if (index > 0) {
+      ensureCapacity(1);
+      buffer[count++] = DELIMITER;
+    }
+    if (value != null) {
+      writeQuoted(value);
+    }
+  }
+
+  void writeRecordSeparator() {
+    ensureCapacity(2);
+    buffer[count++] = CR;
+    buffer[count++] = LF;
   }
 
-  public void close() throws IOException {
-    csvPrinter.close(true);
+  private void writeBytes(byte[] bytes) {
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, count, bytes.length);
+    count += bytes.length;
+  }
+
+  private void writeQuoted(String value) {
+    int length = value.length();
+    // a char takes at most 3 bytes, surrogate pair takes 4 bytes for 2 chars and escaped quote 2 bytes
+    ensureCapacity(length * 3 + 2);
+    byte[] buf = buffer;
+    int pos = count;
+    buf[pos++] = QUOTE;
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        if (c == QUOTE) {
+          buf[pos++] = QUOTE;
+        }
+        buf[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        buf[pos++] = (byte) (0xC0 | (c >> 6));
+        buf[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buf[pos++] = (byte) (0xF0 | (codePoint >> 18));
+        buf[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        buf[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        buf[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        buf[pos++] = REPLACEMENT;
+      } else {
+        buf[pos++] = (byte) (0xE0 | (c >> 12));
+        buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buf[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    buf[pos++] = QUOTE;
+    count = pos;
+  }
+
+  private void ensureCapacity(int bytesToWrite) {
+    int required = count + bytesToWrite;
+    if (required < 0) {
+      throw new OutOfMemoryError("CSV buffer is too large");
+    }
+    if (required > buffer.length) {
+      int newCapacity = buffer.length << 1;
+      buffer = Arrays.copyOf(buffer, newCapacity - required < 0 ? required : newCapacity);
+    }
   }
 }
@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.sforce.async.ConcurrencyMode;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks the lock error rate of the batches a task writes and decides when its remaining rows are written
+ * in Serial mode.
+ * <p/>
+ * Batches of a Parallel job are processed at the same time, so rows of batches, which reference the same
+ * parent, fail with lock errors. The rate is evaluated each time the result of a Parallel batch is verified,
+ * over all Parallel batches of the task verified so far. Once the share of rows failed with lock errors reaches
+ * the threshold, batches submitted afterwards go to a Serial job, where batches are processed one at a time.
+ * Records and lock errors are recorded by the mode of the batch, and time by the mode the task was writing in,
+ * so the throughput of both modes can be compared. Batches are recorded from the verification threads.
+ */
+class ConcurrencyModeTracker {
+  private final int lockErrorThresholdPercent;
+  private final LongSupplier nanoClock;
+  private final Map<ConcurrencyMode, ModeStats> stats = new EnumMap<>(ConcurrencyMode.class);
+  private ConcurrencyMode mode = ConcurrencyMode.Parallel;
+  private long modeStartNanos;
+  private int switches;
+
+  /**
+   * @param lockErrorThresholdPercent percent of rows failed with lock errors, which switches writing to Serial mode,
+   *                                  0 disables switching
+   */
+  ConcurrencyModeTracker(int lockErrorThresholdPercent) {
+    this(lockErrorThresholdPercent, System::nanoTime);
+  }
+
+  @VisibleForTesting
+  ConcurrencyModeTracker(int lockErrorThresholdPercent, LongSupplier nanoClock) {
+    this.lockErrorThresholdPercent = lockErrorThresholdPercent;
+    this.nanoClock = nanoClock;
+    this.modeStartNanos = nanoClock.getAsLong();
+    for (ConcurrencyMode concurrencyMode : ConcurrencyMode.values()) {
+      stats.put(concurrencyMode, new ModeStats());
+    }
+  }
+
+  /**
+   * @return mode the next batches are to be written in
+   */
+  synchronized ConcurrencyMode getMode() {
+    return mode;
+  }
+
+  /**
+   * Records the result of a verified batch and switches to Serial mode if the lock error rate of the Parallel
+   * batches verified so far reaches the threshold.
+   *
+   * @param batchMode mode of the job the batch was written to
+   * @param records number of rows processed in the batch
+   * @param lockErrors number of rows failed with lock errors
+   * @return true if the mode was switched
+   */
+  synchronized boolean recordBatch(ConcurrencyMode batchMode, long records, long lockErrors) {
+    ModeStats modeStats = stats.get(batchMode);
+    modeStats.batches++;
+    modeStats.records += records;
+    modeStats.lockErrors += lockErrors;
+
+    if (mode == ConcurrencyMode.Parallel && batchMode == ConcurrencyMode.Parallel && lockErrorThresholdPercent > 0
+      && modeStats.records > 0 && modeStats.lockErrors * 100 >= modeStats.records * lockErrorThresholdPercent) {
+      long now = nanoClock.getAsLong();
+      modeStats.nanos += now - modeStartNanos;
+      modeStartNanos = now;
+      mode = ConcurrencyMode.Serial;
+      switches++;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return snapshot of the metrics, time of the current mode is counted up to now
+   */
+  synchronized Metrics getMetrics() {
+    ModeStats parallel = stats.get(ConcurrencyMode.Parallel).copy();
+    ModeStats serial = stats.get(ConcurrencyMode.Serial).copy();
+    (mode == ConcurrencyMode.Serial ? serial : parallel).nanos += nanoClock.getAsLong() - modeStartNanos;
+    return new Metrics(switches, parallel, serial);
+  }
+
+  /**
+   * Totals of the batches written in a mode.
+   */
+  private static final class ModeStats {
+    private int batches;
+    private long records;
+    private long lockErrors;
+    private long nanos;
+
+    private ModeStats copy() {
+      ModeStats copy = new ModeStats();
+      copy.batches = batches;
+      copy.records = records;
+      copy.lockErrors = lockErrors;
+      copy.nanos = nanos;
+      return copy;
+    }
+
+    private long getRecordsPerSecond() {
+      return nanos == 0 ? 0 : records * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    @Override
+    public String toString() {
+      return "{" +
+        "batches=" + batches +
+        ", records=" + records +
+        ", lockErrors=" + lockErrors +
+        ", timeMs=" + TimeUnit.NANOSECONDS.toMillis(nanos) +
+        ", recordsPerSecond=" + getRecordsPerSecond() +
+        '}';
+    }
+  }
+
+  /**
+   * Concurrency mode metrics.
+   */
+  static final class Metrics {
+    private final int switches;
+    private final ModeStats parallel;
+    private final ModeStats serial;
+
+    private Metrics(int switches, ModeStats parallel, ModeStats serial) {
+      this.switches = switches;
+      this.parallel = parallel;
+      this.serial = serial;
+    }
+
+    /**
+     * @return number of switches to Serial mode
+     */
+    int getSwitches() {
+      return switches;
+    }
+
+    /**
+     * @return number of rows processed in batches of the given mode
+     */
+    long getRecords(ConcurrencyMode mode) {
+      return getStats(mode).records;
+    }
+
+    /**
+     * @return number of rows failed with lock errors in batches of the given mode
+     */
+    long getLockErrors(ConcurrencyMode mode) {
+      return getStats(mode).lockErrors;
+    }
+
+    /**
+     * @return time the task was writing in the given mode
+     */
+    long getTimeMs(ConcurrencyMode mode) {
+      return TimeUnit.NANOSECONDS.toMillis(getStats(mode).nanos);
+    }
+
+    /**
+     * @return number of rows processed per second in the given mode
+     */
+    long getRecordsPerSecond(ConcurrencyMode mode) {
+      return getStats(mode).getRecordsPerSecond();
+    }
+
+    private ModeStats getStats(ConcurrencyMode mode) {
+      return mode == ConcurrencyMode.Serial ? serial : parallel;
+    }
+
+    @Override
+    public String toString() {
+      return "Metrics{" +
+        "switches=" + switches +
+        ", parallel=" + parallel +
+        ", serial=" + serial +
+        '}';
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+
+/**
+ * Groups rows written by a task by the parent record they reference, so batches can be cut at parent boundaries
+ * regardless of the order in which the rows arrive.
+ * <p/>
+ * Rows are encoded into a local temporary file in the order they are added, only the position of each row and
+ * the list of rows of each parent are kept in memory. Rows are then read back parent by parent, in the order
+ * the parents were first seen. The file is truncated once the rows are read back and deleted on close.
+ */
+class ParentGroupedRows implements Closeable {
+  private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+  private final FileChannel channel;
+  private final OutputStream out;
+  private final CSVBuffer rowBuffer = new CSVBuffer(false, 1024);
+  private final Map<String, RowList> parents = new LinkedHashMap<>();
+  // start of each row in the file, followed by the end of the last row
+  private long[] rowPositions = new long[1024];
+  private int rowsCount;
+  private byte[] readBuffer = new byte[1024];
+
+  /**
+   * Creates the rows in a new temporary file.
+   *
+   * @param directory directory to create the file in, usually the working directory of the task
+   */
+  static ParentGroupedRows create(Path directory) throws IOException {
+    return new ParentGroupedRows(Files.createTempFile(directory, "salesforce-sink-parents-", ".csv"));
+  }
+
+  ParentGroupedRows(Path file) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                    StandardOpenOption.DELETE_ON_CLOSE);
+    this.out = new BufferedOutputStream(Channels.newOutputStream(channel), OUTPUT_BUFFER_SIZE);
+  }
+
+  /**
+   * Encodes the row and adds it to the rows of its parent.
+   *
+   * @param parentReference value of the parent reference field, rows without parent are grouped together
+   * @param rowWriter writes the row into the given buffer
+   */
+  void add(@Nullable Object parentReference, Consumer<CSVBuffer> rowWriter) throws IOException {
+    rowBuffer.reset();
+    rowWriter.accept(rowBuffer);
+    rowBuffer.writeTo(out);
+
+    if (rowsCount + 1 >= rowPositions.length) {
+      rowPositions = Arrays.copyOf(rowPositions, rowPositions.length * 2);
+    }
+    rowPositions[rowsCount + 1] = rowPositions[rowsCount] + rowBuffer.size();
+    String parent = parentReference == null ? null : parentReference.toString();
+    parents.computeIfAbsent(parent, key -> new RowList()).add(rowsCount, rowBuffer.size());
+    rowsCount++;
+  }
+
+  /**
+   * @return number of rows added since the rows were last read back
+   */
+  int getRowsCount() {
+    return rowsCount;
+  }
+
+  /**
+   * Reads all rows back parent by parent, then discards them, so the rows of the next round can be added.
+   *
+   * @param consumer receives the rows of each parent
+   */
+  void drainTo(GroupConsumer consumer) throws IOException {
+    out.flush();
+    for (RowList rows : parents.values()) {
+      consumer.startGroup(rows.size, rows.bytes);
+      for (int i = 0; i < rows.size; i++) {
+        int row = rows.rows[i];
+        long position = rowPositions[row];
+        int length = (int) (rowPositions[row + 1] - position);
+        consumer.accept(readRow(position, length), 0, length);
+      }
+    }
+    parents.clear();
+    rowsCount = 0;
+    channel.truncate(0);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private byte[] readRow(long position, int length) throws IOException {
+    if (readBuffer.length < length) {
+      readBuffer = new byte[Math.max(length, readBuffer.length * 2)];
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(readBuffer, 0, length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of file while reading grouped rows");
+      }
+    }
+    return readBuffer;
+  }
+
+  /**
+   * Receives rows read back from the file.
+   */
+  interface GroupConsumer {
+
+    /**
+     * Called before the rows of the next parent.
+     *
+     * @param rowsCount number of rows of the parent
+     * @param bytes encoded size of the rows of the parent
+     */
+    void startGroup(int rowsCount, long bytes) throws IOException;
+
+    /**
+     * Called with each row of the parent, the row is encoded with the record separator and the array is reused
+     * for the next row.
+     */
+    void accept(byte[] row, int offset, int length) throws IOException;
+  }
+
+  /**
+   * Growable list of the rows of a parent.
+   */
+  private static final class RowList {
+    private int[] rows = new int[4];
+    private int size;
+    private long bytes;
+
+    private void add(int row, int length) {
+      if (size == rows.length) {
+        rows = Arrays.copyOf(rows, size * 2);
+      }
+      rows[size++] = row;
+      bytes += length;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.annotation.Nullable;
+
+/**
+ * Decides which failed rows are resubmitted and when.
+ * <p/>
+ * Row error in the batch result starts with the status code, e.g.
+ * <code>UNABLE_TO_LOCK_ROW:unable to obtain exclusive access to this record:--</code>. Only errors with a status
+ * code, which is known to be transient, are retried, up to the retry budget. The delay before each retry doubles
+ * up to the maximum one and is randomized, so tasks, which failed on the same rows, do not retry at the same time.
+ */
+class RowRetryPolicy {
+  private static final String LOCK_ERROR_STATUS_CODE = "UNABLE_TO_LOCK_ROW";
+  private static final Set<String> RETRYABLE_STATUS_CODES = ImmutableSet.of(LOCK_ERROR_STATUS_CODE);
+
+  private final int maxRetries;
+  private final long initialBackoffMs;
+  private final long maxBackoffMs;
+
+  /**
+   * @param maxRetries maximum number of times the failed rows are resubmitted
+   * @param initialBackoffMs delay before the first retry
+   * @param maxBackoffMs maximum delay before a retry
+   */
+  RowRetryPolicy(int maxRetries, long initialBackoffMs, long maxBackoffMs) {
+    this.maxRetries = maxRetries;
+    this.initialBackoffMs = initialBackoffMs;
+    this.maxBackoffMs = maxBackoffMs;
+  }
+
+  /**
+   * @param attempt number of retries made so far
+   * @return true if rows, which failed in the given attempt, can be retried
+   */
+  boolean canRetry(int attempt) {
+    return attempt < maxRetries;
+  }
+
+  /**
+   * @param error error of the row from the batch result
+   * @return true if the error is transient and the row can succeed when resubmitted
+   */
+  boolean isRetryable(@Nullable String error) {
+    return error != null && RETRYABLE_STATUS_CODES.contains(getStatusCode(error));
+  }
+
+  /**
+   * @param error error of the row from the batch result
+   * @return true if the row failed because its record or a related record was locked by another batch
+   */
+  static boolean isLockError(@Nullable String error) {
+    return error != null && LOCK_ERROR_STATUS_CODE.equals(getStatusCode(error));
+  }
+
+  /**
+   * @param attempt number of retries made so far
+   * @return random delay before the next retry, between half of the backoff for the attempt and the whole of it
+   */
+  long getBackoffMs(int attempt) {
+    long backoffMs = maxBackoffMs;
+    // avoid overflow of the shift for late attempts
+    if (attempt < Long.numberOfLeadingZeros(initialBackoffMs) - 1) {
+      backoffMs = Math.min(maxBackoffMs, initialBackoffMs << attempt);
+    }
+    return backoffMs / 2 + ThreadLocalRandom.current().nextLong(backoffMs - backoffMs / 2 + 1);
+  }
+
+  private static String getStatusCode(String error) {
+    int separator = error.indexOf(':');
+    return separator < 0 ? error : error.substring(0, separator);
+  }
+}
@@ -27,7 +27,6 @@ import io.cdap.cdap.etl.api.Emitter;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
 import io.cdap.cdap.etl.api.StageConfigurer;
-import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.api.batch.BatchSink;
 import io.cdap.cdap.etl.api.batch.BatchSinkContext;
 import io.cdap.plugin.common.LineageRecorder;
@@ -43,14 +42,13 @@ import java.util.stream.Collectors;
 @Plugin(type = BatchSink.PLUGIN_TYPE)
 @Name(SalesforceBatchSink.PLUGIN_NAME)
 @Description("Writes records to Salesforce")
-public class SalesforceBatchSink extends BatchSink<StructuredRecord, NullWritable, CSVRecord> {
+public class SalesforceBatchSink extends BatchSink<StructuredRecord, NullWritable, StructuredRecord> {
 
   private static final Logger LOG = LoggerFactory.getLogger(SalesforceBatchSink.class);
 
   public static final String PLUGIN_NAME = "Salesforce";
 
   private final SalesforceSinkConfig config;
-  private StructuredRecordToCSVRecordTransformer transformer;
 
   public SalesforceBatchSink(SalesforceSinkConfig config) throws ConnectionException {
     this.config = config;
@@ -85,14 +83,8 @@ public class SalesforceBatchSink extends BatchSink<StructuredRecord, NullWritabl
   }
 
   @Override
-  public void initialize(BatchRuntimeContext context) throws Exception {
-    super.initialize(context);
-    this.transformer = new StructuredRecordToCSVRecordTransformer();
-  }
-
-  @Override
-  public void transform(StructuredRecord record, Emitter<KeyValue<NullWritable, CSVRecord>> emitter) {
-    CSVRecord csvRecord = transformer.transform(record);
-    emitter.emit(new KeyValue<>(null, csvRecord));
+  public void transform(StructuredRecord record, Emitter<KeyValue<NullWritable, StructuredRecord>> emitter) {
+    // records are encoded to CSV by the record writer, with an encoder compiled once for the schema
+    emitter.emit(new KeyValue<>(null, record));
   }
 }
@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.plugin.salesforce.SalesforceConnectionUtil;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
+import io.cdap.plugin.salesforce.bulkv2.BulkV2Connection;
+import io.cdap.plugin.salesforce.bulkv2.BulkV2Exception;
+import io.cdap.plugin.salesforce.bulkv2.BulkV2JobInfo;
+import io.cdap.plugin.salesforce.bulkv2.JobDataUpload;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes records into Salesforce using Bulk API 2.0 ingest jobs.
+ * <p/>
+ * Records are encoded to CSV and streamed to the upload of the current job as they are written. Once the job
+ * holds {@link SalesforceSinkConstants#BULK_V2_MAX_BYTES_PER_JOB} bytes, its upload is completed and a new job
+ * is started. Salesforce splits jobs into batches and manages their concurrency by itself, so on close only
+ * the state of each job is polled, after that records which failed to be processed are streamed back.
+ * <p/>
+ * If writing or waiting for the jobs fails, jobs which were not processed yet are aborted, so a failed task does
+ * not leave open jobs behind or let queued jobs write its records after the task is retried.
+ */
+public class SalesforceBulkV2RecordWriter extends RecordWriter<NullWritable, StructuredRecord> {
+  private static final Logger LOG = LoggerFactory.getLogger(SalesforceBulkV2RecordWriter.class);
+
+  private static final String ERROR_COLUMN = "sf__Error";
+  private static final String OPERATION_UPSERT = "upsert";
+
+  private final BulkV2Connection connection;
+  private final String sObject;
+  private final String operation;
+  private final String externalIdField;
+  private final ErrorHandling errorHandling;
+  private final long maxBytesPerJob;
+  private final List<String> jobIds = new ArrayList<>();
+  // jobs before this index were processed, the rest are still uploading or queued
+  private int processedJobs;
+
+  // holds a single encoded record, which is then copied to the upload
+  private final CSVBuffer recordBuffer = new CSVBuffer(false, 1024);
+
+  private JobDataUpload upload;
+  private StructuredRecordCSVEncoder encoder;
+
+  public SalesforceBulkV2RecordWriter(TaskAttemptContext taskAttemptContext) throws IOException {
+    this(taskAttemptContext.getConfiguration(), SalesforceSinkConstants.BULK_V2_MAX_BYTES_PER_JOB);
+  }
+
+  @VisibleForTesting
+  SalesforceBulkV2RecordWriter(Configuration conf, long maxBytesPerJob) throws IOException {
+    sObject = conf.get(SalesforceSinkConstants.CONFIG_SOBJECT);
+    operation = conf.get(SalesforceSinkConstants.CONFIG_OPERATION).toLowerCase(Locale.ROOT);
+    // Bulk API 2.0 accepts external id field only for upsert
+    externalIdField = OPERATION_UPSERT.equals(operation)
+      ? conf.get(SalesforceSinkConstants.CONFIG_EXTERNAL_ID_FIELD) : null;
+    // already validated no need to validate again
+    errorHandling = ErrorHandling.fromValue(conf.get(SalesforceSinkConstants.CONFIG_ERROR_HANDLING)).get();
+    this.maxBytesPerJob = maxBytesPerJob;
+    try {
+      connection = new BulkV2Connection(SalesforceConnectionUtil.getAuthenticatorCredentials(conf));
+    } catch (BulkV2Exception e) {
+      throw new IOException("There was issue communicating with Salesforce", e);
+    }
+  }
+
+  @Override
+  public void write(NullWritable key, StructuredRecord record) throws IOException {
+    try {
+      if (encoder == null) {
+        encoder = new StructuredRecordCSVEncoder(record.getSchema());
+      }
+      // encoded before the upload is started, so a record, which cannot be encoded, does not leave an empty job
+      recordBuffer.reset();
+      recordBuffer.write(record, encoder);
+      if (upload != null && upload.getBytesWritten() >= maxBytesPerJob) {
+        completeUpload();
+      }
+      if (upload == null) {
+        startUpload();
+      }
+      recordBuffer.writeTo(upload);
+    } catch (IOException | RuntimeException e) {
+      abortJobs(e);
+      throw e;
+    }
+  }
+
+  @Override
+  public void close(TaskAttemptContext taskAttemptContext) throws IOException {
+    try {
+      completeUpload();
+      // jobs aborted after a failed write are not waited for
+      while (processedJobs < jobIds.size()) {
+        awaitJob(jobIds.get(processedJobs));
+        processedJobs++;
+      }
+    } catch (IOException | RuntimeException e) {
+      abortJobs(e);
+      throw e;
+    } finally {
+      SalesforceConnectionManager.logMetrics();
+    }
+  }
+
+  private void awaitJob(String jobId) throws IOException {
+    try {
+      BulkV2JobInfo job = connection.awaitIngestJob(
+        jobId, SalesforceSinkConstants.BULK_V2_JOB_POLL_INTERVAL_MS,
+        SalesforceSinkConstants.BULK_V2_JOB_WAIT_TIME_SECONDS * 1000
+          / SalesforceSinkConstants.BULK_V2_JOB_POLL_INTERVAL_MS);
+      LOG.info("Ingest job '{}' processed {} records, {} records failed",
+               jobId, job.getNumberRecordsProcessed(), job.getNumberRecordsFailed());
+      if (job.getNumberRecordsFailed() > 0) {
+        checkFailedResults(jobId);
+      }
+    } catch (BulkV2Exception e) {
+      throw new RuntimeException("There was issue communicating with Salesforce", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for ingest jobs", e);
+    }
+  }
+
+  /**
+   * Aborts the job, which is being uploaded, and the jobs, which are queued or in progress. Failures to abort
+   * are added to the failure, which caused the abort.
+   */
+  private void abortJobs(Exception failure) {
+    if (upload != null) {
+      try {
+        upload.close();
+      } catch (IOException e) {
+        // the upload is discarded together with its job
+        LOG.debug("Failed to close upload of ingest job '{}'", upload.getJobId(), e);
+      }
+      upload = null;
+    }
+    for (String jobId : jobIds.subList(processedJobs, jobIds.size())) {
+      try {
+        connection.abortIngestJob(jobId);
+        LOG.info("Aborted ingest job with jobId='{}'", jobId);
+      } catch (BulkV2Exception e) {
+        failure.addSuppressed(e);
+      }
+    }
+    processedJobs = jobIds.size();
+  }
+
+  private void startUpload() throws IOException {
+    try {
+      BulkV2JobInfo job = connection.createIngestJob(sObject, operation, externalIdField);
+      jobIds.add(job.getId());
+      upload = connection.uploadIngestJobData(job.getId());
+      LOG.info("Started Salesforce ingest job with jobId='{}'", job.getId());
+    } catch (BulkV2Exception e) {
+      throw new RuntimeException("There was issue communicating with Salesforce", e);
+    }
+    upload.write(encoder.getHeader());
+  }
+
+  private void completeUpload() throws IOException {
+    if (upload == null) {
+      return;
+    }
+    String jobId = upload.getJobId();
+    // cleared first, so an upload, which fails to close, is not closed again when its job is aborted
+    JobDataUpload completed = upload;
+    upload = null;
+    // closing the upload waits until Salesforce accepts the data
+    completed.close();
+    try {
+      connection.completeIngestJobUpload(jobId);
+    } catch (BulkV2Exception e) {
+      throw new RuntimeException("There was issue communicating with Salesforce", e);
+    }
+    LOG.info("Completed upload of ingest job with jobId='{}'", jobId);
+  }
+
+  /**
+   * Streams records, which failed to be processed, and handles their errors according to the error handling.
+   */
+  private void checkFailedResults(String jobId) throws BulkV2Exception, IOException {
+    try (InputStream failedResults = connection.getIngestJobFailedResults(jobId);
+         CSVParser parser = CSVParser.parse(failedResults, StandardCharsets.UTF_8, CSVFormat.DEFAULT.withHeader())) {
+      Integer errorIndex = parser.getHeaderMap().get(ERROR_COLUMN);
+      for (org.apache.commons.csv.CSVRecord row : parser) {
+        String error = errorIndex == null || errorIndex >= row.size() ? null : row.get(errorIndex);
+        String errorMessage = String.format("Failed to create row with error: '%s'. JobId='%s'", error, jobId);
+        if (errorHandling == ErrorHandling.SKIP) {
+          LOG.error(errorMessage);
+        } else {
+          throw new RuntimeException(errorMessage);
+        }
+      }
+    }
+  }
+}
@@ -17,10 +17,12 @@ package io.cdap.plugin.salesforce.plugin.sink.batch;
 
 import com.sforce.async.AsyncApiException;
 import com.sforce.async.BulkConnection;
+import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.plugin.salesforce.SalesforceBulkUtil;
 import io.cdap.plugin.salesforce.SalesforceConnectionUtil;
-import io.cdap.plugin.salesforce.authenticator.Authenticator;
+import io.cdap.plugin.salesforce.SalesforceConstants;
 import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.JobContext;
@@ -37,12 +39,16 @@ import java.io.IOException;
  * An OutputFormat that sends the output of a Hadoop job to the Salesforce record writer, also
  * it defines the output committer.
  */
-public class SalesforceOutputFormat extends OutputFormat<NullWritable, CSVRecord> {
+public class SalesforceOutputFormat extends OutputFormat<NullWritable, StructuredRecord> {
 
   @Override
-  public RecordWriter<NullWritable, CSVRecord> getRecordWriter(TaskAttemptContext taskAttemptContext)
+  public RecordWriter<NullWritable, StructuredRecord> getRecordWriter(TaskAttemptContext taskAttemptContext)
     throws IOException {
 
+    Configuration conf = taskAttemptContext.getConfiguration();
+    if (SalesforceConstants.BULK_API_VERSION_2.equals(conf.get(SalesforceSinkConstants.CONFIG_BULK_API_VERSION))) {
+      return new SalesforceBulkV2RecordWriter(taskAttemptContext);
+    }
     try {
       return new SalesforceRecordWriter(taskAttemptContext);
     } catch (AsyncApiException e) {
@@ -71,13 +77,21 @@ public class SalesforceOutputFormat extends OutputFormat<NullWritable, CSVRecord
       @Override
       public void commitJob(JobContext jobContext) {
         Configuration conf = jobContext.getConfiguration();
+        String jobId = conf.get(SalesforceSinkConstants.CONFIG_JOB_ID);
+        if (jobId == null) {
+          // Bulk API 2.0 jobs are completed by the tasks which created them
+          return;
+        }
 
         AuthenticatorCredentials credentials = SalesforceConnectionUtil.getAuthenticatorCredentials(conf);
 
         try {
-          BulkConnection bulkConnection = new BulkConnection(Authenticator.createConnectorConfig(credentials));
-          String jobId = conf.get(SalesforceSinkConstants.CONFIG_JOB_ID);
+          BulkConnection bulkConnection = SalesforceConnectionManager.getBulkConnection(credentials);
           SalesforceBulkUtil.closeJob(bulkConnection, jobId);
+          String serialJobId = conf.get(SalesforceSinkConstants.CONFIG_SERIAL_JOB_ID);
+          if (serialJobId != null) {
+            SalesforceBulkUtil.closeJob(bulkConnection, serialJobId);
+          }
         } catch (AsyncApiException e) {
           throw new RuntimeException("There was issue communicating with Salesforce", e);
         }
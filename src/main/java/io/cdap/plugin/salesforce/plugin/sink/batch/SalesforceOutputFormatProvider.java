@@ -18,12 +18,14 @@ package io.cdap.plugin.salesforce.plugin.sink.batch;
 import com.google.common.collect.ImmutableMap;
 import com.sforce.async.AsyncApiException;
 import com.sforce.async.BulkConnection;
+import com.sforce.async.ConcurrencyMode;
 import com.sforce.async.JobInfo;
 import io.cdap.cdap.api.data.batch.OutputFormatProvider;
 import io.cdap.plugin.salesforce.SalesforceBulkUtil;
+import io.cdap.plugin.salesforce.SalesforceConnectionUtil;
 import io.cdap.plugin.salesforce.SalesforceConstants;
-import io.cdap.plugin.salesforce.authenticator.Authenticator;
 import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
 import io.cdap.plugin.salesforce.plugin.OAuthInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,7 +52,12 @@ public class SalesforceOutputFormatProvider implements OutputFormatProvider {
       .put(SalesforceSinkConstants.CONFIG_OPERATION, config.getOperation())
       .put(SalesforceSinkConstants.CONFIG_ERROR_HANDLING, config.getErrorHandling().getValue())
       .put(SalesforceSinkConstants.CONFIG_MAX_BYTES_PER_BATCH, config.getMaxBytesPerBatch().toString())
-      .put(SalesforceSinkConstants.CONFIG_MAX_RECORDS_PER_BATCH, config.getMaxRecordsPerBatch().toString());
+      .put(SalesforceSinkConstants.CONFIG_MAX_RECORDS_PER_BATCH, config.getMaxRecordsPerBatch().toString())
+      .put(SalesforceSinkConstants.CONFIG_BULK_API_VERSION, config.getBulkApiVersion())
+      .put(SalesforceSinkConstants.CONFIG_MAX_IN_FLIGHT_BATCHES, String.valueOf(config.getMaxInFlightBatches()))
+      .put(SalesforceSinkConstants.CONFIG_MAX_ROW_RETRIES, String.valueOf(config.getMaxRowRetries()))
+      .put(SalesforceSinkConstants.CONFIG_SERIAL_MODE_LOCK_ERROR_PERCENT,
+           String.valueOf(config.getSerialModeLockErrorPercent()));
 
     OAuthInfo oAuthInfo = config.getOAuthInfo();
     if (oAuthInfo != null) {
@@ -64,20 +71,46 @@ public class SalesforceOutputFormatProvider implements OutputFormatProvider {
         .put(SalesforceConstants.CONFIG_CONSUMER_KEY, Objects.requireNonNull(config.getConsumerKey()))
         .put(SalesforceConstants.CONFIG_CONSUMER_SECRET, Objects.requireNonNull(config.getConsumerSecret()))
         .put(SalesforceConstants.CONFIG_LOGIN_URL, Objects.requireNonNull(config.getLoginUrl()));
+      // session is obtained once in the driver and shared with tasks, tasks log in only if it gets rejected
+      AuthenticatorCredentials credentials = config.getAuthenticatorCredentials();
+      OAuthInfo session = SalesforceConnectionUtil.getSession(credentials);
+      long obtainedAtMs = SalesforceConnectionManager.getSessionObtainedAtMs(credentials, session);
+      configBuilder
+        .put(SalesforceConstants.CONFIG_SESSION_ID, session.getAccessToken())
+        .put(SalesforceConstants.CONFIG_SESSION_INSTANCE_URL, session.getInstanceURL())
+        .put(SalesforceConstants.CONFIG_SESSION_OBTAINED_AT, String.valueOf(obtainedAtMs));
     }
 
     if (config.getExternalIdField() != null) {
       configBuilder.put(SalesforceSinkConstants.CONFIG_EXTERNAL_ID_FIELD, config.getExternalIdField());
     }
 
+    if (config.getParentReferenceField() != null) {
+      configBuilder.put(SalesforceSinkConstants.CONFIG_PARENT_REFERENCE_FIELD, config.getParentReferenceField());
+    }
+
+    if (config.isBulkV2()) {
+      // Bulk API 2.0 jobs accept a single upload, so each task creates its own jobs
+      this.configMap = configBuilder.build();
+      return;
+    }
+
     AuthenticatorCredentials credentials = config.getAuthenticatorCredentials();
 
     try {
-      BulkConnection bulkConnection = new BulkConnection(Authenticator.createConnectorConfig(credentials));
+      BulkConnection bulkConnection = SalesforceConnectionManager.getBulkConnection(credentials);
       JobInfo job = SalesforceBulkUtil.createJob(bulkConnection, config.getSObject(), config.getOperationEnum(),
                                                  config.getExternalIdField());
       configBuilder.put(SalesforceSinkConstants.CONFIG_JOB_ID, job.getId());
       LOG.info("Started Salesforce job with jobId='{}'", job.getId());
+      if (config.getSerialModeLockErrorPercent() > 0) {
+        // tasks switching to Serial mode share a single job, so their batches do not contend with each other
+        JobInfo serialJob = SalesforceBulkUtil.createJob(bulkConnection, config.getSObject(),
+                                                         config.getOperationEnum(), config.getExternalIdField(),
+                                                         ConcurrencyMode.Serial);
+        configBuilder.put(SalesforceSinkConstants.CONFIG_SERIAL_JOB_ID, serialJob.getId());
+        LOG.info("Started Salesforce serial job with jobId='{}'", serialJob.getId());
+      }
     } catch (AsyncApiException e) {
       throw new RuntimeException("There was issue communicating with Salesforce", e);
     }
@@ -15,14 +15,15 @@
  */
 package io.cdap.plugin.salesforce.plugin.sink.batch;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.sforce.async.AsyncApiException;
 import com.sforce.async.BatchInfo;
 import com.sforce.async.BulkConnection;
+import com.sforce.async.ConcurrencyMode;
 import com.sforce.async.JobInfo;
-import io.cdap.plugin.salesforce.SalesforceBulkUtil;
+import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.plugin.salesforce.SalesforceConnectionUtil;
-import io.cdap.plugin.salesforce.authenticator.Authenticator;
-import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.RecordWriter;
@@ -30,89 +31,384 @@ import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
 
 /**
- * Writes csv records into batches and submits them to Salesforce Bulk job.
- * Accepts <code>null</code> as a key, and CSVRecord as a value.
+ * Writes records into CSV batches and submits them to Salesforce Bulk job.
+ * Accepts <code>null</code> as a key, and StructuredRecord as a value.
+ * <p/>
+ * Full batches are uploaded by {@link BatchUploader} in the background while the next batch is being encoded.
+ * If a parent reference field is configured, records are first collected in {@link ParentGroupedRows} and written
+ * into batches parent by parent when the task completes, a batch is cut only between parents, so the rows of
+ * a parent never span two batches unless they do not fit into a single batch.
+ * Submitted batches are also kept in {@link SubmittedRowsIndex}, so the rows, which failed to be processed,
+ * are reported together with their values. Rows, which failed with a transient error, are read back from it and
+ * resubmitted in new batches after all batches complete, up to the configured number of retries.
+ * <p/>
+ * Batches, which complete while the task is still writing, are verified after each submitted batch, so the lock
+ * error rate is known before the next batch is submitted. Once too many rows fail with lock errors, the batches,
+ * which are not submitted yet, including the resubmitted rows, are written to the Serial job shared by all tasks
+ * instead, which is created and closed by the driver.
  */
-public class SalesforceRecordWriter extends RecordWriter<NullWritable, CSVRecord> {
+public class SalesforceRecordWriter extends RecordWriter<NullWritable, StructuredRecord> {
   private static final Logger LOG = LoggerFactory.getLogger(SalesforceRecordWriter.class);
 
+  private final Path workingDirectory;
   private BulkConnection bulkConnection;
   private JobInfo jobInfo;
   private ErrorHandling errorHandling;
   private Long maxBytesPerBatch;
   private Long maxRecordsPerBatch;
-  private List<BatchInfo> batchInfoList = new ArrayList<>();
+  private BatchUploader batchUploader;
+  private String parentReferenceField;
+  private ParentGroupedRows parentGroupedRows;
   private CSVBuffer csvBuffer;
-  private CSVBuffer csvBufferSizeCheck;
+  private StructuredRecordCSVEncoder encoder;
+  private SubmittedRowsIndex submittedRows;
+  // submitted batches, which are not tracked for completion yet, in the order of submission
+  private final Queue<SubmittedRowsIndex.Segment> submittedSegments = new ArrayDeque<>();
+  private int trackedBatches;
+  private BatchCompletionTracker completionTracker;
+  private BatchResultVerifier verifier;
+  private FailedRowsCollector failedRows;
+  private int maxRowRetries;
+  private RowRetryPolicy retryPolicy;
+  private int maxInFlightBatches;
+  private ConcurrencyModeTracker concurrencyModeTracker;
+  private String serialJobId;
+  private JobInfo serialJob;
 
   public SalesforceRecordWriter(TaskAttemptContext taskAttemptContext) throws IOException, AsyncApiException {
-    Configuration conf = taskAttemptContext.getConfiguration();
+    // temporary files are kept in the working directory of the task, which is removed together with the container
+    this(taskAttemptContext.getConfiguration(), SalesforceConnectionManager.getBulkConnection(
+      SalesforceConnectionUtil.getAuthenticatorCredentials(taskAttemptContext.getConfiguration())),
+         Paths.get("").toAbsolutePath());
+  }
+
+  @VisibleForTesting
+  SalesforceRecordWriter(Configuration conf, BulkConnection bulkConnection, Path workingDirectory)
+    throws IOException, AsyncApiException {
+    this.workingDirectory = workingDirectory;
     String jobId = conf.get(SalesforceSinkConstants.CONFIG_JOB_ID);
 
     // these are already validated no need to validate again
     errorHandling = ErrorHandling.fromValue(conf.get(SalesforceSinkConstants.CONFIG_ERROR_HANDLING)).get();
     maxBytesPerBatch = Long.parseLong(conf.get(SalesforceSinkConstants.CONFIG_MAX_BYTES_PER_BATCH));
     maxRecordsPerBatch = Long.parseLong(conf.get(SalesforceSinkConstants.CONFIG_MAX_RECORDS_PER_BATCH));
+    maxInFlightBatches = conf.getInt(SalesforceSinkConstants.CONFIG_MAX_IN_FLIGHT_BATCHES,
+                                         SalesforceSinkConstants.DEFAULT_MAX_IN_FLIGHT_BATCHES);
+    maxRowRetries = conf.getInt(SalesforceSinkConstants.CONFIG_MAX_ROW_RETRIES,
+                                SalesforceSinkConstants.DEFAULT_MAX_ROW_RETRIES);
+    retryPolicy = new RowRetryPolicy(maxRowRetries, SalesforceSinkConstants.ROW_RETRY_INITIAL_BACKOFF_MS,
+                                     SalesforceSinkConstants.ROW_RETRY_MAX_BACKOFF_MS);
+    serialJobId = conf.get(SalesforceSinkConstants.CONFIG_SERIAL_JOB_ID);
+    // switching is disabled unless the driver created the serial job
+    concurrencyModeTracker = new ConcurrencyModeTracker(
+      serialJobId == null ? 0 : conf.getInt(SalesforceSinkConstants.CONFIG_SERIAL_MODE_LOCK_ERROR_PERCENT,
+                                            SalesforceSinkConstants.DEFAULT_SERIAL_MODE_LOCK_ERROR_PERCENT));
 
-    csvBuffer = new CSVBuffer(true);
-    csvBufferSizeCheck = new CSVBuffer(false);
+    parentReferenceField = conf.get(SalesforceSinkConstants.CONFIG_PARENT_REFERENCE_FIELD);
+    csvBuffer = new CSVBuffer();
 
-    AuthenticatorCredentials credentials = SalesforceConnectionUtil.getAuthenticatorCredentials(conf);
-    bulkConnection = new BulkConnection(Authenticator.createConnectorConfig(credentials));
-    jobInfo = bulkConnection.getJobStatus(jobId);
+    this.bulkConnection = bulkConnection;
+    jobInfo = SalesforceConnectionManager.callWithSessionRenewal(
+      bulkConnection, () -> bulkConnection.getJobStatus(jobId));
+    batchUploader = new BatchUploader(bulkConnection, jobInfo, maxInFlightBatches);
+    submittedRows = SubmittedRowsIndex.create(workingDirectory);
+    if (parentReferenceField != null) {
+      parentGroupedRows = ParentGroupedRows.create(workingDirectory);
+    }
+    startRound(retryPolicy.canRetry(0));
   }
 
   @Override
-  public void write(NullWritable key, CSVRecord csvRecord) throws IOException {
-    csvBufferSizeCheck.reset();
-    csvBufferSizeCheck.write(csvRecord);
+  public void write(NullWritable key, StructuredRecord record) throws IOException {
+    if (encoder == null) {
+      encoder = new StructuredRecordCSVEncoder(record.getSchema());
+    }
+    if (parentGroupedRows != null) {
+      parentGroupedRows.add(record.get(parentReferenceField), buffer -> buffer.write(record, encoder));
+    } else {
+      writeToBatch(buffer -> buffer.write(record, encoder));
+    }
+  }
 
-    if (csvBuffer.size() + csvBufferSizeCheck.size() > maxBytesPerBatch ||
-      csvBuffer.getRecordsCount() >= maxRecordsPerBatch) {
+  private void writeToBatch(Consumer<CSVBuffer> recordWriter) throws IOException {
+    if (csvBuffer.getRecordsCount() >= maxRecordsPerBatch) {
       submitCurrentBatch();
     }
 
-    csvBuffer.write(csvRecord);
+    recordWriter.accept(csvBuffer);
+    if (csvBuffer.size() > maxBytesPerBatch && csvBuffer.getRecordsCount() > 1) {
+      // record does not fit into the current batch, so it is moved to the next one
+      csvBuffer.rollbackLastRecord();
+      submitCurrentBatch();
+      recordWriter.accept(csvBuffer);
+    }
   }
 
   private void submitCurrentBatch() throws IOException {
     if (csvBuffer.getRecordsCount() != 0) {
-      InputStream csvInputStream = new ByteArrayInputStream(csvBuffer.getByteArray());
-      try {
-        BatchInfo batchInfo = bulkConnection.createBatchFromStream(jobInfo, csvInputStream);
-        batchInfoList.add(batchInfo);
-        LOG.info("Submitted a batch with batchId='{}'", batchInfo.getId());
-      } catch (AsyncApiException e) {
-        throw new RuntimeException("There was issue communicating with Salesforce", e);
+      if (concurrencyModeTracker.getMode() == ConcurrencyMode.Serial && serialJob == null) {
+        switchToSerialJob();
       }
-      csvBuffer.reset();
+      submittedSegments.add(submittedRows.append(csvBuffer));
+      csvBuffer = batchUploader.submit(csvBuffer);
+      verifyCompletedBatches();
+    }
+  }
+
+  /**
+   * Starts verification of the batches, which completed so far, without waiting for the pending ones.
+   */
+  private void verifyCompletedBatches() throws IOException {
+    trackBatches(batchUploader.getUploads());
+    try {
+      completionTracker.pollCompleted(verifier::verify);
+    } catch (AsyncApiException e) {
+      throw new RuntimeException("There was issue communicating with Salesforce", e);
+    }
+  }
+
+  /**
+   * Adds the uploaded batches, which are not tracked yet, to the current round.
+   *
+   * @param uploaded all batches uploaded by the task in the order of submission
+   */
+  private void trackBatches(List<BatchInfo> uploaded) {
+    for (; trackedBatches < uploaded.size(); trackedBatches++) {
+      BatchInfo batchInfo = uploaded.get(trackedBatches);
+      failedRows.batchSegments.put(batchInfo.getId(), submittedSegments.remove());
+      completionTracker.add(batchInfo);
+    }
+  }
+
+  /**
+   * Starts tracking and verification of a new round of batches.
+   *
+   * @param retry if true, rows which failed with retryable errors are collected instead of being handled
+   */
+  private void startRound(boolean retry) {
+    failedRows = new FailedRowsCollector(retry);
+    verifier = new BatchResultVerifier(bulkConnection, failedRows,
+                                       SalesforceSinkConstants.BATCH_RESULT_VERIFICATION_THREADS);
+    completionTracker = new BatchCompletionTracker(bulkConnection);
+  }
+
+  /**
+   * Writes the records, which are not in a batch yet, and submits the last batch.
+   */
+  private void submitRemainingRecords() throws IOException {
+    if (parentGroupedRows != null && parentGroupedRows.getRowsCount() != 0) {
+      parentGroupedRows.drainTo(new ParentGroupedRows.GroupConsumer() {
+        @Override
+        public void startGroup(int rowsCount, long bytes) throws IOException {
+          // rows of the parent are moved to the next batch together, unless they do not fit into a single batch
+          if (csvBuffer.getRecordsCount() + rowsCount > maxRecordsPerBatch
+            || csvBuffer.size() + bytes > maxBytesPerBatch) {
+            submitCurrentBatch();
+          }
+        }
+
+        @Override
+        public void accept(byte[] row, int offset, int length) throws IOException {
+          writeToBatch(buffer -> buffer.writeEncoded(row, offset, length, encoder));
+        }
+      });
     }
+    submitCurrentBatch();
+  }
+
+  @VisibleForTesting
+  ConcurrencyMode getConcurrencyMode() {
+    return concurrencyModeTracker.getMode();
   }
 
   @Override
   public void close(TaskAttemptContext taskAttemptContext) throws IOException {
-    submitCurrentBatch();
+    try {
+      submitRemainingRecords();
+      for (int attempt = 0; ; attempt++) {
+        Map<SubmittedRowsIndex.Segment, Set<Integer>> retryRows = awaitBatches(taskAttemptContext);
+        if (retryRows.isEmpty()) {
+          break;
+        }
+        long backoffMs = retryPolicy.getBackoffMs(attempt);
+        LOG.info("Resubmitting {} rows, which failed with retryable errors, in {} ms, retry {} of {}",
+                 retryRows.values().stream().mapToInt(Set::size).sum(), backoffMs, attempt + 1, maxRowRetries);
+        sleep(backoffMs);
+        startRound(retryPolicy.canRetry(attempt + 1));
+        resubmit(retryRows);
+      }
+      ConcurrencyModeTracker.Metrics metrics = concurrencyModeTracker.getMetrics();
+      LOG.info("Concurrency mode metrics of the task: {}", metrics);
+      incrementCounter(taskAttemptContext, SalesforceSinkConstants.COUNTER_SERIAL_MODE_SWITCHES,
+                       metrics.getSwitches());
+      incrementCounter(taskAttemptContext, SalesforceSinkConstants.COUNTER_PARALLEL_MODE_RECORDS,
+                       metrics.getRecords(ConcurrencyMode.Parallel));
+      incrementCounter(taskAttemptContext, SalesforceSinkConstants.COUNTER_PARALLEL_MODE_LOCK_ERRORS,
+                       metrics.getLockErrors(ConcurrencyMode.Parallel));
+      incrementCounter(taskAttemptContext, SalesforceSinkConstants.COUNTER_PARALLEL_MODE_TIME_MS,
+                       metrics.getTimeMs(ConcurrencyMode.Parallel));
+      incrementCounter(taskAttemptContext, SalesforceSinkConstants.COUNTER_SERIAL_MODE_RECORDS,
+                       metrics.getRecords(ConcurrencyMode.Serial));
+      incrementCounter(taskAttemptContext, SalesforceSinkConstants.COUNTER_SERIAL_MODE_LOCK_ERRORS,
+                       metrics.getLockErrors(ConcurrencyMode.Serial));
+      incrementCounter(taskAttemptContext, SalesforceSinkConstants.COUNTER_SERIAL_MODE_TIME_MS,
+                       metrics.getTimeMs(ConcurrencyMode.Serial));
+    } catch (AsyncApiException e) {
+      throw new RuntimeException("There was issue communicating with Salesforce", e);
+    } finally {
+      verifier.close();
+      batchUploader.close();
+      submittedRows.close();
+      if (parentGroupedRows != null) {
+        parentGroupedRows.close();
+      }
+      SalesforceConnectionManager.logMetrics();
+    }
+  }
 
+  /**
+   * Writes the batches submitted from now on to the job shared by all tasks, which processes its batches one at
+   * a time. Batches submitted earlier are still processed by the current job. The job is closed by the output
+   * committer.
+   */
+  private void switchToSerialJob() {
     try {
-      SalesforceBulkUtil.awaitCompletion(bulkConnection, jobInfo, batchInfoList);
-      SalesforceBulkUtil.checkResults(bulkConnection, jobInfo, batchInfoList, errorHandling.equals(ErrorHandling.SKIP));
+      serialJob = SalesforceConnectionManager.callWithSessionRenewal(
+        bulkConnection, () -> bulkConnection.getJobStatus(serialJobId));
     } catch (AsyncApiException e) {
       throw new RuntimeException("There was issue communicating with Salesforce", e);
+    }
+    LOG.info("Too many rows of job '{}' failed with lock errors, next batches are written to serial job '{}'",
+             jobInfo.getId(), serialJob.getId());
+    batchUploader.switchJob(serialJob);
+  }
+
+  /**
+   * Waits until the batches of the current round complete and verifies the results, which were not verified
+   * while the task was writing.
+   *
+   * @param taskAttemptContext context of the task to report the verified records to, null if not available
+   * @return indexes of the rows to be retried, by the submitted batch
+   */
+  private Map<SubmittedRowsIndex.Segment, Set<Integer>> awaitBatches(@Nullable TaskAttemptContext taskAttemptContext)
+    throws AsyncApiException, IOException {
+    trackBatches(batchUploader.awaitUploads());
+    try {
+      // results of each batch are verified as soon as the batch completes
+      completionTracker.awaitCompletion(verifier::verify);
+      verifier.await();
     } finally {
-      try {
-        csvBufferSizeCheck.close();
-      } catch (IOException ex) {
-        throw ex;
-      } finally {
-        csvBuffer.close();
+      verifier.close();
+    }
+    incrementCounter(taskAttemptContext, SalesforceSinkConstants.COUNTER_PROCESSED_RECORDS,
+                     verifier.getProcessedRecords());
+    incrementCounter(taskAttemptContext, SalesforceSinkConstants.COUNTER_FAILED_RECORDS,
+                     verifier.getFailedRecords());
+    return failedRows.retryRows;
+  }
+
+  private static void incrementCounter(@Nullable TaskAttemptContext taskAttemptContext, String name, long value) {
+    if (taskAttemptContext != null) {
+      taskAttemptContext.getCounter(SalesforceSinkConstants.COUNTER_GROUP_BULK_SINK, name).increment(value);
+    }
+  }
+
+  /**
+   * Writes the rows read back from the submitted batches into new batches. New batches are kept in a new index,
+   * the index of the verified round is deleted once its rows are read back.
+   */
+  private void resubmit(Map<SubmittedRowsIndex.Segment, Set<Integer>> retryRows) throws IOException {
+    SubmittedRowsIndex verifiedRows = submittedRows;
+    submittedRows = SubmittedRowsIndex.create(workingDirectory);
+    try {
+      for (Map.Entry<SubmittedRowsIndex.Segment, Set<Integer>> entry : retryRows.entrySet()) {
+        for (Map<String, String> values : verifiedRows.readRows(entry.getKey(), entry.getValue()).values()) {
+          if (parentGroupedRows != null) {
+            parentGroupedRows.add(values.get(parentReferenceField), buffer -> buffer.write(values, encoder));
+          } else {
+            writeToBatch(buffer -> buffer.write(values, encoder));
+          }
+        }
       }
+    } finally {
+      verifiedRows.close();
+    }
+    submitRemainingRecords();
+  }
+
+  /**
+   * Handles the failed rows of a round as the batch results are read. Rows, which failed with retryable errors, are
+   * collected to be resubmitted, other rows are read back from the submitted batch one by one, and are either
+   * logged or fail the task. Lock errors of each verified batch are recorded in the concurrency mode tracker.
+   */
+  private class FailedRowsCollector implements BatchResultVerifier.FailedRowsHandler {
+    // segments are added by the writer as the batches are uploaded, and read by the verification threads
+    private final Map<String, SubmittedRowsIndex.Segment> batchSegments = new ConcurrentHashMap<>();
+    private final boolean retry;
+    // rows of each batch are reported by a single verification thread, so sets of different batches can be
+    // updated at the same time
+    private final Map<SubmittedRowsIndex.Segment, Set<Integer>> retryRows = new ConcurrentHashMap<>();
+    private final Map<String, SubmittedRowsIndex.RowCursor> cursors = new ConcurrentHashMap<>();
+    private final Map<String, Integer> lockErrors = new ConcurrentHashMap<>();
+
+    private FailedRowsCollector(boolean retry) {
+      this.retry = retry;
+    }
+
+    @Override
+    public void handle(BatchInfo batchInfo, int rowIndex, @Nullable String error) throws IOException {
+      if (RowRetryPolicy.isLockError(error)) {
+        lockErrors.merge(batchInfo.getId(), 1, Integer::sum);
+      }
+      SubmittedRowsIndex.Segment segment = batchSegments.get(batchInfo.getId());
+      if (retry && retryPolicy.isRetryable(error)) {
+        retryRows.computeIfAbsent(segment, key -> new HashSet<>()).add(rowIndex);
+        return;
+      }
+
+      Map<String, String> row = cursors.computeIfAbsent(batchInfo.getId(), key -> submittedRows.openRows(segment))
+        .readRow(rowIndex);
+      String errorMessage = String.format(
+        "Failed to create row with error: '%s'. BatchId='%s', RowIndex='%d', Record='%s'",
+        error, batchInfo.getId(), rowIndex, row);
+      if (errorHandling == ErrorHandling.SKIP) {
+        LOG.error(errorMessage);
+      } else {
+        throw new RuntimeException(errorMessage);
+      }
+    }
+
+    @Override
+    public void batchVerified(BatchInfo batchInfo, int processedRows) {
+      cursors.remove(batchInfo.getId());
+      Integer batchLockErrors = lockErrors.remove(batchInfo.getId());
+      concurrencyModeTracker.recordBatch(
+        serialJobId != null && serialJobId.equals(batchInfo.getJobId()) ? ConcurrencyMode.Serial
+          : ConcurrencyMode.Parallel,
+        processedRows, batchLockErrors == null ? 0 : batchLockErrors);
+    }
+  }
+
+  private static void sleep(long millis) throws IOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting to resubmit failed rows", e);
     }
   }
 }
@@ -29,9 +29,10 @@ import io.cdap.cdap.etl.api.validation.InvalidStageException;
 import io.cdap.plugin.salesforce.InvalidConfigException;
 import io.cdap.plugin.salesforce.SObjectDescriptor;
 import io.cdap.plugin.salesforce.SObjectsDescribeResult;
+import io.cdap.plugin.salesforce.SalesforceConstants;
 import io.cdap.plugin.salesforce.SalesforceSchemaUtil;
-import io.cdap.plugin.salesforce.authenticator.Authenticator;
 import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
 import io.cdap.plugin.salesforce.plugin.BaseSalesforceConfig;
 import io.cdap.plugin.salesforce.plugin.OAuthInfo;
 
@@ -51,6 +52,11 @@ public class SalesforceSinkConfig extends BaseSalesforceConfig {
   public static final String PROPERTY_SOBJECT = "sObject";
   public static final String PROPERTY_OPERATION = "operation";
   public static final String PROPERTY_EXTERNAL_ID_FIELD = "externalIdField";
+  public static final String PROPERTY_BULK_API_VERSION = "bulkApiVersion";
+  public static final String PROPERTY_MAX_IN_FLIGHT_BATCHES = "maxInFlightBatches";
+  public static final String PROPERTY_MAX_ROW_RETRIES = "maxRowRetries";
+  public static final String PROPERTY_PARENT_REFERENCE_FIELD = "parentReferenceField";
+  public static final String PROPERTY_SERIAL_MODE_LOCK_ERROR_PERCENT = "serialModeLockErrorPercent";
 
   private static final String SALESFORCE_ID_FIELD = "Id";
 
@@ -103,6 +109,48 @@ public class SalesforceSinkConfig extends BaseSalesforceConfig {
   @Macro
   private String errorHandling;
 
+  @Name(PROPERTY_BULK_API_VERSION)
+  @Description("Version of Bulk API used to write records, either 1.0 or 2.0. With Bulk API 2.0 each task " +
+    "uploads its records into its own jobs, which are split into batches by Salesforce, so max records and " +
+    "max bytes per batch are not used. Default is 1.0.")
+  @Nullable
+  @Macro
+  private String bulkApiVersion;
+
+  @Name(PROPERTY_MAX_IN_FLIGHT_BATCHES)
+  @Description("Maximum number of batches each task uploads to Salesforce at the same time, while it keeps " +
+    "encoding the next batch. Writing blocks when this many batches are being uploaded. Each batch in flight " +
+    "is held in memory. Allowed values are between 1 and 10. Default is 2.")
+  @Nullable
+  @Macro
+  private Integer maxInFlightBatches;
+
+  @Name(PROPERTY_MAX_ROW_RETRIES)
+  @Description("Maximum number of times the rows, which failed with a transient error such as UNABLE_TO_LOCK_ROW, " +
+    "are resubmitted in new batches. Rows which still fail after that, and rows which failed with other errors, " +
+    "are handled according to the error handling. Allowed values are between 0 and 10. Default is 3.")
+  @Nullable
+  @Macro
+  private Integer maxRowRetries;
+
+  @Name(PROPERTY_PARENT_REFERENCE_FIELD)
+  @Description("Name of the input field, which references the parent record, e.g. AccountId for contacts. " +
+    "If set, each task groups records with the same parent into the same batch, so batches processed in " +
+    "parallel do not contend for the lock of the same parent record. Each task then spills its records to " +
+    "local disk and uploads them grouped by parent once all of its input is read. Used only with Bulk API 1.0.")
+  @Nullable
+  @Macro
+  private String parentReferenceField;
+
+  @Name(PROPERTY_SERIAL_MODE_LOCK_ERROR_PERCENT)
+  @Description("Percent of rows failed with lock errors in the batches of a task verified so far, at which " +
+    "the task writes its next batches, including resubmitted rows, to a job shared by all tasks, which processes " +
+    "batches one at a time instead of in parallel. 0 disables switching. Used only with Bulk API 1.0. " +
+    "Allowed values are between 0 and 100. Default is 10.")
+  @Nullable
+  @Macro
+  private Integer serialModeLockErrorPercent;
+
   public SalesforceSinkConfig(String referenceName,
                               @Nullable String clientId,
                               @Nullable String clientSecret,
@@ -163,6 +211,35 @@ public class SalesforceSinkConfig extends BaseSalesforceConfig {
     }
   }
 
+  public String getBulkApiVersion() {
+    return Strings.isNullOrEmpty(bulkApiVersion) ? SalesforceConstants.BULK_API_VERSION_1 : bulkApiVersion;
+  }
+
+  /**
+   * @return true if records are written by Bulk API 2.0
+   */
+  public boolean isBulkV2() {
+    return SalesforceConstants.BULK_API_VERSION_2.equals(getBulkApiVersion());
+  }
+
+  public int getMaxInFlightBatches() {
+    return maxInFlightBatches == null ? SalesforceSinkConstants.DEFAULT_MAX_IN_FLIGHT_BATCHES : maxInFlightBatches;
+  }
+
+  @Nullable
+  public String getParentReferenceField() {
+    return Strings.isNullOrEmpty(parentReferenceField) ? null : parentReferenceField;
+  }
+
+  public int getSerialModeLockErrorPercent() {
+    return serialModeLockErrorPercent == null ? SalesforceSinkConstants.DEFAULT_SERIAL_MODE_LOCK_ERROR_PERCENT
+      : serialModeLockErrorPercent;
+  }
+
+  public int getMaxRowRetries() {
+    return maxRowRetries == null ? SalesforceSinkConstants.DEFAULT_MAX_ROW_RETRIES : maxRowRetries;
+  }
+
   public ErrorHandling getErrorHandling() {
     return ErrorHandling.fromValue(errorHandling)
       .orElseThrow(() -> new InvalidConfigException("Unsupported error handling value: " + errorHandling,
@@ -212,6 +289,57 @@ public class SalesforceSinkConfig extends BaseSalesforceConfig {
         collector.addFailure(errorMessage, null).withConfigProperty(PROPERTY_MAX_RECORDS_PER_BATCH);
       }
     }
+
+    if (!containsMacro(PROPERTY_BULK_API_VERSION)) {
+      String version = getBulkApiVersion();
+      if (!SalesforceConstants.BULK_API_VERSION_1.equals(version)
+        && !SalesforceConstants.BULK_API_VERSION_2.equals(version)) {
+        collector.addFailure(String.format("Unsupported Bulk API version '%s'.", version),
+                             String.format("Supported versions are '%s' and '%s'.",
+                                           SalesforceConstants.BULK_API_VERSION_1,
+                                           SalesforceConstants.BULK_API_VERSION_2))
+          .withConfigProperty(PROPERTY_BULK_API_VERSION);
+      }
+    }
+
+    if (!containsMacro(PROPERTY_MAX_IN_FLIGHT_BATCHES)) {
+      int maxInFlightBatches = getMaxInFlightBatches();
+      if (maxInFlightBatches < SalesforceSinkConstants.MIN_MAX_IN_FLIGHT_BATCHES
+        || maxInFlightBatches > SalesforceSinkConstants.MAX_MAX_IN_FLIGHT_BATCHES) {
+        collector.addFailure(
+          String.format("Max in flight batches '%d' is out of range.", maxInFlightBatches),
+          String.format("Allowed values are between the range of '%d' and '%d'.",
+                        SalesforceSinkConstants.MIN_MAX_IN_FLIGHT_BATCHES,
+                        SalesforceSinkConstants.MAX_MAX_IN_FLIGHT_BATCHES))
+          .withConfigProperty(PROPERTY_MAX_IN_FLIGHT_BATCHES);
+      }
+    }
+
+    if (!containsMacro(PROPERTY_MAX_ROW_RETRIES)) {
+      int maxRowRetries = getMaxRowRetries();
+      if (maxRowRetries < SalesforceSinkConstants.MIN_MAX_ROW_RETRIES
+        || maxRowRetries > SalesforceSinkConstants.MAX_MAX_ROW_RETRIES) {
+        collector.addFailure(
+          String.format("Max row retries '%d' is out of range.", maxRowRetries),
+          String.format("Allowed values are between the range of '%d' and '%d'.",
+                        SalesforceSinkConstants.MIN_MAX_ROW_RETRIES,
+                        SalesforceSinkConstants.MAX_MAX_ROW_RETRIES))
+          .withConfigProperty(PROPERTY_MAX_ROW_RETRIES);
+      }
+    }
+
+    if (!containsMacro(PROPERTY_SERIAL_MODE_LOCK_ERROR_PERCENT)) {
+      int serialModeLockErrorPercent = getSerialModeLockErrorPercent();
+      if (serialModeLockErrorPercent < SalesforceSinkConstants.MIN_SERIAL_MODE_LOCK_ERROR_PERCENT
+        || serialModeLockErrorPercent > SalesforceSinkConstants.MAX_SERIAL_MODE_LOCK_ERROR_PERCENT) {
+        collector.addFailure(
+          String.format("Serial mode lock error percent '%d' is out of range.", serialModeLockErrorPercent),
+          String.format("Allowed values are between the range of '%d' and '%d'.",
+                        SalesforceSinkConstants.MIN_SERIAL_MODE_LOCK_ERROR_PERCENT,
+                        SalesforceSinkConstants.MAX_SERIAL_MODE_LOCK_ERROR_PERCENT))
+          .withConfigProperty(PROPERTY_SERIAL_MODE_LOCK_ERROR_PERCENT);
+      }
+    }
     collector.getOrThrowException();
     validateSchema(schema, collector);
   }
@@ -223,6 +351,14 @@ public class SalesforceSinkConfig extends BaseSalesforceConfig {
       throw collector.getOrThrowException();
     }
 
+    String parentReferenceField = getParentReferenceField();
+    if (!containsMacro(PROPERTY_PARENT_REFERENCE_FIELD) && parentReferenceField != null
+      && schema.getField(parentReferenceField) == null) {
+      collector.addFailure(String.format("Schema must contain parent reference field '%s'", parentReferenceField),
+                           null)
+        .withConfigProperty(PROPERTY_PARENT_REFERENCE_FIELD);
+    }
+
     if (!canAttemptToEstablishConnection() || containsMacro(PROPERTY_SOBJECT)
       || containsMacro(PROPERTY_OPERATION) || containsMacro(PROPERTY_EXTERNAL_ID_FIELD)) {
       return;
@@ -300,7 +436,7 @@ public class SalesforceSinkConfig extends BaseSalesforceConfig {
   private SObjectsDescribeResult getSObjectDescribeResult(FailureCollector collector) {
     AuthenticatorCredentials credentials = this.getAuthenticatorCredentials();
     try {
-      PartnerConnection partnerConnection = new PartnerConnection(Authenticator.createConnectorConfig(credentials));
+      PartnerConnection partnerConnection = SalesforceConnectionManager.getPartnerConnection(credentials);
       SObjectDescriptor sObjectDescriptor = SObjectDescriptor.fromName(this.getSObject(),
                                                                        this.getAuthenticatorCredentials());
       return SObjectsDescribeResult.of(partnerConnection,
@@ -26,4 +26,77 @@ public class SalesforceSinkConstants {
   public static final String CONFIG_JOB_ID = "mapred.salesforce.job.id";
   public static final String CONFIG_MAX_BYTES_PER_BATCH = "mapred.salesforce.max.bytes.per.batch";
   public static final String CONFIG_MAX_RECORDS_PER_BATCH = "mapred.salesforce.max.records.per.batch";
+  public static final String CONFIG_BULK_API_VERSION = "mapred.salesforce.bulk.api.version";
+  public static final String CONFIG_MAX_IN_FLIGHT_BATCHES = "mapred.salesforce.max.in.flight.batches";
+  public static final String CONFIG_MAX_ROW_RETRIES = "mapred.salesforce.max.row.retries";
+  public static final String CONFIG_PARENT_REFERENCE_FIELD = "mapred.salesforce.parent.reference.field";
+  public static final String CONFIG_SERIAL_MODE_LOCK_ERROR_PERCENT = "mapred.salesforce.serial.mode.lock.error.percent";
+  public static final String CONFIG_SERIAL_JOB_ID = "mapred.salesforce.serial.job.id";
+
+  /**
+   * Each batch in flight holds its own buffer, besides the one the writer encodes into. A buffer grows by doubling
+   * until it exceeds max bytes per batch by at most one record, so it may take up to twice max bytes per batch
+   */
+  public static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 2;
+  public static final int MIN_MAX_IN_FLIGHT_BATCHES = 1;
+  public static final int MAX_MAX_IN_FLIGHT_BATCHES = 10;
+  /**
+   * Rows failed with a retryable error are resubmitted up to max row retries times
+   */
+  public static final int DEFAULT_MAX_ROW_RETRIES = 3;
+  public static final int MIN_MAX_ROW_RETRIES = 0;
+  public static final int MAX_MAX_ROW_RETRIES = 10;
+  /**
+   * Delay before resubmitting failed rows doubles with each retry, from the initial up to the maximum one
+   */
+  public static final long ROW_RETRY_INITIAL_BACKOFF_MS = 1000;
+  public static final long ROW_RETRY_MAX_BACKOFF_MS = 30_000;
+  /**
+   * Batches of a task are written to the Serial job shared by all tasks once this percent of rows of the verified
+   * batches fails with lock errors, 0 disables switching
+   */
+  public static final int DEFAULT_SERIAL_MODE_LOCK_ERROR_PERCENT = 10;
+  public static final int MIN_SERIAL_MODE_LOCK_ERROR_PERCENT = 0;
+  public static final int MAX_SERIAL_MODE_LOCK_ERROR_PERCENT = 100;
+  /**
+   * Maximum number of batch results each task downloads at the same time
+   */
+  public static final int BATCH_RESULT_VERIFICATION_THREADS = 4;
+  /**
+   * Interval between polls of batch state grows from the initial to the maximum one while no batch completes
+   */
+  public static final long BATCH_STATUS_INITIAL_POLL_INTERVAL_MS = 500;
+  public static final long BATCH_STATUS_MAX_POLL_INTERVAL_MS = 10_000;
+  /**
+   * Maximum number of the oldest pending batches, which state is requested in a single poll.
+   * Batches are mostly processed in the order they were submitted, so newer batches are requested once older
+   * ones complete, and the state of all batches of the job, including batches of other tasks, is never requested.
+   */
+  public static final int BATCH_STATUS_MAX_POLLED_BATCHES = 10;
+  /**
+   * Task counters of the batch results verified by Bulk API sink tasks, including resubmitted rows
+   */
+  public static final String COUNTER_GROUP_BULK_SINK = "Salesforce Bulk Sink";
+  public static final String COUNTER_PROCESSED_RECORDS = "Records processed";
+  public static final String COUNTER_FAILED_RECORDS = "Records failed";
+  /**
+   * Task counters of the concurrency modes, records per second of a mode are its records divided by its time
+   */
+  public static final String COUNTER_SERIAL_MODE_SWITCHES = "Serial mode switches";
+  public static final String COUNTER_PARALLEL_MODE_RECORDS = "Parallel mode records";
+  public static final String COUNTER_PARALLEL_MODE_LOCK_ERRORS = "Parallel mode lock errors";
+  public static final String COUNTER_PARALLEL_MODE_TIME_MS = "Parallel mode time (ms)";
+  public static final String COUNTER_SERIAL_MODE_RECORDS = "Serial mode records";
+  public static final String COUNTER_SERIAL_MODE_LOCK_ERRORS = "Serial mode lock errors";
+  public static final String COUNTER_SERIAL_MODE_TIME_MS = "Serial mode time (ms)";
+
+  /**
+   * Bulk API 2.0 job accepts up to 150 MB of base64 encoded data, which is about 100 MB of CSV
+   */
+  public static final long BULK_V2_MAX_BYTES_PER_JOB = 100_000_000;
+  /**
+   * Bulk API 2.0 jobs are processed as a whole, so their state is polled less often than Bulk API 1.0 batches
+   */
+  public static final long BULK_V2_JOB_POLL_INTERVAL_MS = 5000;
+  public static final long BULK_V2_JOB_WAIT_TIME_SECONDS = 3600;
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes {@link StructuredRecord} of a single schema to CSV rows understood by Salesforce.
+ * <p/>
+ * Schema is resolved once, when the encoder is created: the header row is encoded up front, and a formatter is
+ * chosen for every field according to its non-nullable type, so encoding a record only looks up field values and
+ * writes them directly into {@link CSVBuffer}.
+ */
+public class StructuredRecordCSVEncoder {
+  private final Schema schema;
+  private final String[] fieldNames;
+  private final FieldFormatter[] formatters;
+  private final byte[] header;
+
+  public StructuredRecordCSVEncoder(Schema schema) {
+    this.schema = schema;
+    List<Schema.Field> fields = schema.getFields();
+    this.fieldNames = new String[fields.size()];
+    this.formatters = new FieldFormatter[fields.size()];
+    CSVBuffer headerBuffer = new CSVBuffer(false, 256);
+    for (int i = 0; i < fields.size(); i++) {
+      Schema.Field field = fields.get(i);
+      fieldNames[i] = field.getName();
+      formatters[i] = createFormatter(field);
+      headerBuffer.writeField(i, field.getName());
+    }
+    headerBuffer.writeRecordSeparator();
+    this.header = headerBuffer.toByteArray();
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  /**
+   * @return encoded header row, including record separator
+   */
+  byte[] getHeader() {
+    return header;
+  }
+
+  /**
+   * Writes values of the record fields, without record separator.
+   */
+  void encode(StructuredRecord record, CSVBuffer buffer) {
+    for (int i = 0; i < fieldNames.length; i++) {
+      Object value = record.get(fieldNames[i]);
+      // null is written as an empty unquoted value
+      buffer.writeField(i, value == null ? null : formatters[i].format(value));
+    }
+  }
+
+  /**
+   * Writes already formatted values of the fields, without record separator.
+   *
+   * @param values formatted values by field name
+   */
+  void encode(Map<String, String> values, CSVBuffer buffer) {
+    for (int i = 0; i < fieldNames.length; i++) {
+      buffer.writeField(i, values.get(fieldNames[i]));
+    }
+  }
+
+  /**
+   * Convert a schema field to String which can be read by Salesforce.
+   *
+   * @param value field value
+   * @param field schema field
+   * @return string representing the value in format, which can be understood by Salesforce
+   */
+  public static String convertSchemaFieldToString(Object value, Schema.Field field) {
+    // don't convert null to avoid NPE
+    if (value == null) {
+      return null;
+    }
+    return createFormatter(field).format(value);
+  }
+
+  private static FieldFormatter createFormatter(Schema.Field field) {
+    Schema fieldSchema = field.getSchema();
+
+    if (fieldSchema.isNullable()) {
+      fieldSchema = fieldSchema.getNonNullable();
+    }
+
+    Schema.LogicalType logicalType = fieldSchema.getLogicalType();
+    if (logicalType == null) {
+      return Object::toString;
+    }
+    switch (logicalType) {
+      case DATE:
+        // convert epoch day to yyyy-mm-dd format
+        return value -> LocalDate.ofEpochDay((Integer) value).toString();
+      case TIMESTAMP_MICROS:
+        // convert timestamp to ISO 8601 format
+        return value -> Instant.ofEpochMilli(TimeUnit.MICROSECONDS.toMillis(((Number) value).longValue()))
+          .toString();
+      case TIME_MICROS:
+        // convert timestamp to HH:mm:ss,SSS
+        return value -> Instant.ofEpochMilli(TimeUnit.MICROSECONDS.toMillis(((Number) value).longValue()))
+          .atZone(ZoneOffset.UTC).toLocalTime().toString();
+      case TIMESTAMP_MILLIS:
+        // convert timestamp to ISO 8601 format
+        return value -> Instant.ofEpochMilli(((Number) value).longValue()).toString();
+      case TIME_MILLIS:
+        // convert timestamp to HH:mm:ss,SSS
+        return value -> Instant.ofEpochMilli(((Number) value).longValue())
+          .atZone(ZoneOffset.UTC).toLocalTime().toString();
+      default:
+        // only values of the field fail, so a field, which is always null, is still accepted
+        return value -> {
+          throw new IllegalArgumentException(
+            String.format("Field '%s' is of unsupported type '%s'", field.getName(), logicalType.getToken()));
+        };
+    }
+  }
+
+  /**
+   * Formats non-null value of a field.
+   */
+  @FunctionalInterface
+  private interface FieldFormatter {
+    String format(Object value);
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps content of the batches submitted by a task in a local temporary file, so the rows, which failed to be
+ * processed, can be read back by their index in the batch without holding submitted records in memory.
+ * <p/>
+ * Batch content is appended to the file as is and only its position in the file is kept in memory. Rows are read
+ * back with positional reads, so several batches can be read at the same time. The file is deleted on close,
+ * the writer keeps a new index for each round of resubmitted rows, so the disk space taken by verified batches
+ * is released as soon as their failed rows are read back.
+ * <p/>
+ * Rows are parsed according to the encoding of {@link CSVBuffer}, so null values, written as empty unquoted values,
+ * are read back as null, and empty strings, written as empty quoted values, are read back as empty strings.
+ */
+class SubmittedRowsIndex implements Closeable {
+  private final FileChannel channel;
+  private final OutputStream out;
+  private long position;
+
+  /**
+   * Creates the index in a new temporary file.
+   *
+   * @param directory directory to create the file in, usually the working directory of the task
+   */
+  static SubmittedRowsIndex create(Path directory) throws IOException {
+    return new SubmittedRowsIndex(Files.createTempFile(directory, "salesforce-sink-", ".csv"));
+  }
+
+  SubmittedRowsIndex(Path file) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                    StandardOpenOption.DELETE_ON_CLOSE);
+    this.out = Channels.newOutputStream(channel);
+  }
+
+  /**
+   * Appends content of the batch to the file, batches are only appended by a single thread.
+   *
+   * @param buffer batch content, including the header
+   * @return position of the batch content in the file
+   */
+  Segment append(CSVBuffer buffer) throws IOException {
+    Segment segment = new Segment(position, buffer.size());
+    buffer.writeTo(out);
+    position += buffer.size();
+    return segment;
+  }
+
+  /**
+   * Reads rows with given indexes from the batch content. The batch is only read up to the last requested row.
+   *
+   * @param segment position of the batch content in the file
+   * @param rowIndexes indexes of the rows in the batch, not counting the header
+   * @return values of the rows by column name in the column order, by the row index
+   */
+  Map<Integer, Map<String, String>> readRows(Segment segment, Set<Integer> rowIndexes) throws IOException {
+    Map<Integer, Map<String, String>> rows = new HashMap<>();
+    RowCursor cursor = openRows(segment);
+    for (int rowIndex : new TreeSet<>(rowIndexes)) {
+      Map<String, String> values = cursor.readRow(rowIndex);
+      if (values == null) {
+        break;
+      }
+      rows.put(rowIndex, values);
+    }
+    return rows;
+  }
+
+  /**
+   * Opens the batch content for reading rows one by one in the order of their index. The content is only read
+   * once the first row is requested.
+   *
+   * @param segment position of the batch content in the file
+   * @return cursor over the rows of the batch
+   */
+  RowCursor openRows(Segment segment) {
+    return new RowCursor(segment);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Position of a batch content in the file.
+   */
+  static final class Segment {
+    private final long position;
+    private final int length;
+
+    private Segment(long position, int length) {
+      this.position = position;
+      this.length = length;
+    }
+  }
+
+  /**
+   * Reads rows of a batch forward only, so the rows, which failed to be processed, are read back as their errors are
+   * reported, without reading the batch from the start for each of them. The cursor holds no file resources of its
+   * own and does not need to be closed.
+   */
+  final class RowCursor {
+    private final Segment segment;
+    private RowReader reader;
+    private List<String> header;
+    private int nextRowIndex;
+
+    private RowCursor(Segment segment) {
+      this.segment = segment;
+    }
+
+    /**
+     * @param rowIndex index of the row in the batch, not counting the header, not lower than the index of
+     *                 the previously read row
+     * @return values of the row by column name in the column order, or null if the batch has no such row
+     */
+    @Nullable
+    Map<String, String> readRow(int rowIndex) throws IOException {
+      if (rowIndex < nextRowIndex) {
+        throw new IllegalArgumentException(
+          String.format("Row %d is already read, next row to be read is %d", rowIndex, nextRowIndex));
+      }
+      if (reader == null) {
+        reader = new RowReader(new SegmentInputStream(segment));
+        header = reader.nextRow();
+      }
+      List<String> row;
+      do {
+        row = reader.nextRow();
+        if (row == null) {
+          return null;
+        }
+      } while (nextRowIndex++ < rowIndex);
+
+      Map<String, String> values = new LinkedHashMap<>();
+      for (int i = 0; i < header.size() && i < row.size(); i++) {
+        values.put(header.get(i), row.get(i));
+      }
+      return values;
+    }
+  }
+
+  /**
+   * Reads rows encoded by {@link CSVBuffer}. Quoted values may contain delimiters, escaped quotes and line breaks,
+   * unquoted values are only expected to be empty, which stands for null.
+   */
+  private static final class RowReader {
+    private static final int DELIMITER = ',';
+    private static final int QUOTE = '"';
+    private static final int CR = '\r';
+    private static final int LF = '\n';
+
+    private final Reader reader;
+    private final StringBuilder value = new StringBuilder();
+    private int next;
+
+    private RowReader(InputStream in) throws IOException {
+      this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+      this.next = reader.read();
+    }
+
+    /**
+     * @return values of the next row, or null if there are no more rows
+     */
+    @Nullable
+    private List<String> nextRow() throws IOException {
+      if (next < 0) {
+        return null;
+      }
+      List<String> row = new ArrayList<>();
+      while (true) {
+        row.add(next == QUOTE ? readQuoted() : readUnquoted());
+        if (next != DELIMITER) {
+          break;
+        }
+        next = reader.read();
+      }
+      if (next == CR) {
+        next = reader.read();
+      }
+      if (next == LF) {
+        next = reader.read();
+      }
+      return row;
+    }
+
+    private String readQuoted() throws IOException {
+      value.setLength(0);
+      while (true) {
+        next = reader.read();
+        if (next < 0) {
+          throw new IOException("Unexpected end of submitted rows within a quoted value");
+        }
+        if (next == QUOTE) {
+          next = reader.read();
+          if (next != QUOTE) {
+            return value.toString();
+          }
+        }
+        value.append((char) next);
+      }
+    }
+
+    @Nullable
+    private String readUnquoted() throws IOException {
+      value.setLength(0);
+      while (next >= 0 && next != DELIMITER && next != CR && next != LF) {
+        value.append((char) next);
+        next = reader.read();
+      }
+      return value.length() == 0 ? null : value.toString();
+    }
+  }
+
+  /**
+   * Reads a segment of the file with positional reads, which do not depend on the position of the channel.
+   */
+  private class SegmentInputStream extends InputStream {
+    private final long end;
+    private long position;
+
+    private SegmentInputStream(Segment segment) {
+      this.position = segment.position;
+      this.end = segment.position + segment.length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (position >= end) {
+        return -1;
+      }
+      int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+      if (read > 0) {
+        position += read;
+      }
+      return read;
+    }
+  }
+}
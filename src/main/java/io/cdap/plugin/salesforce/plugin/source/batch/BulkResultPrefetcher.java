@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sforce.async.AsyncApiException;
+import com.sforce.async.BulkConnection;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opens result streams of a single Bulk API batch. When read ahead is enabled, the next result ids
+ * are downloaded in the background into bounded buffers while the current result is being parsed,
+ * so the reader does not stall on a round trip at every result boundary.
+ * <p/>
+ * Results are downloaded one at a time, the next result is opened only once the previous one is downloaded
+ * completely, that is when all of its remaining data is buffered. A result connection therefore stays idle,
+ * with its buffer full, only while the reader consumes data already buffered for the results before it,
+ * rather than for the whole time the reader spends on a large result.
+ */
+class BulkResultPrefetcher implements Closeable {
+
+  private final BulkConnection bulkConnection;
+  private final String jobId;
+  private final String batchId;
+  private final String[] resultIds;
+  private final int readAhead;
+  private final int bufferSize;
+  private final Map<Integer, ReadAheadInputStream> prefetched = new HashMap<>();
+  private ExecutorService executor;
+  // index of the result opened last
+  private int current = -1;
+  // index of the result, which download was started last
+  private int started = -1;
+  private boolean downloading;
+  private boolean closed;
+
+  /**
+   * @param bulkConnection bulk connection instance
+   * @param jobId bulk job id
+   * @param batchId bulk batch id
+   * @param resultIds batch result ids
+   * @param readAhead number of results to download ahead of the current one, 0 disables prefetching
+   * @param bufferSize maximum number of bytes buffered per result
+   */
+  BulkResultPrefetcher(BulkConnection bulkConnection, String jobId, String batchId, String[] resultIds,
+                       int readAhead, int bufferSize) {
+    this.bulkConnection = bulkConnection;
+    this.jobId = jobId;
+    this.batchId = batchId;
+    this.resultIds = resultIds;
+    this.readAhead = readAhead;
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * Returns stream for the result with given index and schedules download of the following results.
+   *
+   * @param index result id index
+   * @return result stream
+   * @throws AsyncApiException if there is an issue opening the result stream
+   */
+  synchronized InputStream open(int index) throws AsyncApiException {
+    if (readAhead <= 0) {
+      return openResult(resultIds[index]);
+    }
+    current = index;
+    if (!prefetched.containsKey(index)) {
+      // download of the result was not started yet, because the previous result was still downloading
+      startDownload(index);
+    } else {
+      startNextDownload();
+    }
+    return prefetched.remove(index);
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    prefetched.values().forEach(ReadAheadInputStream::close);
+    prefetched.clear();
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  private InputStream openResult(String resultId) throws AsyncApiException {
+    return SalesforceConnectionManager.callWithSessionRenewal(
+      bulkConnection, () -> bulkConnection.getQueryResultStream(jobId, batchId, resultId));
+  }
+
+  /**
+   * Starts download of the result following the last started one, if that one is downloaded and the result
+   * is within the read ahead of the current result.
+   */
+  private void startNextDownload() {
+    int next = started + 1;
+    if (!closed && !downloading && next < resultIds.length && next <= current + readAhead) {
+      startDownload(next);
+    }
+  }
+
+  private void startDownload(int index) {
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat(String.format("salesforce-result-prefetch-%s-%%d", batchId))
+        .build());
+    }
+    started = index;
+    downloading = true;
+    String resultId = resultIds[index];
+    ReadAheadInputStream stream = new ReadAheadInputStream(bufferSize);
+    prefetched.put(index, stream);
+    executor.execute(() -> {
+      stream.fill(() -> openResult(resultId));
+      onDownloaded(index);
+    });
+  }
+
+  private synchronized void onDownloaded(int index) {
+    if (index == started) {
+      downloading = false;
+      startNextDownload();
+    }
+  }
+}
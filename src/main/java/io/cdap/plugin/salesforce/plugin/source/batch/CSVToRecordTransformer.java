@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.commons.csv.CSVRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transforms CSV records returned by Salesforce Bulk API into {@link StructuredRecord}.
+ * CSV header columns are bound to schema fields once per result stream,
+ * after that records are decoded by column position without building an intermediate map.
+ * Fields with constant values, for example name of the SObject the records belong to, are set directly,
+ * so the record is built once with all of its fields.
+ */
+public class CSVToRecordTransformer {
+
+  private final Schema schema;
+  private final MapToRecordTransformer.RecordPlan plan;
+  private final Map<String, ?> constantFields;
+  private int[] columnIndexes = new int[0];
+  private MapToRecordTransformer.FieldPlan[] fields = new MapToRecordTransformer.FieldPlan[0];
+
+  public CSVToRecordTransformer(Schema schema) {
+    this(schema, Collections.emptyMap());
+  }
+
+  /**
+   * @param schema record schema, including constant fields
+   * @param constantFields values of fields, which are not read from CSV and are the same for all records
+   */
+  public CSVToRecordTransformer(Schema schema, Map<String, ?> constantFields) {
+    this.schema = schema;
+    this.plan = new MapToRecordTransformer().getPlan(schema);
+    this.constantFields = constantFields;
+  }
+
+  /**
+   * Binds CSV header columns to schema fields. Columns absent in the schema or matching constant fields
+   * are skipped.
+   *
+   * @param headerMap CSV header where key is column name and value is column position
+   */
+  public void bind(Map<String, Integer> headerMap) {
+    List<Integer> boundIndexes = new ArrayList<>();
+    List<MapToRecordTransformer.FieldPlan> boundFields = new ArrayList<>();
+    for (Map.Entry<String, Integer> entry : headerMap.entrySet()) {
+      MapToRecordTransformer.FieldPlan field = plan.getField(entry.getKey());
+      if (field == null || constantFields.containsKey(field.getName())) {
+        continue;
+      }
+      boundIndexes.add(entry.getValue());
+      boundFields.add(field);
+    }
+    columnIndexes = boundIndexes.stream().mapToInt(Integer::intValue).toArray();
+    fields = boundFields.toArray(new MapToRecordTransformer.FieldPlan[0]);
+  }
+
+  public StructuredRecord transform(CSVRecord csvRecord) {
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    set(builder, csvRecord);
+    constantFields.forEach(builder::set);
+    return builder.build();
+  }
+
+  /**
+   * Sets values of bound columns to the record builder.
+   * Allows to build a single record from CSV records of several results with different columns.
+   *
+   * @param builder record builder
+   * @param csvRecord CSV record
+   */
+  public void set(StructuredRecord.Builder builder, CSVRecord csvRecord) {
+    int size = csvRecord.size();
+    for (int i = 0; i < fields.length; i++) {
+      int columnIndex = columnIndexes[i];
+      if (columnIndex >= size) {
+        // inconsistent record, value is absent same as in CSVRecord#toMap()
+        continue;
+      }
+      MapToRecordTransformer.FieldPlan field = fields[i];
+      builder.set(field.getName(), field.convert(csvRecord.get(columnIndex)));
+    }
+  }
+}
@@ -22,91 +22,121 @@ import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.salesforce.SalesforceSchemaUtil;
 import io.cdap.plugin.salesforce.SalesforceTransformUtil;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Transforms Map of records where key is schema and value is field value
  * into {@link StructuredRecord}.
+ * <p/>
+ * Conversion is compiled once per schema into a {@link RecordPlan}: field names are normalized and resolved once
+ * per distinct map key, and nullability and type of each field are resolved into a {@link ValueConverter}.
  */
 public class MapToRecordTransformer {
 
+  private final Map<Schema, RecordPlan> plans = new ConcurrentHashMap<>();
+  private final Map<String, ?> constantFields;
+
+  public MapToRecordTransformer() {
+    this(Collections.emptyMap());
+  }
+
+  /**
+   * @param constantFields values of fields, which are not present in the transformed maps and are the same
+   *                       for all records, for example name of the SObject the records belong to
+   */
+  public MapToRecordTransformer(Map<String, ?> constantFields) {
+    this.constantFields = constantFields;
+  }
+
   public StructuredRecord transform(Schema schema, Map<String, ?> record) {
-    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-    transformRecord(schema, record, builder);
-    return builder.build();
+    return getPlan(schema).transform(record, constantFields);
   }
 
-  private void transformRecord(Schema schema, Map<String, ?> record, StructuredRecord.Builder builder) {
-    for (Map.Entry<String, ?> entry : record.entrySet()) {
-      String fieldName = SalesforceSchemaUtil.normalizeAvroName(entry.getKey());
-      Schema.Field field = schema.getField(fieldName);
-      if (field == null) {
-        continue;
-      }
-      builder.set(fieldName, convertValue(field.getName(), entry.getValue(), field.getSchema()));
+  /**
+   * Returns conversion plan compiled for the given record schema.
+   *
+   * @param schema record schema
+   * @return conversion plan
+   */
+  RecordPlan getPlan(Schema schema) {
+    RecordPlan plan = plans.get(schema);
+    if (plan == null) {
+      plan = new RecordPlan(schema);
+      plans.putIfAbsent(schema, plan);
     }
+    return plan;
   }
 
-  private Object convertValue(String fieldName, Object value, Schema fieldSchema) {
+  private static ValueConverter compile(String fieldName, Schema fieldSchema) {
     if (fieldSchema.isNullable()) {
-      return value == null ? null : convertValue(fieldName, value, fieldSchema.getNonNullable());
+      ValueConverter converter = compile(fieldName, fieldSchema.getNonNullable());
+      return value -> value == null ? null : converter.convert(value);
     }
 
-    if (value == null) {
-      throw new RuntimeException(
+    ValueConverter converter = compileNonNullable(fieldName, fieldSchema);
+    return value -> {
+      if (value == null) {
+        throw new RuntimeException(
           String.format("Found null value for non nullable field %s", fieldName));
-    }
-
-    Schema.Type fieldSchemaType = fieldSchema.getType();
-
-    // empty string is considered null in csv
-    if (value instanceof String && Strings.isNullOrEmpty((String) value)) {
-      return null;
-    }
+      }
+      // empty string is considered null in csv
+      if (value instanceof String && Strings.isNullOrEmpty((String) value)) {
+        return null;
+      }
+      return converter.convert(value);
+    };
+  }
 
+  private static ValueConverter compileNonNullable(String fieldName, Schema fieldSchema) {
     Schema.LogicalType logicalType = fieldSchema.getLogicalType();
-    if (fieldSchema.getLogicalType() != null) {
-      return SalesforceTransformUtil.transformLogicalType(fieldName, logicalType, String.valueOf(value));
+    if (logicalType != null) {
+      return value -> SalesforceTransformUtil.transformLogicalType(fieldName, logicalType, String.valueOf(value));
     }
 
-    switch (fieldSchemaType) {
+    switch (fieldSchema.getType()) {
       case NULL:
-        return null;
+        return value -> null;
       case BOOLEAN:
-        return Boolean.parseBoolean(castValue(value, fieldName, String.class));
+        return value -> Boolean.parseBoolean(castValue(value, fieldName, String.class));
       case INT:
-        return Integer.parseInt(castValue(value, fieldName, String.class));
+        return value -> Integer.parseInt(castValue(value, fieldName, String.class));
       case LONG:
-        return Long.parseLong(castValue(value, fieldName, String.class));
+        return value -> Long.parseLong(castValue(value, fieldName, String.class));
       case FLOAT:
-        return Float.parseFloat(castValue(value, fieldName, String.class));
+        return value -> Float.parseFloat(castValue(value, fieldName, String.class));
       case DOUBLE:
-        return Double.parseDouble(castValue(value, fieldName, String.class));
+        return value -> Double.parseDouble(castValue(value, fieldName, String.class));
       case STRING:
-        return value;
+        return value -> value;
       case RECORD:
-        Map<String, String> recordValues = castGeneric(castValue(value, fieldName, Map.class));
-        StructuredRecord.Builder nestedBuilder = StructuredRecord.builder(fieldSchema);
-        Objects.requireNonNull(fieldSchema.getFields()).forEach(
-          field -> transformRecord(fieldSchema, recordValues, nestedBuilder));
-        return nestedBuilder.build();
+        RecordPlan nestedPlan = new RecordPlan(fieldSchema);
+        return value -> nestedPlan.transform(castGeneric(castValue(value, fieldName, Map.class)));
       case ARRAY:
-        List<Map<String, String>> list = castGeneric(castValue(value, fieldName, List.class));
         Schema componentSchema = Objects.requireNonNull(fieldSchema.getComponentSchema());
-        return list.stream()
-          .map(map -> convertValue(fieldName, map, componentSchema))
-          .collect(Collectors.toList());
+        ValueConverter componentConverter = compile(fieldName, componentSchema);
+        return value -> {
+          List<?> list = castValue(value, fieldName, List.class);
+          List<Object> result = new ArrayList<>(list.size());
+          for (Object element : list) {
+            result.add(componentConverter.convert(element));
+          }
+          return result;
+        };
+      default:
+        return value -> {
+          throw new UnexpectedFormatException(
+            String.format("Unsupported schema type: '%s' for field: '%s'. Supported types are 'boolean, int, long, "
+                            + "float, double, string, record, array'.", fieldSchema, fieldName));
+        };
     }
-
-    throw new UnexpectedFormatException(
-      String.format("Unsupported schema type: '%s' for field: '%s'. Supported types are 'boolean, int, long, float,"
-                      + "double, string, record, array'.", fieldSchema, fieldName));
   }
 
-  private <T> T castValue(Object value, String fieldName, Class<T> clazz) {
+  private static <T> T castValue(Object value, String fieldName, Class<T> clazz) {
     if (clazz.isAssignableFrom(value.getClass())) {
       return clazz.cast(value);
     }
@@ -115,7 +145,95 @@ public class MapToRecordTransformer {
   }
 
   @SuppressWarnings("unchecked")
-  private <T> T castGeneric(Object value) {
+  private static <T> T castGeneric(Object value) {
     return (T) value;
   }
+
+  /**
+   * Converts single field value into the value expected by the field schema.
+   */
+  @FunctionalInterface
+  interface ValueConverter {
+    Object convert(Object value);
+  }
+
+  /**
+   * Schema field with compiled value converter.
+   */
+  static final class FieldPlan {
+    private final String name;
+    private final ValueConverter converter;
+
+    private FieldPlan(String name, ValueConverter converter) {
+      this.name = name;
+      this.converter = converter;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    Object convert(Object value) {
+      return converter.convert(value);
+    }
+  }
+
+  /**
+   * Conversion plan compiled for a record schema.
+   */
+  static final class RecordPlan {
+    private static final FieldPlan ABSENT = new FieldPlan(null, null);
+
+    private final Schema schema;
+    private final Map<String, FieldPlan> fields;
+    // map keys resolved to schema fields, keys which are not present in schema are mapped to ABSENT
+    private final Map<String, FieldPlan> resolvedKeys = new ConcurrentHashMap<>();
+
+    private RecordPlan(Schema schema) {
+      this.schema = schema;
+      List<Schema.Field> schemaFields = Objects.requireNonNull(schema.getFields());
+      this.fields = new ConcurrentHashMap<>(schemaFields.size());
+      for (Schema.Field field : schemaFields) {
+        FieldPlan fieldPlan = new FieldPlan(field.getName(), compile(field.getName(), field.getSchema()));
+        fields.put(field.getName(), fieldPlan);
+        resolvedKeys.put(field.getName(), fieldPlan);
+      }
+    }
+
+    /**
+     * Resolves field for the given map key. Key is normalized to avro name only the first time it is seen.
+     *
+     * @param key map key
+     * @return field plan or null if field is not present in schema
+     */
+    FieldPlan getField(String key) {
+      FieldPlan fieldPlan = resolvedKeys.get(key);
+      if (fieldPlan == null) {
+        fieldPlan = fields.getOrDefault(SalesforceSchemaUtil.normalizeAvroName(key), ABSENT);
+        resolvedKeys.put(key, fieldPlan);
+      }
+      return fieldPlan == ABSENT ? null : fieldPlan;
+    }
+
+    StructuredRecord transform(Map<String, ?> record) {
+      return transform(record, Collections.emptyMap());
+    }
+
+    /**
+     * @param record field values to convert
+     * @param constantFields values of fields, which are set as is
+     */
+    StructuredRecord transform(Map<String, ?> record, Map<String, ?> constantFields) {
+      StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+      for (Map.Entry<String, ?> entry : record.entrySet()) {
+        FieldPlan field = getField(entry.getKey());
+        if (field == null) {
+          continue;
+        }
+        builder.set(field.getName(), field.convert(entry.getValue()));
+      }
+      constantFields.forEach(builder::set);
+      return builder.build();
+    }
+  }
 }
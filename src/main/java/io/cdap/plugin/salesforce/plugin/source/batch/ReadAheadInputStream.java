@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InputStream backed by a bounded buffer, which is filled by a background thread from the source stream.
+ * The producer blocks once the buffer is full, so no more than the buffer size is held in memory.
+ * Failures of the producer are rethrown to the reader once buffered data is consumed.
+ */
+class ReadAheadInputStream extends InputStream {
+
+  static final int CHUNK_SIZE = 64 * 1024;
+
+  private static final byte[] END = new byte[0];
+  private static final long OFFER_TIMEOUT_MS = 100;
+
+  private final BlockingQueue<byte[]> chunks;
+  private volatile boolean closed;
+  private volatile Exception failure;
+
+  private byte[] current;
+  private int position;
+
+  /**
+   * @param bufferSize maximum number of bytes buffered ahead of the reader
+   */
+  ReadAheadInputStream(int bufferSize) {
+    this.chunks = new ArrayBlockingQueue<>(Math.max(1, bufferSize / CHUNK_SIZE));
+  }
+
+  /**
+   * Copies the source stream into the buffer, blocking while the buffer is full.
+   * Called from the background thread. The source stream is always closed.
+   *
+   * @param source stream to copy
+   */
+  void fill(SourceStreamSupplier source) {
+    try (InputStream in = source.open()) {
+      while (!closed) {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int length = readChunk(in, chunk);
+        if (length > 0 && !put(length == CHUNK_SIZE ? chunk : Arrays.copyOf(chunk, length))) {
+          return;
+        }
+        if (length < CHUNK_SIZE) {
+          break;
+        }
+      }
+    } catch (Exception e) {
+      failure = e;
+    }
+    put(END);
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureAvailable()) {
+      return -1;
+    }
+    return current[position++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!ensureAvailable()) {
+      return -1;
+    }
+    int count = Math.min(len, current.length - position);
+    System.arraycopy(current, position, b, off, count);
+    position += count;
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return current == null || current == END ? 0 : current.length - position;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    chunks.clear();
+  }
+
+  private boolean ensureAvailable() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    while (current != END && (current == null || position == current.length)) {
+      try {
+        current = chunks.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for Salesforce result data");
+      }
+      position = 0;
+    }
+    if (current == END) {
+      if (failure != null) {
+        throw failure instanceof IOException
+          ? (IOException) failure : new IOException("Failed to read Salesforce result data", failure);
+      }
+      return false;
+    }
+    return true;
+  }
+
+  private boolean put(byte[] chunk) {
+    try {
+      while (!closed) {
+        if (chunks.offer(chunk, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failure = e;
+    }
+    return false;
+  }
+
+  private static int readChunk(InputStream in, byte[] chunk) throws IOException {
+    int length = 0;
+    while (length < chunk.length) {
+      int count = in.read(chunk, length, chunk.length - length);
+      if (count < 0) {
+        break;
+      }
+      length += count;
+    }
+    return length;
+  }
+
+  /**
+   * Opens the source stream in the background thread.
+   */
+  @FunctionalInterface
+  interface SourceStreamSupplier {
+    InputStream open() throws Exception;
+  }
+}
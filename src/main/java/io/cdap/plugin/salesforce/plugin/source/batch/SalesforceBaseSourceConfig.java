@@ -15,6 +15,7 @@
  */
 package io.cdap.plugin.salesforce.plugin.source.batch;
 
+import com.google.common.base.Strings;
 import com.sforce.async.OperationEnum;
 import com.sforce.ws.ConnectionException;
 import io.cdap.cdap.api.annotation.Description;
@@ -83,6 +84,50 @@ public abstract class SalesforceBaseSourceConfig extends BaseSalesforceConfig {
   @Nullable
   private String operation;
 
+  @Name(SalesforceSourceConstants.PROPERTY_RESULT_READ_AHEAD)
+  @Description("Number of Bulk API batch results to download in the background while the current result is " +
+    "being read. Allowed values are between 0 and 2, 0 disables read ahead. Default is 1.")
+  @Nullable
+  @Macro
+  private Integer resultReadAhead;
+
+  @Name(SalesforceSourceConstants.PROPERTY_WIDE_OBJECT_CONCURRENCY)
+  @Description("Maximum number of concurrent SOAP API calls made by each task to retrieve records of objects, " +
+    "which query is too long for Bulk API. Allowed values are between 1 and 16. Default is 4.")
+  @Nullable
+  @Macro
+  private Integer wideObjectConcurrency;
+
+  @Name(SalesforceSourceConstants.PROPERTY_QUERY_BATCH_SIZE)
+  @Description("Number of records returned by each SOAP API call for queries, which cannot be executed by " +
+    "Bulk API, for example queries with aggregate functions or OFFSET. Allowed values are between 200 and 2000. " +
+    "Default is 500.")
+  @Nullable
+  @Macro
+  private Integer queryBatchSize;
+
+  @Name(SalesforceSourceConstants.PROPERTY_BULK_API_VERSION)
+  @Description("Version of Bulk API used to execute queries, either 1.0 or 2.0. Queries, which cannot be executed " +
+    "by Bulk API 2.0, for example wide queries, are executed by Bulk API 1.0. Default is 1.0.")
+  @Nullable
+  @Macro
+  private String bulkApiVersion;
+
+  @Name(SalesforceSourceConstants.PROPERTY_BULK_V2_PAGE_SIZE)
+  @Description("Maximum number of records in a page of Bulk API 2.0 query results, each page is read by " +
+    "a separate split. Allowed values are between 1000 and 1000000. Default is 100000.")
+  @Nullable
+  @Macro
+  private Integer bulkV2PageSize;
+
+  @Name(SalesforceSourceConstants.PROPERTY_RANGE_PARTITIONS)
+  @Description("Number of ranges of CreatedDate, SystemModstamp or LastModifiedDate, into which a query is split " +
+    "when PK chunking is not used. Each range is submitted as a separate Bulk API batch, so ranges are read " +
+    "in parallel. Allowed values are between 1 and 100. Default is 1, which disables splitting.")
+  @Nullable
+  @Macro
+  private Integer rangePartitions;
+
   private static final String DEFAULT_OPERATION = "query";
 
   protected SalesforceBaseSourceConfig(String referenceName,
@@ -106,6 +151,17 @@ public abstract class SalesforceBaseSourceConfig extends BaseSalesforceConfig {
     this.operation = operation;
   }
 
+  @Override
+  public void validate(FailureCollector collector) {
+    super.validate(collector);
+    validateResultReadAhead(collector);
+    validateWideObjectConcurrency(collector);
+    validateQueryBatchSize(collector);
+    validateBulkApiVersion(collector);
+    validateBulkV2PageSize(collector);
+    validateRangePartitions(collector);
+  }
+
   public Map<ChronoUnit, Integer> getDuration() {
     return extractRangeValue(SalesforceSourceConstants.PROPERTY_DURATION, duration);
   }
@@ -207,6 +263,99 @@ public abstract class SalesforceBaseSourceConfig extends BaseSalesforceConfig {
     return filterDescriptor;
   }
 
+  private void validateResultReadAhead(FailureCollector collector) {
+    if (containsMacro(SalesforceSourceConstants.PROPERTY_RESULT_READ_AHEAD)) {
+      return;
+    }
+    int readAhead = getResultReadAhead();
+    if (readAhead < SalesforceSourceConstants.MIN_RESULT_READ_AHEAD
+      || readAhead > SalesforceSourceConstants.MAX_RESULT_READ_AHEAD) {
+      collector.addFailure(
+        String.format("Result read ahead '%d' is out of range.", readAhead),
+        String.format("Allowed values are between the range of '%d' and '%d'.",
+                      SalesforceSourceConstants.MIN_RESULT_READ_AHEAD, SalesforceSourceConstants.MAX_RESULT_READ_AHEAD))
+        .withConfigProperty(SalesforceSourceConstants.PROPERTY_RESULT_READ_AHEAD);
+    }
+  }
+
+  private void validateWideObjectConcurrency(FailureCollector collector) {
+    if (containsMacro(SalesforceSourceConstants.PROPERTY_WIDE_OBJECT_CONCURRENCY)) {
+      return;
+    }
+    int concurrency = getWideObjectConcurrency();
+    if (concurrency < SalesforceSourceConstants.MIN_WIDE_OBJECT_CONCURRENCY
+      || concurrency > SalesforceSourceConstants.MAX_WIDE_OBJECT_CONCURRENCY) {
+      collector.addFailure(
+        String.format("Wide object concurrency '%d' is out of range.", concurrency),
+        String.format("Allowed values are between the range of '%d' and '%d'.",
+                      SalesforceSourceConstants.MIN_WIDE_OBJECT_CONCURRENCY,
+                      SalesforceSourceConstants.MAX_WIDE_OBJECT_CONCURRENCY))
+        .withConfigProperty(SalesforceSourceConstants.PROPERTY_WIDE_OBJECT_CONCURRENCY);
+    }
+  }
+
+  private void validateQueryBatchSize(FailureCollector collector) {
+    if (containsMacro(SalesforceSourceConstants.PROPERTY_QUERY_BATCH_SIZE)) {
+      return;
+    }
+    int batchSize = getQueryBatchSize();
+    if (batchSize < SalesforceSourceConstants.MIN_QUERY_BATCH_SIZE
+      || batchSize > SalesforceSourceConstants.MAX_QUERY_BATCH_SIZE) {
+      collector.addFailure(
+        String.format("Query batch size '%d' is out of range.", batchSize),
+        String.format("Allowed values are between the range of '%d' and '%d'.",
+                      SalesforceSourceConstants.MIN_QUERY_BATCH_SIZE, SalesforceSourceConstants.MAX_QUERY_BATCH_SIZE))
+        .withConfigProperty(SalesforceSourceConstants.PROPERTY_QUERY_BATCH_SIZE);
+    }
+  }
+
+  private void validateBulkApiVersion(FailureCollector collector) {
+    if (containsMacro(SalesforceSourceConstants.PROPERTY_BULK_API_VERSION)) {
+      return;
+    }
+    String version = getBulkApiVersion();
+    if (!SalesforceConstants.BULK_API_VERSION_1.equals(version)
+      && !SalesforceConstants.BULK_API_VERSION_2.equals(version)) {
+      collector.addFailure(
+        String.format("Unsupported Bulk API version '%s'.", version),
+        String.format("Supported versions are '%s' and '%s'.",
+                      SalesforceConstants.BULK_API_VERSION_1, SalesforceConstants.BULK_API_VERSION_2))
+        .withConfigProperty(SalesforceSourceConstants.PROPERTY_BULK_API_VERSION);
+    }
+  }
+
+  private void validateBulkV2PageSize(FailureCollector collector) {
+    if (containsMacro(SalesforceSourceConstants.PROPERTY_BULK_V2_PAGE_SIZE)) {
+      return;
+    }
+    int pageSize = getBulkV2PageSize();
+    if (pageSize < SalesforceSourceConstants.MIN_BULK_V2_PAGE_SIZE
+      || pageSize > SalesforceSourceConstants.MAX_BULK_V2_PAGE_SIZE) {
+      collector.addFailure(
+        String.format("Bulk API 2.0 page size '%d' is out of range.", pageSize),
+        String.format("Allowed values are between the range of '%d' and '%d'.",
+                      SalesforceSourceConstants.MIN_BULK_V2_PAGE_SIZE,
+                      SalesforceSourceConstants.MAX_BULK_V2_PAGE_SIZE))
+        .withConfigProperty(SalesforceSourceConstants.PROPERTY_BULK_V2_PAGE_SIZE);
+    }
+  }
+
+  private void validateRangePartitions(FailureCollector collector) {
+    if (containsMacro(SalesforceSourceConstants.PROPERTY_RANGE_PARTITIONS)) {
+      return;
+    }
+    int partitions = getRangePartitions();
+    if (partitions < SalesforceSourceConstants.MIN_RANGE_PARTITIONS
+      || partitions > SalesforceSourceConstants.MAX_RANGE_PARTITIONS) {
+      collector.addFailure(
+        String.format("Range partitions '%d' is out of range.", partitions),
+        String.format("Allowed values are between the range of '%d' and '%d'.",
+                      SalesforceSourceConstants.MIN_RANGE_PARTITIONS,
+                      SalesforceSourceConstants.MAX_RANGE_PARTITIONS))
+        .withConfigProperty(SalesforceSourceConstants.PROPERTY_RANGE_PARTITIONS);
+    }
+  }
+
   private void validateIntervalFilterProperty(String propertyName, String datetime) {
     if (containsMacro(propertyName)) {
       return;
@@ -300,4 +449,36 @@ public abstract class SalesforceBaseSourceConfig extends BaseSalesforceConfig {
   public String getOperation() {
     return operation == null ? DEFAULT_OPERATION : operation;
   }
+
+  public int getResultReadAhead() {
+    return resultReadAhead == null ? SalesforceSourceConstants.DEFAULT_RESULT_READ_AHEAD : resultReadAhead;
+  }
+
+  public int getWideObjectConcurrency() {
+    return wideObjectConcurrency == null
+      ? SalesforceSourceConstants.DEFAULT_WIDE_OBJECT_CONCURRENCY : wideObjectConcurrency;
+  }
+
+  public int getQueryBatchSize() {
+    return queryBatchSize == null ? SalesforceSourceConstants.DEFAULT_QUERY_BATCH_SIZE : queryBatchSize;
+  }
+
+  public String getBulkApiVersion() {
+    return Strings.isNullOrEmpty(bulkApiVersion) ? SalesforceConstants.BULK_API_VERSION_1 : bulkApiVersion;
+  }
+
+  /**
+   * @return true if queries are executed by Bulk API 2.0
+   */
+  public boolean isBulkV2() {
+    return SalesforceConstants.BULK_API_VERSION_2.equals(getBulkApiVersion());
+  }
+
+  public int getBulkV2PageSize() {
+    return bulkV2PageSize == null ? SalesforceSourceConstants.DEFAULT_BULK_V2_PAGE_SIZE : bulkV2PageSize;
+  }
+
+  public int getRangePartitions() {
+    return rangePartitions == null ? SalesforceSourceConstants.DEFAULT_RANGE_PARTITIONS : rangePartitions;
+  }
 }
@@ -29,10 +29,10 @@ import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
 import io.cdap.cdap.etl.api.StageConfigurer;
 import io.cdap.cdap.etl.api.action.SettableArguments;
-import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.api.batch.BatchSource;
 import io.cdap.cdap.etl.api.batch.BatchSourceContext;
 import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.bulkv2.BulkV2Connection;
 import io.cdap.plugin.salesforce.plugin.source.batch.util.SalesforceSplitUtil;
 
 import java.util.ArrayList;
@@ -52,15 +52,15 @@ import java.util.stream.Collectors;
 @Description("Reads multiple SObjects in Salesforce. "
   + "Outputs one record for each row in each SObject, with the SObject name as a record field. "
   + "Also sets a pipeline argument for each SObject read, which contains its schema.")
-public class SalesforceBatchMultiSource extends BatchSource<Schema, Map<String, String>, StructuredRecord> {
+public class SalesforceBatchMultiSource extends BatchSource<Schema, StructuredRecord, StructuredRecord> {
 
   public static final String NAME = "SalesforceMultiObjects";
 
   private static final String MULTI_SINK_PREFIX = "multisink.";
 
   private final SalesforceMultiSourceConfig config;
-  private MapToRecordTransformer transformer;
   private Set<String> jobIds = new HashSet<>();
+  private Set<String> bulkV2JobIds = new HashSet<>();
   private AuthenticatorCredentials authenticatorCredentials;
 
   public SalesforceBatchMultiSource(SalesforceMultiSourceConfig config) {
@@ -98,11 +98,18 @@ public class SalesforceBatchMultiSource extends BatchSource<Schema, Map<String,
     String sObjectNameField = config.getSObjectNameField();
     authenticatorCredentials = config.getAuthenticatorCredentials();
     BulkConnection bulkConnection = SalesforceSplitUtil.getBulkConnection(authenticatorCredentials);
+    BulkV2Connection bulkV2Connection = config.isBulkV2()
+      ? SalesforceSplitUtil.getBulkV2Connection(authenticatorCredentials) : null;
     List<SalesforceSplit> querySplits = queries.parallelStream()
-      .map(query -> SalesforceSplitUtil.getQuerySplits(query, bulkConnection, false, config.getOperation()))
+      .map(query -> bulkV2Connection != null && SalesforceSplitUtil.isBulkV2Query(query)
+        ? SalesforceSplitUtil.getBulkV2QuerySplits(query, bulkV2Connection, config.getOperation(),
+                                                   config.getBulkV2PageSize())
+        : SalesforceSplitUtil.getRangeQuerySplits(query, bulkConnection, authenticatorCredentials,
+                                                  config.getRangePartitions(), config.getOperation()))
       .flatMap(Collection::stream).collect(Collectors.toList());
     // store the jobIds so be used in onRunFinish() to close the connections
-    querySplits.parallelStream().forEach(salesforceSplit -> jobIds.add(salesforceSplit.getJobId()));
+    querySplits.forEach(
+      salesforceSplit -> (salesforceSplit.isBulkV2() ? bulkV2JobIds : jobIds).addAll(salesforceSplit.getJobIds()));
     context.setInput(Input.of(config.referenceName, new SalesforceInputFormatProvider(
       config, getSchemaWithNameField(sObjectNameField, schemas), querySplits, sObjectNameField)));
     /* TODO PLUGIN-510
@@ -120,19 +127,12 @@ public class SalesforceBatchMultiSource extends BatchSource<Schema, Map<String,
   public void onRunFinish(boolean succeeded, BatchSourceContext context) {
     super.onRunFinish(succeeded, context);
     SalesforceSplitUtil.closeJobs(jobIds, authenticatorCredentials);
+    SalesforceSplitUtil.deleteBulkV2Jobs(bulkV2JobIds, authenticatorCredentials);
   }
 
   @Override
-  public void initialize(BatchRuntimeContext context) throws Exception {
-    super.initialize(context);
-    this.transformer = new MapToRecordTransformer();
-  }
-
-  @Override
-  public void transform(KeyValue<Schema, Map<String, String>> input,
-                        Emitter<StructuredRecord> emitter) throws Exception {
-    StructuredRecord record = transformer.transform(input.getKey(), input.getValue());
-    emitter.emit(record);
+  public void transform(KeyValue<Schema, StructuredRecord> input, Emitter<StructuredRecord> emitter) {
+    emitter.emit(input.getValue());
   }
 
   /**
@@ -20,6 +20,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.sforce.async.BulkConnection;
+import com.sforce.soap.partner.PartnerConnection;
 import com.sforce.ws.ConnectionException;
 import io.cdap.cdap.api.annotation.Description;
 import io.cdap.cdap.api.annotation.Name;
@@ -31,20 +32,22 @@ import io.cdap.cdap.api.dataset.lib.KeyValue;
 import io.cdap.cdap.etl.api.Emitter;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
-import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.api.batch.BatchSource;
 import io.cdap.cdap.etl.api.batch.BatchSourceContext;
 import io.cdap.plugin.common.LineageRecorder;
 import io.cdap.plugin.salesforce.SObjectDescriptor;
+import io.cdap.plugin.salesforce.SalesforceConnectionUtil;
 import io.cdap.plugin.salesforce.SalesforceSchemaUtil;
 import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.parser.SalesforceQueryParser;
 import io.cdap.plugin.salesforce.plugin.source.batch.util.SalesforceSourceConstants;
 import io.cdap.plugin.salesforce.plugin.source.batch.util.SalesforceSplitUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -55,14 +58,16 @@ import java.util.stream.Collectors;
 @Plugin(type = BatchSource.PLUGIN_TYPE)
 @Name(SalesforceBatchSource.NAME)
 @Description("Read data from Salesforce.")
-public class SalesforceBatchSource extends BatchSource<Schema, Map<String, String>, StructuredRecord> {
+public class SalesforceBatchSource extends BatchSource<Schema, StructuredRecord, StructuredRecord> {
 
   public static final String NAME = "Salesforce";
 
+  private static final Logger LOG = LoggerFactory.getLogger(SalesforceBatchSource.class);
+
   private final SalesforceSourceConfig config;
   private Schema schema;
-  private MapToRecordTransformer transformer;
   private Set<String> jobIds = new HashSet<>();
+  private Set<String> bulkV2JobIds = new HashSet<>();
   private AuthenticatorCredentials authenticatorCredentials;
 
   public SalesforceBatchSource(SalesforceSourceConfig config) {
@@ -113,11 +118,24 @@ public class SalesforceBatchSource extends BatchSource<Schema, Map<String, Strin
     String query = config.getQuery(context.getLogicalStartTime());
     String sObjectName = SObjectDescriptor.fromQuery(query).getName();
     authenticatorCredentials = config.getAuthenticatorCredentials();
+    if (config.isBulkV2() && SalesforceSplitUtil.isBulkV2Query(query)) {
+      List<SalesforceSplit> querySplits = SalesforceSplitUtil.getBulkV2QuerySplits(
+        query, SalesforceSplitUtil.getBulkV2Connection(authenticatorCredentials), config.getOperation(),
+        config.getBulkV2PageSize());
+      querySplits.forEach(salesforceSplit -> bulkV2JobIds.addAll(salesforceSplit.getJobIds()));
+      context.setInput(Input.of(config.referenceName, new SalesforceInputFormatProvider(
+        config, ImmutableMap.of(sObjectName, schema.toString()), querySplits, null)));
+      return;
+    }
     BulkConnection bulkConnection = SalesforceSplitUtil.getBulkConnection(authenticatorCredentials);
     boolean enablePKChunk = config.getEnablePKChunk();
+    int chunkSize = config.getChunkSize();
+    if (config.isAutoPKChunk()) {
+      chunkSize = getAutoChunkSize(query, sObjectName);
+      enablePKChunk = chunkSize > 0;
+    }
     if (enablePKChunk) {
       String parent = config.getParent();
-      int chunkSize = config.getChunkSize();
       List<String> chunkHeaderValues = new ArrayList<>();
       chunkHeaderValues.add(String.format(SalesforceSourceConstants.HEADER_VALUE_PK_CHUNK, chunkSize));
       if (!Strings.isNullOrEmpty(parent)) {
@@ -125,30 +143,53 @@ public class SalesforceBatchSource extends BatchSource<Schema, Map<String, Strin
       }
       bulkConnection.addHeader(SalesforceSourceConstants.HEADER_ENABLE_PK_CHUNK, String.join(";", chunkHeaderValues));
     }
-    List<SalesforceSplit> querySplits = SalesforceSplitUtil.getQuerySplits(query, bulkConnection,
-            enablePKChunk, config.getOperation());
-    querySplits.parallelStream().forEach(salesforceSplit -> jobIds.add(salesforceSplit.getJobId()));
+    List<SalesforceSplit> querySplits = enablePKChunk
+      ? SalesforceSplitUtil.getQuerySplits(query, bulkConnection, true, config.getOperation())
+      : SalesforceSplitUtil.getRangeQuerySplits(query, bulkConnection, authenticatorCredentials,
+                                                config.getRangePartitions(), config.getOperation());
+    querySplits.forEach(salesforceSplit -> jobIds.addAll(salesforceSplit.getJobIds()));
     context.setInput(Input.of(config.referenceName, new SalesforceInputFormatProvider(
     config, ImmutableMap.of(sObjectName, schema.toString()), querySplits, null)));
   }
 
-  @Override
-  public void initialize(BatchRuntimeContext context) throws Exception {
-    super.initialize(context);
-    this.transformer = new MapToRecordTransformer();
+  /**
+   * Counts records of the query and chooses PK chunk size for them, see
+   * {@link SalesforceSplitUtil#getAdaptiveChunkSize}. If records cannot be counted, configured PK chunking is used.
+   *
+   * @return chunk size, or 0 if PK chunking is not needed or not supported for the query
+   */
+  private int getAutoChunkSize(String query, String sObjectName) {
+    if (SalesforceQueryParser.isRestrictedPKQuery(query)) {
+      return 0;
+    }
+    String parent = config.getParent();
+    try {
+      PartnerConnection partnerConnection = SalesforceConnectionUtil.getPartnerConnection(authenticatorCredentials);
+      if (!SalesforceSplitUtil.isPKChunkSupported(partnerConnection,
+                                                  Strings.isNullOrEmpty(parent) ? sObjectName : parent)) {
+        LOG.info("PK chunking is not supported for SObject '{}'", sObjectName);
+        return 0;
+      }
+      long recordCount = SalesforceSplitUtil.getRecordCount(query, partnerConnection);
+      int chunkSize = SalesforceSplitUtil.getAdaptiveChunkSize(recordCount, config.getPKChunkTargetSplits());
+      LOG.info("Query of SObject '{}' returns {} records, PK chunk size: {}", sObjectName, recordCount, chunkSize);
+      return chunkSize;
+    } catch (ConnectionException e) {
+      LOG.warn("Failed to count records of SObject '{}', using configured PK chunking", sObjectName, e);
+      return config.getEnablePKChunk() ? config.getChunkSize() : 0;
+    }
   }
 
   @Override
   public void onRunFinish(boolean succeeded, BatchSourceContext context) {
     super.onRunFinish(succeeded, context);
     SalesforceSplitUtil.closeJobs(jobIds, authenticatorCredentials);
+    SalesforceSplitUtil.deleteBulkV2Jobs(bulkV2JobIds, authenticatorCredentials);
   }
 
   @Override
-  public void transform(KeyValue<Schema, Map<String, String>> input,
-                        Emitter<StructuredRecord> emitter) throws Exception {
-    StructuredRecord record = transformer.transform(input.getKey(), input.getValue());
-    emitter.emit(record);
+  public void transform(KeyValue<Schema, StructuredRecord> input, Emitter<StructuredRecord> emitter) {
+    emitter.emit(input.getValue());
   }
 
   /**
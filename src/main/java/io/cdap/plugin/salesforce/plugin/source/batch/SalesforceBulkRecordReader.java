@@ -20,11 +20,12 @@ import com.sforce.async.AsyncApiException;
 import com.sforce.async.BatchInfo;
 import com.sforce.async.BatchStateEnum;
 import com.sforce.async.BulkConnection;
+import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.salesforce.BulkAPIBatchException;
 import io.cdap.plugin.salesforce.SalesforceConnectionUtil;
-import io.cdap.plugin.salesforce.authenticator.Authenticator;
 import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
 import io.cdap.plugin.salesforce.plugin.source.batch.util.SalesforceSourceConstants;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -40,35 +41,63 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 
 /**
  * RecordReader implementation, which reads a single Salesforce batch from bulk job
- * provided in InputSplit
+ * provided in InputSplit. CSV records are decoded directly into {@link StructuredRecord}.
  */
-public class SalesforceBulkRecordReader extends RecordReader<Schema, Map<String, ?>> {
+public class SalesforceBulkRecordReader extends RecordReader<Schema, StructuredRecord> {
 
   private static final Logger LOG = LoggerFactory.getLogger(SalesforceBulkRecordReader.class);
 
   private final Schema schema;
+  private final CSVToRecordTransformer transformer;
 
   private CSVParser csvParser;
   private Iterator<CSVRecord> parserIterator;
-  private Map<String, ?> value;
+  private CSVRecord csvRecord;
+  private StructuredRecord value;
   private String jobId;
   private BulkConnection bulkConnection;
   private String batchId;
   private String[] resultIds;
   private int resultIdIndex;
+  private int resultReadAhead;
+  private BulkResultPrefetcher resultPrefetcher;
+  private long expectedRecords;
+  private long recordsRead;
+  private boolean finished;
 
   public SalesforceBulkRecordReader(Schema schema) {
-    this(schema, null, null, null);
+    this(schema, Collections.emptyMap());
+  }
+
+  /**
+   * @param schema record schema, including constant fields
+   * @param constantFields values of fields, which are the same for all records, for example name of the SObject
+   */
+  public SalesforceBulkRecordReader(Schema schema, Map<String, ?> constantFields) {
+    this(schema, constantFields, null, null, null, 0);
   }
 
   @VisibleForTesting
   SalesforceBulkRecordReader(Schema schema, String jobId, String batchId, String[] resultIds) {
+    this(schema, jobId, batchId, resultIds, 0);
+  }
+
+  @VisibleForTesting
+  SalesforceBulkRecordReader(Schema schema, String jobId, String batchId, String[] resultIds, int resultReadAhead) {
+    this(schema, Collections.emptyMap(), jobId, batchId, resultIds, resultReadAhead);
+  }
+
+  SalesforceBulkRecordReader(Schema schema, Map<String, ?> constantFields, String jobId, String batchId,
+                             String[] resultIds, int resultReadAhead) {
     this.schema = schema;
+    this.resultReadAhead = resultReadAhead;
+    this.transformer = new CSVToRecordTransformer(schema, constantFields);
     this.resultIdIndex = 0;
     this.jobId = jobId;
     this.batchId = batchId;
@@ -93,10 +122,20 @@ public class SalesforceBulkRecordReader extends RecordReader<Schema, Map<String,
     LOG.debug("Executing Salesforce Batch Id: '{}' for Job Id: '{}'", batchId, jobId);
 
     Configuration conf = taskAttemptContext.getConfiguration();
+    resultReadAhead = conf.getInt(SalesforceSourceConstants.CONFIG_RESULT_READ_AHEAD,
+                                  SalesforceSourceConstants.DEFAULT_RESULT_READ_AHEAD);
     try {
       AuthenticatorCredentials credentials = SalesforceConnectionUtil.getAuthenticatorCredentials(conf);
-      bulkConnection = new BulkConnection(Authenticator.createConnectorConfig(credentials));
-      resultIds = waitForBatchResults(bulkConnection);
+      bulkConnection = SalesforceConnectionManager.getBulkConnection(credentials);
+      // split either points to a single batch result, which was already completed when splits were generated,
+      // or to the whole batch
+      String resultId = salesforceSplit.getResultId();
+      if (resultId == null) {
+        resultIds = waitForBatchResults(bulkConnection);
+      } else {
+        resultIds = new String[] {resultId};
+        expectedRecords = salesforceSplit.getLength();
+      }
       LOG.debug("Batch {} returned {} results", batchId, resultIds.length);
       setupParser();
     } catch (AsyncApiException e) {
@@ -111,12 +150,26 @@ public class SalesforceBulkRecordReader extends RecordReader<Schema, Map<String,
    */
   @Override
   public boolean nextKeyValue() throws IOException {
+    if (!nextCSVRecord()) {
+      return false;
+    }
+    value = transformer.transform(csvRecord);
+    return true;
+  }
+
+  /**
+   * Moves to the next csv record, opening the next result stream if the current one is exhausted.
+   *
+   * @return returns false if no more data to read
+   */
+  protected boolean nextCSVRecord() throws IOException {
     if (parserIterator == null) {
       return false;
     }
     while (!parserIterator.hasNext()) {
       if (resultIdIndex == resultIds.length) {
         // No more result ids to process.
+        finished = true;
         return false;
       }
       // Close CSV parser for previous result.
@@ -133,23 +186,51 @@ public class SalesforceBulkRecordReader extends RecordReader<Schema, Map<String,
       }
     }
 
-    value = parserIterator.next().toMap();
+    csvRecord = parserIterator.next();
+    recordsRead++;
     return true;
   }
 
+  protected CSVRecord getCurrentCSVRecord() {
+    return csvRecord;
+  }
+
+  /**
+   * @return number of records in the batch or batch result being read, 0 if not known
+   */
+  protected long getExpectedRecords() {
+    return expectedRecords;
+  }
+
   @Override
   public Schema getCurrentKey() {
     return schema;
   }
 
   @Override
-  public Map<String, ?> getCurrentValue() {
+  public StructuredRecord getCurrentValue() {
     return value;
   }
 
+  /**
+   * Returns progress based on the number of records read out of the number of records processed by the batch.
+   * If the number of records is not known, progress is the number of fully read results out of all batch results.
+   *
+   * @return progress between 0 and 1
+   */
   @Override
   public float getProgress() {
-    return 0.0f;
+    if (finished) {
+      return 1.0f;
+    }
+    if (expectedRecords > 0) {
+      return Math.min(1.0f, (float) recordsRead / expectedRecords);
+    }
+    if (resultIds == null || resultIds.length == 0) {
+      return 0.0f;
+    }
+    // result at resultIdIndex - 1 is being read
+    return (float) Math.max(0, resultIdIndex - 1) / resultIds.length;
   }
 
   @Override
@@ -159,6 +240,11 @@ public class SalesforceBulkRecordReader extends RecordReader<Schema, Map<String,
       csvParser.close();
       csvParser = null;
     }
+    if (resultPrefetcher != null) {
+      resultPrefetcher.close();
+      resultPrefetcher = null;
+    }
+    SalesforceConnectionManager.logMetrics();
   }
 
   @VisibleForTesting
@@ -167,7 +253,11 @@ public class SalesforceBulkRecordReader extends RecordReader<Schema, Map<String,
       throw new IllegalArgumentException(String.format("Invalid resultIdIndex %d, should be less than %d",
                                                        resultIdIndex, resultIds.length));
     }
-    InputStream queryResponseStream = bulkConnection.getQueryResultStream(jobId, batchId, resultIds[resultIdIndex]);
+    if (resultPrefetcher == null) {
+      resultPrefetcher = new BulkResultPrefetcher(bulkConnection, jobId, batchId, resultIds, resultReadAhead,
+                                                  SalesforceSourceConstants.RESULT_READ_AHEAD_BUFFER_SIZE);
+    }
+    InputStream queryResponseStream = resultPrefetcher.open(resultIdIndex);
 
     CSVFormat csvFormat = CSVFormat.DEFAULT
       .withHeader()
@@ -177,6 +267,7 @@ public class SalesforceBulkRecordReader extends RecordReader<Schema, Map<String,
     if (csvParser.getHeaderMap().isEmpty()) {
       throw new IllegalStateException("Empty response was received from Salesforce, but csv header was expected.");
     }
+    transformer.bind(csvParser.getHeaderMap());
     parserIterator = csvParser.iterator();
     resultIdIndex++;
   }
@@ -195,7 +286,8 @@ public class SalesforceBulkRecordReader extends RecordReader<Schema, Map<String,
     BatchInfo info = null;
     for (int i = 0; i < SalesforceSourceConstants.GET_BATCH_RESULTS_TRIES; i++) {
       try {
-        info = bulkConnection.getBatchInfo(jobId, batchId);
+        info = SalesforceConnectionManager.callWithSessionRenewal(
+          bulkConnection, () -> bulkConnection.getBatchInfo(jobId, batchId));
       } catch (AsyncApiException e) {
         if (i == SalesforceSourceConstants.GET_BATCH_RESULTS_TRIES - 1) {
           throw e;
@@ -205,7 +297,9 @@ public class SalesforceBulkRecordReader extends RecordReader<Schema, Map<String,
       }
 
       if (info.getState() == BatchStateEnum.Completed) {
-        return bulkConnection.getQueryResultList(jobId, batchId).getResult();
+        expectedRecords = info.getNumberRecordsProcessed();
+        return SalesforceConnectionManager.callWithSessionRenewal(
+          bulkConnection, () -> bulkConnection.getQueryResultList(jobId, batchId)).getResult();
       } else if (info.getState() == BatchStateEnum.Failed) {
         throw new BulkAPIBatchException("Batch failed", info);
       } else {
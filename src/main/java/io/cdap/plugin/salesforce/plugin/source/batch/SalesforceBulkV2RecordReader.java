@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.salesforce.SalesforceConnectionUtil;
+import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
+import io.cdap.plugin.salesforce.bulkv2.BulkV2Connection;
+import io.cdap.plugin.salesforce.bulkv2.BulkV2Exception;
+import io.cdap.plugin.salesforce.bulkv2.QueryResultPage;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * RecordReader implementation, which reads a single page of Bulk API 2.0 query job results provided in InputSplit.
+ * Page content is streamed from the response and CSV records are decoded directly into {@link StructuredRecord}.
+ */
+public class SalesforceBulkV2RecordReader extends RecordReader<Schema, StructuredRecord> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SalesforceBulkV2RecordReader.class);
+
+  private final Schema schema;
+  private final CSVToRecordTransformer transformer;
+
+  private QueryResultPage page;
+  private CSVParser csvParser;
+  private Iterator<CSVRecord> parserIterator;
+  private StructuredRecord value;
+  private long expectedRecords;
+  private long recordsRead;
+  private boolean finished;
+
+  public SalesforceBulkV2RecordReader(Schema schema) {
+    this(schema, Collections.emptyMap());
+  }
+
+  /**
+   * @param schema record schema, including constant fields
+   * @param constantFields values of fields, which are the same for all records, for example name of the SObject
+   */
+  public SalesforceBulkV2RecordReader(Schema schema, Map<String, ?> constantFields) {
+    this.schema = schema;
+    this.transformer = new CSVToRecordTransformer(schema, constantFields);
+  }
+
+  @Override
+  public void initialize(InputSplit inputSplit, TaskAttemptContext taskAttemptContext) throws IOException {
+    SalesforceSplit salesforceSplit = (SalesforceSplit) inputSplit;
+    String jobId = salesforceSplit.getJobId();
+    LOG.debug("Reading results page '{}' of Bulk API 2.0 query job '{}'", salesforceSplit.getResultLocator(), jobId);
+
+    AuthenticatorCredentials credentials =
+      SalesforceConnectionUtil.getAuthenticatorCredentials(taskAttemptContext.getConfiguration());
+    try {
+      BulkV2Connection connection = new BulkV2Connection(credentials);
+      page = connection.getQueryResults(jobId, salesforceSplit.getResultLocator(), salesforceSplit.getMaxRecords());
+    } catch (BulkV2Exception e) {
+      throw new IOException("Failed to query results", e);
+    }
+    expectedRecords = page.getNumberOfRecords() >= 0 ? page.getNumberOfRecords() : salesforceSplit.getLength();
+    setupParser(page);
+    if (parserIterator == null) {
+      LOG.debug("Results page '{}' of query job '{}' is empty", salesforceSplit.getResultLocator(), jobId);
+      expectedRecords = 0;
+    }
+  }
+
+  @Override
+  public boolean nextKeyValue() {
+    if (parserIterator == null || !parserIterator.hasNext()) {
+      finished = true;
+      return false;
+    }
+    value = transformer.transform(parserIterator.next());
+    recordsRead++;
+    return true;
+  }
+
+  @Override
+  public Schema getCurrentKey() {
+    return schema;
+  }
+
+  @Override
+  public StructuredRecord getCurrentValue() {
+    return value;
+  }
+
+  /**
+   * Returns progress based on the number of records read out of the number of records in the page.
+   *
+   * @return progress between 0 and 1
+   */
+  @Override
+  public float getProgress() {
+    if (finished) {
+      return 1.0f;
+    }
+    return expectedRecords > 0 ? Math.min(1.0f, (float) recordsRead / expectedRecords) : 0.0f;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (csvParser != null && !csvParser.isClosed()) {
+      // this also closes the page content stream
+      csvParser.close();
+      csvParser = null;
+    }
+    if (page != null) {
+      page.close();
+      page = null;
+    }
+    SalesforceConnectionManager.logMetrics();
+  }
+
+  /**
+   * Sets up parsing of the page content. Salesforce returns an empty response without CSV header for a page
+   * without records, in that case the page is read as having no records.
+   */
+  private void setupParser(QueryResultPage page) throws IOException {
+    CSVFormat csvFormat = CSVFormat.DEFAULT
+      .withHeader()
+      .withAllowMissingColumnNames(false);
+    csvParser = CSVParser.parse(page.getContent(), StandardCharsets.UTF_8, csvFormat);
+    if (csvParser.getHeaderMap().isEmpty()) {
+      return;
+    }
+    transformer.bind(csvParser.getHeaderMap());
+    parserIterator = csvParser.iterator();
+  }
+}
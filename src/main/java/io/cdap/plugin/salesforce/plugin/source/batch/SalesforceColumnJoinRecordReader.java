@@ -0,0 +1,323 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.sforce.async.AsyncApiException;
+import com.sforce.async.BulkConnection;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.salesforce.SalesforceConnectionUtil;
+import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
+import io.cdap.plugin.salesforce.plugin.source.batch.util.SalesforceSourceConstants;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.csv.QuoteMode;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RecordReader implementation for wide SOQL queries split by columns. Reads results of several Bulk API batches,
+ * each selecting Id and a part of the query columns ordered by Id, and merge joins them on Id into a single record.
+ * <p/>
+ * The batches are processed by Salesforce independently and not from a single snapshot, so the joined record is
+ * not guaranteed to be consistent: a record modified while the batches were processed can be built from columns
+ * read before and after the modification. Records absent in results of some batches, for example created or
+ * deleted while the batches were processed, are skipped and only their count is logged on close.
+ */
+public class SalesforceColumnJoinRecordReader extends RecordReader<Schema, StructuredRecord> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SalesforceColumnJoinRecordReader.class);
+
+  private static final String FIELD_ID = "Id";
+  private static final CSVFormat CSV_FORMAT = CSVFormat.DEFAULT
+    .withHeader()
+    .withQuoteMode(QuoteMode.ALL)
+    .withAllowMissingColumnNames(false);
+
+  private final Schema schema;
+  private final Map<String, ?> constantFields;
+
+  private List<ColumnCursor> cursors = Collections.emptyList();
+  private StructuredRecord value;
+  private long expectedRecords;
+  private long recordsRead;
+  private long skippedRecords;
+  private boolean finished;
+
+  public SalesforceColumnJoinRecordReader(Schema schema) {
+    this(schema, Collections.emptyMap());
+  }
+
+  /**
+   * @param schema record schema, including constant fields
+   * @param constantFields values of fields, which are the same for all records, for example name of the SObject
+   */
+  public SalesforceColumnJoinRecordReader(Schema schema, Map<String, ?> constantFields) {
+    this.schema = schema;
+    this.constantFields = constantFields;
+  }
+
+  @VisibleForTesting
+  SalesforceColumnJoinRecordReader(Schema schema, BulkConnection bulkConnection,
+                                   List<SalesforceSplit.ColumnBatch> columnBatches) throws AsyncApiException {
+    this.schema = schema;
+    this.constantFields = Collections.emptyMap();
+    this.cursors = createCursors(bulkConnection, columnBatches, 0);
+  }
+
+  /**
+   * Opens results of all column batches provided in InputSplit.
+   *
+   * @param inputSplit specifies column batches
+   * @param taskAttemptContext task context
+   */
+  @Override
+  public void initialize(InputSplit inputSplit, TaskAttemptContext taskAttemptContext) {
+    SalesforceSplit salesforceSplit = (SalesforceSplit) inputSplit;
+    expectedRecords = salesforceSplit.getLength();
+
+    Configuration conf = taskAttemptContext.getConfiguration();
+    int resultReadAhead = conf.getInt(SalesforceSourceConstants.CONFIG_RESULT_READ_AHEAD,
+                                      SalesforceSourceConstants.DEFAULT_RESULT_READ_AHEAD);
+    try {
+      AuthenticatorCredentials credentials = SalesforceConnectionUtil.getAuthenticatorCredentials(conf);
+      BulkConnection bulkConnection = SalesforceConnectionManager.getBulkConnection(credentials);
+      cursors = createCursors(bulkConnection, salesforceSplit.getColumnBatches(), resultReadAhead);
+    } catch (AsyncApiException e) {
+      throw new RuntimeException("There was issue communicating with Salesforce", e);
+    }
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException {
+    if (finished) {
+      return false;
+    }
+    for (ColumnCursor cursor : cursors) {
+      if (!cursor.next()) {
+        return finish();
+      }
+    }
+    if (!join()) {
+      return finish();
+    }
+
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (ColumnCursor cursor : cursors) {
+      cursor.set(builder);
+    }
+    constantFields.forEach(builder::set);
+    value = builder.build();
+    recordsRead++;
+    return true;
+  }
+
+  @Override
+  public Schema getCurrentKey() {
+    return schema;
+  }
+
+  @Override
+  public StructuredRecord getCurrentValue() {
+    return value;
+  }
+
+  @Override
+  public float getProgress() {
+    if (finished) {
+      return 1.0f;
+    }
+    return expectedRecords > 0 ? Math.min(1.0f, (float) recordsRead / expectedRecords) : 0.0f;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (skippedRecords > 0) {
+      LOG.warn("Skipped {} records, which were not returned by all column queries. Most likely they were created " +
+                 "or deleted while the queries were running. Column queries are not read from a single snapshot, " +
+                 "so records modified while the queries were running may mix old and new values.", skippedRecords);
+      skippedRecords = 0;
+    }
+    for (ColumnCursor cursor : cursors) {
+      cursor.close();
+    }
+    cursors = Collections.emptyList();
+    SalesforceConnectionManager.logMetrics();
+  }
+
+  /**
+   * Advances cursors until all of them point to the same Id.
+   *
+   * @return false if one of the cursors is exhausted
+   */
+  private boolean join() throws IOException {
+    while (true) {
+      String maxId = cursors.get(0).getId();
+      for (ColumnCursor cursor : cursors) {
+        if (cursor.getId().compareTo(maxId) > 0) {
+          maxId = cursor.getId();
+        }
+      }
+      boolean matched = true;
+      for (ColumnCursor cursor : cursors) {
+        while (cursor.getId().compareTo(maxId) < 0) {
+          skippedRecords++;
+          if (!cursor.next()) {
+            return false;
+          }
+        }
+        matched &= cursor.getId().equals(maxId);
+      }
+      if (matched) {
+        return true;
+      }
+    }
+  }
+
+  private boolean finish() {
+    finished = true;
+    return false;
+  }
+
+  private List<ColumnCursor> createCursors(BulkConnection bulkConnection,
+                                           List<SalesforceSplit.ColumnBatch> columnBatches,
+                                           int resultReadAhead) throws AsyncApiException {
+    List<ColumnCursor> columnCursors = new ArrayList<>(columnBatches.size());
+    for (SalesforceSplit.ColumnBatch columnBatch : columnBatches) {
+      String jobId = columnBatch.getJobId();
+      String batchId = columnBatch.getBatchId();
+      String[] resultIds = SalesforceConnectionManager.callWithSessionRenewal(
+        bulkConnection, () -> bulkConnection.getQueryResultList(jobId, batchId)).getResult();
+      LOG.debug("Column batch {} of job {} returned {} results", batchId, jobId, resultIds.length);
+      BulkResultPrefetcher prefetcher = new BulkResultPrefetcher(
+        bulkConnection, jobId, batchId, resultIds, resultReadAhead,
+        SalesforceSourceConstants.RESULT_READ_AHEAD_BUFFER_SIZE);
+      columnCursors.add(new ColumnCursor(new CSVToRecordTransformer(schema, constantFields), prefetcher,
+                                         resultIds.length));
+    }
+    return columnCursors;
+  }
+
+  /**
+   * Iterates over CSV records of all results of a single column batch.
+   */
+  private static final class ColumnCursor {
+    private final CSVToRecordTransformer transformer;
+    private final BulkResultPrefetcher prefetcher;
+    private final int resultsCount;
+
+    private int resultIndex;
+    private CSVParser csvParser;
+    private Iterator<CSVRecord> iterator = Collections.emptyIterator();
+    private int idIndex;
+    private CSVRecord record;
+    private String id;
+
+    private ColumnCursor(CSVToRecordTransformer transformer, BulkResultPrefetcher prefetcher, int resultsCount) {
+      this.transformer = transformer;
+      this.prefetcher = prefetcher;
+      this.resultsCount = resultsCount;
+    }
+
+    /**
+     * Moves to the next record, opening the next result if the current one is exhausted.
+     *
+     * @return false if no more records
+     */
+    private boolean next() throws IOException {
+      while (!iterator.hasNext()) {
+        closeParser();
+        if (resultIndex == resultsCount) {
+          return false;
+        }
+        open(resultIndex++);
+      }
+      record = iterator.next();
+      String nextId = record.get(idIndex);
+      if (id != null && nextId.compareTo(id) <= 0) {
+        throw new IllegalStateException(
+          String.format("Column query results are not ordered by Id, '%s' follows '%s'.", nextId, id));
+      }
+      id = nextId;
+      return true;
+    }
+
+    private String getId() {
+      return id;
+    }
+
+    private void set(StructuredRecord.Builder builder) {
+      transformer.set(builder, record);
+    }
+
+    private void open(int index) throws IOException {
+      InputStream resultStream;
+      try {
+        resultStream = prefetcher.open(index);
+      } catch (AsyncApiException e) {
+        throw new IOException("Failed to query results", e);
+      }
+      csvParser = CSVParser.parse(resultStream, StandardCharsets.UTF_8, CSV_FORMAT);
+      iterator = csvParser.iterator();
+
+      Map<String, Integer> headerMap = csvParser.getHeaderMap();
+      Integer idColumn = headerMap.entrySet().stream()
+        .filter(entry -> FIELD_ID.equalsIgnoreCase(entry.getKey()))
+        .map(Map.Entry::getValue)
+        .findFirst()
+        .orElse(null);
+      if (idColumn == null) {
+        // result without records contains a message instead of the header
+        if (iterator.hasNext()) {
+          throw new IllegalStateException("Column query result does not contain Id column.");
+        }
+        return;
+      }
+      idIndex = idColumn;
+      transformer.bind(headerMap);
+    }
+
+    private void closeParser() throws IOException {
+      if (csvParser != null && !csvParser.isClosed()) {
+        // this also closes the inputStream
+        csvParser.close();
+      }
+      csvParser = null;
+      iterator = Collections.emptyIterator();
+    }
+
+    private void close() throws IOException {
+      closeParser();
+      prefetcher.close();
+    }
+  }
+}
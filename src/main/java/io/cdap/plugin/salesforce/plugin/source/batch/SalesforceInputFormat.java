@@ -17,6 +17,7 @@ package io.cdap.plugin.salesforce.plugin.source.batch;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.salesforce.SObjectDescriptor;
 import io.cdap.plugin.salesforce.SalesforceQueryUtil;
@@ -33,6 +34,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -71,21 +73,35 @@ public class SalesforceInputFormat extends InputFormat {
       configuration.get(SalesforceSourceConstants.CONFIG_SCHEMAS), SCHEMAS_TYPE);
     Schema schema = Schema.parseJson(schemas.get(sObjectName));
 
-    return new SalesforceRecordReaderWrapper(sObjectName, sObjectNameField, getDelegateRecordReader(query, schema));
+    // records are built with the SObject name field set, so they do not have to be copied to add it
+    Map<String, ?> constantFields = sObjectNameField == null || schema.getField(sObjectNameField) == null
+      ? Collections.emptyMap() : Collections.singletonMap(sObjectNameField, sObjectName);
+
+    return getRecordReader(multiSplit, schema, constantFields);
   }
 
-  private RecordReader<Schema, Map<String, ?>> getDelegateRecordReader(String query, Schema schema) {
+  private RecordReader<Schema, StructuredRecord> getRecordReader(SalesforceSplit split, Schema schema,
+                                                                 Map<String, ?> constantFields) {
+    String query = split.getQuery();
+    if (split.isBulkV2()) {
+      return new SalesforceBulkV2RecordReader(schema, constantFields);
+    }
     if (SalesforceQueryParser.isRestrictedQuery(query)) {
       LOG.info("The SOQL query uses an aggregate function call or offset. "
                  + "Reads will be performed serially and not in parallel.");
-      return new SalesforceSoapRecordReader(schema, query, new SoapRecordToMapTransformer());
+      return new SalesforceSoapRecordReader(schema, constantFields, query, new SoapRecordToMapTransformer());
     }
     if (SalesforceQueryUtil.isQueryUnderLengthLimit(query)) {
-      return new SalesforceBulkRecordReader(schema);
+      return new SalesforceBulkRecordReader(schema, constantFields);
+    }
+    if (!split.getColumnBatches().isEmpty()) {
+      LOG.info("The SOQL query is a wide query. "
+                 + "Results of {} Bulk API queries will be joined on Id.", split.getColumnBatches().size());
+      return new SalesforceColumnJoinRecordReader(schema, constantFields);
     }
     LOG.info("The SOQL query is a wide query. "
                + "An additional SOAP request will be performed for each record.");
-    return new SalesforceWideRecordReader(schema, query, new SoapRecordToMapTransformer());
+    return new SalesforceWideRecordReader(schema, constantFields, query, new SoapRecordToMapTransformer());
   }
 
 }
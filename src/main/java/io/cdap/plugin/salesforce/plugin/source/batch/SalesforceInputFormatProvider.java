@@ -19,7 +19,10 @@ package io.cdap.plugin.salesforce.plugin.source.batch;
 import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
 import io.cdap.cdap.api.data.batch.InputFormatProvider;
+import io.cdap.plugin.salesforce.SalesforceConnectionUtil;
 import io.cdap.plugin.salesforce.SalesforceConstants;
+import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
 import io.cdap.plugin.salesforce.plugin.OAuthInfo;
 import io.cdap.plugin.salesforce.plugin.source.batch.util.SalesforceSourceConstants;
 
@@ -44,6 +47,10 @@ public class SalesforceInputFormatProvider implements InputFormatProvider {
     ImmutableMap.Builder<String, String> configBuilder = new ImmutableMap.Builder<String, String>()
       .put(SalesforceSourceConstants.CONFIG_SCHEMAS, GSON.toJson(schemas));
     configBuilder.put(SalesforceSourceConstants.CONFIG_QUERY_SPLITS, GSON.toJson(querySplits));
+    configBuilder.put(SalesforceSourceConstants.CONFIG_RESULT_READ_AHEAD, String.valueOf(config.getResultReadAhead()));
+    configBuilder.put(SalesforceSourceConstants.CONFIG_WIDE_OBJECT_CONCURRENCY,
+                      String.valueOf(config.getWideObjectConcurrency()));
+    configBuilder.put(SalesforceSourceConstants.CONFIG_QUERY_BATCH_SIZE, String.valueOf(config.getQueryBatchSize()));
     OAuthInfo oAuthInfo = config.getOAuthInfo();
     if (oAuthInfo != null) {
       configBuilder
@@ -56,6 +63,14 @@ public class SalesforceInputFormatProvider implements InputFormatProvider {
         .put(SalesforceConstants.CONFIG_CONSUMER_KEY, Objects.requireNonNull(config.getConsumerKey()))
         .put(SalesforceConstants.CONFIG_CONSUMER_SECRET, Objects.requireNonNull(config.getConsumerSecret()))
         .put(SalesforceConstants.CONFIG_LOGIN_URL, Objects.requireNonNull(config.getLoginUrl()));
+      // session is obtained once in the driver and shared with tasks, tasks log in only if it gets rejected
+      AuthenticatorCredentials credentials = config.getAuthenticatorCredentials();
+      OAuthInfo session = SalesforceConnectionUtil.getSession(credentials);
+      long obtainedAtMs = SalesforceConnectionManager.getSessionObtainedAtMs(credentials, session);
+      configBuilder
+        .put(SalesforceConstants.CONFIG_SESSION_ID, session.getAccessToken())
+        .put(SalesforceConstants.CONFIG_SESSION_INSTANCE_URL, session.getInstanceURL())
+        .put(SalesforceConstants.CONFIG_SESSION_OBTAINED_AT, String.valueOf(obtainedAtMs));
     }
 
     if (sObjectNameField != null) {
@@ -15,14 +15,19 @@
  */
 package io.cdap.plugin.salesforce.plugin.source.batch;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sforce.soap.partner.PartnerConnection;
 import com.sforce.soap.partner.QueryResult;
 import com.sforce.soap.partner.sobject.SObject;
 import com.sforce.ws.ConnectionException;
+import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.salesforce.SObjectDescriptor;
 import io.cdap.plugin.salesforce.SalesforceConnectionUtil;
 import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
+import io.cdap.plugin.salesforce.plugin.source.batch.util.SalesforceSourceConstants;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
@@ -31,31 +36,54 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * RecordReader implementation for SOQL queries with restricted field types (function calls, sub-query fields) or
  * GROUP BY [ROLLUP / CUBE], OFFSET clauses. Reads Salesforce query and makes SOAP calls to retrieve all values.
+ * The next page of query results is fetched in the background while the current page is being read.
  */
-public class SalesforceSoapRecordReader extends RecordReader<Schema, Map<String, ?>> {
+public class SalesforceSoapRecordReader extends RecordReader<Schema, StructuredRecord> {
 
   private static final Logger LOG = LoggerFactory.getLogger(SalesforceSoapRecordReader.class);
 
   private final Schema schema;
   private final String query;
   private final SoapRecordToMapTransformer transformer;
+  private final MapToRecordTransformer recordTransformer;
   private SObjectDescriptor sObjectDescriptor;
   private PartnerConnection partnerConnection;
   private QueryResult queryResult;
+  private ExecutorService queryMoreExecutor;
+  private Future<QueryResult> nextQueryResult;
   private SObject[] sObjects;
   private int index;
+  private long recordsRead;
 
-  private Map<String, ?> value;
+  private StructuredRecord value;
 
   public SalesforceSoapRecordReader(Schema schema, String query, SoapRecordToMapTransformer transformer) {
+    this(schema, Collections.emptyMap(), query, transformer);
+  }
+
+  /**
+   * @param schema record schema, including constant fields
+   * @param constantFields values of fields, which are the same for all records, for example name of the SObject
+   * @param query SOQL query
+   * @param transformer transforms SObjects to maps
+   */
+  public SalesforceSoapRecordReader(Schema schema, Map<String, ?> constantFields, String query,
+                                    SoapRecordToMapTransformer transformer) {
     this.schema = schema;
     this.query = query;
     this.transformer = transformer;
+    this.recordTransformer = new MapToRecordTransformer(constantFields);
   }
 
   /**
@@ -71,14 +99,29 @@ public class SalesforceSoapRecordReader extends RecordReader<Schema, Map<String,
     Configuration conf = taskAttemptContext.getConfiguration();
     try {
       AuthenticatorCredentials credentials = SalesforceConnectionUtil.getAuthenticatorCredentials(conf);
-      partnerConnection = SalesforceConnectionUtil.getPartnerConnection(credentials);
-      sObjectDescriptor = SObjectDescriptor.fromQuery(query);
-      queryResult = partnerConnection.query(query);
+      initialize(SalesforceConnectionUtil.getPartnerConnection(credentials),
+                 conf.getInt(SalesforceSourceConstants.CONFIG_QUERY_BATCH_SIZE,
+                             SalesforceSourceConstants.DEFAULT_QUERY_BATCH_SIZE));
     } catch (ConnectionException e) {
       throw new RuntimeException("Cannot create Salesforce SOAP connection", e);
     }
   }
 
+  /**
+   * Executes the query and starts fetching the next page of its results.
+   *
+   * @param partnerConnection connection used to query the records
+   * @param queryBatchSize maximum number of records returned in a page of query results
+   */
+  @VisibleForTesting
+  void initialize(PartnerConnection partnerConnection, int queryBatchSize) throws ConnectionException {
+    this.partnerConnection = partnerConnection;
+    partnerConnection.setQueryOptions(queryBatchSize);
+    sObjectDescriptor = SObjectDescriptor.fromQuery(query);
+    queryResult = partnerConnection.query(query);
+    prefetchNextPage();
+  }
+
   /**
    * Reads single record from query results.
    * Fetches more records if available.
@@ -87,17 +130,13 @@ public class SalesforceSoapRecordReader extends RecordReader<Schema, Map<String,
    */
   @Override
   public boolean nextKeyValue() throws IOException {
-    if (readValue()) {
-      return true;
+    while (!readValue()) {
+      if (queryResult.isDone()) {
+        return false;
+      }
+      queryMore();
     }
-
-    if (queryResult.isDone()) {
-      return false;
-    }
-
-    queryMore();
-    return readValue();
-
+    return true;
   }
 
   @Override
@@ -106,18 +145,35 @@ public class SalesforceSoapRecordReader extends RecordReader<Schema, Map<String,
   }
 
   @Override
-  public Map<String, ?> getCurrentValue() {
+  public StructuredRecord getCurrentValue() {
     return value;
   }
 
+  /**
+   * Returns progress based on the number of records read out of the total number of records in query result.
+   *
+   * @return progress between 0 and 1
+   */
   @Override
   public float getProgress() {
-    return 0.0f;
+    if (queryResult == null) {
+      return 0.0f;
+    }
+    int size = queryResult.getSize();
+    if (size <= 0) {
+      return queryResult.isDone() ? 1.0f : 0.0f;
+    }
+    return Math.min(1.0f, (float) recordsRead / size);
   }
 
   @Override
   public void close() {
-    // no-op
+    if (queryMoreExecutor != null) {
+      queryMoreExecutor.shutdownNow();
+      queryMoreExecutor = null;
+    }
+    nextQueryResult = null;
+    SalesforceConnectionManager.logMetrics();
   }
 
   private boolean readValue() {
@@ -126,19 +182,43 @@ public class SalesforceSoapRecordReader extends RecordReader<Schema, Map<String,
       sObjects = queryResult.getRecords();
     }
     if (sObjects.length > index) {
-      value = transformer.transformToMap(sObjects[index++], sObjectDescriptor);
+      value = recordTransformer.transform(schema, transformer.transformToMap(sObjects[index++], sObjectDescriptor));
+      recordsRead++;
       return true;
     }
     return false;
   }
 
+  /**
+   * Starts fetching the page following the current query result in the background, if there is one.
+   */
+  private void prefetchNextPage() {
+    if (queryResult.isDone()) {
+      nextQueryResult = null;
+      return;
+    }
+    if (queryMoreExecutor == null) {
+      queryMoreExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("salesforce-query-more-%d")
+        .build());
+    }
+    String queryLocator = queryResult.getQueryLocator();
+    nextQueryResult = queryMoreExecutor.submit(() -> partnerConnection.queryMore(queryLocator));
+  }
+
   private void queryMore() throws IOException {
+    String queryLocator = queryResult.getQueryLocator();
     try {
       sObjects = null;
-      queryResult = partnerConnection.queryMore(queryResult.getQueryLocator());
-    } catch (ConnectionException e) {
+      queryResult = nextQueryResult.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while fetching Salesforce query results");
+    } catch (ExecutionException e) {
       throw new IOException(String.format("Cannot create Salesforce SOAP connection for query locator: '%s'",
-                                               queryResult.getQueryLocator()), e);
+                                          queryLocator), e.getCause());
     }
+    prefetchNextPage();
   }
 }
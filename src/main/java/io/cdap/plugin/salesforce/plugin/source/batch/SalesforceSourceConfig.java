@@ -30,8 +30,8 @@ import io.cdap.plugin.salesforce.SObjectsDescribeResult;
 import io.cdap.plugin.salesforce.SalesforceConstants;
 import io.cdap.plugin.salesforce.SalesforceQueryUtil;
 import io.cdap.plugin.salesforce.SalesforceSchemaUtil;
-import io.cdap.plugin.salesforce.authenticator.Authenticator;
 import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
 import io.cdap.plugin.salesforce.parser.SOQLParsingException;
 import io.cdap.plugin.salesforce.parser.SalesforceQueryParser;
 import io.cdap.plugin.salesforce.plugin.OAuthInfo;
@@ -88,6 +88,20 @@ public class SalesforceSourceConfig extends SalesforceBaseSourceConfig {
   @Description("Parent of the Salesforce Object. This is used to enable chunking for history tables or shared objects.")
   private String parent;
 
+  @Name(SalesforceSourceConstants.PROPERTY_AUTO_PK_CHUNK)
+  @Macro
+  @Nullable
+  @Description("Counts records of the query before the run, turns PK chunking on or off and chooses chunk size, " +
+    "so records are split into about the target number of chunks. Enable PK Chunking and Chunk Size are ignored.")
+  private Boolean autoPKChunk;
+
+  @Name(SalesforceSourceConstants.PROPERTY_PK_CHUNK_TARGET_SPLITS)
+  @Macro
+  @Nullable
+  @Description("Number of chunks automatic PK chunking aims for, for example a few chunks per executor core. " +
+    "Allowed values are between 1 and 10000. Default is 64.")
+  private Integer pkChunkTargetSplits;
+
   @VisibleForTesting
   SalesforceSourceConfig(String referenceName,
                          @Nullable String consumerKey,
@@ -200,6 +214,7 @@ public class SalesforceSourceConfig extends SalesforceBaseSourceConfig {
     }
     validateSchema(collector);
     validatePKChunk(collector);
+    validatePKChunkTargetSplits(collector);
   }
 
   private void validateSchema(FailureCollector collector) {
@@ -297,6 +312,22 @@ public class SalesforceSourceConfig extends SalesforceBaseSourceConfig {
     }
   }
 
+  private void validatePKChunkTargetSplits(FailureCollector collector) {
+    if (containsMacro(SalesforceSourceConstants.PROPERTY_PK_CHUNK_TARGET_SPLITS)) {
+      return;
+    }
+    int targetSplits = getPKChunkTargetSplits();
+    if (targetSplits < SalesforceSourceConstants.MIN_PK_CHUNK_TARGET_SPLITS
+      || targetSplits > SalesforceSourceConstants.MAX_PK_CHUNK_TARGET_SPLITS) {
+      collector.addFailure(
+        String.format("PK chunk target splits '%d' is out of range.", targetSplits),
+        String.format("Allowed values are between the range of '%d' and '%d'.",
+                      SalesforceSourceConstants.MIN_PK_CHUNK_TARGET_SPLITS,
+                      SalesforceSourceConstants.MAX_PK_CHUNK_TARGET_SPLITS))
+        .withConfigProperty(SalesforceSourceConstants.PROPERTY_PK_CHUNK_TARGET_SPLITS);
+    }
+  }
+
   private void checkForPKSupportedObject(String sObject, FailureCollector collector) {
     if (canAttemptToEstablishConnection()) {
       if (!isCustomObject(sObject, collector)) {
@@ -317,10 +348,18 @@ public class SalesforceSourceConfig extends SalesforceBaseSourceConfig {
     return chunkSize == null ? SalesforceSourceConstants.DEFAULT_PK_CHUNK_SIZE : chunkSize;
   }
 
+  public boolean isAutoPKChunk() {
+    return autoPKChunk != null && autoPKChunk;
+  }
+
+  public int getPKChunkTargetSplits() {
+    return pkChunkTargetSplits == null ? SalesforceSourceConstants.DEFAULT_PK_CHUNK_TARGET_SPLITS : pkChunkTargetSplits;
+  }
+
   private boolean isCustomObject(String sObjectName, FailureCollector collector) {
     AuthenticatorCredentials credentials = this.getAuthenticatorCredentials();
     try {
-      PartnerConnection partnerConnection = new PartnerConnection(Authenticator.createConnectorConfig(credentials));
+      PartnerConnection partnerConnection = SalesforceConnectionManager.getPartnerConnection(credentials);
       return SObjectsDescribeResult.isCustomObject(partnerConnection, sObjectName);
     } catch (ConnectionException e) {
       collector.addFailure("There was issue communicating with Salesforce", null).withStacktrace(e.getStackTrace());
@@ -22,14 +22,33 @@ import org.apache.hadoop.mapreduce.InputSplit;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
- * A split used for mapreduce
+ * A split used for mapreduce. Split either covers all results of a Bulk API batch or,
+ * if result id is set, a single result of the batch.
+ * Split of a wide query may instead reference column batches, i.e. batches of queries which select
+ * different columns of the same records ordered by Id, their results are joined on Id by the reader.
+ * Split of a Bulk API 2.0 query job covers a single page of the job results, identified by the result locator.
+ * Split length is the estimated number of records in the split, or 0 if it is not known.
  */
 public class SalesforceSplit extends InputSplit implements Writable {
   private String jobId;
   private String batchId;
   private String query;
+  @Nullable
+  private String resultId;
+  private long estimatedRecords;
+  private List<ColumnBatch> columnBatches = Collections.emptyList();
+  private boolean bulkV2;
+  @Nullable
+  private String resultLocator;
+  private int maxRecords;
 
   @SuppressWarnings("unused")
   public SalesforceSplit() {
@@ -37,9 +56,49 @@ public class SalesforceSplit extends InputSplit implements Writable {
   }
 
   public SalesforceSplit(String jobId, String batchId, String query) {
+    this(jobId, batchId, query, null);
+  }
+
+  public SalesforceSplit(String jobId, String batchId, String query, @Nullable String resultId) {
+    this(jobId, batchId, query, resultId, 0);
+  }
+
+  public SalesforceSplit(String jobId, String batchId, String query, @Nullable String resultId,
+                         long estimatedRecords) {
     this.jobId = jobId;
     this.batchId = batchId;
     this.query = query;
+    this.resultId = resultId;
+    this.estimatedRecords = estimatedRecords;
+  }
+
+  /**
+   * Creates split which joins results of column batches on Id.
+   *
+   * @param query wide query
+   * @param columnBatches batches of queries which select parts of the wide query columns ordered by Id
+   * @param estimatedRecords estimated number of records
+   */
+  public SalesforceSplit(String query, List<ColumnBatch> columnBatches, long estimatedRecords) {
+    this(columnBatches.get(0).getJobId(), columnBatches.get(0).getBatchId(), query, null, estimatedRecords);
+    this.columnBatches = columnBatches;
+  }
+
+  /**
+   * Creates split which reads a page of Bulk API 2.0 query job results.
+   *
+   * @param jobId query job id
+   * @param query query of the job
+   * @param resultLocator locator of the page, null for the first page
+   * @param maxRecords maximum number of records in the page
+   * @param estimatedRecords estimated number of records
+   */
+  public SalesforceSplit(String jobId, String query, @Nullable String resultLocator, int maxRecords,
+                         long estimatedRecords) {
+    this(jobId, "", query, null, estimatedRecords);
+    this.bulkV2 = true;
+    this.resultLocator = resultLocator;
+    this.maxRecords = maxRecords;
   }
 
   @Override
@@ -47,6 +106,16 @@ public class SalesforceSplit extends InputSplit implements Writable {
     jobId = dataInput.readUTF();
     batchId = dataInput.readUTF();
     query = dataInput.readUTF();
+    resultId = dataInput.readBoolean() ? dataInput.readUTF() : null;
+    estimatedRecords = dataInput.readLong();
+    int columnBatchesCount = dataInput.readInt();
+    columnBatches = new ArrayList<>(columnBatchesCount);
+    for (int i = 0; i < columnBatchesCount; i++) {
+      columnBatches.add(new ColumnBatch(dataInput.readUTF(), dataInput.readUTF()));
+    }
+    bulkV2 = dataInput.readBoolean();
+    resultLocator = dataInput.readBoolean() ? dataInput.readUTF() : null;
+    maxRecords = dataInput.readInt();
   }
 
   @Override
@@ -54,11 +123,27 @@ public class SalesforceSplit extends InputSplit implements Writable {
     dataOutput.writeUTF(jobId);
     dataOutput.writeUTF(batchId);
     dataOutput.writeUTF(query);
+    dataOutput.writeBoolean(resultId != null);
+    if (resultId != null) {
+      dataOutput.writeUTF(resultId);
+    }
+    dataOutput.writeLong(estimatedRecords);
+    dataOutput.writeInt(columnBatches.size());
+    for (ColumnBatch columnBatch : columnBatches) {
+      dataOutput.writeUTF(columnBatch.getJobId());
+      dataOutput.writeUTF(columnBatch.getBatchId());
+    }
+    dataOutput.writeBoolean(bulkV2);
+    dataOutput.writeBoolean(resultLocator != null);
+    if (resultLocator != null) {
+      dataOutput.writeUTF(resultLocator);
+    }
+    dataOutput.writeInt(maxRecords);
   }
 
   @Override
   public long getLength() {
-    return 0;
+    return estimatedRecords;
   }
 
   @Override
@@ -77,4 +162,72 @@ public class SalesforceSplit extends InputSplit implements Writable {
   public String getQuery() {
     return query;
   }
+
+  /**
+   * @return batch result id or null if split covers all results of the batch
+   */
+  @Nullable
+  public String getResultId() {
+    return resultId;
+  }
+
+  /**
+   * @return column batches to be joined on Id, empty if split reads a single batch
+   */
+  public List<ColumnBatch> getColumnBatches() {
+    return columnBatches == null ? Collections.emptyList() : columnBatches;
+  }
+
+  /**
+   * @return true if split reads results of a Bulk API 2.0 query job
+   */
+  public boolean isBulkV2() {
+    return bulkV2;
+  }
+
+  /**
+   * @return locator of Bulk API 2.0 results page, null for the first page
+   */
+  @Nullable
+  public String getResultLocator() {
+    return resultLocator;
+  }
+
+  /**
+   * @return maximum number of records in Bulk API 2.0 results page
+   */
+  public int getMaxRecords() {
+    return maxRecords;
+  }
+
+  /**
+   * @return ids of all jobs read by the split
+   */
+  public Set<String> getJobIds() {
+    Set<String> jobIds = new HashSet<>();
+    jobIds.add(jobId);
+    getColumnBatches().forEach(columnBatch -> jobIds.add(columnBatch.getJobId()));
+    return jobIds;
+  }
+
+  /**
+   * Bulk API batch of a query, which selects part of the wide query columns.
+   */
+  public static class ColumnBatch {
+    private final String jobId;
+    private final String batchId;
+
+    public ColumnBatch(String jobId, String batchId) {
+      this.jobId = jobId;
+      this.batchId = batchId;
+    }
+
+    public String getJobId() {
+      return jobId;
+    }
+
+    public String getBatchId() {
+      return batchId;
+    }
+  }
 }
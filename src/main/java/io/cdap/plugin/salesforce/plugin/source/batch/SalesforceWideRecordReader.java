@@ -15,10 +15,11 @@
  */
 package io.cdap.plugin.salesforce.plugin.source.batch;
 
-import com.google.common.collect.Lists;
+import com.google.common.annotations.VisibleForTesting;
 import com.sforce.soap.partner.PartnerConnection;
 import com.sforce.soap.partner.sobject.SObject;
 import com.sforce.ws.ConnectionException;
+import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.salesforce.SObjectDescriptor;
 import io.cdap.plugin.salesforce.SalesforceConnectionUtil;
@@ -31,138 +32,240 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * RecordReader implementation for wide SOQL queries. Reads a single Salesforce batch of SObject Id's from bulk job
  * provided in InputSplit, creates subpartitions and makes parallel SOAP calls to retrieve all values.
+ * <p/>
+ * Ids are streamed from the batch result, partitions are retrieved by a dedicated {@link WideRetrieveExecutor},
+ * at most as many partitions as the configured concurrency are retrieved or buffered at the same time,
+ * and records are returned in the batch order as soon as their partition is retrieved.
+ * Memory used by the reader does not depend on the batch size.
+ * Number of retrieve calls, their execution time and time they waited for an executor thread are reported
+ * as task counters when the reader is closed.
  */
 public class SalesforceWideRecordReader extends SalesforceBulkRecordReader {
 
   private static final Logger LOG = LoggerFactory.getLogger(SalesforceWideRecordReader.class);
 
-  private final String query;
+  private final Schema schema;
   private final SoapRecordToMapTransformer transformer;
+  private final MapToRecordTransformer recordTransformer;
+  private final SObjectDescriptor sObjectDescriptor;
+  private final String fields;
+  private final Deque<CompletableFuture<List<StructuredRecord>>> partitions = new ArrayDeque<>();
 
-  private List<Map<String, ?>> results;
-  private Map<String, ?> value;
-  private int index;
+  private TaskAttemptContext taskAttemptContext;
+  private PartnerConnection partnerConnection;
+  private int concurrency;
+  private WideRetrieveExecutor retrieveExecutor;
+  private Iterator<StructuredRecord> partitionIterator = Collections.emptyIterator();
+  private boolean idsExhausted;
+  private long recordsReturned;
+  private StructuredRecord value;
 
   public SalesforceWideRecordReader(Schema schema, String query, SoapRecordToMapTransformer transformer) {
-    super(schema);
-    this.query = query;
+    this(schema, Collections.emptyMap(), query, transformer);
+  }
+
+  /**
+   * @param schema record schema, including constant fields
+   * @param constantFields values of fields, which are the same for all records, for example name of the SObject
+   * @param query SOQL query
+   * @param transformer transforms SObjects to maps
+   */
+  public SalesforceWideRecordReader(Schema schema, Map<String, ?> constantFields, String query,
+                                    SoapRecordToMapTransformer transformer) {
+    this(schema, constantFields, query, transformer, null, null, null);
+  }
+
+  @VisibleForTesting
+  SalesforceWideRecordReader(Schema schema, String query, SoapRecordToMapTransformer transformer,
+                             String jobId, String batchId, String[] resultIds) {
+    this(schema, Collections.emptyMap(), query, transformer, jobId, batchId, resultIds);
+  }
+
+  private SalesforceWideRecordReader(Schema schema, Map<String, ?> constantFields, String query,
+                                     SoapRecordToMapTransformer transformer, String jobId, String batchId,
+                                     String[] resultIds) {
+    super(schema, constantFields, jobId, batchId, resultIds, 0);
+    this.schema = schema;
     this.transformer = transformer;
+    this.recordTransformer = new MapToRecordTransformer(constantFields);
+    this.sObjectDescriptor = SObjectDescriptor.fromQuery(query);
+    this.fields = String.join(",", sObjectDescriptor.getFieldsNames());
+    this.concurrency = SalesforceSourceConstants.DEFAULT_WIDE_OBJECT_CONCURRENCY;
   }
 
   @Override
   public void initialize(InputSplit inputSplit, TaskAttemptContext taskAttemptContext) throws IOException,
     InterruptedException {
-    List<Map<String, ?>> fetchedIdList = fetchBulkQueryIds(inputSplit, taskAttemptContext);
-    LOG.debug("Number of records received from batch job for wide object: '{}'", fetchedIdList.size());
+    super.initialize(inputSplit, taskAttemptContext);
+    this.taskAttemptContext = taskAttemptContext;
 
     Configuration conf = taskAttemptContext.getConfiguration();
+    concurrency = conf.getInt(SalesforceSourceConstants.CONFIG_WIDE_OBJECT_CONCURRENCY,
+                              SalesforceSourceConstants.DEFAULT_WIDE_OBJECT_CONCURRENCY);
     try {
       AuthenticatorCredentials credentials = SalesforceConnectionUtil.getAuthenticatorCredentials(conf);
-      PartnerConnection partnerConnection = SalesforceConnectionUtil.getPartnerConnection(credentials);
-
-      SObjectDescriptor sObjectDescriptor = SObjectDescriptor.fromQuery(query);
-      List<String> fieldsNames = sObjectDescriptor.getFieldsNames();
-      String fields = String.join(",", fieldsNames);
-      String sObjectName = sObjectDescriptor.getName();
-
-      List<List<Map<String, ?>>> partitions =
-        Lists.partition(fetchedIdList, SalesforceSourceConstants.WIDE_QUERY_MAX_BATCH_COUNT);
-      LOG.debug("Number of partitions to be fetched for wide object: '{}'", partitions.size());
-
-      results = partitions.parallelStream()
-        .map(this::getSObjectIds)
-        .map(sObjectIds -> fetchPartition(partnerConnection, fields, sObjectName, sObjectIds))
-        .flatMap(Arrays::stream)
-        .map(sObject -> transformer.transformToMap(sObject, sObjectDescriptor))
-        .collect(Collectors.toList());
+      partnerConnection = SalesforceConnectionUtil.getPartnerConnection(credentials);
     } catch (ConnectionException e) {
       throw new RuntimeException("Cannot create Salesforce SOAP connection", e);
     }
+
+    submitPartitions();
   }
 
   @Override
-  public boolean nextKeyValue() {
-    if (results.size() == index) {
-      return false;
+  public boolean nextKeyValue() throws IOException {
+    while (!partitionIterator.hasNext()) {
+      submitPartitions();
+      CompletableFuture<List<StructuredRecord>> partition = partitions.poll();
+      if (partition == null) {
+        return false;
+      }
+      partitionIterator = awaitPartition(partition).iterator();
     }
-    value = results.get(index++);
+    value = partitionIterator.next();
+    recordsReturned++;
     return true;
   }
 
   @Override
-  public Map<String, ?> getCurrentValue() {
+  public StructuredRecord getCurrentValue() {
     return value;
   }
 
+  /**
+   * Returns progress based on the number of records returned out of the number of records processed by the batch.
+   * If the number of records is not known, progress of reading batch Id's is returned.
+   *
+   * @return progress between 0 and 1
+   */
   @Override
   public float getProgress() {
-    return results == null || results.isEmpty() ? 0.0f : (float) index / results.size();
+    if (idsExhausted && partitions.isEmpty() && !partitionIterator.hasNext()) {
+      return 1.0f;
+    }
+    long expectedRecords = getExpectedRecords();
+    if (expectedRecords > 0) {
+      return Math.min(1.0f, (float) recordsReturned / expectedRecords);
+    }
+    return super.getProgress();
+  }
+
+  @Override
+  public void close() throws IOException {
+    partitions.forEach(partition -> partition.cancel(true));
+    partitions.clear();
+    partitionIterator = Collections.emptyIterator();
+    if (retrieveExecutor != null) {
+      WideRetrieveExecutor.Metrics metrics = retrieveExecutor.getMetrics();
+      LOG.info("Wide object '{}' retrieve metrics: {}", sObjectDescriptor.getName(), metrics);
+      reportMetrics(metrics);
+      retrieveExecutor.close();
+      retrieveExecutor = null;
+    }
+    super.close();
+  }
+
+  private void reportMetrics(WideRetrieveExecutor.Metrics metrics) {
+    if (taskAttemptContext == null) {
+      return;
+    }
+    String group = SalesforceSourceConstants.COUNTER_GROUP_WIDE_RETRIEVE;
+    taskAttemptContext.getCounter(group, SalesforceSourceConstants.COUNTER_WIDE_RETRIEVE_CALLS)
+      .increment(metrics.getCalls());
+    taskAttemptContext.getCounter(group, SalesforceSourceConstants.COUNTER_WIDE_RETRIEVE_CALL_TIME_MS)
+      .increment(metrics.getCallTimeMs());
+    taskAttemptContext.getCounter(group, SalesforceSourceConstants.COUNTER_WIDE_RETRIEVE_QUEUE_TIME_MS)
+      .increment(metrics.getQueueTimeMs());
   }
 
   /**
-   * Fetches single entry map (Id -> SObjectId_value) values received from Bulk API.
-   *
-   * @param inputSplit         specifies batch details
-   * @param taskAttemptContext task context
-   * @return list of single entry Map
-   * @throws IOException          can be due error during reading query
-   * @throws InterruptedException interrupted sleep while waiting for batch results
+   * Reads next partitions of SObject Id's from the batch result and submits their retrieval,
+   * until the maximum number of partitions is being retrieved or there are no more Id's.
    */
-  private List<Map<String, ?>> fetchBulkQueryIds(InputSplit inputSplit, TaskAttemptContext taskAttemptContext)
-    throws IOException, InterruptedException {
-    super.initialize(inputSplit, taskAttemptContext);
-    List<Map<String, ?>> fetchedIdList = new ArrayList<>();
-    while (super.nextKeyValue()) {
-      fetchedIdList.add(super.getCurrentValue());
+  private void submitPartitions() throws IOException {
+    while (!idsExhausted && partitions.size() < concurrency) {
+      String[] sObjectIds = nextIdPartition();
+      if (sObjectIds.length == 0) {
+        break;
+      }
+      if (retrieveExecutor == null) {
+        retrieveExecutor = new WideRetrieveExecutor(sObjectDescriptor.getName(), concurrency);
+      }
+      LOG.trace("Submitting retrieval of {} records for wide object '{}'", sObjectIds.length,
+                sObjectDescriptor.getName());
+      partitions.add(retrieveExecutor.submit(() -> fetchPartition(sObjectIds)));
     }
-    return fetchedIdList;
   }
 
   /**
-   * Transforms list of single entry map to array of SObject ids.
-   * <p/>
-   * Example:
-   * <ul>
-   *  <li>Expected list of map format: `List(Map(Id -> SObject_id1), Map(Id -> SObject_id2), ...)`</li>
-   *  <li>Result array: `[SObject_id1, SObject_id2, ...]`</li>
-   * </ul>
-   * @param subIds list of single entry Map
-   * @return array of SObject ids
+   * Reads next SObject Id's received from Bulk API. The Id query returns a single column csv,
+   * so the Id is read by position without decoding the record.
+   *
+   * @return up to {@link SalesforceSourceConstants#WIDE_QUERY_MAX_BATCH_COUNT} SObject ids,
+   * empty array if there are no more ids
    */
-  private String[] getSObjectIds(List<Map<String, ?>> subIds) {
-    return subIds.stream()
-      .map(Map::values)
-      .flatMap(Collection::stream)
-      .toArray(String[]::new);
+  private String[] nextIdPartition() throws IOException {
+    List<String> sObjectIds = new ArrayList<>();
+    while (sObjectIds.size() < SalesforceSourceConstants.WIDE_QUERY_MAX_BATCH_COUNT) {
+      if (!nextCSVRecord()) {
+        idsExhausted = true;
+        break;
+      }
+      sObjectIds.add(getCurrentCSVRecord().get(0));
+    }
+    return sObjectIds.toArray(new String[0]);
+  }
+
+  private List<StructuredRecord> awaitPartition(CompletableFuture<List<StructuredRecord>> partition)
+    throws IOException {
+    try {
+      return partition.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while retrieving wide object records");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException("Failed to retrieve wide object records", e.getCause());
+    }
   }
 
   /**
-   * Fetches wide object records through SOAP API.
+   * Fetches wide object records through SOAP API and transforms them into records.
    *
-   * @param partnerConnection SOAP connection
-   * @param fields            SObject fields to be fetched
-   * @param sObjectName       SObject name
-   * @param sObjectIds        SObject ids to be fetched
-   * @return fetched SObject array
+   * @param sObjectIds SObject ids to be fetched
+   * @return fetched records
    */
-  private SObject[] fetchPartition(PartnerConnection partnerConnection, String fields, String sObjectName,
-                                   String[] sObjectIds) {
+  private List<StructuredRecord> fetchPartition(String[] sObjectIds) {
+    String sObjectName = sObjectDescriptor.getName();
+    SObject[] sObjects;
     try {
-      return partnerConnection.retrieve(fields, sObjectName, sObjectIds);
+      sObjects = partnerConnection.retrieve(fields, sObjectName, sObjectIds);
     } catch (ConnectionException e) {
       LOG.trace("Fetched SObject name: '{}', fields: '{}', Ids: '{}'", sObjectName, fields,
                 String.join(",", sObjectIds));
       throw new RuntimeException(String.format("Cannot retrieve data for SObject '%s'", sObjectName), e);
     }
+
+    List<StructuredRecord> records = new ArrayList<>(sObjects.length);
+    for (SObject sObject : sObjects) {
+      records.add(recordTransformer.transform(schema, transformer.transformToMap(sObject, sObjectDescriptor)));
+    }
+    return records;
   }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Executor for blocking SOAP retrieve calls of a single wide object reader.
+ * <p/>
+ * Calls run on dedicated daemon threads, so the number of concurrent calls is bounded by the configured
+ * concurrency instead of the number of CPUs, and the common fork join pool is not blocked.
+ * Time spent by calls waiting in the queue, from submit to the start of the call, and executing is recorded.
+ */
+class WideRetrieveExecutor implements Closeable {
+
+  private final ExecutorService executor;
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder queueNanos = new LongAdder();
+  private final LongAdder callNanos = new LongAdder();
+  private final LongAccumulator maxQueueNanos = new LongAccumulator(Math::max, 0);
+  private final LongAccumulator maxCallNanos = new LongAccumulator(Math::max, 0);
+
+  /**
+   * @param name name used for the executor threads
+   * @param concurrency maximum number of concurrent calls
+   */
+  WideRetrieveExecutor(String name, int concurrency) {
+    this.executor = Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder()
+      .setDaemon(true)
+      .setNameFormat(String.format("salesforce-wide-retrieve-%s-%%d", name))
+      .build());
+  }
+
+  /**
+   * Submits call for execution.
+   *
+   * @param call blocking call
+   * @param <T> call result type
+   * @return future completed with the call result
+   */
+  <T> CompletableFuture<T> submit(Supplier<T> call) {
+    long submitted = System.nanoTime();
+    return CompletableFuture.supplyAsync(() -> {
+      long started = System.nanoTime();
+      queueNanos.add(started - submitted);
+      maxQueueNanos.accumulate(started - submitted);
+      try {
+        return call.get();
+      } finally {
+        long elapsed = System.nanoTime() - started;
+        calls.increment();
+        callNanos.add(elapsed);
+        maxCallNanos.accumulate(elapsed);
+      }
+    }, executor);
+  }
+
+  /**
+   * @return snapshot of executor metrics
+   */
+  Metrics getMetrics() {
+    return new Metrics(calls.sum(), queueNanos.sum(), maxQueueNanos.get(), callNanos.sum(), maxCallNanos.get());
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Retrieve calls metrics.
+   */
+  static final class Metrics {
+    private final long calls;
+    private final long queueNanos;
+    private final long maxQueueNanos;
+    private final long callNanos;
+    private final long maxCallNanos;
+
+    private Metrics(long calls, long queueNanos, long maxQueueNanos, long callNanos, long maxCallNanos) {
+      this.calls = calls;
+      this.queueNanos = queueNanos;
+      this.maxQueueNanos = maxQueueNanos;
+      this.callNanos = callNanos;
+      this.maxCallNanos = maxCallNanos;
+    }
+
+    /**
+     * @return number of completed calls
+     */
+    long getCalls() {
+      return calls;
+    }
+
+    /**
+     * @return total time calls waited for an executor thread, in milliseconds
+     */
+    long getQueueTimeMs() {
+      return TimeUnit.NANOSECONDS.toMillis(queueNanos);
+    }
+
+    /**
+     * @return total time of call execution, in milliseconds
+     */
+    long getCallTimeMs() {
+      return TimeUnit.NANOSECONDS.toMillis(callNanos);
+    }
+
+    @Override
+    public String toString() {
+      return "Metrics{" +
+        "calls=" + calls +
+        ", queueTimeMs=" + getQueueTimeMs() +
+        ", maxQueueTimeMs=" + TimeUnit.NANOSECONDS.toMillis(maxQueueNanos) +
+        ", callTimeMs=" + getCallTimeMs() +
+        ", maxCallTimeMs=" + TimeUnit.NANOSECONDS.toMillis(maxCallNanos) +
+        '}';
+    }
+  }
+}
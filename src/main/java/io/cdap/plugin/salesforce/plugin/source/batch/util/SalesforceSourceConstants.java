@@ -36,10 +36,18 @@ public class SalesforceSourceConstants {
   public static final String PROPERTY_PK_CHUNK_ENABLE_NAME = "enablePKChunk";
   public static final String PROPERTY_CHUNK_SIZE_NAME = "chunkSize";
   public static final String PROPERTY_PARENT_NAME = "parent";
+  public static final String PROPERTY_AUTO_PK_CHUNK = "autoPKChunk";
+  public static final String PROPERTY_PK_CHUNK_TARGET_SPLITS = "pkChunkTargetSplits";
 
   public static final String PROPERTY_WHITE_LIST = "whiteList";
   public static final String PROPERTY_BLACK_LIST = "blackList";
   public static final String PROPERTY_SOBJECT_NAME_FIELD = "sObjectNameField";
+  public static final String PROPERTY_RESULT_READ_AHEAD = "resultReadAhead";
+  public static final String PROPERTY_WIDE_OBJECT_CONCURRENCY = "wideObjectConcurrency";
+  public static final String PROPERTY_QUERY_BATCH_SIZE = "queryBatchSize";
+  public static final String PROPERTY_BULK_API_VERSION = "bulkApiVersion";
+  public static final String PROPERTY_BULK_V2_PAGE_SIZE = "bulkV2PageSize";
+  public static final String PROPERTY_RANGE_PARTITIONS = "rangePartitions";
 
   public static final String CONFIG_SCHEMAS = "mapred.salesforce.input.schemas";
   public static final String CONFIG_QUERY_SPLITS = "mapred.salesforce.input.query.splits";
@@ -49,13 +57,72 @@ public class SalesforceSourceConstants {
   public static final String HEADER_PK_CHUNK_PARENT = "parent=%s";
 
   public static final String CONFIG_SOBJECT_NAME_FIELD = "mapred.salesforce.input.sObjectNameField";
+  public static final String CONFIG_RESULT_READ_AHEAD = "mapred.salesforce.input.result.readAhead";
+  public static final String CONFIG_WIDE_OBJECT_CONCURRENCY = "mapred.salesforce.input.wideObject.concurrency";
+  public static final String CONFIG_QUERY_BATCH_SIZE = "mapred.salesforce.input.query.batchSize";
+
+  /**
+   * Task counters of SOAP retrieve calls made by wide object readers
+   */
+  public static final String COUNTER_GROUP_WIDE_RETRIEVE = "Salesforce Wide Object Retrieve";
+  public static final String COUNTER_WIDE_RETRIEVE_CALLS = "Retrieve calls";
+  public static final String COUNTER_WIDE_RETRIEVE_CALL_TIME_MS = "Retrieve call time (ms)";
+  public static final String COUNTER_WIDE_RETRIEVE_QUEUE_TIME_MS = "Retrieve queue time (ms)";
 
   public static final int WIDE_QUERY_MAX_BATCH_COUNT = 2000;
+  /**
+   * Number of concurrent SOAP retrieve calls made by a single wide object reader,
+   * which is also the number of partitions the reader retrieves or buffers at the same time
+   */
+  public static final int DEFAULT_WIDE_OBJECT_CONCURRENCY = 4;
+  public static final int MIN_WIDE_OBJECT_CONCURRENCY = 1;
+  public static final int MAX_WIDE_OBJECT_CONCURRENCY = 16;
+  // https://developer.salesforce.com/docs/atlas.en-us.api.meta/api/sforce_api_header_queryoptions.htm
+  public static final int DEFAULT_QUERY_BATCH_SIZE = 500;
+  public static final int MIN_QUERY_BATCH_SIZE = 200;
+  public static final int MAX_QUERY_BATCH_SIZE = 2000;
+  /**
+   * Maximum number of records in a page of Bulk API 2.0 query results, each page is read by a separate split
+   */
+  public static final int DEFAULT_BULK_V2_PAGE_SIZE = 100000;
+  public static final int MIN_BULK_V2_PAGE_SIZE = 1000;
+  public static final int MAX_BULK_V2_PAGE_SIZE = 1000000;
+  /**
+   * Number of disjoint ranges of a datetime field, into which query is split when PK chunking is not used,
+   * each range is submitted as a separate Bulk API batch
+   */
+  public static final int DEFAULT_RANGE_PARTITIONS = 1;
+  public static final int MIN_RANGE_PARTITIONS = 1;
+  public static final int MAX_RANGE_PARTITIONS = 100;
+  /**
+   * Fields used to split query into ranges, in order of preference
+   */
+  public static final List<String> RANGE_PARTITION_FIELDS =
+    Arrays.asList("CreatedDate", "SystemModstamp", "LastModifiedDate");
   // https://developer.salesforce.com/docs/atlas.en-us.api_asynch.meta/api_asynch/
   // async_api_headers_enable_pk_chunking.htm
   public static final int MAX_PK_CHUNK_SIZE = 250000;
   public static final int DEFAULT_PK_CHUNK_SIZE = 100000;
   public static final int MIN_PK_CHUNK_SIZE = 1;
+  /**
+   * Smallest chunk size chosen by automatic PK chunking, smaller objects are read without PK chunking
+   */
+  public static final int MIN_AUTO_PK_CHUNK_SIZE = 10000;
+  /**
+   * Number of chunks automatic PK chunking aims for, a few chunks per executor core keep all cores busy
+   * while not exhausting the daily Bulk API batch allocation
+   */
+  public static final int DEFAULT_PK_CHUNK_TARGET_SPLITS = 64;
+  public static final int MIN_PK_CHUNK_TARGET_SPLITS = 1;
+  public static final int MAX_PK_CHUNK_TARGET_SPLITS = 10000;
+
+  public static final int DEFAULT_RESULT_READ_AHEAD = 1;
+  public static final int MIN_RESULT_READ_AHEAD = 0;
+  public static final int MAX_RESULT_READ_AHEAD = 2;
+  /**
+   * Maximum number of bytes buffered in memory for each prefetched Bulk API batch result
+   */
+  public static final int RESULT_READ_AHEAD_BUFFER_SIZE = 8 * 1024 * 1024;
   // https://developer.salesforce.com/docs/atlas.en-us.api_asynch.meta/api_asynch/
   // async_api_headers_enable_pk_chunking.htm
   public static final List<String> SUPPORTED_OBJECTS_WITH_PK_CHUNK = Arrays.asList("Account",
@@ -15,31 +15,52 @@
  */
 package io.cdap.plugin.salesforce.plugin.source.batch.util;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.sforce.async.AsyncApiException;
 import com.sforce.async.BatchInfo;
+import com.sforce.async.BatchInfoList;
 import com.sforce.async.BatchStateEnum;
 import com.sforce.async.BulkConnection;
 import com.sforce.async.JobInfo;
 import com.sforce.async.JobStateEnum;
 import com.sforce.async.OperationEnum;
+import com.sforce.soap.partner.Field;
+import com.sforce.soap.partner.PartnerConnection;
+import com.sforce.soap.partner.sobject.SObject;
+import com.sforce.ws.ConnectionException;
 import io.cdap.plugin.salesforce.BulkAPIBatchException;
 import io.cdap.plugin.salesforce.InvalidConfigException;
 import io.cdap.plugin.salesforce.SObjectDescriptor;
+import io.cdap.plugin.salesforce.SObjectsDescribeResult;
 import io.cdap.plugin.salesforce.SalesforceBulkUtil;
+import io.cdap.plugin.salesforce.SalesforceConnectionUtil;
 import io.cdap.plugin.salesforce.SalesforceQueryUtil;
-import io.cdap.plugin.salesforce.authenticator.Authenticator;
 import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
+import io.cdap.plugin.salesforce.bulkv2.BulkV2Connection;
+import io.cdap.plugin.salesforce.bulkv2.BulkV2Exception;
+import io.cdap.plugin.salesforce.bulkv2.BulkV2JobInfo;
+import io.cdap.plugin.salesforce.parser.SalesforceQueryParser;
 import io.cdap.plugin.salesforce.plugin.source.batch.SalesforceSplit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 
 /**
  * Utility class which provides methods to generate Salesforce splits for a query.
@@ -49,7 +70,12 @@ public final class SalesforceSplitUtil {
   private static final Logger LOG = LoggerFactory.getLogger(SalesforceSplitUtil.class);
 
   /**
-   * Generates and returns Salesforce splits for a query
+   * Generates and returns Salesforce splits for a query. Waits for Bulk API batches to complete
+   * and creates a split for each batch result, so results of a single batch can be read in parallel.
+   * Queries which cannot be executed by Bulk API are read using SOAP API, for them a split per batch is created.
+   * Wide queries, which can be ordered by Id, are split by columns into several Bulk API queries,
+   * see {@link #getColumnSplits}.
+   *
    * @param query the query for the sobject
    * @param bulkConnection used to create salesforce jobs
    * @param enablePKChunk indicates if pk chunking is enabled
@@ -57,9 +83,314 @@ public final class SalesforceSplitUtil {
    */
   public static List<SalesforceSplit> getQuerySplits(String query, BulkConnection bulkConnection,
                                                      boolean enablePKChunk, String operation) {
-    return Stream.of(getBatches(query, bulkConnection, enablePKChunk, operation))
-      .map(batch -> new SalesforceSplit(batch.getJobId(), batch.getId(), query))
-      .collect(Collectors.toList());
+    if (isColumnSplitQuery(query, enablePKChunk)) {
+      return getColumnSplits(query, bulkConnection, operation);
+    }
+    BatchInfo[] batches = getBatches(query, bulkConnection, enablePKChunk, operation);
+    if (SalesforceQueryParser.isRestrictedQuery(query)) {
+      return Stream.of(batches)
+        .map(batch -> new SalesforceSplit(batch.getJobId(), batch.getId(), query))
+        .collect(Collectors.toList());
+    }
+    return getResultSplits(query, bulkConnection, batches);
+  }
+
+  /**
+   * Generates and returns Salesforce splits for a query, which is read without PK chunking. Records of the query
+   * are split into disjoint ranges of a datetime field, see {@link #getRangeQueries}, each range query is submitted
+   * as a separate batch of a single Bulk API job, so ranges are processed by Salesforce and read in parallel.
+   * This allows parallel reads of objects which do not support PK chunking, for example history or share objects.
+   * Queries which cannot be split into ranges are processed by {@link #getQuerySplits}.
+   *
+   * @param query the query for the sobject
+   * @param bulkConnection used to create salesforce jobs
+   * @param authenticatorCredentials credentials used to find range boundaries
+   * @param partitions number of ranges to split the query into
+   * @param operation query operation
+   * @return list of salesforce splits
+   */
+  public static List<SalesforceSplit> getRangeQuerySplits(String query, BulkConnection bulkConnection,
+                                                          AuthenticatorCredentials authenticatorCredentials,
+                                                          int partitions, String operation) {
+    if (partitions <= 1 || !isRangeQuery(query)) {
+      return getQuerySplits(query, bulkConnection, false, operation);
+    }
+    List<String> rangeQueries;
+    try {
+      PartnerConnection partnerConnection = SalesforceConnectionUtil.getPartnerConnection(authenticatorCredentials);
+      rangeQueries = getRangeQueries(query, partnerConnection, partitions);
+    } catch (ConnectionException e) {
+      throw new RuntimeException("There was issue communicating with Salesforce", e);
+    }
+    if (rangeQueries.size() == 1) {
+      return getQuerySplits(query, bulkConnection, false, operation);
+    }
+    try {
+      BatchInfo[] batches = runBulkQueries(bulkConnection, rangeQueries, operation);
+      LOG.debug("Number of range batches submitted to Salesforce: '{}'", batches.length);
+      return getResultSplits(query, bulkConnection, batches);
+    } catch (AsyncApiException | IOException e) {
+      throw new RuntimeException("There was issue communicating with Salesforce", e);
+    }
+  }
+
+  /**
+   * Splits records of a query into disjoint ranges of a datetime field. The field is the first of
+   * {@link SalesforceSourceConstants#RANGE_PARTITION_FIELDS} the object has, CreatedDate is preferred as it
+   * does not change, so records cannot move between ranges while batches are processed. Lowest and highest
+   * field values are probed with two queries, which select a single record ordered by the field, and the interval
+   * between them is divided into ranges of equal length. The first and the last ranges are open, so records
+   * outside the probed interval, for example records created after probing, are still read exactly once.
+   *
+   * @param query SOQL query, which is under length limit and has no clauses conflicting with ordering
+   * @param partnerConnection partner connection
+   * @param partitions maximum number of ranges
+   * @return range queries, or the initial query if it cannot be split
+   * @throws ConnectionException if there is an issue communicating with Salesforce
+   */
+  @VisibleForTesting
+  static List<String> getRangeQueries(String query, PartnerConnection partnerConnection, int partitions)
+    throws ConnectionException {
+    String sObjectName = SObjectDescriptor.fromQuery(query).getName();
+    String field = getRangePartitionField(partnerConnection, sObjectName);
+    if (field == null) {
+      LOG.debug("SObject '{}' has no field to split query into ranges", sObjectName);
+      return Collections.singletonList(query);
+    }
+    Instant lowest = getBoundaryValue(partnerConnection, query, field, true);
+    Instant highest = getBoundaryValue(partnerConnection, query, field, false);
+    if (lowest == null || highest == null) {
+      return Collections.singletonList(query);
+    }
+    List<String> boundaries = getRangeBoundaries(lowest, highest, partitions);
+    LOG.info("Splitting query of SObject '{}' into {} ranges of '{}' between {} and {}",
+             sObjectName, boundaries.size() + 1, field, lowest, highest);
+    return SalesforceQueryUtil.createRangeQueries(query, field, boundaries);
+  }
+
+  /**
+   * Counts records of a query using SOQL COUNT().
+   *
+   * @param query SOQL query, which has no clauses conflicting with COUNT(), for example ORDER BY
+   * @param partnerConnection partner connection
+   * @return number of records
+   * @throws ConnectionException if there is an issue communicating with Salesforce
+   */
+  public static long getRecordCount(String query, PartnerConnection partnerConnection) throws ConnectionException {
+    return partnerConnection.query(SalesforceQueryUtil.createCountQuery(query)).getSize();
+  }
+
+  /**
+   * Checks if Bulk API supports PK chunking for the object.
+   *
+   * @param partnerConnection partner connection
+   * @param sObjectName object name, or parent name for history and share objects
+   * @return true if PK chunking is supported
+   * @throws ConnectionException if there is an issue communicating with Salesforce
+   */
+  public static boolean isPKChunkSupported(PartnerConnection partnerConnection, String sObjectName)
+    throws ConnectionException {
+    return SalesforceSourceConstants.SUPPORTED_OBJECTS_WITH_PK_CHUNK.contains(sObjectName)
+      || SObjectsDescribeResult.isCustomObject(partnerConnection, sObjectName);
+  }
+
+  /**
+   * Chooses PK chunk size, so records are split into about the target number of chunks. Chunk size is kept between
+   * {@link SalesforceSourceConstants#MIN_AUTO_PK_CHUNK_SIZE} and {@link SalesforceSourceConstants#MAX_PK_CHUNK_SIZE},
+   * so small objects do not produce tiny batches and large objects produce more chunks than targeted.
+   *
+   * @param recordCount number of records
+   * @param targetSplits target number of chunks
+   * @return chunk size, or 0 if records fit into a single chunk and PK chunking is not needed
+   */
+  public static int getAdaptiveChunkSize(long recordCount, int targetSplits) {
+    long chunkSize = (recordCount + targetSplits - 1) / targetSplits;
+    chunkSize = Math.max(SalesforceSourceConstants.MIN_AUTO_PK_CHUNK_SIZE,
+                         Math.min(SalesforceSourceConstants.MAX_PK_CHUNK_SIZE, chunkSize));
+    return recordCount > chunkSize ? (int) chunkSize : 0;
+  }
+
+  private static boolean isRangeQuery(String query) {
+    return SalesforceQueryUtil.isQueryUnderLengthLimit(query) && !SalesforceQueryParser.isRestrictedPKQuery(query);
+  }
+
+  @Nullable
+  private static String getRangePartitionField(PartnerConnection partnerConnection, String sObjectName)
+    throws ConnectionException {
+    Set<String> fields = Stream.of(partnerConnection.describeSObject(sObjectName).getFields())
+      .filter(field -> field.isFilterable() && field.isSortable())
+      .map(Field::getName)
+      .collect(Collectors.toSet());
+    return SalesforceSourceConstants.RANGE_PARTITION_FIELDS.stream().filter(fields::contains).findFirst().orElse(null);
+  }
+
+  @Nullable
+  private static Instant getBoundaryValue(PartnerConnection partnerConnection, String query, String field,
+                                          boolean lowest) throws ConnectionException {
+    SObject[] records = partnerConnection.query(SalesforceQueryUtil.createBoundaryQuery(query, field, lowest))
+      .getRecords();
+    Object value = records.length == 0 ? null : records[0].getField(field);
+    return value == null ? null : Instant.parse(value.toString());
+  }
+
+  /**
+   * Divides interval between the lowest and the highest values into ranges of equal length,
+   * boundaries are rounded to seconds, which is the precision of Salesforce datetime filters.
+   */
+  private static List<String> getRangeBoundaries(Instant lowest, Instant highest, int partitions) {
+    long start = lowest.getEpochSecond();
+    long length = highest.getEpochSecond() - start + 1;
+    List<String> boundaries = new ArrayList<>();
+    long previous = start;
+    for (int i = 1; i < partitions; i++) {
+      long boundary = start + length * i / partitions;
+      if (boundary > previous) {
+        boundaries.add(DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochSecond(boundary)));
+        previous = boundary;
+      }
+    }
+    return boundaries;
+  }
+
+  /**
+   * Waits for batches to complete and creates a split for each batch result,
+   * so results of a single batch can be read in parallel.
+   */
+  private static List<SalesforceSplit> getResultSplits(String query, BulkConnection bulkConnection,
+                                                       BatchInfo[] batches) {
+    try {
+      List<SalesforceSplit> splits = new ArrayList<>();
+      for (BatchInfo batch : waitForBatchCompletion(bulkConnection, batches)) {
+        String[] resultIds = SalesforceConnectionManager.callWithSessionRenewal(
+          bulkConnection, () -> bulkConnection.getQueryResultList(batch.getJobId(), batch.getId())).getResult();
+        LOG.debug("Batch {} returned {} results", batch.getId(), resultIds.length);
+        // Bulk API does not report record count per result, assume records are evenly distributed
+        long estimatedRecords = resultIds.length == 0
+          ? 0 : (batch.getNumberRecordsProcessed() + resultIds.length - 1) / resultIds.length;
+        for (String resultId : resultIds) {
+          splits.add(new SalesforceSplit(batch.getJobId(), batch.getId(), query, resultId, estimatedRecords));
+        }
+      }
+      LOG.debug("Number of result splits created: '{}'", splits.size());
+      return splits;
+    } catch (AsyncApiException e) {
+      throw new RuntimeException("There was issue communicating with Salesforce", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting for batch results", e);
+    }
+  }
+
+  /**
+   * Checks if query can be executed by Bulk API 2.0. Wide queries and queries with restricted syntax,
+   * for example aggregate functions or OFFSET, are not supported.
+   *
+   * @param query SOQL query
+   * @return true if query can be executed by Bulk API 2.0
+   */
+  public static boolean isBulkV2Query(String query) {
+    return SalesforceQueryUtil.isQueryUnderLengthLimit(query) && !SalesforceQueryParser.isRestrictedQuery(query);
+  }
+
+  /**
+   * Generates and returns Salesforce splits for a query executed by Bulk API 2.0. Waits for the query job
+   * to complete and creates a split for each page of the job results, so pages can be read in parallel.
+   * Locators of the pages are collected by reading only the response headers of each page.
+   * Salesforce splits large query jobs into chunks by itself, so PK chunking is not configured.
+   * A job, which returned no records, is deleted right away and no splits are created for it.
+   *
+   * @param query the query for the sobject
+   * @param connection Bulk API 2.0 connection
+   * @param operation query operation
+   * @param pageSize maximum number of records in a page
+   * @return list of salesforce splits
+   */
+  public static List<SalesforceSplit> getBulkV2QuerySplits(String query, BulkV2Connection connection,
+                                                           String operation, int pageSize) {
+    try {
+      BulkV2JobInfo job = connection.createQueryJob(query, operation);
+      LOG.debug("Created Bulk API 2.0 query job {}", job.getId());
+      job = connection.awaitQueryJob(job.getId(), SalesforceSourceConstants.GET_BATCH_RESULTS_SLEEP_MS,
+                                     SalesforceSourceConstants.GET_BATCH_RESULTS_TRIES);
+      if (job.getNumberRecordsProcessed() == 0) {
+        // results of an empty job are an empty response without CSV header, so there is nothing to read
+        LOG.debug("Query job {} returned no records", job.getId());
+        connection.deleteQueryJob(job.getId());
+        return Collections.emptyList();
+      }
+      long remainingRecords = job.getNumberRecordsProcessed();
+      List<SalesforceSplit> splits = new ArrayList<>();
+      String locator = null;
+      do {
+        splits.add(new SalesforceSplit(job.getId(), query, locator, pageSize, Math.min(pageSize, remainingRecords)));
+        remainingRecords = Math.max(0, remainingRecords - pageSize);
+        locator = connection.getNextLocator(job.getId(), locator, pageSize);
+      } while (locator != null);
+      LOG.debug("Query job {} processed {} records, number of page splits created: '{}'",
+                job.getId(), job.getNumberRecordsProcessed(), splits.size());
+      return splits;
+    } catch (BulkV2Exception e) {
+      throw new RuntimeException("There was issue communicating with Salesforce", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting for query job", e);
+    }
+  }
+
+  /**
+   * Checks if wide query can be split by columns. Column queries are ordered by Id, which is not supported
+   * with PK chunking and conflicts with ordering, limit and other clauses of the initial query.
+   *
+   * @param query SOQL query
+   * @param enablePKChunk indicates if pk chunking is enabled
+   * @return true if query can be split by columns
+   */
+  private static boolean isColumnSplitQuery(String query, boolean enablePKChunk) {
+    return !enablePKChunk
+      && !SalesforceQueryUtil.isQueryUnderLengthLimit(query)
+      && !SalesforceQueryParser.isRestrictedPKQuery(query);
+  }
+
+  /**
+   * Splits wide query fields into several Bulk API queries, each under SOQL max length limit, selecting Id and
+   * ordered by Id. Queries are executed concurrently as separate jobs, and a single split referencing batches of
+   * all queries is created, the record reader joins query results on Id. The queries do not share a snapshot,
+   * see {@link io.cdap.plugin.salesforce.plugin.source.batch.SalesforceColumnJoinRecordReader} for the
+   * consequences for records modified, created or deleted while they run.
+   *
+   * @param query wide SOQL query
+   * @param bulkConnection used to create salesforce jobs
+   * @param operation query operation
+   * @return list with a single split
+   */
+  private static List<SalesforceSplit> getColumnSplits(String query, BulkConnection bulkConnection,
+                                                       String operation) {
+    List<String> columnQueries = SalesforceQueryUtil.createColumnSplitQueries(query);
+    LOG.debug("Wide object query detected. Query length '{}', split into {} column queries",
+              query.length(), columnQueries.size());
+    try {
+      List<BatchInfo> batches = new ArrayList<>();
+      for (String columnQuery : columnQueries) {
+        BatchInfo[] columnBatches = runBulkQuery(bulkConnection, columnQuery, false, operation);
+        if (columnBatches.length != 1) {
+          throw new IllegalStateException(
+            String.format("Expected a single batch for column query, but received '%d'", columnBatches.length));
+        }
+        batches.add(columnBatches[0]);
+      }
+
+      List<BatchInfo> completed = waitForBatchCompletion(bulkConnection, batches.toArray(new BatchInfo[0]));
+      long estimatedRecords = completed.stream().mapToLong(BatchInfo::getNumberRecordsProcessed).max().orElse(0);
+      List<SalesforceSplit.ColumnBatch> columnBatches = batches.stream()
+        .map(batch -> new SalesforceSplit.ColumnBatch(batch.getJobId(), batch.getId()))
+        .collect(Collectors.toList());
+      return Collections.singletonList(new SalesforceSplit(query, columnBatches, estimatedRecords));
+    } catch (AsyncApiException | IOException e) {
+      throw new RuntimeException("There was issue communicating with Salesforce", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting for batch results", e);
+    }
   }
 
   /**
@@ -104,24 +435,58 @@ public final class SalesforceSplitUtil {
     SObjectDescriptor sObjectDescriptor = SObjectDescriptor.fromQuery(query);
     JobInfo job = SalesforceBulkUtil.createJob(bulkConnection, sObjectDescriptor.getName(),
             getOperationEnum(operation), null);
-    BatchInfo batchInfo;
-    try (ByteArrayInputStream bout = new ByteArrayInputStream(query.getBytes())) {
-      batchInfo = bulkConnection.createBatchFromStream(job, bout);
-    }
+    BatchInfo batchInfo = createBatch(bulkConnection, job, query);
 
     if (enablePKChunk) {
       LOG.debug("PKChunking is enabled");
       return waitForBatchChunks(bulkConnection, job.getId(), batchInfo.getId());
     }
     LOG.debug("PKChunking is not enabled");
-    BatchInfo[] batchInfos = bulkConnection.getBatchInfoList(job.getId()).getBatchInfo();
-    LOG.info("Job id {}, status: {}", job.getId(), bulkConnection.getJobStatus(job.getId()).getState());
+    BatchInfo[] batchInfos = SalesforceConnectionManager.callWithSessionRenewal(
+      bulkConnection, () -> bulkConnection.getBatchInfoList(job.getId())).getBatchInfo();
+    JobInfo jobStatus = SalesforceConnectionManager.callWithSessionRenewal(
+      bulkConnection, () -> bulkConnection.getJobStatus(job.getId()));
+    LOG.info("Job id {}, status: {}", job.getId(), jobStatus.getState());
     if (batchInfos.length > 0) {
       LOG.info("Batch size {}, state {}", batchInfos.length, batchInfos[0].getState());
     }
     return batchInfos;
   }
 
+  /**
+   * Submits each of the given queries as a separate batch of a single Bulk API job.
+   * Queries must be of the same object.
+   *
+   * @param bulkConnection bulk connection instance
+   * @param queries SOQL queries
+   * @param operation query operation
+   * @return an array of batches
+   * @throws AsyncApiException if there is an issue creating the job
+   * @throws IOException failed to close the query
+   */
+  private static BatchInfo[] runBulkQueries(BulkConnection bulkConnection, List<String> queries, String operation)
+    throws AsyncApiException, IOException {
+    SObjectDescriptor sObjectDescriptor = SObjectDescriptor.fromQuery(queries.get(0));
+    JobInfo job = SalesforceBulkUtil.createJob(bulkConnection, sObjectDescriptor.getName(),
+                                               getOperationEnum(operation), null);
+    BatchInfo[] batches = new BatchInfo[queries.size()];
+    for (int i = 0; i < batches.length; i++) {
+      batches[i] = createBatch(bulkConnection, job, queries.get(i));
+    }
+    return batches;
+  }
+
+  /**
+   * Submits the query as a new batch of the job. Query stream is recreated if the call is retried
+   * after session renewal.
+   */
+  private static BatchInfo createBatch(BulkConnection bulkConnection, JobInfo job, String query)
+    throws AsyncApiException {
+    byte[] queryBytes = query.getBytes();
+    return SalesforceConnectionManager.callWithSessionRenewal(
+      bulkConnection, () -> bulkConnection.createBatchFromStream(job, new ByteArrayInputStream(queryBytes)));
+  }
+
 
   /**
    * Initializes bulk connection based on given Hadoop credentials configuration.
@@ -130,12 +495,25 @@ public final class SalesforceSplitUtil {
    */
   public static BulkConnection getBulkConnection(AuthenticatorCredentials authenticatorCredentials) {
     try {
-      return new BulkConnection(Authenticator.createConnectorConfig(authenticatorCredentials));
+      return SalesforceConnectionManager.getBulkConnection(authenticatorCredentials);
     } catch (AsyncApiException e) {
       throw new RuntimeException("There was issue communicating with Salesforce", e);
     }
   }
 
+  /**
+   * Initializes Bulk API 2.0 connection based on given credentials.
+   *
+   * @return Bulk API 2.0 connection instance
+   */
+  public static BulkV2Connection getBulkV2Connection(AuthenticatorCredentials authenticatorCredentials) {
+    try {
+      return new BulkV2Connection(authenticatorCredentials);
+    } catch (BulkV2Exception e) {
+      throw new RuntimeException("There was issue communicating with Salesforce", e);
+    }
+  }
+
   /** When PK Chunk is enabled, wait for state of initial batch to be NotProcessed, in this case Salesforce API will
    * decide how many batches will be created
    * @param bulkConnection bulk connection instance
@@ -150,12 +528,15 @@ public final class SalesforceSplitUtil {
     BatchInfo initialBatchInfo = null;
     for (int i = 0; i < SalesforceSourceConstants.GET_BATCH_RESULTS_TRIES; i++) {
       //check if the job is aborted
-      if (bulkConnection.getJobStatus(jobId).getState() == JobStateEnum.Aborted) {
+      JobInfo jobStatus = SalesforceConnectionManager.callWithSessionRenewal(
+        bulkConnection, () -> bulkConnection.getJobStatus(jobId));
+      if (jobStatus.getState() == JobStateEnum.Aborted) {
         LOG.info(String.format("Job with Id: '%s' is aborted", jobId));
         return new BatchInfo[0];
       }
       try {
-        initialBatchInfo = bulkConnection.getBatchInfo(jobId, initialBatchId);
+        initialBatchInfo = SalesforceConnectionManager.callWithSessionRenewal(
+          bulkConnection, () -> bulkConnection.getBatchInfo(jobId, initialBatchId));
       } catch (AsyncApiException e) {
         if (i == SalesforceSourceConstants.GET_BATCH_RESULTS_TRIES - 1) {
           throw e;
@@ -165,7 +546,8 @@ public final class SalesforceSplitUtil {
       }
 
       if (initialBatchInfo.getState() == BatchStateEnum.NotProcessed) {
-        BatchInfo[] result = bulkConnection.getBatchInfoList(jobId).getBatchInfo();
+        BatchInfo[] result = SalesforceConnectionManager.callWithSessionRenewal(
+          bulkConnection, () -> bulkConnection.getBatchInfoList(jobId)).getBatchInfo();
         return Arrays.stream(result).filter(batchInfo -> batchInfo.getState() != BatchStateEnum.NotProcessed)
           .toArray(BatchInfo[]::new);
       } else if (initialBatchInfo.getState() == BatchStateEnum.Failed) {
@@ -181,6 +563,67 @@ public final class SalesforceSplitUtil {
     throw new BulkAPIBatchException("Timeout waiting for batch results", initialBatchInfo);
   }
 
+  /**
+   * Waits until all given batches are completed. Batch states are polled once per job.
+   * Timeout is restarted every time one of the batches completes.
+   *
+   * @param bulkConnection bulk connection instance
+   * @param batches batches to wait for
+   * @return completed batches
+   * @throws AsyncApiException if there is an issue getting batch info
+   * @throws InterruptedException sleep interrupted
+   */
+  @VisibleForTesting
+  static List<BatchInfo> waitForBatchCompletion(BulkConnection bulkConnection, BatchInfo[] batches)
+    throws AsyncApiException, InterruptedException {
+    Map<String, Set<String>> pendingBatches = new HashMap<>();
+    for (BatchInfo batch : batches) {
+      pendingBatches.computeIfAbsent(batch.getJobId(), jobId -> new HashSet<>()).add(batch.getId());
+    }
+
+    List<BatchInfo> completed = new ArrayList<>();
+    BatchInfo lastPending = batches.length == 0 ? null : batches[0];
+    int tries = 0;
+    while (!pendingBatches.isEmpty()) {
+      int completedBefore = completed.size();
+      Iterator<Map.Entry<String, Set<String>>> iterator = pendingBatches.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<String, Set<String>> entry = iterator.next();
+        Set<String> batchIds = entry.getValue();
+        String jobId = entry.getKey();
+        BatchInfoList batchInfoList = SalesforceConnectionManager.callWithSessionRenewal(
+          bulkConnection, () -> bulkConnection.getBatchInfoList(jobId));
+        for (BatchInfo info : batchInfoList.getBatchInfo()) {
+          if (!batchIds.contains(info.getId())) {
+            continue;
+          }
+          if (info.getState() == BatchStateEnum.Completed) {
+            completed.add(info);
+            batchIds.remove(info.getId());
+          } else if (info.getState() == BatchStateEnum.Failed) {
+            throw new BulkAPIBatchException("Batch failed", info);
+          } else {
+            lastPending = info;
+          }
+        }
+        if (batchIds.isEmpty()) {
+          iterator.remove();
+        }
+      }
+      if (pendingBatches.isEmpty()) {
+        break;
+      }
+
+      tries = completed.size() == completedBefore ? tries + 1 : 0;
+      if (tries >= SalesforceSourceConstants.GET_BATCH_RESULTS_TRIES) {
+        throw new BulkAPIBatchException("Timeout waiting for batch results", lastPending);
+      }
+      LOG.debug("Waiting for {} of {} batches to complete", batches.length - completed.size(), batches.length);
+      Thread.sleep(SalesforceSourceConstants.GET_BATCH_RESULTS_SLEEP_MS);
+    }
+    return completed;
+  }
+
   public static void closeJobs(Set<String> jobIds, AuthenticatorCredentials authenticatorCredentials) {
     BulkConnection bulkConnection = SalesforceSplitUtil.getBulkConnection(authenticatorCredentials);
     RuntimeException runtimeException = null;
@@ -200,6 +643,34 @@ public final class SalesforceSplitUtil {
     }
   }
 
+  /**
+   * Deletes Bulk API 2.0 query jobs together with their results.
+   *
+   * @param jobIds query job ids
+   * @param authenticatorCredentials credentials to connect to Salesforce
+   */
+  public static void deleteBulkV2Jobs(Set<String> jobIds, AuthenticatorCredentials authenticatorCredentials) {
+    if (jobIds.isEmpty()) {
+      return;
+    }
+    BulkV2Connection connection = getBulkV2Connection(authenticatorCredentials);
+    RuntimeException runtimeException = null;
+    for (String jobId : jobIds) {
+      try {
+        connection.deleteQueryJob(jobId);
+      } catch (BulkV2Exception e) {
+        if (runtimeException == null) {
+          runtimeException = new RuntimeException(e);
+        } else {
+          runtimeException.addSuppressed(e);
+        }
+      }
+    }
+    if (runtimeException != null) {
+      throw runtimeException;
+    }
+  }
+
   private static OperationEnum getOperationEnum(String operation) {
     try {
       return OperationEnum.valueOf(operation);
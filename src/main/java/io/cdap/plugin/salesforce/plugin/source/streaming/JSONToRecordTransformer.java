@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.salesforce.plugin.source.streaming;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.format.UnexpectedFormatException;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.spark.api.java.function.Function;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transforms Salesforce Streaming API json messages into {@link StructuredRecord}.
+ * <p/>
+ * Field lookup and value conversion are compiled once per executor from the schema,
+ * json keys are then resolved to schema fields by a single hash lookup.
+ */
+class JSONToRecordTransformer implements Function<String, StructuredRecord> {
+
+  private final Schema schema;
+  private transient Map<String, FieldConverter> converters;
+
+  JSONToRecordTransformer(Schema schema) {
+    this.schema = schema;
+  }
+
+  @Override
+  public StructuredRecord call(String jsonMessage) {
+    return transform(jsonMessage);
+  }
+
+  StructuredRecord transform(String jsonMessage) {
+    JSONObject sObjectFields;
+    try {
+      sObjectFields = new JSONObject(jsonMessage) // throws a JSONException if failed to decode
+        .getJSONObject("sobject"); // throws a JSONException if not found
+    } catch (JSONException e) {
+      throw new IllegalStateException(
+        String.format("Cannot retrieve /data/sobject from json message %s", jsonMessage), e);
+    }
+
+    Map<String, FieldConverter> fieldConverters = getConverters();
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (Map.Entry<String, Object> entry : sObjectFields.toMap().entrySet()) {
+      FieldConverter converter = fieldConverters.get(entry.getKey().toLowerCase(Locale.ROOT));
+      if (converter == null) {
+        continue; // this field is not in schema
+      }
+      converter.set(builder, entry.getValue());
+    }
+    return builder.build();
+  }
+
+  private Map<String, FieldConverter> getConverters() {
+    if (converters == null) {
+      List<Schema.Field> fields = Objects.requireNonNull(schema.getFields());
+      Map<String, FieldConverter> compiled = new HashMap<>(fields.size());
+      for (Schema.Field field : fields) {
+        // same as Schema#getField(name, true), first field wins for names which differ only in case
+        compiled.putIfAbsent(field.getName().toLowerCase(Locale.ROOT), new FieldConverter(field));
+      }
+      converters = compiled;
+    }
+    return converters;
+  }
+
+  /**
+   * Converts json values for a single schema field, field schema type is resolved once on construction.
+   */
+  private static final class FieldConverter {
+    private final String name;
+    private final Schema.Type type;
+    private final Schema.LogicalType logicalType;
+
+    private FieldConverter(Schema.Field field) {
+      Schema fieldSchema = field.getSchema();
+      if (fieldSchema.isNullable()) {
+        fieldSchema = fieldSchema.getNonNullable();
+      }
+      this.name = field.getName();
+      this.type = fieldSchema.getType();
+      this.logicalType = fieldSchema.getLogicalType();
+    }
+
+    private void set(StructuredRecord.Builder builder, Object value) {
+      builder.set(name, convert(value));
+    }
+
+    private Object convert(Object value) {
+      if (value == null) {
+        return null;
+      }
+
+      if (logicalType != null) {
+        String valueString = (String) value;
+        switch (logicalType) {
+          case DATE:
+            return Math.toIntExact(ChronoUnit.DAYS.between(Instant.EPOCH, Instant.parse(valueString)));
+          case TIMESTAMP_MICROS:
+            return TimeUnit.MILLISECONDS.toMicros(Instant.parse(valueString).toEpochMilli());
+          case TIME_MICROS:
+            return TimeUnit.NANOSECONDS.toMicros(LocalTime.parse(valueString).toNanoOfDay());
+          default:
+            throw new UnexpectedFormatException(String.format("Field '%s' is of unsupported type '%s'",
+                                                              name, logicalType.getToken()));
+        }
+      }
+
+      // Found a single field (Opportunity.Fiscal) which is documented as string and has a string type
+      // in describe result, however in Salesforce Streaming API reponse json is represented as json.
+      // Converting it and similar back to string, since it does not comply with generated schema.
+      if (value instanceof Map) {
+        if (type == Schema.Type.STRING) {
+          return value.toString();
+        }
+        throw new UnexpectedFormatException(
+          String.format("Field '%s' is of type '%s', but value found is '%s'", name, type, value));
+      }
+
+      return value;
+    }
+  }
+}
@@ -37,8 +37,8 @@ import io.cdap.plugin.common.IdUtils;
 import io.cdap.plugin.common.LineageRecorder;
 import io.cdap.plugin.salesforce.SObjectDescriptor;
 import io.cdap.plugin.salesforce.SalesforceSchemaUtil;
-import io.cdap.plugin.salesforce.authenticator.Authenticator;
 import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
 import org.apache.spark.streaming.api.java.JavaDStream;
 import org.apache.tephra.TransactionFailureException;
 import org.slf4j.Logger;
@@ -116,8 +116,7 @@ public class SalesforceStreamingSource extends StreamingSource<StructuredRecord>
   @Path("outputSchema")
   public Schema outputSchema(SalesforceStreamingSourceConfig config) throws Exception {
     AuthenticatorCredentials authenticatorCredentials = config.getAuthenticatorCredentials();
-    PartnerConnection partnerConnection = new PartnerConnection(
-      Authenticator.createConnectorConfig(authenticatorCredentials));
+    PartnerConnection partnerConnection = SalesforceConnectionManager.getPartnerConnection(authenticatorCredentials);
     SObject pushTopic =
       SalesforceStreamingSourceConfig.fetchPushTopicByName(partnerConnection, config.getPushTopicName());
 
@@ -31,7 +31,7 @@ import io.cdap.plugin.salesforce.SObjectDescriptor;
 import io.cdap.plugin.salesforce.SObjectFilterDescriptor;
 import io.cdap.plugin.salesforce.SalesforceConstants;
 import io.cdap.plugin.salesforce.SalesforceQueryUtil;
-import io.cdap.plugin.salesforce.authenticator.Authenticator;
+import io.cdap.plugin.salesforce.authenticator.SalesforceConnectionManager;
 import io.cdap.plugin.salesforce.plugin.BaseSalesforceConfig;
 import io.cdap.plugin.salesforce.plugin.OAuthInfo;
 import io.cdap.plugin.salesforce.soap.SObjectBuilder;
@@ -174,8 +174,8 @@ public class SalesforceStreamingSourceConfig extends BaseSalesforceConfig implem
     }
 
     try {
-      PartnerConnection partnerConnection = new PartnerConnection(
-        Authenticator.createConnectorConfig(this.getAuthenticatorCredentials()));
+      PartnerConnection partnerConnection =
+        SalesforceConnectionManager.getPartnerConnection(this.getAuthenticatorCredentials());
 
       SObject pushTopic = fetchPushTopicByName(partnerConnection, pushTopicName);
       String query = getQuery();
@@ -23,6 +23,7 @@ import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -227,4 +228,59 @@ public class SalesforceQueryUtilTest {
 
     Assert.assertEquals("SELECT Id " + fromClause, sObjectIdQuery);
   }
+
+  @Test
+  public void testCreateColumnSplitQueries() {
+    String fieldPrefix = "field_";
+    List<String> fieldNames = IntStream.range(0, SalesforceConstants.SOQL_MAX_LENGTH / fieldPrefix.length())
+      .mapToObj(i -> fieldPrefix + i)
+      .collect(Collectors.toList());
+    String fromClause = "FROM sObjectName WHERE LastModifiedDate>=2019-04-12T23:23:23Z";
+    String query = String.format("SELECT Id,%s %s", String.join(",", fieldNames), fromClause);
+
+    List<String> queries = SalesforceQueryUtil.createColumnSplitQueries(query);
+
+    Assert.assertTrue(queries.size() > 1);
+    List<String> splitFieldNames = new ArrayList<>();
+    for (String columnQuery : queries) {
+      Assert.assertTrue(SalesforceQueryUtil.isQueryUnderLengthLimit(columnQuery));
+      Assert.assertTrue(columnQuery.startsWith("SELECT Id,"));
+      Assert.assertTrue(columnQuery.endsWith(" " + fromClause + " ORDER BY Id"));
+      String fields = columnQuery.substring("SELECT Id,".length(), columnQuery.indexOf(" " + fromClause));
+      splitFieldNames.addAll(Arrays.asList(fields.split(",")));
+    }
+    Assert.assertEquals(fieldNames, splitFieldNames);
+  }
+
+  @Test
+  public void testCreateCountQuery() {
+    Assert.assertEquals("SELECT COUNT() FROM sObjectName WHERE Name LIKE 'S_%'",
+                        SalesforceQueryUtil.createCountQuery("SELECT Id,Name FROM sObjectName WHERE Name LIKE 'S_%'"));
+  }
+
+  @Test
+  public void testCreateBoundaryQuery() {
+    String query = "SELECT Id,Name FROM sObjectName WHERE Name LIKE 'S_%'";
+
+    Assert.assertEquals("SELECT CreatedDate FROM sObjectName WHERE Name LIKE 'S_%' ORDER BY CreatedDate ASC LIMIT 1",
+                        SalesforceQueryUtil.createBoundaryQuery(query, "CreatedDate", true));
+    Assert.assertEquals("SELECT CreatedDate FROM sObjectName WHERE Name LIKE 'S_%' ORDER BY CreatedDate DESC LIMIT 1",
+                        SalesforceQueryUtil.createBoundaryQuery(query, "CreatedDate", false));
+  }
+
+  @Test
+  public void testCreateRangeQueries() {
+    String query = "SELECT Id,Name FROM sObjectName WHERE Name LIKE 'S_%'";
+
+    List<String> queries = SalesforceQueryUtil.createRangeQueries(
+      query, "CreatedDate", Arrays.asList("2020-01-01T00:00:00Z", "2021-01-01T00:00:00Z"));
+
+    Assert.assertEquals(Arrays.asList(
+      "SELECT Id,Name FROM sObjectName WHERE (Name LIKE 'S_%') AND CreatedDate<2020-01-01T00:00:00Z",
+      "SELECT Id,Name FROM sObjectName WHERE (Name LIKE 'S_%') AND "
+        + "(CreatedDate>=2020-01-01T00:00:00Z AND CreatedDate<2021-01-01T00:00:00Z)",
+      "SELECT Id,Name FROM sObjectName WHERE (Name LIKE 'S_%') AND CreatedDate>=2021-01-01T00:00:00Z"), queries);
+    Assert.assertEquals(Collections.singletonList(query),
+                        SalesforceQueryUtil.createRangeQueries(query, "CreatedDate", Collections.emptyList()));
+  }
 }
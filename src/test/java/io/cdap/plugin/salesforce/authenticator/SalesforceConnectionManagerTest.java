@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.authenticator;
+
+import com.sforce.async.AsyncApiException;
+import com.sforce.async.AsyncExceptionCode;
+import com.sforce.async.BulkConnection;
+import com.sforce.ws.ConnectorConfig;
+import io.cdap.plugin.salesforce.bulkv2.BulkV2TestServer;
+import io.cdap.plugin.salesforce.plugin.OAuthInfo;
+import org.eclipse.jetty.client.HttpClient;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SalesforceConnectionManagerTest {
+
+  @Test
+  public void testCallRetriedAfterSessionRenewal() throws Exception {
+    ConnectorConfig config = new ConnectorConfig();
+    config.setSessionId("expired");
+    config.setSessionRenewer(connectorConfig -> {
+      connectorConfig.setSessionId("renewed");
+      return null;
+    });
+    BulkConnection bulkConnection = mockBulkConnection(config);
+
+    AtomicInteger calls = new AtomicInteger();
+    String result = SalesforceConnectionManager.callWithSessionRenewal(bulkConnection, () -> {
+      calls.incrementAndGet();
+      if ("expired".equals(config.getSessionId())) {
+        throw new AsyncApiException("Invalid session id", AsyncExceptionCode.InvalidSessionId);
+      }
+      return config.getSessionId();
+    });
+
+    Assert.assertEquals("renewed", result);
+    Assert.assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void testOtherFailuresNotRetried() {
+    ConnectorConfig config = new ConnectorConfig();
+    AtomicInteger renewals = new AtomicInteger();
+    config.setSessionRenewer(connectorConfig -> {
+      renewals.incrementAndGet();
+      return null;
+    });
+    BulkConnection bulkConnection = mockBulkConnection(config);
+
+    AtomicInteger calls = new AtomicInteger();
+    try {
+      SalesforceConnectionManager.callWithSessionRenewal(bulkConnection, () -> {
+        calls.incrementAndGet();
+        throw new AsyncApiException("Limit exceeded", AsyncExceptionCode.ExceededQuota);
+      });
+      Assert.fail("Expected call to fail");
+    } catch (AsyncApiException e) {
+      Assert.assertEquals(AsyncExceptionCode.ExceededQuota, e.getExceptionCode());
+    }
+    Assert.assertEquals(1, calls.get());
+    Assert.assertEquals(0, renewals.get());
+  }
+
+  @Test
+  public void testRegisteredSessionReused() throws Exception {
+    AuthenticatorCredentials credentials = createCredentials("reused");
+    OAuthInfo session = new OAuthInfo("token", "https://instance");
+    SalesforceConnectionManager.registerSession(credentials, session, System.currentTimeMillis());
+
+    Assert.assertSame(session, SalesforceConnectionManager.getOAuthInfo(credentials));
+  }
+
+  @Test
+  public void testRegisteredSessionKeepsObtainedTime() throws Exception {
+    AuthenticatorCredentials credentials = createCredentials("obtained");
+    OAuthInfo session = new OAuthInfo("token", "https://instance");
+    long obtainedAt = System.currentTimeMillis() - SalesforceConnectionManager.SESSION_TTL_MS / 2;
+    SalesforceConnectionManager.registerSession(credentials, session, obtainedAt);
+
+    // session registered in a task expires when the session obtained in the driver does
+    Assert.assertEquals(obtainedAt, SalesforceConnectionManager.getSessionObtainedAtMs(credentials, session));
+    Assert.assertSame(session, SalesforceConnectionManager.getOAuthInfo(credentials));
+  }
+
+  @Test
+  public void testExpiredSessionNotReused() throws Exception {
+    AuthenticatorCredentials credentials = createCredentials("expired");
+    long expiredAt = System.currentTimeMillis() - SalesforceConnectionManager.SESSION_TTL_MS;
+    SalesforceConnectionManager.registerSession(credentials, new OAuthInfo("expired", "https://instance"), expiredAt);
+
+    try {
+      SalesforceConnectionManager.getOAuthInfo(credentials);
+      Assert.fail("Expected login with unreachable login url to fail");
+    } catch (Exception e) {
+      // expired session is not returned, new login is attempted instead
+    }
+
+    OAuthInfo session = new OAuthInfo("registered", "https://instance");
+    SalesforceConnectionManager.registerSession(credentials, new OAuthInfo("expired", "https://instance"), expiredAt);
+    SalesforceConnectionManager.registerSession(credentials, session, System.currentTimeMillis());
+    Assert.assertSame(session, SalesforceConnectionManager.getOAuthInfo(credentials));
+  }
+
+  @Test
+  public void testSessionCachedPerCredentials() throws Exception {
+    try (BulkV2TestServer server = new BulkV2TestServer("Id", Collections.emptyList())) {
+      AuthenticatorCredentials credentials = server.getPasswordCredentials();
+      long logins = SalesforceConnectionManager.getMetrics().getLogins();
+      long sessionHits = SalesforceConnectionManager.getMetrics().getSessionHits();
+
+      OAuthInfo session = SalesforceConnectionManager.getOAuthInfo(credentials);
+      Assert.assertEquals("token", session.getAccessToken());
+      Assert.assertSame(session, SalesforceConnectionManager.getOAuthInfo(credentials));
+      // connections of the same credentials use the cached session
+      SalesforceConnectionManager.getBulkConnection(credentials);
+      SalesforceConnectionManager.getPartnerConnection(credentials);
+
+      Assert.assertEquals(1, server.getLogins());
+      SalesforceConnectionManager.Metrics metrics = SalesforceConnectionManager.getMetrics();
+      Assert.assertEquals(logins + 1, metrics.getLogins());
+      Assert.assertTrue(metrics.getSessionHits() >= sessionHits + 3);
+    }
+  }
+
+  @Test
+  public void testConcurrentLoginsDeduplicated() throws Exception {
+    try (BulkV2TestServer server = new BulkV2TestServer("Id", Collections.emptyList())) {
+      AuthenticatorCredentials credentials = server.getPasswordCredentials();
+      int threads = 8;
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<OAuthInfo>> sessions = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+          sessions.add(executor.submit(() -> {
+            start.await();
+            return SalesforceConnectionManager.getOAuthInfo(credentials);
+          }));
+        }
+        start.countDown();
+
+        OAuthInfo session = sessions.get(0).get(10, TimeUnit.SECONDS);
+        for (Future<OAuthInfo> future : sessions) {
+          Assert.assertSame(session, future.get(10, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(1, server.getLogins());
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  @Test
+  public void testHttpClientShared() throws Exception {
+    HttpClient httpClient = SalesforceConnectionManager.getHttpClient();
+    Assert.assertTrue(httpClient.isStarted());
+
+    try (BulkV2TestServer server = new BulkV2TestServer("Id", Collections.emptyList())) {
+      SalesforceConnectionManager.getOAuthInfo(server.getPasswordCredentials());
+    }
+    // the client is not stopped after a login and is reused by the following logins
+    Assert.assertSame(httpClient, SalesforceConnectionManager.getHttpClient());
+    Assert.assertTrue(httpClient.isStarted());
+  }
+
+  private static AuthenticatorCredentials createCredentials(String username) {
+    return new AuthenticatorCredentials(username, "password", "key", "secret",
+                                        "http://localhost:1/services/oauth2/token");
+  }
+
+  private static BulkConnection mockBulkConnection(ConnectorConfig config) {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    Mockito.when(bulkConnection.getConfig()).thenReturn(config);
+    return bulkConnection;
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.salesforce.bulkv2;
+
+import com.google.common.io.ByteStreams;
+import io.cdap.plugin.salesforce.SalesforceConstants;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class BulkV2ConnectionTest {
+
+  private BulkV2TestServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new BulkV2TestServer("Id,Name", Arrays.asList("1,a", "2,b", "3,c"));
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void testQueryJob() throws Exception {
+    BulkV2Connection connection = new BulkV2Connection(server.getOAuthCredentials());
+
+    BulkV2JobInfo job = connection.createQueryJob("SELECT Id, Name FROM Account", "query");
+    Assert.assertEquals(BulkV2TestServer.JOB_ID, job.getId());
+    Assert.assertFalse(job.isComplete());
+
+    job = connection.awaitQueryJob(job.getId(), 1, 10);
+    Assert.assertTrue(job.isComplete());
+    Assert.assertEquals(3, job.getNumberRecordsProcessed());
+  }
+
+  @Test
+  public void testQueryResultPages() throws Exception {
+    BulkV2Connection connection = new BulkV2Connection(server.getOAuthCredentials());
+
+    try (QueryResultPage page = connection.getQueryResults(BulkV2TestServer.JOB_ID, null, 2)) {
+      Assert.assertEquals("2", page.getNextLocator());
+      Assert.assertEquals(2, page.getNumberOfRecords());
+      Assert.assertEquals("Id,Name\n1,a\n2,b\n",
+                          new String(ByteStreams.toByteArray(page.getContent()), StandardCharsets.UTF_8));
+    }
+    try (QueryResultPage page = connection.getQueryResults(BulkV2TestServer.JOB_ID, "2", 2)) {
+      Assert.assertNull(page.getNextLocator());
+      Assert.assertEquals(1, page.getNumberOfRecords());
+      Assert.assertEquals("Id,Name\n3,c\n",
+                          new String(ByteStreams.toByteArray(page.getContent()), StandardCharsets.UTF_8));
+    }
+    Assert.assertEquals("2", connection.getNextLocator(BulkV2TestServer.JOB_ID, null, 2));
+    // pages are downloaded gzip encoded and decoded while read
+    Assert.assertTrue(server.getCompressedResponses().stream().anyMatch(request -> request.contains("/results")));
+  }
+
+  @Test
+  public void testIngestJob() throws Exception {
+    BulkV2Connection connection = new BulkV2Connection(server.getOAuthCredentials());
+
+    BulkV2JobInfo job = connection.createIngestJob("Account", "insert", null);
+    Assert.assertFalse(job.isComplete());
+    try (JobDataUpload upload = connection.uploadIngestJobData(job.getId())) {
+      upload.write("\"Name\"\r\n\"a\"\r\n\"fail\"\r\n".getBytes(StandardCharsets.UTF_8));
+      Assert.assertEquals(job.getId(), upload.getJobId());
+    }
+    connection.completeIngestJobUpload(job.getId());
+
+    job = connection.awaitIngestJob(job.getId(), 1, 10);
+    Assert.assertTrue(job.isComplete());
+    Assert.assertEquals(2, job.getNumberRecordsProcessed());
+    Assert.assertEquals(1, job.getNumberRecordsFailed());
+    Assert.assertEquals(Collections.singletonList("\"Name\"\r\n\"a\"\r\n\"fail\"\r\n"), server.getIngestJobData());
+    Assert.assertEquals(Collections.singletonList("PUT /services/data/v" + SalesforceConstants.API_VERSION
+                                                    + "/jobs/ingest/" + job.getId() + "/batches"),
+                        server.getCompressedRequests());
+    Assert.assertEquals("\"sf__Id\",\"sf__Error\",\"Name\"\r\n\"\",\"INVALID_FIELD:bad value\",\"fail\"\r\n",
+                        new String(ByteStreams.toByteArray(connection.getIngestJobFailedResults(job.getId())),
+                                   StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testSessionRenewedOnInvalidSession() throws Exception {
+    BulkV2Connection connection = new BulkV2Connection(server.getPasswordCredentials());
+    server.expireSession();
+
+    Assert.assertNotNull(connection.getQueryJobInfo(BulkV2TestServer.JOB_ID));
+    Assert.assertEquals(2, server.getRequests().size());
+  }
+
+  @Test
+  public void testErrorResponse() throws Exception {
+    BulkV2Connection connection = new BulkV2Connection(server.getOAuthCredentials());
+    try {
+      connection.getQueryJobInfo("unknown");
+      Assert.fail("Expected request to fail");
+    } catch (BulkV2Exception e) {
+      Assert.assertEquals(404, e.getStatusCode());
+      Assert.assertEquals("NOT_FOUND", e.getErrorCode());
+    }
+  }
+}
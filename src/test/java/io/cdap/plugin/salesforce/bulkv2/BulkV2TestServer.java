@@ -0,0 +1,323 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.salesforce.bulkv2;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.cdap.plugin.salesforce.SalesforceConstants;
+import io.cdap.plugin.salesforce.authenticator.AuthenticatorCredentials;
+import io.cdap.plugin.salesforce.plugin.OAuthInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for Salesforce Bulk API 2.0. Serves a single query job, which completes after being
+ * polled once, and pages its CSV results by offset locators, a page without records is an empty response.
+ * Ingest jobs complete once their upload is completed, uploaded rows which first value starts with "fail" are
+ * reported as failed. Requests with a token other than the current one are rejected with INVALID_SESSION_ID,
+ * password grant login issues a new token. Gzip encoded request bodies are decoded, and responses are gzip
+ * encoded if the client accepts it.
+ */
+public class BulkV2TestServer implements Closeable {
+
+  public static final String JOB_ID = "750000000000001";
+
+  private static final String JOBS_PATH = "/services/data/v" + SalesforceConstants.API_VERSION + "/jobs/query";
+  private static final String INGEST_JOBS_PATH =
+    "/services/data/v" + SalesforceConstants.API_VERSION + "/jobs/ingest";
+  private static final String LOGIN_PATH = "/services/oauth2/token";
+  private static final String GZIP = "gzip";
+
+  private final HttpServer server;
+  private final String header;
+  private final List<String> rows;
+  private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+  private final List<String> compressedRequests = Collections.synchronizedList(new ArrayList<>());
+  private final List<String> compressedResponses = Collections.synchronizedList(new ArrayList<>());
+  private volatile String accessToken = "token";
+  private volatile int jobPolls;
+  private final AtomicInteger logins = new AtomicInteger();
+  private volatile boolean rejectUploads;
+  private final Map<String, IngestJob> ingestJobs = Collections.synchronizedMap(new LinkedHashMap<>());
+
+  public BulkV2TestServer(String header, List<String> rows) throws IOException {
+    this.header = header;
+    this.rows = rows;
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  public String getUrl() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  /**
+   * @return credentials with the current access token
+   */
+  public AuthenticatorCredentials getOAuthCredentials() {
+    return new AuthenticatorCredentials(new OAuthInfo(accessToken, getUrl()));
+  }
+
+  /**
+   * @return credentials, which log in through the password grant of this server
+   */
+  public AuthenticatorCredentials getPasswordCredentials() {
+    return new AuthenticatorCredentials("user", "password", "key", "secret", getUrl() + LOGIN_PATH);
+  }
+
+  /**
+   * Rejects the current access token, so clients have to log in again.
+   */
+  public void expireSession() {
+    accessToken = accessToken + "-renewed";
+  }
+
+  /**
+   * Rejects uploads of ingest job data from now on.
+   */
+  public void rejectUploads() {
+    rejectUploads = true;
+  }
+
+  /**
+   * @return number of password grant logins
+   */
+  public int getLogins() {
+    return logins.get();
+  }
+
+  /**
+   * @return received requests as method and path with query string, except login requests
+   */
+  public List<String> getRequests() {
+    synchronized (requests) {
+      return new ArrayList<>(requests);
+    }
+  }
+
+  /**
+   * @return requests with gzip encoded body
+   */
+  public List<String> getCompressedRequests() {
+    synchronized (compressedRequests) {
+      return new ArrayList<>(compressedRequests);
+    }
+  }
+
+  /**
+   * @return requests which were responded with gzip encoded body
+   */
+  public List<String> getCompressedResponses() {
+    synchronized (compressedResponses) {
+      return new ArrayList<>(compressedResponses);
+    }
+  }
+
+  /**
+   * @return uploaded data of ingest jobs in the order the jobs were created
+   */
+  public List<String> getIngestJobData() {
+    synchronized (ingestJobs) {
+      return ingestJobs.values().stream().map(job -> job.data).collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * @return states of ingest jobs in the order the jobs were created
+   */
+  public List<String> getIngestJobStates() {
+    synchronized (ingestJobs) {
+      return ingestJobs.values().stream().map(job -> job.state).collect(Collectors.toList());
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String method = exchange.getRequestMethod();
+    String path = exchange.getRequestURI().getPath();
+    String query = exchange.getRequestURI().getRawQuery();
+    String request = method + " " + path + (query == null ? "" : "?" + query);
+    InputStream requestBody = exchange.getRequestBody();
+    if (GZIP.equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+      compressedRequests.add(request);
+      requestBody = new GZIPInputStream(requestBody);
+    }
+    String body = new String(ByteStreams.toByteArray(requestBody), StandardCharsets.UTF_8);
+    if (LOGIN_PATH.equals(path)) {
+      logins.incrementAndGet();
+      respond(exchange, 200, String.format("{\"access_token\":\"%s\",\"instance_url\":\"%s\"}",
+                                           accessToken, getUrl()));
+      return;
+    }
+    requests.add(request);
+
+    if (!("Bearer " + accessToken).equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+      respond(exchange, 401, "[{\"errorCode\":\"INVALID_SESSION_ID\",\"message\":\"Session expired or invalid\"}]");
+    } else if ("POST".equals(method) && JOBS_PATH.equals(path)) {
+      respond(exchange, 200, jobJson(BulkV2JobInfo.STATE_UPLOAD_COMPLETE));
+    } else if ("GET".equals(method) && (JOBS_PATH + "/" + JOB_ID).equals(path)) {
+      respond(exchange, 200, jobJson(jobPolls++ == 0 ? BulkV2JobInfo.STATE_IN_PROGRESS
+                                       : BulkV2JobInfo.STATE_JOB_COMPLETE));
+    } else if ("GET".equals(method) && (JOBS_PATH + "/" + JOB_ID + "/results").equals(path)) {
+      respondResults(exchange, parseQuery(query));
+    } else if (path.startsWith(INGEST_JOBS_PATH)) {
+      handleIngest(exchange, method, path.substring(INGEST_JOBS_PATH.length()), body);
+    } else if ("DELETE".equals(method) && (JOBS_PATH + "/" + JOB_ID).equals(path)) {
+      exchange.sendResponseHeaders(204, -1);
+      exchange.close();
+    } else {
+      respond(exchange, 404, "[{\"errorCode\":\"NOT_FOUND\",\"message\":\"The requested resource does not exist\"}]");
+    }
+  }
+
+  private void handleIngest(HttpExchange exchange, String method, String path, String body) throws IOException {
+    String[] parts = path.split("/");
+    IngestJob job = parts.length > 1 ? ingestJobs.get(parts[1]) : null;
+    if ("POST".equals(method) && parts.length == 0) {
+      job = new IngestJob(String.format("750%012d", ingestJobs.size() + 2));
+      ingestJobs.put(job.id, job);
+      respond(exchange, 200, job.toJson());
+    } else if (job != null && "PUT".equals(method) && parts.length == 3 && "batches".equals(parts[2])
+      && rejectUploads) {
+      respond(exchange, 400, "[{\"errorCode\":\"INVALIDJOBSTATE\",\"message\":\"Upload rejected\"}]");
+    } else if (job != null && "PUT".equals(method) && parts.length == 3 && "batches".equals(parts[2])) {
+      job.data = body;
+      exchange.sendResponseHeaders(201, -1);
+      exchange.close();
+    } else if (job != null && "PATCH".equals(method) && parts.length == 2) {
+      job.state = body.contains(BulkV2JobInfo.STATE_ABORTED)
+        ? BulkV2JobInfo.STATE_ABORTED : BulkV2JobInfo.STATE_JOB_COMPLETE;
+      respond(exchange, 200, job.toJson());
+    } else if (job != null && "GET".equals(method) && parts.length == 2) {
+      respond(exchange, 200, job.toJson());
+    } else if (job != null && "GET".equals(method) && parts.length == 3 && "failedResults".equals(parts[2])) {
+      StringBuilder content = new StringBuilder("\"sf__Id\",\"sf__Error\",").append(job.header()).append("\r\n");
+      for (String row : job.failedRows()) {
+        content.append("\"\",\"INVALID_FIELD:bad value\",").append(row).append("\r\n");
+      }
+      respond(exchange, 200, content.toString());
+    } else {
+      respond(exchange, 404, "[{\"errorCode\":\"NOT_FOUND\",\"message\":\"The requested resource does not exist\"}]");
+    }
+  }
+
+  private void respondResults(HttpExchange exchange, Map<String, String> params) throws IOException {
+    int offset = params.containsKey("locator") ? Integer.parseInt(params.get("locator")) : 0;
+    int maxRecords = Integer.parseInt(params.get("maxRecords"));
+    int end = Math.min(rows.size(), offset + maxRecords);
+    // like Salesforce, no header is sent without records
+    StringBuilder content = new StringBuilder(offset < end ? header + "\n" : "");
+    for (String row : rows.subList(offset, end)) {
+      content.append(row).append('\n');
+    }
+    exchange.getResponseHeaders().add("Content-Type", "text/csv");
+    exchange.getResponseHeaders().add("Sforce-Locator", end < rows.size() ? String.valueOf(end) : "null");
+    exchange.getResponseHeaders().add("Sforce-NumberOfRecords", String.valueOf(end - offset));
+    respond(exchange, 200, content.toString());
+  }
+
+  private String jobJson(String state) {
+    return String.format("{\"id\":\"%s\",\"operation\":\"query\",\"object\":\"Account\",\"state\":\"%s\"," +
+                           "\"numberRecordsProcessed\":%d}", JOB_ID, state,
+                         BulkV2JobInfo.STATE_JOB_COMPLETE.equals(state) ? rows.size() : 0);
+  }
+
+  /**
+   * Ingest job with its uploaded data.
+   */
+  private static final class IngestJob {
+    private final String id;
+    private volatile String state = "Open";
+    private volatile String data = "";
+
+    private IngestJob(String id) {
+      this.id = id;
+    }
+
+    private String header() {
+      return data.isEmpty() ? "" : data.split("\r\n", -1)[0];
+    }
+
+    private List<String> rows() {
+      List<String> lines = Arrays.asList(data.split("\r\n"));
+      return lines.isEmpty() ? lines : lines.subList(1, lines.size());
+    }
+
+    private List<String> failedRows() {
+      return rows().stream().filter(row -> row.startsWith("\"fail")).collect(Collectors.toList());
+    }
+
+    private String toJson() {
+      boolean complete = BulkV2JobInfo.STATE_JOB_COMPLETE.equals(state);
+      return String.format("{\"id\":\"%s\",\"operation\":\"insert\",\"object\":\"Account\",\"state\":\"%s\"," +
+                             "\"numberRecordsProcessed\":%d,\"numberRecordsFailed\":%d}", id, state,
+                           complete ? rows().size() : 0, complete ? failedRows().size() : 0);
+    }
+  }
+
+  private static Map<String, String> parseQuery(String query) {
+    Map<String, String> params = new HashMap<>();
+    if (query != null) {
+      for (String param : query.split("&")) {
+        String[] keyValue = param.split("=", 2);
+        params.put(keyValue[0], keyValue.length > 1 ? keyValue[1] : "");
+      }
+    }
+    return params;
+  }
+
+  private void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+    if (acceptEncoding != null && acceptEncoding.contains(GZIP)) {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      try (OutputStream out = new GZIPOutputStream(compressed)) {
+        out.write(bytes);
+      }
+      bytes = compressed.toByteArray();
+      exchange.getResponseHeaders().add("Content-Encoding", GZIP);
+      compressedResponses.add(exchange.getRequestMethod() + " " + exchange.getRequestURI());
+    }
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}
@@ -39,7 +39,7 @@ import io.cdap.cdap.test.TestConfiguration;
 import io.cdap.cdap.test.WorkflowManager;
 import io.cdap.plugin.salesforce.plugin.sink.batch.SalesforceBatchSink;
 import io.cdap.plugin.salesforce.plugin.sink.batch.SalesforceSinkConfig;
-import io.cdap.plugin.salesforce.plugin.sink.batch.StructuredRecordToCSVRecordTransformer;
+import io.cdap.plugin.salesforce.plugin.sink.batch.StructuredRecordCSVEncoder;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -163,7 +163,7 @@ public abstract class BaseSalesforceBatchSinkETLTest extends BaseSalesforceETLTe
       if (isString) {
         sb.append("'");
       }
-      String value = StructuredRecordToCSVRecordTransformer.convertSchemaFieldToString(record.get(fieldName), field);
+      String value = StructuredRecordCSVEncoder.convertSchemaFieldToString(record.get(fieldName), field);
       if (value != null) {
         sb.append(value);
       }
@@ -266,4 +266,18 @@ public class SalesforceQueryParserTest {
       Collections.singletonList(new SObjectDescriptor("Contacts", fields)),
       result.getChildSObjects());
   }
+
+  @Test
+  public void testAddCondition() {
+    Assert.assertEquals("SELECT Id FROM Account WHERE CreatedDate<2020-01-01T00:00:00Z",
+                        SalesforceQueryParser.addCondition("SELECT Id FROM Account",
+                                                           "CreatedDate<2020-01-01T00:00:00Z"));
+    Assert.assertEquals("SELECT Id FROM Account a USING SCOPE Mine WHERE CreatedDate<2020-01-01T00:00:00Z",
+                        SalesforceQueryParser.addCondition("SELECT Id FROM Account a USING SCOPE Mine",
+                                                           "CreatedDate<2020-01-01T00:00:00Z"));
+    Assert.assertEquals("SELECT Id FROM Account WHERE (Name = 'a' OR Name = 'b') AND CreatedDate<2020-01-01T00:00:00Z"
+                          + " ORDER BY Name",
+                        SalesforceQueryParser.addCondition("SELECT Id FROM Account WHERE Name = 'a' OR Name = 'b'"
+                                                             + " ORDER BY Name", "CreatedDate<2020-01-01T00:00:00Z"));
+  }
 }
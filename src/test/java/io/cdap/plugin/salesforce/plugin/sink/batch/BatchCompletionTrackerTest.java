@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import com.sforce.async.BatchInfo;
+import com.sforce.async.BatchStateEnum;
+import com.sforce.async.BulkConnection;
+import io.cdap.plugin.salesforce.BulkAPIBatchException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class BatchCompletionTrackerTest {
+
+  private static final String JOB_ID = "750000000000001";
+  private static final String SERIAL_JOB_ID = "750000000000002";
+
+  @Test
+  public void testBatchesReportedAsTheyComplete() throws Exception {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    Mockito.when(bulkConnection.getBatchInfo(JOB_ID, "batch1"))
+      .thenReturn(createBatchInfo("batch1", BatchStateEnum.InProgress))
+      .thenReturn(createBatchInfo("batch1", BatchStateEnum.Completed));
+    Mockito.when(bulkConnection.getBatchInfo(JOB_ID, "batch2"))
+      .thenReturn(createBatchInfo("batch2", BatchStateEnum.Completed));
+
+    List<String> completed = new ArrayList<>();
+    createTracker(bulkConnection, 1000).awaitCompletion(
+      Arrays.asList(createBatchInfo("batch0", BatchStateEnum.Completed),
+                    createBatchInfo("batch1", BatchStateEnum.Queued),
+                    createBatchInfo("batch2", BatchStateEnum.Queued)),
+      batchInfo -> completed.add(batchInfo.getId()));
+
+    Assert.assertEquals(Arrays.asList("batch0", "batch2", "batch1"), completed);
+    // completed batches are not requested again and batches of the whole job are not requested
+    Mockito.verify(bulkConnection, Mockito.never()).getBatchInfo(JOB_ID, "batch0");
+    Mockito.verify(bulkConnection, Mockito.times(1)).getBatchInfo(JOB_ID, "batch2");
+    Mockito.verify(bulkConnection, Mockito.never()).getBatchInfoList(JOB_ID);
+  }
+
+  @Test
+  public void testOldestPendingBatchesPolled() throws Exception {
+    int batchesCount = SalesforceSinkConstants.BATCH_STATUS_MAX_POLLED_BATCHES + 2;
+    List<BatchInfo> submitted = new ArrayList<>();
+    for (int i = 0; i < batchesCount; i++) {
+      submitted.add(createBatchInfo("batch" + i, BatchStateEnum.Queued));
+    }
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    Mockito.when(bulkConnection.getBatchInfo(Mockito.eq(JOB_ID), Mockito.anyString()))
+      .thenAnswer(invocation -> createBatchInfo(invocation.getArgument(1), BatchStateEnum.Completed));
+    Mockito.when(bulkConnection.getBatchInfo(JOB_ID, "batch0"))
+      .thenReturn(createBatchInfo("batch0", BatchStateEnum.InProgress))
+      .thenReturn(createBatchInfo("batch0", BatchStateEnum.Completed));
+
+    List<String> completed = new ArrayList<>();
+    createTracker(bulkConnection, 1000).awaitCompletion(submitted, batchInfo -> completed.add(batchInfo.getId()));
+
+    // the newest batches are polled only once older ones completed
+    List<String> expected = new ArrayList<>();
+    for (int i = 1; i < SalesforceSinkConstants.BATCH_STATUS_MAX_POLLED_BATCHES; i++) {
+      expected.add("batch" + i);
+    }
+    expected.add("batch0");
+    for (int i = SalesforceSinkConstants.BATCH_STATUS_MAX_POLLED_BATCHES; i < batchesCount; i++) {
+      expected.add("batch" + i);
+    }
+    Assert.assertEquals(expected, completed);
+    Mockito.verify(bulkConnection, Mockito.times(batchesCount + 1))
+      .getBatchInfo(Mockito.eq(JOB_ID), Mockito.anyString());
+    Mockito.verify(bulkConnection, Mockito.never()).getBatchInfoList(Mockito.anyString());
+  }
+
+  @Test
+  public void testCompletedBatchesPolledWithoutWaiting() throws Exception {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    Mockito.when(bulkConnection.getBatchInfo(JOB_ID, "batch0"))
+      .thenReturn(createBatchInfo("batch0", BatchStateEnum.Completed));
+    Mockito.when(bulkConnection.getBatchInfo(JOB_ID, "batch1"))
+      .thenReturn(createBatchInfo("batch1", BatchStateEnum.InProgress))
+      .thenReturn(createBatchInfo("batch1", BatchStateEnum.Completed));
+    Mockito.when(bulkConnection.getBatchInfo(SERIAL_JOB_ID, "batch2"))
+      .thenReturn(createBatchInfo(SERIAL_JOB_ID, "batch2", BatchStateEnum.Completed));
+
+    BatchCompletionTracker tracker = createTracker(bulkConnection, 1000);
+    tracker.add(createBatchInfo("batch0", BatchStateEnum.Queued));
+    tracker.add(createBatchInfo("batch1", BatchStateEnum.Queued));
+    tracker.add(createBatchInfo(SERIAL_JOB_ID, "batch2", BatchStateEnum.Queued));
+    List<String> completed = new ArrayList<>();
+    tracker.pollCompleted(batchInfo -> completed.add(batchInfo.getId()));
+
+    // polling stops at the first batch, which is not completed yet
+    Assert.assertEquals(Collections.singletonList("batch0"), completed);
+    Mockito.verify(bulkConnection, Mockito.never()).getBatchInfo(SERIAL_JOB_ID, "batch2");
+
+    // state of each batch is requested from the job it was added to
+    tracker.awaitCompletion(batchInfo -> completed.add(batchInfo.getId()));
+    Assert.assertEquals(Arrays.asList("batch0", "batch1", "batch2"), completed);
+  }
+
+  @Test(expected = BulkAPIBatchException.class)
+  public void testFailedBatch() throws Exception {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    Mockito.when(bulkConnection.getBatchInfo(JOB_ID, "batch0"))
+      .thenReturn(createBatchInfo("batch0", BatchStateEnum.Failed));
+
+    createTracker(bulkConnection, 1000).awaitCompletion(
+      Arrays.asList(createBatchInfo("batch0", BatchStateEnum.Queued)), batchInfo -> { });
+  }
+
+  @Test(expected = BulkAPIBatchException.class)
+  public void testTimedOut() throws Exception {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    Mockito.when(bulkConnection.getBatchInfo(JOB_ID, "batch0"))
+      .thenReturn(createBatchInfo("batch0", BatchStateEnum.InProgress));
+
+    createTracker(bulkConnection, 50).awaitCompletion(
+      Arrays.asList(createBatchInfo("batch0", BatchStateEnum.Queued)), batchInfo -> { });
+  }
+
+  private static BatchCompletionTracker createTracker(BulkConnection bulkConnection, long waitTimeMs) {
+    return new BatchCompletionTracker(bulkConnection, 1, 8, waitTimeMs);
+  }
+
+  private static BatchInfo createBatchInfo(String id, BatchStateEnum state) {
+    return createBatchInfo(JOB_ID, id, state);
+  }
+
+  private static BatchInfo createBatchInfo(String jobId, String id, BatchStateEnum state) {
+    BatchInfo batchInfo = new BatchInfo();
+    batchInfo.setId(id);
+    batchInfo.setJobId(jobId);
+    batchInfo.setState(state);
+    return batchInfo;
+  }
+}
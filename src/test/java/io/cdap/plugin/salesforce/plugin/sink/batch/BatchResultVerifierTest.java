@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import com.sforce.async.BatchInfo;
+import com.sforce.async.BulkConnection;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class BatchResultVerifierTest {
+
+  private static final String JOB_ID = "750000000000001";
+
+  @Test
+  public void testFailuresCountedWhenSkipped() throws Exception {
+    BulkConnection bulkConnection = mockResults(
+      "\"Id\",\"Success\",\"Created\",\"Error\"\n\"001\",\"true\",\"true\",\"\"\n\"\",\"false\",\"false\",\"bad\"\n",
+      "\"Id\",\"Success\",\"Created\",\"Error\"\n\"002\",\"true\",\"true\",\"\"\n\"003\",\"true\",\"true\",\"\"\n");
+
+    Map<String, Map<Integer, String>> failed = new ConcurrentHashMap<>();
+    try (BatchResultVerifier verifier = new BatchResultVerifier(
+      bulkConnection,
+      (batchInfo, rowIndex, error) -> failed.put(batchInfo.getId(), Collections.singletonMap(rowIndex, error)), 2)) {
+      verifier.verify(createBatchInfo("batch0"));
+      verifier.verify(createBatchInfo("batch1"));
+      verifier.await();
+
+      Assert.assertEquals(4, verifier.getProcessedRecords());
+      Assert.assertEquals(1, verifier.getFailedRecords());
+      // failed rows are reported by their index in the batch
+      Assert.assertEquals(Collections.singletonMap("batch0", Collections.singletonMap(1, "bad")), failed);
+    }
+  }
+
+  @Test
+  public void testFailureStopsVerification() throws Exception {
+    BulkConnection bulkConnection = mockResults(
+      "\"Id\",\"Success\",\"Created\",\"Error\"\n\"001\",\"true\",\"true\",\"\"\n",
+      "\"Id\",\"Success\",\"Created\",\"Error\"\n\"\",\"false\",\"false\",\"INVALID_FIELD:bad value\"\n");
+
+    BatchResultVerifier.FailedRowsHandler handler = (batchInfo, rowIndex, error) -> {
+      throw new RuntimeException(String.format("%s: %d=%s", batchInfo.getId(), rowIndex, error));
+    };
+    try (BatchResultVerifier verifier = new BatchResultVerifier(bulkConnection, handler, 2)) {
+      verifier.verify(createBatchInfo("batch0"));
+      verifier.verify(createBatchInfo("batch1"));
+      verifier.await();
+      Assert.fail("Expected verification to fail");
+    } catch (RuntimeException e) {
+      Assert.assertEquals("batch1: 0=INVALID_FIELD:bad value", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testColumnsReadByHeader() throws Exception {
+    BulkConnection bulkConnection = mockResults("\"Error\",\"Success\"\n\"\",\"true\"\n\"bad\",\"false\"\n");
+
+    try (BatchResultVerifier verifier = new BatchResultVerifier(
+      bulkConnection, (batchInfo, rowIndex, error) -> { }, 1)) {
+      verifier.verify(createBatchInfo("batch0"));
+      verifier.await();
+
+      Assert.assertEquals(2, verifier.getProcessedRecords());
+      Assert.assertEquals(1, verifier.getFailedRecords());
+    }
+  }
+
+  @Test
+  public void testFailedRowsHandledAsTheyAreRead() throws Exception {
+    BulkConnection bulkConnection = mockResults(
+      "\"Id\",\"Success\",\"Created\",\"Error\"\n\"\",\"false\",\"false\",\"first\"\n"
+        + "\"001\",\"true\",\"true\",\"\"\n\"\",\"false\",\"false\",\"second\"\n");
+
+    List<String> events = new ArrayList<>();
+    BatchResultVerifier.FailedRowsHandler handler = new BatchResultVerifier.FailedRowsHandler() {
+      @Override
+      public void handle(BatchInfo batchInfo, int rowIndex, String error) {
+        events.add(rowIndex + "=" + error);
+      }
+
+      @Override
+      public void batchVerified(BatchInfo batchInfo, int processedRows) {
+        events.add(batchInfo.getId() + " verified, " + processedRows + " rows");
+      }
+    };
+    try (BatchResultVerifier verifier = new BatchResultVerifier(bulkConnection, handler, 1)) {
+      verifier.verify(createBatchInfo("batch0"));
+      verifier.await();
+    }
+
+    // each failed row is handled in the order of the result, before the batch is reported as verified
+    Assert.assertEquals(Arrays.asList("0=first", "2=second", "batch0 verified, 3 rows"), events);
+  }
+
+  private static BulkConnection mockResults(String... results) throws Exception {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    for (int i = 0; i < results.length; i++) {
+      byte[] content = results[i].getBytes(StandardCharsets.UTF_8);
+      Mockito.when(bulkConnection.getBatchResultStream(JOB_ID, "batch" + i))
+        .thenAnswer(invocation -> new ByteArrayInputStream(content));
+    }
+    return bulkConnection;
+  }
+
+  private static BatchInfo createBatchInfo(String id) {
+    BatchInfo batchInfo = new BatchInfo();
+    batchInfo.setId(id);
+    batchInfo.setJobId(JOB_ID);
+    return batchInfo;
+  }
+}
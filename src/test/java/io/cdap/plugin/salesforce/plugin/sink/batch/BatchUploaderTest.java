@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import com.google.common.io.ByteStreams;
+import com.sforce.async.AsyncApiException;
+import com.sforce.async.AsyncExceptionCode;
+import com.sforce.async.BatchInfo;
+import com.sforce.async.BulkConnection;
+import com.sforce.async.JobInfo;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class BatchUploaderTest {
+
+  private static final Schema SCHEMA =
+    Schema.recordOf("output", Schema.Field.of("Name", Schema.of(Schema.Type.STRING)));
+  private static final StructuredRecordCSVEncoder ENCODER = new StructuredRecordCSVEncoder(SCHEMA);
+
+  @Test
+  public void testBatchesUploadedInSubmissionOrder() throws Exception {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    List<String> uploaded = Collections.synchronizedList(new ArrayList<>());
+    Mockito.when(bulkConnection.createBatchFromStream(Mockito.any(JobInfo.class), Mockito.any(InputStream.class)))
+      .thenAnswer(invocation -> {
+        String content = new String(ByteStreams.toByteArray(invocation.getArgument(1)), StandardCharsets.UTF_8);
+        uploaded.add(content);
+        return createBatchInfo(content);
+      });
+
+    List<String> expected = new ArrayList<>();
+    try (BatchUploader uploader = new BatchUploader(bulkConnection, createJobInfo(), 3)) {
+      CSVBuffer buffer = new CSVBuffer();
+      for (int i = 0; i < 20; i++) {
+        buffer.write(createRecord("name" + i), ENCODER);
+        expected.add("\"Name\"\r\n\"name" + i + "\"\r\n");
+        buffer = uploader.submit(buffer);
+        Assert.assertEquals(0, buffer.size());
+      }
+
+      List<BatchInfo> batchInfoList = uploader.awaitUploads();
+      Assert.assertEquals(expected, batchInfoList.stream().map(BatchInfo::getId).collect(Collectors.toList()));
+      Assert.assertEquals(20, uploaded.size());
+      Assert.assertTrue(uploaded.containsAll(expected));
+    }
+  }
+
+  @Test
+  public void testSubmitBlocksWhileMaxBatchesInFlight() throws Exception {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    CountDownLatch uploadStarted = new CountDownLatch(1);
+    CountDownLatch releaseUpload = new CountDownLatch(1);
+    Mockito.when(bulkConnection.createBatchFromStream(Mockito.any(JobInfo.class), Mockito.any(InputStream.class)))
+      .thenAnswer(invocation -> {
+        uploadStarted.countDown();
+        releaseUpload.await();
+        return createBatchInfo("batch");
+      });
+
+    try (BatchUploader uploader = new BatchUploader(bulkConnection, createJobInfo(), 1)) {
+      CSVBuffer first = new CSVBuffer();
+      first.write(createRecord("a"), ENCODER);
+      CSVBuffer second = uploader.submit(first);
+      Assert.assertTrue(uploadStarted.await(10, TimeUnit.SECONDS));
+
+      second.write(createRecord("b"), ENCODER);
+      CompletableFuture<CSVBuffer> third = CompletableFuture.supplyAsync(() -> {
+        try {
+          return uploader.submit(second);
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      });
+      Thread.sleep(200);
+      Assert.assertFalse(third.isDone());
+
+      releaseUpload.countDown();
+      Assert.assertNotNull(third.get(10, TimeUnit.SECONDS));
+      Assert.assertEquals(2, uploader.awaitUploads().size());
+    }
+  }
+
+  @Test
+  public void testFirstFailedUploadReported() throws Exception {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    Mockito.when(bulkConnection.createBatchFromStream(Mockito.any(JobInfo.class), Mockito.any(InputStream.class)))
+      .thenThrow(new AsyncApiException("Failed to create batch", AsyncExceptionCode.InvalidBatch))
+      .thenReturn(createBatchInfo("batch"));
+
+    try (BatchUploader uploader = new BatchUploader(bulkConnection, createJobInfo(), 2)) {
+      CSVBuffer buffer = new CSVBuffer();
+      for (int i = 0; i < 3; i++) {
+        buffer.write(createRecord("name" + i), ENCODER);
+        buffer = uploader.submit(buffer);
+      }
+      uploader.awaitUploads();
+      Assert.fail("Expected upload to fail");
+    } catch (RuntimeException e) {
+      Assert.assertTrue(e.getCause() instanceof AsyncApiException);
+    }
+  }
+
+  @Test
+  public void testLaterBatchesAddedToSwitchedJob() throws Exception {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    Mockito.when(bulkConnection.createBatchFromStream(Mockito.any(JobInfo.class), Mockito.any(InputStream.class)))
+      .thenAnswer(invocation -> createBatchInfo(invocation.<JobInfo>getArgument(0).getId()));
+
+    try (BatchUploader uploader = new BatchUploader(bulkConnection, createJobInfo(), 1)) {
+      CSVBuffer buffer = new CSVBuffer();
+      buffer.write(createRecord("a"), ENCODER);
+      buffer = uploader.submit(buffer);
+
+      JobInfo serialJob = new JobInfo();
+      serialJob.setId("750000000000002");
+      uploader.switchJob(serialJob);
+      buffer.write(createRecord("b"), ENCODER);
+      uploader.submit(buffer);
+      // buffer of the first batch was handed back, so its upload is reported without waiting
+      Assert.assertEquals(Collections.singletonList("750000000000001"),
+                          uploader.getUploads().stream().map(BatchInfo::getId).collect(Collectors.toList()));
+
+      Assert.assertEquals(Arrays.asList("750000000000001", "750000000000002"),
+                          uploader.awaitUploads().stream().map(BatchInfo::getId).collect(Collectors.toList()));
+    }
+  }
+
+  private static StructuredRecord createRecord(String name) {
+    return StructuredRecord.builder(SCHEMA).set("Name", name).build();
+  }
+
+  private static JobInfo createJobInfo() {
+    JobInfo jobInfo = new JobInfo();
+    jobInfo.setId("750000000000001");
+    return jobInfo;
+  }
+
+  private static BatchInfo createBatchInfo(String id) {
+    BatchInfo batchInfo = new BatchInfo();
+    batchInfo.setId(id);
+    return batchInfo;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import com.google.common.io.ByteStreams;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.QuoteMode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+public class CSVBufferTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "output",
+    Schema.Field.of("Name", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("Description", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final StructuredRecordCSVEncoder ENCODER = new StructuredRecordCSVEncoder(SCHEMA);
+
+  @Test
+  public void testEncodingMatchesCSVPrinter() throws IOException {
+    List<List<String>> rows = Arrays.asList(
+      Arrays.asList("plain", "with \"quotes\", commas\r\nand new lines"),
+      Arrays.asList("", null),
+      Arrays.asList("été €", "emoji 😀"));
+
+    CSVBuffer buffer = new CSVBuffer(true, 16);
+    StringWriter expected = new StringWriter();
+    try (CSVPrinter printer = new CSVPrinter(expected, CSVFormat.DEFAULT.withQuoteMode(QuoteMode.ALL))) {
+      printer.printRecord("Name", "Description");
+      for (List<String> row : rows) {
+        printer.printRecord(row);
+        buffer.write(createRecord(row.get(0), row.get(1)), ENCODER);
+      }
+    }
+
+    byte[] expectedBytes = expected.toString().getBytes(StandardCharsets.UTF_8);
+    Assert.assertArrayEquals(expectedBytes, ByteStreams.toByteArray(buffer.getInputStream()));
+    Assert.assertEquals(expectedBytes.length, buffer.size());
+    Assert.assertEquals(3, buffer.getRecordsCount());
+  }
+
+  @Test
+  public void testUnpairedSurrogateIsReplaced() throws IOException {
+    CSVBuffer buffer = new CSVBuffer();
+    buffer.write(createRecord("a\ud83d", "\ude00b"), ENCODER);
+
+    Assert.assertEquals("\"Name\",\"Description\"\r\n\"a?\",\"?b\"\r\n", getContent(buffer));
+  }
+
+  @Test
+  public void testRollbackLastRecord() throws IOException {
+    CSVBuffer buffer = new CSVBuffer();
+    buffer.write(createRecord("a", "1"), ENCODER);
+    int size = buffer.size();
+    buffer.write(createRecord("b", "2"), ENCODER);
+
+    buffer.rollbackLastRecord();
+    Assert.assertEquals(size, buffer.size());
+    Assert.assertEquals(1, buffer.getRecordsCount());
+    Assert.assertEquals("\"Name\",\"Description\"\r\n\"a\",\"1\"\r\n", getContent(buffer));
+
+    try {
+      buffer.rollbackLastRecord();
+      Assert.fail("Only the last record can be rolled back");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    // header is rolled back together with the first record
+    buffer.reset();
+    buffer.write(createRecord("c", "3"), ENCODER);
+    buffer.rollbackLastRecord();
+    Assert.assertEquals(0, buffer.size());
+    Assert.assertEquals(0, buffer.getRecordsCount());
+  }
+
+  @Test
+  public void testResetReusesBuffer() throws IOException {
+    CSVBuffer buffer = new CSVBuffer(true, 1);
+    buffer.write(createRecord("a", "1"), ENCODER);
+    buffer.reset();
+    Assert.assertEquals(0, buffer.size());
+    Assert.assertEquals(0, buffer.getRecordsCount());
+
+    buffer.write(createRecord("b", "2"), ENCODER);
+    Assert.assertEquals("\"Name\",\"Description\"\r\n\"b\",\"2\"\r\n", getContent(buffer));
+  }
+
+  @Test
+  public void testWithoutHeader() throws IOException {
+    CSVBuffer buffer = new CSVBuffer(false);
+    buffer.write(createRecord("a", null), ENCODER);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    buffer.writeTo(out);
+    Assert.assertEquals("\"a\",\r\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  private static StructuredRecord createRecord(String name, String description) {
+    return StructuredRecord.builder(SCHEMA).set("Name", name).set("Description", description).build();
+  }
+
+  private static String getContent(CSVBuffer buffer) throws IOException {
+    return new String(ByteStreams.toByteArray(buffer.getInputStream()), StandardCharsets.UTF_8);
+  }
+}
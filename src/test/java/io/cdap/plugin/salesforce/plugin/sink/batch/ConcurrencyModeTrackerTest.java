@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import com.sforce.async.ConcurrencyMode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConcurrencyModeTrackerTest {
+
+  @Test
+  public void testSwitchToSerialAtThreshold() {
+    AtomicLong nanos = new AtomicLong();
+    ConcurrencyModeTracker tracker = new ConcurrencyModeTracker(10, nanos::get);
+
+    Assert.assertFalse(tracker.recordBatch(ConcurrencyMode.Parallel, 1000, 50));
+    Assert.assertFalse(tracker.recordBatch(ConcurrencyMode.Parallel, 1000, 149));
+    Assert.assertEquals(ConcurrencyMode.Parallel, tracker.getMode());
+
+    // rate is evaluated over all Parallel batches verified so far
+    nanos.set(TimeUnit.SECONDS.toNanos(30));
+    Assert.assertTrue(tracker.recordBatch(ConcurrencyMode.Parallel, 1000, 101));
+    Assert.assertEquals(ConcurrencyMode.Serial, tracker.getMode());
+
+    // batches submitted before the switch are still recorded as Parallel, mode is switched only once
+    Assert.assertFalse(tracker.recordBatch(ConcurrencyMode.Parallel, 1000, 1000));
+    Assert.assertFalse(tracker.recordBatch(ConcurrencyMode.Serial, 400, 0));
+    Assert.assertEquals(ConcurrencyMode.Serial, tracker.getMode());
+
+    nanos.set(TimeUnit.SECONDS.toNanos(40));
+    ConcurrencyModeTracker.Metrics metrics = tracker.getMetrics();
+    Assert.assertEquals(1, metrics.getSwitches());
+    Assert.assertEquals(4000, metrics.getRecords(ConcurrencyMode.Parallel));
+    Assert.assertEquals(1300, metrics.getLockErrors(ConcurrencyMode.Parallel));
+    Assert.assertEquals(30_000, metrics.getTimeMs(ConcurrencyMode.Parallel));
+    Assert.assertEquals(133, metrics.getRecordsPerSecond(ConcurrencyMode.Parallel));
+    Assert.assertEquals(400, metrics.getRecords(ConcurrencyMode.Serial));
+    Assert.assertEquals(10_000, metrics.getTimeMs(ConcurrencyMode.Serial));
+    Assert.assertEquals(40, metrics.getRecordsPerSecond(ConcurrencyMode.Serial));
+  }
+
+  @Test
+  public void testSwitchingDisabled() {
+    AtomicLong nanos = new AtomicLong();
+    ConcurrencyModeTracker tracker = new ConcurrencyModeTracker(0, nanos::get);
+
+    Assert.assertFalse(tracker.recordBatch(ConcurrencyMode.Parallel, 100, 100));
+    Assert.assertFalse(tracker.recordBatch(ConcurrencyMode.Parallel, 0, 0));
+    Assert.assertEquals(ConcurrencyMode.Parallel, tracker.getMode());
+
+    nanos.set(TimeUnit.SECONDS.toNanos(1));
+    Assert.assertEquals(0, tracker.getMetrics().getSwitches());
+    Assert.assertEquals(100, tracker.getMetrics().getRecordsPerSecond(ConcurrencyMode.Parallel));
+    Assert.assertEquals(0, tracker.getMetrics().getRecordsPerSecond(ConcurrencyMode.Serial));
+  }
+}
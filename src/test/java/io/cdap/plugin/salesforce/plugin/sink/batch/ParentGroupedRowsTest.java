@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ParentGroupedRowsTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "output",
+    Schema.Field.of("Name", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("AccountId", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final StructuredRecordCSVEncoder ENCODER = new StructuredRecordCSVEncoder(SCHEMA);
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testRowsReadBackByParent() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "parents.csv");
+    try (ParentGroupedRows rows = new ParentGroupedRows(file.toPath())) {
+      add(rows, "a1", "001");
+      add(rows, "b1", "002");
+      add(rows, "n1", null);
+      add(rows, "a2", "001");
+      add(rows, "b2", "002");
+      add(rows, "n2", null);
+      add(rows, "a3", "001");
+      Assert.assertEquals(7, rows.getRowsCount());
+
+      List<List<String>> groups = drain(rows);
+      // parents are read in the order they were first seen
+      Assert.assertEquals(Arrays.asList(
+        Arrays.asList("36:3", "\"a1\",\"001\"\r\n", "\"a2\",\"001\"\r\n", "\"a3\",\"001\"\r\n"),
+        Arrays.asList("24:2", "\"b1\",\"002\"\r\n", "\"b2\",\"002\"\r\n"),
+        Arrays.asList("14:2", "\"n1\",\r\n", "\"n2\",\r\n")), groups);
+
+      // rows are discarded once read back
+      Assert.assertEquals(0, rows.getRowsCount());
+      Assert.assertEquals(0, file.length());
+      add(rows, "c1", "003");
+      Assert.assertEquals(Arrays.asList(Arrays.asList("12:1", "\"c1\",\"003\"\r\n")), drain(rows));
+    }
+    // file is deleted on close
+    Assert.assertFalse(file.exists());
+  }
+
+  private static void add(ParentGroupedRows rows, String name, String accountId) throws Exception {
+    StructuredRecord record = StructuredRecord.builder(SCHEMA).set("Name", name).set("AccountId", accountId).build();
+    rows.add(accountId, buffer -> buffer.write(record, ENCODER));
+  }
+
+  /**
+   * @return rows of each parent, preceded by the size and number of rows reported for the parent
+   */
+  private static List<List<String>> drain(ParentGroupedRows rows) throws Exception {
+    List<List<String>> groups = new ArrayList<>();
+    rows.drainTo(new ParentGroupedRows.GroupConsumer() {
+      @Override
+      public void startGroup(int rowsCount, long bytes) {
+        List<String> group = new ArrayList<>();
+        group.add(bytes + ":" + rowsCount);
+        groups.add(group);
+      }
+
+      @Override
+      public void accept(byte[] row, int offset, int length) {
+        groups.get(groups.size() - 1).add(new String(row, offset, length, StandardCharsets.UTF_8));
+      }
+    });
+    return groups;
+  }
+}
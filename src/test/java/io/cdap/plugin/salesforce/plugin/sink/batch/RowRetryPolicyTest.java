@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RowRetryPolicyTest {
+
+  @Test
+  public void testRetryableErrors() {
+    RowRetryPolicy policy = new RowRetryPolicy(3, 1000, 30_000);
+
+    Assert.assertTrue(policy.isRetryable("UNABLE_TO_LOCK_ROW:unable to obtain exclusive access to this record:--"));
+    Assert.assertTrue(policy.isRetryable("UNABLE_TO_LOCK_ROW"));
+    Assert.assertFalse(policy.isRetryable("REQUIRED_FIELD_MISSING:Required fields are missing: [Name]:Name --"));
+    Assert.assertFalse(policy.isRetryable(""));
+    Assert.assertFalse(policy.isRetryable(null));
+  }
+
+  @Test
+  public void testLockErrors() {
+    Assert.assertTrue(RowRetryPolicy.isLockError("UNABLE_TO_LOCK_ROW:unable to obtain exclusive access:--"));
+    Assert.assertFalse(RowRetryPolicy.isLockError("INVALID_FIELD:UNABLE_TO_LOCK_ROW"));
+    Assert.assertFalse(RowRetryPolicy.isLockError(null));
+  }
+
+  @Test
+  public void testRetryBudget() {
+    RowRetryPolicy policy = new RowRetryPolicy(2, 1000, 30_000);
+
+    Assert.assertTrue(policy.canRetry(0));
+    Assert.assertTrue(policy.canRetry(1));
+    Assert.assertFalse(policy.canRetry(2));
+    Assert.assertFalse(new RowRetryPolicy(0, 1000, 30_000).canRetry(0));
+  }
+
+  @Test
+  public void testBackoff() {
+    RowRetryPolicy policy = new RowRetryPolicy(10, 1000, 30_000);
+
+    for (int i = 0; i < 100; i++) {
+      assertBetween(500, 1000, policy.getBackoffMs(0));
+      assertBetween(2000, 4000, policy.getBackoffMs(2));
+      assertBetween(15_000, 30_000, policy.getBackoffMs(5));
+      assertBetween(15_000, 30_000, policy.getBackoffMs(100));
+    }
+  }
+
+  private static void assertBetween(long min, long max, long actual) {
+    Assert.assertTrue(String.format("%d is not between %d and %d", actual, min, max), actual >= min && actual <= max);
+  }
+}
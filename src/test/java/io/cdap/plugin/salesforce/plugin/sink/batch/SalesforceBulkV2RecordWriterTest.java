@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.salesforce.SalesforceConstants;
+import io.cdap.plugin.salesforce.bulkv2.BulkV2JobInfo;
+import io.cdap.plugin.salesforce.bulkv2.BulkV2TestServer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SalesforceBulkV2RecordWriterTest {
+
+  private static final Schema SCHEMA =
+    Schema.recordOf("output", Schema.Field.of("Name", Schema.of(Schema.Type.STRING)));
+
+  private BulkV2TestServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new BulkV2TestServer("Id", Collections.emptyList());
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void testJobsRolledOver() throws Exception {
+    SalesforceBulkV2RecordWriter writer = new SalesforceBulkV2RecordWriter(createConf(ErrorHandling.STOP), 20_000);
+    for (int i = 0; i < 5000; i++) {
+      writer.write(NullWritable.get(), StructuredRecord.builder(SCHEMA).set("Name", "name" + i).build());
+    }
+    writer.close(null);
+
+    List<String> jobData = server.getIngestJobData();
+    Assert.assertTrue(jobData.size() > 1);
+    int rows = 0;
+    for (String data : jobData) {
+      List<String> lines = Arrays.asList(data.split("\r\n"));
+      Assert.assertEquals("\"Name\"", lines.get(0));
+      rows += lines.size() - 1;
+    }
+    Assert.assertEquals(5000, rows);
+  }
+
+  @Test
+  public void testFailedRecordsSkipped() throws Exception {
+    SalesforceBulkV2RecordWriter writer = new SalesforceBulkV2RecordWriter(createConf(ErrorHandling.SKIP), 1000);
+    writer.write(NullWritable.get(), StructuredRecord.builder(SCHEMA).set("Name", "failed").build());
+    writer.close(null);
+
+    Assert.assertEquals(1, server.getIngestJobData().size());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testFailedRecordsStop() throws Exception {
+    SalesforceBulkV2RecordWriter writer = new SalesforceBulkV2RecordWriter(createConf(ErrorHandling.STOP), 1000);
+    writer.write(NullWritable.get(), StructuredRecord.builder(SCHEMA).set("Name", "failed").build());
+    writer.close(null);
+  }
+
+  @Test
+  public void testUploadFailureAbortsJob() throws Exception {
+    SalesforceBulkV2RecordWriter writer = new SalesforceBulkV2RecordWriter(createConf(ErrorHandling.STOP), 1000);
+    writer.write(NullWritable.get(), StructuredRecord.builder(SCHEMA).set("Name", "name").build());
+    server.rejectUploads();
+    try {
+      writer.close(null);
+      Assert.fail("Rejected upload must fail the writer");
+    } catch (IOException e) {
+      // expected
+    }
+
+    Assert.assertEquals(Collections.singletonList(BulkV2JobInfo.STATE_ABORTED), server.getIngestJobStates());
+  }
+
+  @Test
+  public void testFailedRolloverAbortsJobs() throws Exception {
+    SalesforceBulkV2RecordWriter writer = new SalesforceBulkV2RecordWriter(createConf(ErrorHandling.STOP), 10);
+    writer.write(NullWritable.get(), StructuredRecord.builder(SCHEMA).set("Name", "name1").build());
+    server.rejectUploads();
+    try {
+      writer.write(NullWritable.get(), StructuredRecord.builder(SCHEMA).set("Name", "name2").build());
+      Assert.fail("Rejected upload must fail the writer");
+    } catch (IOException e) {
+      // expected
+    }
+    // aborted jobs are not completed when the failed writer is closed
+    writer.close(null);
+
+    Assert.assertEquals(Collections.singletonList(BulkV2JobInfo.STATE_ABORTED), server.getIngestJobStates());
+  }
+
+  private Configuration createConf(ErrorHandling errorHandling) {
+    Configuration conf = new Configuration(false);
+    conf.set(SalesforceConstants.CONFIG_OAUTH_TOKEN, "token");
+    conf.set(SalesforceConstants.CONFIG_OAUTH_INSTANCE_URL, server.getUrl());
+    conf.set(SalesforceSinkConstants.CONFIG_SOBJECT, "Account");
+    conf.set(SalesforceSinkConstants.CONFIG_OPERATION, "Insert");
+    conf.set(SalesforceSinkConstants.CONFIG_ERROR_HANDLING, errorHandling.getValue());
+    return conf;
+  }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import com.sforce.async.BatchInfo;
+import com.sforce.async.BatchStateEnum;
+import com.sforce.async.BulkConnection;
+import com.sforce.async.ConcurrencyMode;
+import com.sforce.async.JobInfo;
+import com.sforce.async.OperationEnum;
+import com.sforce.ws.ConnectorConfig;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+public class SalesforceRecordWriterTest {
+
+  private static final String JOB_ID = "750000000000001";
+  private static final String SERIAL_JOB_ID = "750000000000002";
+  private static final String LOCK_ERROR = "UNABLE_TO_LOCK_ROW:unable to obtain exclusive access to this record";
+  private static final Schema SCHEMA = Schema.recordOf(
+    "output",
+    Schema.Field.of("LastName", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("AccountId", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  // content and rows of each uploaded batch by batch id, and ids of the jobs the batches were added to
+  private final Map<String, String> batchContents = new ConcurrentHashMap<>();
+  private final Map<String, List<Map<String, String>>> batches = new ConcurrentHashMap<>();
+  private final Map<String, String> batchJobs = new ConcurrentHashMap<>();
+  private final List<String> batchIds = Collections.synchronizedList(new ArrayList<>());
+  // error reported by Salesforce for an uploaded row by the job id and the row, null if the row succeeds
+  private volatile BiFunction<String, Map<String, String>, String> rowErrors = (jobId, row) -> null;
+
+  @Test
+  public void testParentRowsNotSplitBetweenBatches() throws Exception {
+    Configuration conf = createConfiguration();
+    conf.set(SalesforceSinkConstants.CONFIG_PARENT_REFERENCE_FIELD, "AccountId");
+    conf.set(SalesforceSinkConstants.CONFIG_MAX_RECORDS_PER_BATCH, "7");
+
+    SalesforceRecordWriter writer = createWriter(conf, mockBulkConnection());
+    // children of each parent arrive interleaved with the children of other parents
+    for (int child = 0; child < 3; child++) {
+      for (int parent = 0; parent < 6; parent++) {
+        writer.write(NullWritable.get(), createRecord("contact-" + parent + "-" + child, "account-" + parent));
+      }
+    }
+    writer.write(NullWritable.get(), createRecord("orphan", null));
+    writer.close(null);
+
+    Map<String, String> parentBatches = new HashMap<>();
+    int rows = 0;
+    for (Map.Entry<String, List<Map<String, String>>> batch : batches.entrySet()) {
+      Assert.assertTrue(batch.getValue().size() <= 7);
+      for (Map<String, String> row : batch.getValue()) {
+        String previous = parentBatches.put(row.get("AccountId"), batch.getKey());
+        Assert.assertTrue("Rows of parent " + row.get("AccountId") + " span two batches",
+                          previous == null || previous.equals(batch.getKey()));
+        rows++;
+      }
+    }
+    Assert.assertEquals(19, rows);
+    // two parents fit into a batch, the third one is moved to the next batch, the row without parent fills the last one
+    Assert.assertEquals(3, batches.size());
+  }
+
+  @Test
+  public void testFailedRowsReadBackAndResubmitted() throws Exception {
+    Configuration conf = createConfiguration();
+    conf.setInt(SalesforceSinkConstants.CONFIG_MAX_ROW_RETRIES, 2);
+    conf.set(SalesforceSinkConstants.CONFIG_MAX_RECORDS_PER_BATCH, "2");
+    // rows of the second batch fail with a lock error the first time they are uploaded
+    Set<String> failedRows = ImmutableSet.of("contact-2", "contact-3");
+    Map<String, AtomicInteger> uploads = new ConcurrentHashMap<>();
+    rowErrors = (jobId, row) -> {
+      int attempt = uploads.computeIfAbsent(row.get("LastName"), name -> new AtomicInteger()).getAndIncrement();
+      return attempt == 0 && failedRows.contains(row.get("LastName")) ? LOCK_ERROR : null;
+    };
+
+    SalesforceRecordWriter writer = createWriter(conf, mockBulkConnection());
+    for (int i = 0; i < 6; i++) {
+      // null and empty parent references are kept apart when rows are read back
+      writer.write(NullWritable.get(), createRecord("contact-" + i, i == 2 ? null : i == 3 ? "" : "account"));
+    }
+    writer.close(null);
+
+    Assert.assertEquals(4, batches.size());
+    // batch ids are matched with the submitted rows by position, so only rows of the second batch are resubmitted
+    Assert.assertEquals("\"LastName\",\"AccountId\"\r\n\"contact-2\",\r\n\"contact-3\",\"\"\r\n",
+                        batchContents.get("batch3"));
+    Assert.assertEquals(Arrays.asList("contact-0", "contact-1", "contact-2", "contact-2", "contact-3", "contact-3",
+                                      "contact-4", "contact-5"), getLastNames(JOB_ID));
+  }
+
+  @Test
+  public void testRetryableErrorsPermanentInFinalRound() throws Exception {
+    Configuration conf = createConfiguration();
+    conf.setInt(SalesforceSinkConstants.CONFIG_MAX_ROW_RETRIES, 1);
+    rowErrors = (jobId, row) -> "contact-1".equals(row.get("LastName")) ? LOCK_ERROR : null;
+
+    SalesforceRecordWriter writer = createWriter(conf, mockBulkConnection());
+    for (int i = 0; i < 3; i++) {
+      writer.write(NullWritable.get(), createRecord("contact-" + i, "account"));
+    }
+    try {
+      writer.close(null);
+      Assert.fail("Expected row failed in the final round to stop the task");
+    } catch (RuntimeException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Failed to create row with error: '" + LOCK_ERROR));
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("Record='{LastName=contact-1, AccountId=account}'"));
+    }
+    // row is resubmitted once, then its lock error is handled as any other error
+    Assert.assertEquals(Arrays.asList("contact-0", "contact-1", "contact-1", "contact-2"), getLastNames(JOB_ID));
+  }
+
+  @Test
+  public void testVerifiedRecordsReportedAsCounters() throws Exception {
+    Configuration conf = createConfiguration();
+    conf.set(SalesforceSinkConstants.CONFIG_ERROR_HANDLING, ErrorHandling.SKIP.getValue());
+    conf.setInt(SalesforceSinkConstants.CONFIG_MAX_ROW_RETRIES, 1);
+    // two rows fail permanently, one row fails with a lock error the first time it is uploaded
+    Map<String, AtomicInteger> uploads = new ConcurrentHashMap<>();
+    rowErrors = (jobId, row) -> {
+      String lastName = row.get("LastName");
+      int attempt = uploads.computeIfAbsent(lastName, name -> new AtomicInteger()).getAndIncrement();
+      if ("contact-1".equals(lastName) || "contact-3".equals(lastName)) {
+        return "INVALID_FIELD:bad value";
+      }
+      return attempt == 0 && "contact-2".equals(lastName) ? LOCK_ERROR : null;
+    };
+    Counters counters = new Counters();
+    TaskAttemptContext context = Mockito.mock(TaskAttemptContext.class);
+    Mockito.when(context.getCounter(ArgumentMatchers.anyString(), ArgumentMatchers.anyString()))
+      .thenAnswer(invocation -> counters.findCounter(invocation.getArgument(0), invocation.getArgument(1)));
+
+    SalesforceRecordWriter writer = createWriter(conf, mockBulkConnection());
+    for (int i = 0; i < 5; i++) {
+      writer.write(NullWritable.get(), createRecord("contact-" + i, "account"));
+    }
+    writer.close(context);
+
+    // skipped rows are not resubmitted, the row failed with a lock error is counted in both rounds
+    Assert.assertEquals(Arrays.asList("contact-0", "contact-1", "contact-2", "contact-2", "contact-3", "contact-4"),
+                        getLastNames(JOB_ID));
+    Assert.assertEquals(6, getCounter(counters, SalesforceSinkConstants.COUNTER_PROCESSED_RECORDS));
+    Assert.assertEquals(3, getCounter(counters, SalesforceSinkConstants.COUNTER_FAILED_RECORDS));
+  }
+
+  @Test
+  public void testRowsMovedToSharedSerialJobOnLockErrors() throws Exception {
+    Configuration conf = createConfiguration();
+    conf.set(SalesforceSinkConstants.CONFIG_SERIAL_JOB_ID, SERIAL_JOB_ID);
+    conf.setInt(SalesforceSinkConstants.CONFIG_SERIAL_MODE_LOCK_ERROR_PERCENT, 50);
+    conf.setInt(SalesforceSinkConstants.CONFIG_MAX_ROW_RETRIES, 1);
+    conf.set(SalesforceSinkConstants.CONFIG_MAX_RECORDS_PER_BATCH, "2");
+    // rows of the parallel job fail with lock errors, except for the first one
+    rowErrors = (jobId, row) -> JOB_ID.equals(jobId) && !"contact-0".equals(row.get("LastName")) ? LOCK_ERROR : null;
+
+    BulkConnection bulkConnection = mockBulkConnection();
+    SalesforceRecordWriter writer = createWriter(conf, bulkConnection);
+    for (int i = 0; i < 4; i++) {
+      writer.write(NullWritable.get(), createRecord("contact-" + i, null));
+    }
+    writer.close(null);
+
+    Assert.assertEquals(Arrays.asList("contact-0", "contact-1", "contact-2", "contact-3"), getLastNames(JOB_ID));
+    // failed rows are resubmitted to the serial job created by the driver, tasks do not create jobs of their own
+    Assert.assertEquals(Arrays.asList("contact-1", "contact-2", "contact-3"), getLastNames(SERIAL_JOB_ID));
+    Mockito.verify(bulkConnection, Mockito.never()).createJob(Mockito.any(JobInfo.class));
+    Mockito.verify(bulkConnection, Mockito.never()).updateJob(Mockito.any(JobInfo.class));
+  }
+
+  @Test
+  public void testNextBatchesMovedToSerialJobWhileWriting() throws Exception {
+    Configuration conf = createConfiguration();
+    conf.set(SalesforceSinkConstants.CONFIG_SERIAL_JOB_ID, SERIAL_JOB_ID);
+    conf.setInt(SalesforceSinkConstants.CONFIG_SERIAL_MODE_LOCK_ERROR_PERCENT, 50);
+    conf.setInt(SalesforceSinkConstants.CONFIG_MAX_ROW_RETRIES, 1);
+    conf.setInt(SalesforceSinkConstants.CONFIG_MAX_IN_FLIGHT_BATCHES, 1);
+    conf.set(SalesforceSinkConstants.CONFIG_MAX_RECORDS_PER_BATCH, "1");
+    rowErrors = (jobId, row) -> JOB_ID.equals(jobId) ? LOCK_ERROR : null;
+    Counters counters = new Counters();
+    TaskAttemptContext context = Mockito.mock(TaskAttemptContext.class);
+    Mockito.when(context.getCounter(ArgumentMatchers.anyString(), ArgumentMatchers.anyString()))
+      .thenAnswer(invocation -> counters.findCounter(invocation.getArgument(0), invocation.getArgument(1)));
+
+    SalesforceRecordWriter writer = createWriter(conf, mockBulkConnection());
+    for (int i = 0; i < 3; i++) {
+      writer.write(NullWritable.get(), createRecord("contact-" + i, null));
+    }
+    // the first batch is uploaded once its buffer is reused by the third one, and is verified in the background
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (writer.getConcurrencyMode() != ConcurrencyMode.Serial) {
+      Assert.assertTrue("Expected lock errors of the first batch to switch the mode",
+                        System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+    for (int i = 3; i < 5; i++) {
+      writer.write(NullWritable.get(), createRecord("contact-" + i, null));
+    }
+    writer.close(context);
+
+    // batches submitted after the switch go to the serial job, failed rows of the earlier ones follow them
+    Assert.assertEquals(Arrays.asList("contact-0", "contact-1"), getLastNames(JOB_ID));
+    Assert.assertEquals(Arrays.asList("contact-0", "contact-1", "contact-2", "contact-3", "contact-4"),
+                        getLastNames(SERIAL_JOB_ID));
+    Assert.assertEquals(1, getCounter(counters, SalesforceSinkConstants.COUNTER_SERIAL_MODE_SWITCHES));
+    Assert.assertEquals(2, getCounter(counters, SalesforceSinkConstants.COUNTER_PARALLEL_MODE_RECORDS));
+    Assert.assertEquals(2, getCounter(counters, SalesforceSinkConstants.COUNTER_PARALLEL_MODE_LOCK_ERRORS));
+    Assert.assertEquals(5, getCounter(counters, SalesforceSinkConstants.COUNTER_SERIAL_MODE_RECORDS));
+    Assert.assertEquals(0, getCounter(counters, SalesforceSinkConstants.COUNTER_SERIAL_MODE_LOCK_ERRORS));
+    Assert.assertEquals(7, getCounter(counters, SalesforceSinkConstants.COUNTER_PROCESSED_RECORDS));
+    Assert.assertEquals(2, getCounter(counters, SalesforceSinkConstants.COUNTER_FAILED_RECORDS));
+  }
+
+  @Test
+  public void testSerialJobNotUsedWithoutLockErrors() throws Exception {
+    Configuration conf = createConfiguration();
+    conf.set(SalesforceSinkConstants.CONFIG_SERIAL_JOB_ID, SERIAL_JOB_ID);
+    conf.setInt(SalesforceSinkConstants.CONFIG_SERIAL_MODE_LOCK_ERROR_PERCENT, 50);
+    conf.setInt(SalesforceSinkConstants.CONFIG_MAX_ROW_RETRIES, 1);
+
+    SalesforceRecordWriter writer = createWriter(conf, mockBulkConnection());
+    writer.write(NullWritable.get(), createRecord("contact-0", null));
+    writer.close(null);
+
+    Assert.assertEquals(Collections.singletonList("contact-0"), getLastNames(JOB_ID));
+    Assert.assertTrue(getLastNames(SERIAL_JOB_ID).isEmpty());
+  }
+
+  /**
+   * @return sorted last names of the rows uploaded to the job
+   */
+  private List<String> getLastNames(String jobId) {
+    return batches.entrySet().stream()
+      .filter(batch -> jobId.equals(batchJobs.get(batch.getKey())))
+      .flatMap(batch -> batch.getValue().stream())
+      .map(row -> row.get("LastName"))
+      .sorted()
+      .collect(Collectors.toList());
+  }
+
+  @Test
+  public void testTemporaryFilesKeptInWorkingDirectory() throws Exception {
+    Configuration conf = createConfiguration();
+    conf.set(SalesforceSinkConstants.CONFIG_PARENT_REFERENCE_FIELD, "AccountId");
+    conf.setInt(SalesforceSinkConstants.CONFIG_MAX_ROW_RETRIES, 1);
+    rowErrors = (jobId, row) -> batches.size() == 1 ? LOCK_ERROR : null;
+
+    SalesforceRecordWriter writer = createWriter(conf, mockBulkConnection());
+    writer.write(NullWritable.get(), createRecord("contact-0", "account"));
+    // submitted rows and rows grouped by parent
+    Assert.assertEquals(2, countFiles());
+    writer.close(null);
+
+    Assert.assertEquals(Arrays.asList("contact-0", "contact-0"), getLastNames(JOB_ID));
+    // files are deleted once the task completes
+    Assert.assertEquals(0, countFiles());
+  }
+
+  private SalesforceRecordWriter createWriter(Configuration conf, BulkConnection bulkConnection) throws Exception {
+    return new SalesforceRecordWriter(conf, bulkConnection, temporaryFolder.getRoot().toPath());
+  }
+
+  private static long getCounter(Counters counters, String name) {
+    return counters.findCounter(SalesforceSinkConstants.COUNTER_GROUP_BULK_SINK, name).getValue();
+  }
+
+  private int countFiles() {
+    return Objects.requireNonNull(temporaryFolder.getRoot().list()).length;
+  }
+
+  private Configuration createConfiguration() {
+    Configuration conf = new Configuration(false);
+    conf.set(SalesforceSinkConstants.CONFIG_JOB_ID, JOB_ID);
+    conf.set(SalesforceSinkConstants.CONFIG_ERROR_HANDLING, ErrorHandling.STOP.getValue());
+    conf.set(SalesforceSinkConstants.CONFIG_MAX_BYTES_PER_BATCH, "10000000");
+    conf.set(SalesforceSinkConstants.CONFIG_MAX_RECORDS_PER_BATCH, "10000");
+    return conf;
+  }
+
+  /**
+   * Mocks a Bulk API connection, which completes each batch as soon as it is uploaded.
+   */
+  private BulkConnection mockBulkConnection() throws Exception {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    Mockito.when(bulkConnection.getConfig()).thenReturn(new ConnectorConfig());
+    Mockito.when(bulkConnection.getJobStatus(Mockito.anyString()))
+      .thenAnswer(invocation -> createJobInfo(invocation.getArgument(0), ConcurrencyMode.Parallel));
+    Mockito.when(bulkConnection.createBatchFromStream(Mockito.any(JobInfo.class), Mockito.any(InputStream.class)))
+      .thenAnswer(invocation -> {
+        JobInfo jobInfo = invocation.getArgument(0);
+        String content = new String(ByteStreams.toByteArray(invocation.getArgument(1)), StandardCharsets.UTF_8);
+        List<Map<String, String>> rows = new ArrayList<>();
+        try (CSVParser parser = CSVParser.parse(content, CSVFormat.DEFAULT.withFirstRecordAsHeader())) {
+          for (CSVRecord record : parser) {
+            rows.add(record.toMap());
+          }
+        }
+        String batchId;
+        synchronized (batchIds) {
+          batchId = "batch" + batchIds.size();
+          batchIds.add(batchId);
+        }
+        batchContents.put(batchId, content);
+        batches.put(batchId, rows);
+        batchJobs.put(batchId, jobInfo.getId());
+
+        BatchInfo batchInfo = new BatchInfo();
+        batchInfo.setId(batchId);
+        batchInfo.setJobId(jobInfo.getId());
+        batchInfo.setState(BatchStateEnum.Completed);
+        return batchInfo;
+      });
+    Mockito.when(bulkConnection.getBatchInfo(Mockito.anyString(), Mockito.anyString()))
+      .thenAnswer(invocation -> {
+        BatchInfo batchInfo = new BatchInfo();
+        batchInfo.setId(invocation.getArgument(1));
+        batchInfo.setJobId(invocation.getArgument(0));
+        batchInfo.setState(BatchStateEnum.Completed);
+        return batchInfo;
+      });
+    Mockito.when(bulkConnection.getBatchResultStream(Mockito.anyString(), Mockito.anyString()))
+      .thenAnswer(invocation -> {
+        StringBuilder result = new StringBuilder("\"Id\",\"Success\",\"Created\",\"Error\"\n");
+        for (Map<String, String> row : batches.get(invocation.<String>getArgument(1))) {
+          String error = rowErrors.apply(invocation.getArgument(0), row);
+          result.append(error == null
+                          ? "\"001\",\"true\",\"true\",\"\"\n"
+                          : "\"\",\"false\",\"false\",\"" + error + "\"\n");
+        }
+        return new ByteArrayInputStream(result.toString().getBytes(StandardCharsets.UTF_8));
+      });
+    return bulkConnection;
+  }
+
+  private static JobInfo createJobInfo(String jobId, ConcurrencyMode concurrencyMode) {
+    JobInfo jobInfo = new JobInfo();
+    jobInfo.setId(jobId);
+    jobInfo.setObject("Contact");
+    jobInfo.setOperation(OperationEnum.insert);
+    jobInfo.setConcurrencyMode(concurrencyMode);
+    return jobInfo;
+  }
+
+  private static StructuredRecord createRecord(String lastName, String accountId) {
+    return StructuredRecord.builder(SCHEMA).set("LastName", lastName).set("AccountId", accountId).build();
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures records per second encoded by {@link StructuredRecordCSVEncoder} into {@link CSVBuffer} for a schema
+ * with the logical types accepted by the sink, null values and values which need quotes escaped.
+ * Run from the test classpath with the main method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StructuredRecordCSVEncoderBenchmark {
+
+  private static final int RECORDS = 1000;
+  private static final long MICROS_PER_DAY = TimeUnit.DAYS.toMicros(1);
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "output",
+    Schema.Field.of("Name", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("Description", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("Amount", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("NumberOfEmployees", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("IsActive", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("CloseDate", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))),
+    Schema.Field.of("LastActivityDate", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))),
+    Schema.Field.of("LastModifiedDate", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MILLIS))),
+    Schema.Field.of("StartTime", Schema.nullableOf(Schema.of(Schema.LogicalType.TIME_MICROS))),
+    Schema.Field.of("EndTime", Schema.nullableOf(Schema.of(Schema.LogicalType.TIME_MILLIS))));
+
+  private final List<StructuredRecord> records = new ArrayList<>(RECORDS);
+  private final CSVBuffer buffer = new CSVBuffer(true, 1024 * 1024);
+  private StructuredRecordCSVEncoder encoder;
+
+  @Setup
+  public void setUp() {
+    encoder = new StructuredRecordCSVEncoder(SCHEMA);
+    LocalDate closeDate = LocalDate.of(2022, 1, 1);
+    for (int i = 0; i < RECORDS; i++) {
+      StructuredRecord.Builder builder = StructuredRecord.builder(SCHEMA)
+        .set("Name", "Account " + i)
+        .set("IsActive", i % 3 == 0);
+      // every other record has null values, every tenth has a value with quotes, commas and a new line
+      if (i % 2 == 0) {
+        long timestampMicros = 1640995200000000L + i * 1_000_003L;
+        builder.set("Description", i % 10 == 0 ? "Says \"hello\", then\nleaves" : "Description of account " + i)
+          .set("Amount", i * 10.5)
+          .set("NumberOfEmployees", i)
+          .setDate("CloseDate", closeDate.plusDays(i))
+          .set("LastActivityDate", timestampMicros)
+          .set("LastModifiedDate", timestampMicros / 1000)
+          .set("StartTime", timestampMicros % MICROS_PER_DAY)
+          .set("EndTime", (int) (timestampMicros % MICROS_PER_DAY / 1000));
+      }
+      records.add(builder.build());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORDS)
+  public int encode() {
+    buffer.reset();
+    for (StructuredRecord record : records) {
+      buffer.write(record, encoder);
+    }
+    return buffer.size();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(StructuredRecordCSVEncoderBenchmark.class.getSimpleName()).build()).run();
+  }
+}
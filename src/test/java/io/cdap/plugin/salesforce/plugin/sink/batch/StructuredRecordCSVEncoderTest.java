@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class StructuredRecordCSVEncoderTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "output",
+    Schema.Field.of("String", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("Int", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("Long", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("Double", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("Boolean", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("Date", Schema.of(Schema.LogicalType.DATE)),
+    Schema.Field.of("TimestampMicros", Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)),
+    Schema.Field.of("TimestampMillis", Schema.of(Schema.LogicalType.TIMESTAMP_MILLIS)),
+    Schema.Field.of("TimeMicros", Schema.of(Schema.LogicalType.TIME_MICROS)),
+    Schema.Field.of("TimeMillis", Schema.of(Schema.LogicalType.TIME_MILLIS)),
+    Schema.Field.of("Nullable", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))));
+
+  @Test
+  public void testHeader() {
+    StructuredRecordCSVEncoder encoder = new StructuredRecordCSVEncoder(SCHEMA);
+
+    Assert.assertEquals("\"String\",\"Int\",\"Long\",\"Double\",\"Boolean\",\"Date\",\"TimestampMicros\","
+                          + "\"TimestampMillis\",\"TimeMicros\",\"TimeMillis\",\"Nullable\"\r\n",
+                        new String(encoder.getHeader(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testEncode() {
+    StructuredRecord record = StructuredRecord.builder(SCHEMA)
+      .set("String", "text")
+      .set("Int", 42)
+      .set("Long", 9_000_000_000L)
+      .set("Double", 1.5d)
+      .set("Boolean", true)
+      .set("Date", 18628)
+      .set("TimestampMicros", 1_609_459_200_000_000L)
+      .set("TimestampMillis", 1_609_459_200_123L)
+      .set("TimeMicros", 3_723_000_000L)
+      .set("TimeMillis", 3_723_004)
+      .set("Nullable", null)
+      .build();
+
+    Assert.assertEquals("\"text\",\"42\",\"9000000000\",\"1.5\",\"true\",\"2021-01-01\",\"2021-01-01T00:00:00Z\","
+                          + "\"2021-01-01T00:00:00.123Z\",\"01:02:03\",\"01:02:03.004\",\r\n",
+                        encode(new StructuredRecordCSVEncoder(SCHEMA), record));
+  }
+
+  @Test
+  public void testEncodeFormattedValues() {
+    Schema schema = Schema.recordOf(
+      "output",
+      Schema.Field.of("Name", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("Date", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))),
+      Schema.Field.of("Description", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    StructuredRecordCSVEncoder encoder = new StructuredRecordCSVEncoder(schema);
+
+    // values are written in the order of the schema fields, missing value is written as null
+    CSVBuffer buffer = new CSVBuffer(false);
+    buffer.write(ImmutableMap.of("Date", "2021-01-01", "Name", "a"), encoder);
+    Assert.assertEquals("\"a\",\"2021-01-01\",\r\n", new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testUnsupportedTypeFailsOnlyForValues() {
+    Schema schema = Schema.recordOf(
+      "output",
+      Schema.Field.of("Name", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("Amount", Schema.nullableOf(Schema.decimalOf(10, 2))));
+    StructuredRecordCSVEncoder encoder = new StructuredRecordCSVEncoder(schema);
+
+    StructuredRecord withNull = StructuredRecord.builder(schema).set("Name", "a").build();
+    Assert.assertEquals("\"a\",\r\n", encode(encoder, withNull));
+
+    StructuredRecord withValue = StructuredRecord.builder(schema)
+      .set("Name", "b")
+      .set("Amount", new byte[] {1})
+      .build();
+    CSVBuffer buffer = new CSVBuffer(false);
+    try {
+      buffer.write(withValue, encoder);
+      Assert.fail("Decimal values are not supported");
+    } catch (IllegalArgumentException e) {
+      // partially written record is dropped
+      Assert.assertEquals(0, buffer.size());
+      Assert.assertEquals(0, buffer.getRecordsCount());
+    }
+  }
+
+  private static String encode(StructuredRecordCSVEncoder encoder, StructuredRecord record) {
+    CSVBuffer buffer = new CSVBuffer(false);
+    buffer.write(record, encoder);
+    return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.sink.batch;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+public class SubmittedRowsIndexTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "output",
+    Schema.Field.of("Name", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("Description", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final StructuredRecordCSVEncoder ENCODER = new StructuredRecordCSVEncoder(SCHEMA);
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testRowsReadByBatchAndIndex() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "rows.csv");
+    try (SubmittedRowsIndex index = new SubmittedRowsIndex(file.toPath())) {
+      CSVBuffer buffer = new CSVBuffer();
+      buffer.write(createRecord("a", "first\r\nline"), ENCODER);
+      buffer.write(createRecord("b", null), ENCODER);
+      buffer.write(createRecord("c", "\"quoted\""), ENCODER);
+      SubmittedRowsIndex.Segment first = index.append(buffer);
+
+      buffer.reset();
+      buffer.write(createRecord("d", "4"), ENCODER);
+      SubmittedRowsIndex.Segment second = index.append(buffer);
+
+      Map<Integer, Map<String, String>> rows = index.readRows(first, ImmutableSet.of(0, 2));
+      Assert.assertEquals(ImmutableMap.of(0, ImmutableMap.of("Name", "a", "Description", "first\r\nline"),
+                                          2, ImmutableMap.of("Name", "c", "Description", "\"quoted\"")), rows);
+
+      rows = index.readRows(second, Collections.singleton(0));
+      Assert.assertEquals(ImmutableMap.of(0, ImmutableMap.of("Name", "d", "Description", "4")), rows);
+
+      // row, which is not in the batch, is not returned
+      Assert.assertTrue(index.readRows(second, Collections.singleton(1)).isEmpty());
+    }
+    // file is deleted on close
+    Assert.assertFalse(file.exists());
+  }
+
+  @Test
+  public void testNullAndEmptyValuesKeptApart() throws Exception {
+    try (SubmittedRowsIndex index = new SubmittedRowsIndex(new File(temporaryFolder.getRoot(), "rows.csv").toPath())) {
+      CSVBuffer buffer = new CSVBuffer();
+      buffer.write(createRecord("a", null), ENCODER);
+      buffer.write(createRecord("b", ""), ENCODER);
+      buffer.write(createRecord("c", "with, \"quotes\"\n"), ENCODER);
+      SubmittedRowsIndex.Segment segment = index.append(buffer);
+
+      Map<Integer, Map<String, String>> rows = index.readRows(segment, ImmutableSet.of(0, 1, 2));
+      Assert.assertNull(rows.get(0).get("Description"));
+      Assert.assertTrue(rows.get(0).containsKey("Description"));
+      Assert.assertEquals("", rows.get(1).get("Description"));
+      Assert.assertEquals("with, \"quotes\"\n", rows.get(2).get("Description"));
+
+      // rows read back are encoded the same as the submitted ones
+      CSVBuffer resubmitted = new CSVBuffer();
+      for (int i = 0; i < 3; i++) {
+        resubmitted.write(rows.get(i), ENCODER);
+      }
+      Assert.assertArrayEquals(buffer.toByteArray(), resubmitted.toByteArray());
+    }
+  }
+
+  @Test
+  public void testRowsReadForwardByCursor() throws Exception {
+    try (SubmittedRowsIndex index = new SubmittedRowsIndex(new File(temporaryFolder.getRoot(), "rows.csv").toPath())) {
+      CSVBuffer buffer = new CSVBuffer();
+      for (String name : new String[] {"a", "b", "c", "d"}) {
+        buffer.write(createRecord(name, null), ENCODER);
+      }
+      SubmittedRowsIndex.RowCursor cursor = index.openRows(index.append(buffer));
+
+      Assert.assertEquals("b", cursor.readRow(1).get("Name"));
+      Assert.assertEquals("c", cursor.readRow(2).get("Name"));
+      Assert.assertNull(cursor.readRow(5));
+      try {
+        cursor.readRow(0);
+        Assert.fail("Expected rows to be read only forward");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  private static StructuredRecord createRecord(String name, String description) {
+    return StructuredRecord.builder(SCHEMA).set("Name", name).set("Description", description).build();
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch;
+
+import com.google.common.io.ByteStreams;
+import com.sforce.async.BulkConnection;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Random;
+
+public class BulkResultPrefetcherTest {
+
+  private static final String JOB_ID = "750000000000001";
+  private static final String BATCH_ID = "751000000000001";
+
+  @Test
+  public void testNextResultOpenedOnceCurrentIsDownloaded() throws Exception {
+    byte[] large = createData(ReadAheadInputStream.CHUNK_SIZE * 3);
+    byte[] small = createData(100);
+    BulkConnection bulkConnection = mockResults(large, small, small);
+
+    try (BulkResultPrefetcher prefetcher = new BulkResultPrefetcher(
+      bulkConnection, JOB_ID, BATCH_ID, new String[] {"r0", "r1", "r2"}, 1, ReadAheadInputStream.CHUNK_SIZE)) {
+      InputStream first = prefetcher.open(0);
+      // the first result does not fit into the buffer, so the next one is not opened to wait idle
+      Mockito.verify(bulkConnection, Mockito.after(200).never()).getQueryResultStream(JOB_ID, BATCH_ID, "r1");
+
+      Assert.assertArrayEquals(large, ByteStreams.toByteArray(first));
+      Mockito.verify(bulkConnection, Mockito.timeout(1000)).getQueryResultStream(JOB_ID, BATCH_ID, "r1");
+      // the second result is downloaded, but the third one is beyond the read ahead of the first result
+      Mockito.verify(bulkConnection, Mockito.after(200).never()).getQueryResultStream(JOB_ID, BATCH_ID, "r2");
+
+      Assert.assertArrayEquals(small, ByteStreams.toByteArray(prefetcher.open(1)));
+      Assert.assertArrayEquals(small, ByteStreams.toByteArray(prefetcher.open(2)));
+    }
+    Mockito.verify(bulkConnection, Mockito.times(3))
+      .getQueryResultStream(Mockito.eq(JOB_ID), Mockito.eq(BATCH_ID), Mockito.anyString());
+  }
+
+  @Test
+  public void testReadAheadDisabled() throws Exception {
+    byte[] data = createData(100);
+    BulkConnection bulkConnection = mockResults(data, data);
+
+    try (BulkResultPrefetcher prefetcher = new BulkResultPrefetcher(
+      bulkConnection, JOB_ID, BATCH_ID, new String[] {"r0", "r1"}, 0, ReadAheadInputStream.CHUNK_SIZE)) {
+      Assert.assertArrayEquals(data, ByteStreams.toByteArray(prefetcher.open(0)));
+      Mockito.verify(bulkConnection, Mockito.after(200).never()).getQueryResultStream(JOB_ID, BATCH_ID, "r1");
+    }
+  }
+
+  private static BulkConnection mockResults(byte[]... results) throws Exception {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    for (int i = 0; i < results.length; i++) {
+      byte[] result = results[i];
+      Mockito.when(bulkConnection.getQueryResultStream(JOB_ID, BATCH_ID, "r" + i))
+        .thenAnswer(invocation -> new ByteArrayInputStream(result));
+    }
+    return bulkConnection;
+  }
+
+  private static byte[] createData(int size) {
+    byte[] data = new byte[size];
+    new Random(size).nextBytes(data);
+    return data;
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch;
+
+import com.google.common.base.Strings;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.salesforce.SalesforceSchemaUtil;
+import io.cdap.plugin.salesforce.SalesforceTransformUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures records per second converted by {@link MapToRecordTransformer} for a typical sObject schema
+ * with nullable, logical type and relationship fields. The compiled plan is compared with the per entry
+ * conversion it replaced, which resolves field name, nullability and type of every value of every record.
+ * Run from the test classpath with the main method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapToRecordTransformerBenchmark {
+
+  private static final int RECORDS = 1000;
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "output",
+    Schema.Field.of("Id", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("Name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("Account_Name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("Amount", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("Probability", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("IsWon", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("CloseDate", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))),
+    Schema.Field.of("CreatedDate", Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)),
+    Schema.Field.of("Description", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+  private final List<Map<String, Object>> records = new ArrayList<>(RECORDS);
+  private MapToRecordTransformer transformer;
+
+  @Setup
+  public void setUp() {
+    transformer = new MapToRecordTransformer();
+    for (int i = 0; i < RECORDS; i++) {
+      Map<String, Object> record = new HashMap<>();
+      record.put("Id", String.format("006%015d", i));
+      record.put("Name", "Opportunity " + i);
+      record.put("Account.Name", "Account " + i % 50);
+      // every other record has empty values, as returned for null fields in CSV results
+      record.put("Amount", i % 2 == 0 ? String.valueOf(i * 10.5) : "");
+      record.put("Probability", i % 2 == 0 ? String.valueOf(i % 100) : "");
+      record.put("IsWon", String.valueOf(i % 3 == 0));
+      record.put("CloseDate", i % 2 == 0 ? String.format("2022-%02d-%02d", i % 12 + 1, i % 28 + 1) : "");
+      record.put("CreatedDate", String.format("2021-%02d-%02dT10:15:30.000Z", i % 12 + 1, i % 28 + 1));
+      record.put("Description", i % 2 == 0 ? "Description of opportunity " + i : "");
+      records.add(record);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORDS)
+  public void transform(Blackhole blackhole) {
+    for (Map<String, Object> record : records) {
+      StructuredRecord structuredRecord = transformer.transform(SCHEMA, record);
+      blackhole.consume(structuredRecord);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORDS)
+  public void transformPerEntry(Blackhole blackhole) {
+    for (Map<String, Object> record : records) {
+      StructuredRecord structuredRecord = PerEntryTransformer.transform(SCHEMA, record);
+      blackhole.consume(structuredRecord);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(MapToRecordTransformerBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  /**
+   * Baseline conversion of flat records as done before the plans were compiled.
+   */
+  private static final class PerEntryTransformer {
+
+    private static StructuredRecord transform(Schema schema, Map<String, ?> record) {
+      StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+      for (Map.Entry<String, ?> entry : record.entrySet()) {
+        String fieldName = SalesforceSchemaUtil.normalizeAvroName(entry.getKey());
+        Schema.Field field = schema.getField(fieldName);
+        if (field == null) {
+          continue;
+        }
+        builder.set(fieldName, convertValue(field.getName(), entry.getValue(), field.getSchema()));
+      }
+      return builder.build();
+    }
+
+    private static Object convertValue(String fieldName, Object value, Schema fieldSchema) {
+      if (fieldSchema.isNullable()) {
+        return value == null ? null : convertValue(fieldName, value, fieldSchema.getNonNullable());
+      }
+      // empty string is considered null in csv
+      if (value instanceof String && Strings.isNullOrEmpty((String) value)) {
+        return null;
+      }
+      Schema.LogicalType logicalType = fieldSchema.getLogicalType();
+      if (logicalType != null) {
+        return SalesforceTransformUtil.transformLogicalType(fieldName, logicalType, String.valueOf(value));
+      }
+      switch (fieldSchema.getType()) {
+        case BOOLEAN:
+          return Boolean.parseBoolean((String) value);
+        case INT:
+          return Integer.parseInt((String) value);
+        case DOUBLE:
+          return Double.parseDouble((String) value);
+        default:
+          return value;
+      }
+    }
+  }
+}
@@ -119,4 +119,53 @@ public class MapToRecordTransformerTest {
     MapToRecordTransformer recordTransformer = new MapToRecordTransformer();
     recordTransformer.transform(schema, records);
   }
+
+  @Test
+  public void testTransformerReusedForRecordsOfSchema() {
+    Schema nestedSchema = Schema.recordOf("Owner",
+      Schema.Field.of("Name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("LastLoginDate", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))));
+    Schema schema = Schema.recordOf("output",
+      Schema.Field.of("Account_Name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("Amount", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+      Schema.Field.of("CloseDate", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))),
+      Schema.Field.of("Owner", Schema.nullableOf(nestedSchema)),
+      Schema.Field.of("Tags", Schema.arrayOf(Schema.nullableOf(Schema.of(Schema.Type.LONG)))));
+    MapToRecordTransformer recordTransformer = new MapToRecordTransformer();
+
+    Map<String, Object> first = new HashMap<>();
+    first.put("Account.Name", "first");
+    first.put("Amount", "1.5");
+    first.put("CloseDate", "2020-01-02");
+    first.put("Owner", ImmutableMap.of("Name", "owner", "LastLoginDate", "2020-01-02T03:04:05.000Z"));
+    first.put("Tags", ImmutableList.of("1", "2"));
+    first.put("Unknown", "ignored");
+    StructuredRecord firstRecord = recordTransformer.transform(schema, first);
+
+    // second record of the same schema is converted by the same transformer with different values
+    Map<String, Object> second = new HashMap<>();
+    second.put("Account.Name", "second");
+    second.put("Amount", "");
+    second.put("CloseDate", null);
+    second.put("Owner", new HashMap<>(ImmutableMap.of("Name", "")));
+    second.put("Tags", ImmutableList.of());
+    StructuredRecord secondRecord = recordTransformer.transform(schema, second);
+
+    Assert.assertEquals("first", firstRecord.get("Account_Name"));
+    Assert.assertEquals(1.5d, firstRecord.<Double>get("Amount"), 0d);
+    Assert.assertEquals(LocalDate.of(2020, 1, 2), firstRecord.getDate("CloseDate"));
+    StructuredRecord owner = firstRecord.get("Owner");
+    Assert.assertEquals("owner", owner.get("Name"));
+    Assert.assertEquals(ZonedDateTime.of(2020, 1, 2, 3, 4, 5, 0, ZoneOffset.UTC),
+                        owner.getTimestamp("LastLoginDate", ZoneOffset.UTC));
+    Assert.assertEquals(ImmutableList.of(1L, 2L), firstRecord.get("Tags"));
+
+    Assert.assertEquals("second", secondRecord.get("Account_Name"));
+    Assert.assertNull(secondRecord.get("Amount"));
+    Assert.assertNull(secondRecord.get("CloseDate"));
+    owner = secondRecord.get("Owner");
+    Assert.assertNull(owner.get("Name"));
+    Assert.assertNull(owner.get("LastLoginDate"));
+    Assert.assertEquals(ImmutableList.of(), secondRecord.get("Tags"));
+  }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Random;
+
+public class ReadAheadInputStreamTest {
+
+  @Test
+  public void testReadLargerThanBuffer() throws Exception {
+    byte[] data = new byte[ReadAheadInputStream.CHUNK_SIZE * 5 + 123];
+    new Random(0).nextBytes(data);
+
+    ReadAheadInputStream stream = new ReadAheadInputStream(ReadAheadInputStream.CHUNK_SIZE);
+    Thread producer = new Thread(() -> stream.fill(() -> new ByteArrayInputStream(data)));
+    producer.start();
+
+    Assert.assertArrayEquals(data, ByteStreams.toByteArray(stream));
+    producer.join();
+  }
+
+  @Test
+  public void testProducerFailureIsPropagated() throws Exception {
+    byte[] data = new byte[10];
+    InputStream failing = new InputStream() {
+      @Override
+      public int read() throws IOException {
+        throw new IOException("Connection reset");
+      }
+    };
+
+    ReadAheadInputStream stream = new ReadAheadInputStream(ReadAheadInputStream.CHUNK_SIZE);
+    Thread producer = new Thread(() -> stream.fill(() -> new SequenceInputStream(new ByteArrayInputStream(data),
+                                                                                  failing)));
+    producer.start();
+
+    try {
+      ByteStreams.toByteArray(stream);
+      Assert.fail("Expected failure of the producer to be propagated");
+    } catch (IOException e) {
+      Assert.assertEquals("Connection reset", e.getMessage());
+    }
+    producer.join();
+  }
+
+  @Test
+  public void testCloseStopsProducer() throws Exception {
+    byte[] data = new byte[ReadAheadInputStream.CHUNK_SIZE * 10];
+
+    ReadAheadInputStream stream = new ReadAheadInputStream(ReadAheadInputStream.CHUNK_SIZE);
+    Thread producer = new Thread(() -> stream.fill(() -> new ByteArrayInputStream(data)));
+    producer.start();
+
+    Assert.assertEquals(0, stream.read());
+    stream.close();
+    producer.join(10000);
+    Assert.assertFalse(producer.isAlive());
+  }
+}
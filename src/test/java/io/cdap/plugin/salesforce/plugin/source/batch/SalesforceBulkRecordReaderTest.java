@@ -21,6 +21,7 @@ import com.sforce.async.BulkConnection;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.salesforce.SalesforceSchemaUtil;
+import io.cdap.plugin.salesforce.plugin.source.batch.util.SalesforceSourceConstants;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -31,6 +32,7 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -85,6 +87,30 @@ public class SalesforceBulkRecordReaderTest {
     assertRecordReaderOutputRecords(new String[] {csvString1, csvString2}, schema, expectedRecords);
   }
 
+  @Test
+  public void testMultipleResultsWithReadAhead() throws Exception {
+    String header = "\"Id\",\"Amount\"\n";
+    String[] csvStrings = new String[5];
+    List<Map<String, Object>> expectedRecords = new ArrayList<>();
+    for (int i = 0; i < csvStrings.length; i++) {
+      StringBuilder csv = new StringBuilder(header);
+      for (int j = 0; j < 200; j++) {
+        String id = String.format("id-%d-%d", i, j);
+        csv.append(String.format("\"%s\",\"%d.0\"\n", id, j));
+        expectedRecords.add(ImmutableMap.of("Id", id, "Amount", (double) j));
+      }
+      csvStrings[i] = csv.toString();
+    }
+
+    Schema schema = Schema.recordOf("output",
+                                    Schema.Field.of("Id", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("Amount", Schema.of(Schema.Type.DOUBLE)));
+
+    for (int readAhead = 1; readAhead <= SalesforceSourceConstants.MAX_RESULT_READ_AHEAD; readAhead++) {
+      assertRecordReaderOutputRecords(csvStrings, schema, expectedRecords, readAhead);
+    }
+  }
+
   @Test
   public void testEmptyResult() throws Exception {
     String csvString1 = "\"Id\",\"IsDeleted\",\"ExpectedRevenue\",\"LastModifiedDate\",\"CloseDate\",\"Time\"\n" +
@@ -278,9 +304,42 @@ public class SalesforceBulkRecordReaderTest {
     assertRecordReaderOutputRecords(new String[] {csvString}, schema, expectedRecords);
   }
 
+  @Test
+  public void testHeaderBoundToSchemaFields() throws Exception {
+    // columns are in different order in each result and contain fields which are absent in the schema
+    String csvString1 = "\"Name\",\"Id\",\"Amount\"\n" +
+      "\"Acme\",\"0061i000003XNcBAAW\",\"1500.0\"\n";
+    String csvString2 = "\"Id\",\"Amount\",\"Name\"\n" +
+      "\"0061i000003XNcCAAW\",\"\",\"Globex\"\n";
+
+    Schema schema = Schema.recordOf("output",
+                                    Schema.Field.of("Id", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("Amount", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE)))
+    );
+
+    Map<String, Object> secondRecord = new HashMap<>();
+    secondRecord.put("Id", "0061i000003XNcCAAW");
+    secondRecord.put("Amount", null);
+    List<Map<String, Object>> expectedRecords = new ImmutableList.Builder<Map<String, Object>>()
+      .add(new ImmutableMap.Builder<String, Object>()
+             .put("Id", "0061i000003XNcBAAW")
+             .put("Amount", 1500.0)
+             .build()
+      )
+      .add(secondRecord)
+      .build();
+
+    assertRecordReaderOutputRecords(new String[] {csvString1, csvString2}, schema, expectedRecords);
+  }
+
   private void assertRecordReaderOutputRecords(String[] csvStrings, Schema schema,
                                                List<Map<String, Object>> expectedRecords) throws Exception {
-    MapToRecordTransformer transformer = new MapToRecordTransformer();
+    assertRecordReaderOutputRecords(csvStrings, schema, expectedRecords, 0);
+  }
+
+  private void assertRecordReaderOutputRecords(String[] csvStrings, Schema schema,
+                                               List<Map<String, Object>> expectedRecords,
+                                               int resultReadAhead) throws Exception {
     String jobId = "job";
     String batchId = "batch";
     String[] resultIds = new String[csvStrings.length];
@@ -288,7 +347,8 @@ public class SalesforceBulkRecordReaderTest {
       resultIds[i] = String.format("result%d", i);
     }
 
-    SalesforceBulkRecordReader reader = new SalesforceBulkRecordReader(schema, jobId, batchId, resultIds);
+    SalesforceBulkRecordReader reader = new SalesforceBulkRecordReader(schema, jobId, batchId, resultIds,
+                                                                       resultReadAhead);
     BulkConnection mock = Mockito.mock(BulkConnection.class);
     FieldSetter.setField(reader, SalesforceBulkRecordReader.class.getDeclaredField("bulkConnection"), mock);
     for (int i = 0; i < csvStrings.length; i++) {
@@ -301,12 +361,16 @@ public class SalesforceBulkRecordReaderTest {
     fieldsField.setAccessible(true);
 
     List<StructuredRecord> records = new ArrayList<>();
+    float progress = reader.getProgress();
     while (reader.nextKeyValue()) {
-      Map<String, ?> value = reader.getCurrentValue();
-      StructuredRecord record = transformer.transform(schema, value);
-      records.add(record);
+      records.add(reader.getCurrentValue());
+      Assert.assertTrue(reader.getProgress() >= progress);
+      progress = reader.getProgress();
     }
+    Assert.assertEquals(1.0f, reader.getProgress(), 0.0f);
+    reader.close();
 
+    Assert.assertEquals(expectedRecords.size(), records.size());
     for (StructuredRecord record : records) {
       Map<String, Object> fields = (Map<String, Object>) fieldsField.get(record);
       Assert.assertTrue(expectedRecords.contains(fields));
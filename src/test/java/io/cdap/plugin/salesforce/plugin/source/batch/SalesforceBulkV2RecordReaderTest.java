@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.salesforce.SalesforceConstants;
+import io.cdap.plugin.salesforce.bulkv2.BulkV2TestServer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class SalesforceBulkV2RecordReaderTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "output",
+    Schema.Field.of("Id", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("Amount", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("CloseDate", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))));
+
+  @Test
+  public void testPageRecordsDecoded() throws Exception {
+    try (BulkV2TestServer server = new BulkV2TestServer(
+      "Id,Amount,CloseDate,Name", Arrays.asList("1,10.5,2020-01-02,a", "2,,,\"b, \"\"c\"\"\"", "3,1,2020-01-03,d"))) {
+      SalesforceBulkV2RecordReader reader = new SalesforceBulkV2RecordReader(SCHEMA);
+      reader.initialize(new SalesforceSplit(BulkV2TestServer.JOB_ID, "SELECT Id FROM Opportunity", null, 2, 2),
+                        createContext(server));
+      Assert.assertEquals(0.0f, reader.getProgress(), 0.0f);
+
+      Assert.assertTrue(reader.nextKeyValue());
+      StructuredRecord record = reader.getCurrentValue();
+      Assert.assertEquals("1", record.get("Id"));
+      Assert.assertEquals(10.5d, record.<Double>get("Amount"), 0.0d);
+      Assert.assertEquals(LocalDate.of(2020, 1, 2), record.getDate("CloseDate"));
+      Assert.assertEquals(0.5f, reader.getProgress(), 0.0f);
+
+      // empty values of nullable fields are read as null, columns absent in the schema are skipped
+      Assert.assertTrue(reader.nextKeyValue());
+      record = reader.getCurrentValue();
+      Assert.assertEquals("2", record.get("Id"));
+      Assert.assertNull(record.get("Amount"));
+      Assert.assertNull(record.get("CloseDate"));
+      Assert.assertEquals(SCHEMA, reader.getCurrentKey());
+      Assert.assertEquals(1.0f, reader.getProgress(), 0.0f);
+
+      // only records of the page are read
+      Assert.assertFalse(reader.nextKeyValue());
+      Assert.assertEquals(1.0f, reader.getProgress(), 0.0f);
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testEmptyPage() throws Exception {
+    try (BulkV2TestServer server = new BulkV2TestServer("Id,Amount,CloseDate", Collections.emptyList())) {
+      SalesforceBulkV2RecordReader reader = new SalesforceBulkV2RecordReader(SCHEMA);
+      reader.initialize(new SalesforceSplit(BulkV2TestServer.JOB_ID, "SELECT Id FROM Opportunity", null, 2, 2),
+                        createContext(server));
+
+      Assert.assertEquals(0.0f, reader.getProgress(), 0.0f);
+      Assert.assertFalse(reader.nextKeyValue());
+      Assert.assertEquals(1.0f, reader.getProgress(), 0.0f);
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testConstantFieldsSet() throws Exception {
+    Schema schema = Schema.recordOf(
+      "output",
+      Schema.Field.of("Id", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("SObjectName", Schema.of(Schema.Type.STRING)));
+    try (BulkV2TestServer server = new BulkV2TestServer("Id,Amount,CloseDate", Collections.singletonList("1,,"))) {
+      SalesforceBulkV2RecordReader reader = new SalesforceBulkV2RecordReader(
+        schema, Collections.singletonMap("SObjectName", "Opportunity"));
+      reader.initialize(new SalesforceSplit(BulkV2TestServer.JOB_ID, "SELECT Id FROM Opportunity", null, 1, 1),
+                        createContext(server));
+
+      Assert.assertTrue(reader.nextKeyValue());
+      StructuredRecord record = reader.getCurrentValue();
+      Assert.assertEquals("1", record.get("Id"));
+      Assert.assertEquals("Opportunity", record.get("SObjectName"));
+      Assert.assertEquals(schema, reader.getCurrentKey());
+      Assert.assertFalse(reader.nextKeyValue());
+      reader.close();
+    }
+  }
+
+  private static TaskAttemptContext createContext(BulkV2TestServer server) {
+    Configuration conf = new Configuration(false);
+    conf.set(SalesforceConstants.CONFIG_OAUTH_TOKEN, "token");
+    conf.set(SalesforceConstants.CONFIG_OAUTH_INSTANCE_URL, server.getUrl());
+    TaskAttemptContext context = Mockito.mock(TaskAttemptContext.class);
+    Mockito.when(context.getConfiguration()).thenReturn(conf);
+    return context;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch;
+
+import com.sforce.async.BulkConnection;
+import com.sforce.async.QueryResultList;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SalesforceColumnJoinRecordReaderTest {
+
+  private static final Schema SCHEMA = Schema.recordOf("output",
+                                                       Schema.Field.of("Id", Schema.of(Schema.Type.STRING)),
+                                                       Schema.Field.of("Name", Schema.of(Schema.Type.STRING)),
+                                                       Schema.Field.of("Amount", Schema.of(Schema.Type.DOUBLE)),
+                                                       Schema.Field.of("IsDeleted", Schema.of(Schema.Type.BOOLEAN)));
+
+  @Test
+  public void testResultsJoinedOnId() throws Exception {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    mockBatch(bulkConnection, "job1", "batch1",
+              "\"Id\",\"Name\"\n\"001A\",\"a\"\n\"001B\",\"b\"\n",
+              "\"Id\",\"Name\"\n\"001C\",\"c\"\n\"001D\",\"d\"\n");
+    // 001B is absent and 001E is extra, e.g. record was deleted and created while queries were running
+    mockBatch(bulkConnection, "job2", "batch2",
+              "\"Id\",\"Amount\",\"IsDeleted\"\n\"001A\",\"1.5\",\"false\"\n\"001C\",\"3.5\",\"true\"\n" +
+                "\"001D\",\"4.5\",\"false\"\n\"001E\",\"5.5\",\"false\"\n");
+
+    SalesforceColumnJoinRecordReader reader = new SalesforceColumnJoinRecordReader(
+      SCHEMA, bulkConnection, Arrays.asList(new SalesforceSplit.ColumnBatch("job1", "batch1"),
+                                            new SalesforceSplit.ColumnBatch("job2", "batch2")));
+    List<StructuredRecord> records = new ArrayList<>();
+    while (reader.nextKeyValue()) {
+      records.add(reader.getCurrentValue());
+    }
+    Assert.assertEquals(1.0f, reader.getProgress(), 0.0f);
+    reader.close();
+
+    Assert.assertEquals(Arrays.asList(
+      StructuredRecord.builder(SCHEMA).set("Id", "001A").set("Name", "a").set("Amount", 1.5)
+        .set("IsDeleted", false).build(),
+      StructuredRecord.builder(SCHEMA).set("Id", "001C").set("Name", "c").set("Amount", 3.5)
+        .set("IsDeleted", true).build(),
+      StructuredRecord.builder(SCHEMA).set("Id", "001D").set("Name", "d").set("Amount", 4.5)
+        .set("IsDeleted", false).build()), records);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUnorderedResults() throws Exception {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    mockBatch(bulkConnection, "job1", "batch1", "\"Id\",\"Name\"\n\"001B\",\"b\"\n\"001A\",\"a\"\n");
+    mockBatch(bulkConnection, "job2", "batch2",
+              "\"Id\",\"Amount\",\"IsDeleted\"\n\"001A\",\"1.5\",\"false\"\n\"001B\",\"2.5\",\"false\"\n");
+
+    SalesforceColumnJoinRecordReader reader = new SalesforceColumnJoinRecordReader(
+      SCHEMA, bulkConnection, Arrays.asList(new SalesforceSplit.ColumnBatch("job1", "batch1"),
+                                            new SalesforceSplit.ColumnBatch("job2", "batch2")));
+    while (reader.nextKeyValue()) {
+      // read all records
+    }
+  }
+
+  private static void mockBatch(BulkConnection bulkConnection, String jobId, String batchId,
+                                String... csvResults) throws Exception {
+    String[] resultIds = new String[csvResults.length];
+    for (int i = 0; i < csvResults.length; i++) {
+      resultIds[i] = batchId + "-result" + i;
+      Mockito.when(bulkConnection.getQueryResultStream(jobId, batchId, resultIds[i]))
+        .thenReturn(new ByteArrayInputStream(csvResults[i].getBytes(StandardCharsets.UTF_8)));
+    }
+    QueryResultList resultList = new QueryResultList();
+    resultList.setResult(resultIds);
+    Mockito.when(bulkConnection.getQueryResultList(jobId, batchId)).thenReturn(resultList);
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch;
+
+import com.sforce.soap.partner.PartnerConnection;
+import com.sforce.soap.partner.QueryResult;
+import com.sforce.soap.partner.sobject.SObject;
+import com.sforce.ws.ConnectionException;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.salesforce.etl.SObjectBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class SalesforceSoapRecordReaderTest {
+
+  private static final String QUERY = "SELECT Id, Name FROM Account";
+  private static final Schema SCHEMA = Schema.recordOf(
+    "output",
+    Schema.Field.of("Id", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("Name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+  @Test
+  public void testPagesPrefetched() throws Exception {
+    PartnerConnection partnerConnection = Mockito.mock(PartnerConnection.class);
+    Mockito.when(partnerConnection.query(QUERY)).thenReturn(createPage(4, "l1", false, "001", "002"));
+    Mockito.when(partnerConnection.queryMore("l1")).thenReturn(createPage(4, "l2", false, "003"));
+    Mockito.when(partnerConnection.queryMore("l2")).thenReturn(createPage(4, null, true, "004"));
+
+    SalesforceSoapRecordReader reader = createReader();
+    reader.initialize(partnerConnection, 1000);
+    // the second page is requested in the background before the first one is read
+    Mockito.verify(partnerConnection, Mockito.timeout(1000)).queryMore("l1");
+
+    Assert.assertEquals(0.0f, reader.getProgress(), 0.0f);
+    Assert.assertEquals(4, readIds(reader).size());
+    Assert.assertEquals(1.0f, reader.getProgress(), 0.0f);
+    reader.close();
+
+    Mockito.verify(partnerConnection).setQueryOptions(1000);
+    Mockito.verify(partnerConnection, Mockito.times(2)).queryMore(Mockito.anyString());
+  }
+
+  @Test
+  public void testRecordsReadInOrder() throws Exception {
+    PartnerConnection partnerConnection = Mockito.mock(PartnerConnection.class);
+    Mockito.when(partnerConnection.query(QUERY)).thenReturn(createPage(3, "l1", false, "001", "002"));
+    Mockito.when(partnerConnection.queryMore("l1")).thenReturn(createPage(3, null, true, "003"));
+
+    SalesforceSoapRecordReader reader = createReader();
+    reader.initialize(partnerConnection, 200);
+
+    List<String> ids = new ArrayList<>();
+    while (reader.nextKeyValue()) {
+      StructuredRecord record = reader.getCurrentValue();
+      ids.add(record.get("Id"));
+      Assert.assertEquals("name-" + record.get("Id"), record.get("Name"));
+      Assert.assertEquals(SCHEMA, reader.getCurrentKey());
+    }
+    reader.close();
+
+    Assert.assertEquals(3, ids.size());
+    Assert.assertEquals("001", ids.get(0));
+    Assert.assertEquals("002", ids.get(1));
+    Assert.assertEquals("003", ids.get(2));
+  }
+
+  @Test
+  public void testEmptyPagesSkipped() throws Exception {
+    PartnerConnection partnerConnection = Mockito.mock(PartnerConnection.class);
+    Mockito.when(partnerConnection.query(QUERY)).thenReturn(createPage(2, "l1", false, "001"));
+    Mockito.when(partnerConnection.queryMore("l1")).thenReturn(createPage(2, "l2", false));
+    Mockito.when(partnerConnection.queryMore("l2")).thenReturn(createPage(2, "l3", false));
+    Mockito.when(partnerConnection.queryMore("l3")).thenReturn(createPage(2, null, true, "002"));
+
+    SalesforceSoapRecordReader reader = createReader();
+    reader.initialize(partnerConnection, 500);
+
+    List<String> ids = readIds(reader);
+    reader.close();
+
+    Assert.assertEquals(2, ids.size());
+    Assert.assertEquals("001", ids.get(0));
+    Assert.assertEquals("002", ids.get(1));
+    Mockito.verify(partnerConnection, Mockito.times(3)).queryMore(Mockito.anyString());
+  }
+
+  @Test
+  public void testQueryMoreFailureRethrown() throws Exception {
+    PartnerConnection partnerConnection = Mockito.mock(PartnerConnection.class);
+    Mockito.when(partnerConnection.query(QUERY)).thenReturn(createPage(2, "l1", false, "001"));
+    ConnectionException failure = new ConnectionException("Query locator expired");
+    Mockito.when(partnerConnection.queryMore("l1")).thenThrow(failure);
+
+    SalesforceSoapRecordReader reader = createReader();
+    reader.initialize(partnerConnection, 500);
+
+    // records of the current page are read before the failure of the next page is reported
+    Assert.assertTrue(reader.nextKeyValue());
+    try {
+      reader.nextKeyValue();
+      Assert.fail("Expected failure of queryMore to be rethrown");
+    } catch (IOException e) {
+      Assert.assertSame(failure, e.getCause());
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testCloseStopsPrefetch() throws Exception {
+    PartnerConnection partnerConnection = Mockito.mock(PartnerConnection.class);
+    Mockito.when(partnerConnection.query(QUERY)).thenReturn(createPage(2, "l1", false, "001"));
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    Mockito.when(partnerConnection.queryMore("l1")).thenAnswer(invocation -> {
+      started.countDown();
+      try {
+        TimeUnit.MINUTES.sleep(1);
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+      }
+      return createPage(2, null, true);
+    });
+
+    SalesforceSoapRecordReader reader = createReader();
+    reader.initialize(partnerConnection, 500);
+    Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    // closing the reader does not wait for the page being fetched
+    reader.close();
+    Assert.assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+  }
+
+  private static SalesforceSoapRecordReader createReader() {
+    return new SalesforceSoapRecordReader(SCHEMA, QUERY, new SoapRecordToMapTransformer());
+  }
+
+  private static List<String> readIds(SalesforceSoapRecordReader reader) throws IOException {
+    List<String> ids = new ArrayList<>();
+    while (reader.nextKeyValue()) {
+      ids.add(reader.getCurrentValue().get("Id"));
+    }
+    return ids;
+  }
+
+  private static QueryResult createPage(int size, String queryLocator, boolean done, String... ids) {
+    SObject[] records = new SObject[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      records[i] = new SObjectBuilder()
+        .setType("Account")
+        .put("Id", ids[i])
+        .put("Name", "name-" + ids[i])
+        .build();
+    }
+    QueryResult queryResult = new QueryResult();
+    queryResult.setSize(size);
+    queryResult.setQueryLocator(queryLocator);
+    queryResult.setDone(done);
+    queryResult.setRecords(records);
+    return queryResult;
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class SalesforceSplitTest {
+
+  @Test
+  public void testSerialization() throws IOException {
+    SalesforceSplit split = roundTrip(new SalesforceSplit("job", "batch", "SELECT Id FROM Account", "result", 42));
+    Assert.assertEquals("job", split.getJobId());
+    Assert.assertEquals("batch", split.getBatchId());
+    Assert.assertEquals("SELECT Id FROM Account", split.getQuery());
+    Assert.assertEquals("result", split.getResultId());
+    Assert.assertEquals(42, split.getLength());
+  }
+
+  @Test
+  public void testSerializationWithoutResultId() throws IOException {
+    SalesforceSplit split = roundTrip(new SalesforceSplit("job", "batch", "SELECT Id FROM Account"));
+    Assert.assertNull(split.getResultId());
+    Assert.assertEquals(0, split.getLength());
+  }
+
+  @Test
+  public void testSerializationWithColumnBatches() throws IOException {
+    SalesforceSplit split = roundTrip(new SalesforceSplit(
+      "SELECT Id FROM Account", Arrays.asList(new SalesforceSplit.ColumnBatch("job1", "batch1"),
+                                              new SalesforceSplit.ColumnBatch("job2", "batch2")), 10));
+    Assert.assertEquals("job1", split.getJobId());
+    Assert.assertEquals("batch1", split.getBatchId());
+    Assert.assertEquals(2, split.getColumnBatches().size());
+    Assert.assertEquals("job2", split.getColumnBatches().get(1).getJobId());
+    Assert.assertEquals("batch2", split.getColumnBatches().get(1).getBatchId());
+    Assert.assertEquals(ImmutableSet.of("job1", "job2"), split.getJobIds());
+    Assert.assertEquals(10, split.getLength());
+  }
+
+  @Test
+  public void testSerializationBulkV2() throws IOException {
+    SalesforceSplit split = roundTrip(new SalesforceSplit("job", "SELECT Id FROM Account", "locator", 1000, 500));
+    Assert.assertTrue(split.isBulkV2());
+    Assert.assertEquals("job", split.getJobId());
+    Assert.assertEquals("locator", split.getResultLocator());
+    Assert.assertEquals(1000, split.getMaxRecords());
+    Assert.assertEquals(500, split.getLength());
+
+    split = roundTrip(new SalesforceSplit("job", "SELECT Id FROM Account", null, 1000, 500));
+    Assert.assertNull(split.getResultLocator());
+    Assert.assertFalse(roundTrip(new SalesforceSplit("job", "batch", "SELECT Id FROM Account")).isBulkV2());
+  }
+
+  private static SalesforceSplit roundTrip(SalesforceSplit split) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    split.write(new DataOutputStream(out));
+    SalesforceSplit result = new SalesforceSplit();
+    result.readFields(new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+    return result;
+  }
+}
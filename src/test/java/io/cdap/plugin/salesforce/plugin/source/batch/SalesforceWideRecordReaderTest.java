@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch;
+
+import com.sforce.async.BulkConnection;
+import com.sforce.soap.partner.PartnerConnection;
+import com.sforce.soap.partner.sobject.SObject;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.salesforce.etl.SObjectBuilder;
+import io.cdap.plugin.salesforce.plugin.source.batch.util.SalesforceSourceConstants;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.mockito.internal.util.reflection.FieldSetter;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SalesforceWideRecordReaderTest {
+
+  @Test
+  public void testRecordsReturnedInBatchOrder() throws Exception {
+    int recordsCount = SalesforceSourceConstants.WIDE_QUERY_MAX_BATCH_COUNT * 2 + 10;
+    StringBuilder csv = new StringBuilder("\"Id\"\n");
+    for (int i = 0; i < recordsCount; i++) {
+      csv.append('"').append(getId(i)).append("\"\n");
+    }
+
+    Schema schema = Schema.recordOf("output",
+                                    Schema.Field.of("Id", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("Name", Schema.of(Schema.Type.STRING)));
+    SalesforceWideRecordReader reader = new SalesforceWideRecordReader(
+      schema, "SELECT Id, Name FROM Account", new SoapRecordToMapTransformer(), "job", "batch",
+      new String[] {"result"});
+
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    Mockito.when(bulkConnection.getQueryResultStream("job", "batch", "result"))
+      .thenReturn(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+    FieldSetter.setField(reader, SalesforceBulkRecordReader.class.getDeclaredField("bulkConnection"),
+                         bulkConnection);
+
+    PartnerConnection partnerConnection = Mockito.mock(PartnerConnection.class);
+    Mockito.when(partnerConnection.retrieve(ArgumentMatchers.eq("Id,Name"), ArgumentMatchers.eq("Account"),
+                                            ArgumentMatchers.any()))
+      .thenAnswer(invocation -> {
+        String[] ids = invocation.getArgument(2);
+        Assert.assertTrue(ids.length <= SalesforceSourceConstants.WIDE_QUERY_MAX_BATCH_COUNT);
+        SObject[] sObjects = new SObject[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+          sObjects[i] = new SObjectBuilder()
+            .setType("Account")
+            .put("Id", ids[i])
+            .put("Name", "name-" + ids[i])
+            .build();
+        }
+        return sObjects;
+      });
+    FieldSetter.setField(reader, SalesforceWideRecordReader.class.getDeclaredField("partnerConnection"),
+                         partnerConnection);
+    Counters counters = new Counters();
+    TaskAttemptContext context = Mockito.mock(TaskAttemptContext.class);
+    Mockito.when(context.getCounter(ArgumentMatchers.anyString(), ArgumentMatchers.anyString()))
+      .thenAnswer(invocation -> counters.findCounter(invocation.getArgument(0), invocation.getArgument(1)));
+    FieldSetter.setField(reader, SalesforceWideRecordReader.class.getDeclaredField("taskAttemptContext"), context);
+
+    reader.setupParser();
+    List<StructuredRecord> records = new ArrayList<>();
+    while (reader.nextKeyValue()) {
+      records.add(reader.getCurrentValue());
+    }
+    Assert.assertEquals(1.0f, reader.getProgress(), 0.0f);
+    reader.close();
+
+    Assert.assertEquals(recordsCount, records.size());
+    for (int i = 0; i < recordsCount; i++) {
+      Assert.assertEquals(getId(i), records.get(i).get("Id"));
+      Assert.assertEquals("name-" + getId(i), records.get(i).get("Name"));
+    }
+    Mockito.verify(partnerConnection, Mockito.times(3))
+      .retrieve(ArgumentMatchers.anyString(), ArgumentMatchers.anyString(), ArgumentMatchers.any());
+    Assert.assertEquals(3, counters.findCounter(SalesforceSourceConstants.COUNTER_GROUP_WIDE_RETRIEVE,
+                                                SalesforceSourceConstants.COUNTER_WIDE_RETRIEVE_CALLS).getValue());
+  }
+
+  private static String getId(int index) {
+    return String.format("001%015d", index);
+  }
+}
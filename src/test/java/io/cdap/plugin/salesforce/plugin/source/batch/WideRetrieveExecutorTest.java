@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+
+public class WideRetrieveExecutorTest {
+
+  @Test
+  public void testConcurrencyIsBounded() throws Exception {
+    AtomicInteger running = new AtomicInteger();
+    LongAccumulator maxRunning = new LongAccumulator(Math::max, 0);
+    List<CompletableFuture<Integer>> futures = new ArrayList<>();
+
+    try (WideRetrieveExecutor executor = new WideRetrieveExecutor("test", 2)) {
+      for (int i = 0; i < 8; i++) {
+        int value = i;
+        futures.add(executor.submit(() -> {
+          maxRunning.accumulate(running.incrementAndGet());
+          try {
+            TimeUnit.MILLISECONDS.sleep(20);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          running.decrementAndGet();
+          return value;
+        }));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        Assert.assertEquals(i, (int) futures.get(i).get(10, TimeUnit.SECONDS));
+      }
+
+      WideRetrieveExecutor.Metrics metrics = executor.getMetrics();
+      Assert.assertEquals(8, metrics.getCalls());
+      Assert.assertTrue(metrics.getCallTimeMs() >= 8 * 20);
+      Assert.assertTrue(metrics.getQueueTimeMs() > 0);
+    }
+    Assert.assertTrue(maxRunning.get() <= 2);
+  }
+}
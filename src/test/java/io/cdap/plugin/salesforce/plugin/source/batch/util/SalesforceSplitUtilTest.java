@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.batch.util;
+
+import com.sforce.async.BatchInfo;
+import com.sforce.async.BatchInfoList;
+import com.sforce.async.BatchStateEnum;
+import com.sforce.async.BulkConnection;
+import com.sforce.soap.partner.DescribeSObjectResult;
+import com.sforce.soap.partner.Field;
+import com.sforce.soap.partner.PartnerConnection;
+import com.sforce.soap.partner.QueryResult;
+import com.sforce.soap.partner.sobject.SObject;
+import io.cdap.plugin.salesforce.BulkAPIBatchException;
+import io.cdap.plugin.salesforce.bulkv2.BulkV2Connection;
+import io.cdap.plugin.salesforce.bulkv2.BulkV2TestServer;
+import io.cdap.plugin.salesforce.plugin.source.batch.SalesforceSplit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class SalesforceSplitUtilTest {
+
+  @Test
+  public void testWaitForBatchCompletion() throws Exception {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    Mockito.when(bulkConnection.getBatchInfoList("job"))
+      .thenReturn(batchInfoList(batchInfo("batch1", BatchStateEnum.Completed),
+                                batchInfo("batch2", BatchStateEnum.InProgress)))
+      .thenReturn(batchInfoList(batchInfo("batch1", BatchStateEnum.Completed),
+                                batchInfo("batch2", BatchStateEnum.Completed)));
+
+    List<BatchInfo> completed = SalesforceSplitUtil.waitForBatchCompletion(
+      bulkConnection, new BatchInfo[] {batchInfo("batch1", BatchStateEnum.Queued),
+        batchInfo("batch2", BatchStateEnum.Queued)});
+
+    Assert.assertEquals(2, completed.size());
+    Assert.assertEquals("batch1,batch2",
+                        completed.stream().map(BatchInfo::getId).sorted().collect(Collectors.joining(",")));
+    Mockito.verify(bulkConnection, Mockito.times(2)).getBatchInfoList("job");
+  }
+
+  @Test(expected = BulkAPIBatchException.class)
+  public void testWaitForBatchCompletionFailedBatch() throws Exception {
+    BulkConnection bulkConnection = Mockito.mock(BulkConnection.class);
+    Mockito.when(bulkConnection.getBatchInfoList("job"))
+      .thenReturn(batchInfoList(batchInfo("batch1", BatchStateEnum.Failed)));
+
+    SalesforceSplitUtil.waitForBatchCompletion(bulkConnection,
+                                               new BatchInfo[] {batchInfo("batch1", BatchStateEnum.Queued)});
+  }
+
+  @Test
+  public void testBulkV2QuerySplits() throws Exception {
+    try (BulkV2TestServer server = new BulkV2TestServer("Id", Arrays.asList("1", "2", "3", "4", "5"))) {
+      BulkV2Connection connection = new BulkV2Connection(server.getOAuthCredentials());
+      List<SalesforceSplit> splits = SalesforceSplitUtil.getBulkV2QuerySplits("SELECT Id FROM Account",
+                                                                              connection, "query", 2);
+
+      Assert.assertEquals(3, splits.size());
+      Assert.assertEquals(Arrays.asList(null, "2", "4"),
+                          splits.stream().map(SalesforceSplit::getResultLocator).collect(Collectors.toList()));
+      Assert.assertEquals(Arrays.asList(2L, 2L, 1L),
+                          splits.stream().map(SalesforceSplit::getLength).collect(Collectors.toList()));
+      for (SalesforceSplit split : splits) {
+        Assert.assertTrue(split.isBulkV2());
+        Assert.assertEquals(BulkV2TestServer.JOB_ID, split.getJobId());
+        Assert.assertEquals(2, split.getMaxRecords());
+      }
+    }
+  }
+
+  @Test
+  public void testBulkV2QuerySplitsEmptyResult() throws Exception {
+    try (BulkV2TestServer server = new BulkV2TestServer("Id", Collections.emptyList())) {
+      BulkV2Connection connection = new BulkV2Connection(server.getOAuthCredentials());
+      List<SalesforceSplit> splits = SalesforceSplitUtil.getBulkV2QuerySplits("SELECT Id FROM Account",
+                                                                              connection, "query", 2);
+
+      Assert.assertTrue(splits.isEmpty());
+      // job is not read by any split, so it is deleted right away
+      Assert.assertTrue(server.getRequests().stream().anyMatch(request -> request.startsWith("DELETE ")));
+      Assert.assertTrue(server.getRequests().stream().noneMatch(request -> request.contains("/results")));
+    }
+  }
+
+  @Test
+  public void testRangeQueries() throws Exception {
+    PartnerConnection partnerConnection = Mockito.mock(PartnerConnection.class);
+    Mockito.when(partnerConnection.describeSObject("AccountHistory"))
+      .thenReturn(describeResult("Id", "SystemModstamp", "CreatedDate"));
+    Mockito.when(partnerConnection.query(Mockito.endsWith("ORDER BY CreatedDate ASC LIMIT 1")))
+      .thenReturn(queryResult("CreatedDate", "2020-01-01T00:00:00.000Z"));
+    Mockito.when(partnerConnection.query(Mockito.endsWith("ORDER BY CreatedDate DESC LIMIT 1")))
+      .thenReturn(queryResult("CreatedDate", "2020-01-01T00:00:03.000Z"));
+
+    List<String> queries = SalesforceSplitUtil.getRangeQueries("SELECT Id FROM AccountHistory", partnerConnection, 2);
+
+    Assert.assertEquals(Arrays.asList("SELECT Id FROM AccountHistory WHERE CreatedDate<2020-01-01T00:00:02Z",
+                                      "SELECT Id FROM AccountHistory WHERE CreatedDate>=2020-01-01T00:00:02Z"),
+                        queries);
+  }
+
+  @Test
+  public void testRangeQueriesWithoutRangeField() throws Exception {
+    PartnerConnection partnerConnection = Mockito.mock(PartnerConnection.class);
+    Mockito.when(partnerConnection.describeSObject("AccountShare")).thenReturn(describeResult("Id", "AccountId"));
+
+    Assert.assertEquals(Collections.singletonList("SELECT Id FROM AccountShare"),
+                        SalesforceSplitUtil.getRangeQueries("SELECT Id FROM AccountShare", partnerConnection, 4));
+    Mockito.verify(partnerConnection, Mockito.never()).query(Mockito.anyString());
+  }
+
+  @Test
+  public void testRangeQueriesSingleValue() throws Exception {
+    PartnerConnection partnerConnection = Mockito.mock(PartnerConnection.class);
+    Mockito.when(partnerConnection.describeSObject("AccountHistory")).thenReturn(describeResult("CreatedDate"));
+    Mockito.when(partnerConnection.query(Mockito.anyString()))
+      .thenReturn(queryResult("CreatedDate", "2020-01-01T00:00:00.000Z"));
+
+    Assert.assertEquals(Collections.singletonList("SELECT Id FROM AccountHistory"),
+                        SalesforceSplitUtil.getRangeQueries("SELECT Id FROM AccountHistory", partnerConnection, 4));
+  }
+
+  @Test
+  public void testAdaptiveChunkSize() {
+    // fits into a single chunk
+    Assert.assertEquals(0, SalesforceSplitUtil.getAdaptiveChunkSize(5000, 64));
+    Assert.assertEquals(0, SalesforceSplitUtil.getAdaptiveChunkSize(SalesforceSourceConstants.MIN_AUTO_PK_CHUNK_SIZE,
+                                                                    64));
+    // not smaller than minimum chunk size
+    Assert.assertEquals(SalesforceSourceConstants.MIN_AUTO_PK_CHUNK_SIZE,
+                        SalesforceSplitUtil.getAdaptiveChunkSize(100000, 64));
+    Assert.assertEquals(100000, SalesforceSplitUtil.getAdaptiveChunkSize(6400000, 64));
+    Assert.assertEquals(100001, SalesforceSplitUtil.getAdaptiveChunkSize(6400001, 64));
+    // not bigger than maximum chunk size
+    Assert.assertEquals(SalesforceSourceConstants.MAX_PK_CHUNK_SIZE,
+                        SalesforceSplitUtil.getAdaptiveChunkSize(400000000L, 64));
+  }
+
+  private static DescribeSObjectResult describeResult(String... fieldNames) {
+    DescribeSObjectResult describeResult = new DescribeSObjectResult();
+    describeResult.setFields(Stream.of(fieldNames).map(name -> {
+      Field field = new Field();
+      field.setName(name);
+      field.setFilterable(true);
+      field.setSortable(true);
+      return field;
+    }).toArray(Field[]::new));
+    return describeResult;
+  }
+
+  private static QueryResult queryResult(String fieldName, String value) {
+    SObject record = new SObject();
+    record.setField(fieldName, value);
+    QueryResult queryResult = new QueryResult();
+    queryResult.setRecords(new SObject[] {record});
+    return queryResult;
+  }
+
+  private static BatchInfo batchInfo(String batchId, BatchStateEnum state) {
+    BatchInfo batchInfo = new BatchInfo();
+    batchInfo.setJobId("job");
+    batchInfo.setId(batchId);
+    batchInfo.setState(state);
+    return batchInfo;
+  }
+
+  private static BatchInfoList batchInfoList(BatchInfo... batchInfos) {
+    BatchInfoList batchInfoList = new BatchInfoList();
+    batchInfoList.setBatchInfo(batchInfos);
+    return batchInfoList;
+  }
+}
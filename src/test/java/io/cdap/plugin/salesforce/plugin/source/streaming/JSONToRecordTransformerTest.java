@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.salesforce.plugin.source.streaming;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+public class JSONToRecordTransformerTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "output",
+    Schema.Field.of("Id", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("Name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("NumberOfEmployees", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("CloseDate", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))),
+    Schema.Field.of("CreatedDate", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))),
+    Schema.Field.of("StartTime", Schema.nullableOf(Schema.of(Schema.LogicalType.TIME_MICROS))),
+    Schema.Field.of("Fiscal", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+  @Test
+  public void testTransform() {
+    JSONToRecordTransformer transformer = new JSONToRecordTransformer(SCHEMA);
+
+    StructuredRecord record = transformer.transform(createMessage("001"));
+    assertRecord("001", record);
+
+    // keys are matched case insensitively, keys absent in the schema and null values are skipped
+    record = transformer.transform(
+      "{\"sobject\":{\"id\":\"002\",\"NAME\":null,\"Unknown\":\"value\",\"numberofemployees\":5}}");
+    Assert.assertEquals("002", record.get("Id"));
+    Assert.assertNull(record.get("Name"));
+    Assert.assertEquals(5, (int) record.<Integer>get("NumberOfEmployees"));
+    Assert.assertNull(record.get("CloseDate"));
+  }
+
+  @Test
+  public void testTransformAfterSerialization() throws Exception {
+    JSONToRecordTransformer transformer = new JSONToRecordTransformer(SCHEMA);
+    // converters are compiled before the transformer is sent to executors
+    transformer.transform(createMessage("001"));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(transformer);
+    }
+    JSONToRecordTransformer deserialized;
+    try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      deserialized = (JSONToRecordTransformer) input.readObject();
+    }
+
+    assertRecord("003", deserialized.call(createMessage("003")));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testMessageWithoutSObject() {
+    new JSONToRecordTransformer(SCHEMA).transform("{\"event\":{}}");
+  }
+
+  private static String createMessage(String id) {
+    return "{\"event\":{\"type\":\"created\"},\"sobject\":{" +
+      "\"Id\":\"" + id + "\"," +
+      "\"Name\":\"name-" + id + "\"," +
+      "\"NumberOfEmployees\":10," +
+      "\"CloseDate\":\"2020-01-02T00:00:00.000Z\"," +
+      "\"CreatedDate\":\"2020-01-02T10:15:30.000Z\"," +
+      "\"StartTime\":\"10:15:30.000\"," +
+      "\"Fiscal\":{\"FiscalYear\":2020}}}";
+  }
+
+  private static void assertRecord(String id, StructuredRecord record) {
+    Assert.assertEquals(id, record.get("Id"));
+    Assert.assertEquals("name-" + id, record.get("Name"));
+    Assert.assertEquals(10, (int) record.<Integer>get("NumberOfEmployees"));
+    Assert.assertEquals(LocalDate.of(2020, 1, 2), record.getDate("CloseDate"));
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toMicros(Instant.parse("2020-01-02T10:15:30.000Z").toEpochMilli()),
+                        (long) record.<Long>get("CreatedDate"));
+    Assert.assertEquals(LocalTime.of(10, 15, 30), record.getTime("StartTime"));
+    // json objects of string fields are converted back to string
+    Assert.assertEquals("{FiscalYear=2020}", record.get("Fiscal"));
+  }
+}